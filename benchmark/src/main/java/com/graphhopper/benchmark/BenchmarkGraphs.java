@@ -0,0 +1,143 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TurnCostEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.TurnCostStorage;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Random;
+
+/**
+ * Imports the bundled Andorra extract once and loads it afterwards, so that all benchmarks and
+ * all commits are measured on the same graph. Another extract can be used via
+ * -Dgraphhopper.osm=file but the results are then not comparable to older runs.
+ * <p/>
+ * @author Peter Karich
+ */
+final class BenchmarkGraphs
+{
+    static final String OSM_FILE = System.getProperty("graphhopper.osm", "../core/files/andorra.osm.pbf");
+    static final long SEED = 123;
+    private static GraphHopper plain;
+    private static GraphHopper ch;
+    private static GraphHopper turnCosts;
+
+    private BenchmarkGraphs()
+    {
+    }
+
+    static synchronized GraphHopper getPlain()
+    {
+        if (plain == null)
+            plain = importOrLoad(false);
+
+        return plain;
+    }
+
+    static synchronized GraphHopper getCH()
+    {
+        if (ch == null)
+            ch = importOrLoad(true);
+
+        return ch;
+    }
+
+    /**
+     * @return the graph without contraction hierarchies but with the imported turn restrictions.
+     * The bundled Andorra extract contains no restriction relations, in this case random
+     * restrictions are added to every 10th junction.
+     */
+    static synchronized GraphHopper getTurnCosts()
+    {
+        if (turnCosts == null)
+        {
+            turnCosts = new GraphHopper().setInMemory(true, true).
+                    setEncodingManager(new EncodingManager("CAR")).
+                    setGraphHopperLocation("target/benchmark-gh-tc").
+                    setOSMFile(OSM_FILE).
+                    disableCHShortcuts().
+                    setEnableTurnRestrictions(true).
+                    importOrLoad();
+            GraphHopperStorage graph = (GraphHopperStorage) turnCosts.getGraph();
+            TurnCostStorage turnCostStorage = (TurnCostStorage) graph.getExtendedStorage();
+            if (turnCostStorage.entries() == 0)
+                addRandomRestrictions(graph, turnCostStorage,
+                        (TurnCostEncoder) turnCosts.getEncodingManager().getSingle());
+        }
+        return turnCosts;
+    }
+
+    private static void addRandomRestrictions( Graph graph, TurnCostStorage turnCostStorage, TurnCostEncoder encoder )
+    {
+        Random rand = new Random(SEED);
+        int flags = (int) encoder.getTurnFlags(true, 0);
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        TIntList edges = new TIntArrayList();
+        for (int node = 0; node < graph.getNodes(); node++)
+        {
+            edges.clear();
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+            {
+                edges.add(iter.getEdge());
+            }
+            if (edges.size() < 3 || rand.nextInt(10) != 0)
+                continue;
+
+            int from = edges.get(rand.nextInt(edges.size()));
+            int to = edges.get(rand.nextInt(edges.size()));
+            if (from != to)
+                turnCostStorage.setTurnCosts(node, from, to, flags);
+        }
+    }
+
+    private static GraphHopper importOrLoad( boolean withCH )
+    {
+        GraphHopper hopper = new GraphHopper().setInMemory(true, true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation("target/benchmark-gh" + (withCH ? "-ch" : "")).
+                setOSMFile(OSM_FILE);
+        if (withCH)
+            hopper.setCHShortcuts("fastest");
+        else
+            hopper.disableCHShortcuts();
+
+        return hopper.importOrLoad();
+    }
+
+    /**
+     * @return count random pairs of nodes, the start node at even and the end node at odd indices
+     */
+    static int[] createNodePairs( Graph graph, int count )
+    {
+        Random rand = new Random(SEED);
+        int[] pairs = new int[2 * count];
+        for (int i = 0; i < pairs.length; i++)
+        {
+            pairs[i] = rand.nextInt(graph.getNodes());
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures random and sequential DataAccess.getInt for every DataAccess implementation.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataAccessBenchmark
+{
+    private static final int INTS = 1 << 23;
+    private static final int READS = 1 << 16;
+    private static final String LOCATION = "target/benchmark-da";
+    @Param(
+    {
+        "RAM", "RAM_INT", "MMAP", "UNSAFE_STORE", "DIRECT"
+    })
+    public String type;
+    private DataAccess da;
+    private long[] positions;
+
+    @Setup
+    public void setUp()
+    {
+        Helper.removeDir(new File(LOCATION));
+        da = new GHDirectory(LOCATION, toDAType(type)).find("benchmark").create(INTS * 4L);
+        Random rand = new Random(BenchmarkGraphs.SEED);
+        for (int i = 0; i < INTS; i++)
+        {
+            da.setInt(i * 4L, rand.nextInt());
+        }
+        positions = new long[READS];
+        for (int i = 0; i < READS; i++)
+        {
+            positions[i] = rand.nextInt(INTS) * 4L;
+        }
+    }
+
+    static DAType toDAType( String type )
+    {
+        if ("RAM".equals(type))
+            return DAType.RAM;
+        if ("RAM_INT".equals(type))
+            return DAType.RAM_INT;
+        if ("MMAP".equals(type))
+            return DAType.MMAP;
+        if ("UNSAFE_STORE".equals(type))
+            return DAType.UNSAFE_STORE;
+        if ("DIRECT".equals(type))
+            return DAType.DIRECT;
+
+        throw new IllegalArgumentException("Unknown DataAccess type " + type);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        da.close();
+        Helper.removeDir(new File(LOCATION));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public int getIntRandom()
+    {
+        int sum = 0;
+        for (int i = 0; i < READS; i++)
+        {
+            sum += da.getInt(positions[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public int getIntSequential()
+    {
+        int sum = 0;
+        for (int i = 0; i < READS; i++)
+        {
+            sum += da.getInt(i * 4L);
+        }
+        return sum;
+    }
+}
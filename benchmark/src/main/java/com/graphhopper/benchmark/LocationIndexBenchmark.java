@@ -0,0 +1,69 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.shapes.BBox;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures LocationIndex.findClosest for random locations within the bounds of the graph.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LocationIndexBenchmark
+{
+    private static final int COUNT = 10000;
+    private LocationIndex index;
+    private double[] lats;
+    private double[] lons;
+    private int current;
+
+    @Setup
+    public void setUp()
+    {
+        GraphHopper hopper = BenchmarkGraphs.getPlain();
+        index = hopper.getLocationIndex();
+        BBox bbox = hopper.getGraph().getBounds();
+        Random rand = new Random(BenchmarkGraphs.SEED);
+        lats = new double[COUNT];
+        lons = new double[COUNT];
+        for (int i = 0; i < COUNT; i++)
+        {
+            lats[i] = bbox.minLat + rand.nextDouble() * (bbox.maxLat - bbox.minLat);
+            lons[i] = bbox.minLon + rand.nextDouble() * (bbox.maxLon - bbox.minLon);
+        }
+    }
+
+    @Benchmark
+    public int findClosest()
+    {
+        int i = current++ % COUNT;
+        return index.findClosest(lats[i], lons[i], EdgeFilter.ALL_EDGES).getClosestNode();
+    }
+}
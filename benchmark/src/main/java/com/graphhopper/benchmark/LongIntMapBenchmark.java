@@ -0,0 +1,149 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.coll.CompressedLongIntMap;
+import com.graphhopper.coll.GHLongIntBTree;
+import com.graphhopper.coll.LongIntMap;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the node id maps of the OSM import. The keys imitate the node ids of ways: runs of
+ * neighbouring ids starting at random positions.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LongIntMapBenchmark
+{
+    private static final int KEYS = 1 << 22;
+    private static final String LOCATION = "target/benchmark-map";
+    @Param(
+    {
+        "BTREE", "COMPRESSED_RAM", "COMPRESSED_DIRECT"
+    })
+    public String type;
+    private long[] wayKeys;
+    private long[] sortedKeys;
+    private LongIntMap map;
+
+    @Setup
+    public void setUp()
+    {
+        Random rand = new Random(BenchmarkGraphs.SEED);
+        wayKeys = new long[KEYS];
+        for (int i = 0; i < KEYS;)
+        {
+            long start = (long) (rand.nextDouble() * KEYS * 4);
+            int length = 2 + rand.nextInt(20);
+            for (int j = 0; j < length && i < KEYS; j++)
+            {
+                wayKeys[i++] = start + j * (1 + rand.nextInt(3));
+            }
+        }
+        sortedKeys = wayKeys.clone();
+        Arrays.sort(sortedKeys);
+
+        map = fill();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        if (map instanceof CompressedLongIntMap)
+            ((CompressedLongIntMap) map).remove();
+        Helper.removeDir(new File(LOCATION));
+    }
+
+    LongIntMap createMap()
+    {
+        if ("BTREE".equals(type))
+            return new GHLongIntBTree(200);
+        if ("COMPRESSED_RAM".equals(type))
+            return new CompressedLongIntMap(new GHDirectory(LOCATION, DAType.RAM), "map");
+        if ("COMPRESSED_DIRECT".equals(type))
+            return new CompressedLongIntMap(new GHDirectory(LOCATION, DAType.DIRECT), "map");
+
+        throw new IllegalArgumentException("Unknown map type " + type);
+    }
+
+    /**
+     * Like the first pass of the import: every referenced node is counted.
+     */
+    LongIntMap fill()
+    {
+        LongIntMap tmpMap = createMap();
+        for (int i = 0; i < KEYS; i++)
+        {
+            long key = wayKeys[i];
+            int value = tmpMap.get(key);
+            if (value == -1)
+                tmpMap.put(key, 1);
+            else if (value > -1)
+                tmpMap.put(key, -2);
+        }
+        return tmpMap;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public long putWayOrder()
+    {
+        LongIntMap tmpMap = fill();
+        long size = tmpMap.getSize();
+        if (tmpMap instanceof CompressedLongIntMap)
+            ((CompressedLongIntMap) tmpMap).remove();
+        return size;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int getWayOrder()
+    {
+        int sum = 0;
+        for (int i = 0; i < KEYS; i++)
+        {
+            sum += map.get(wayKeys[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int getSorted()
+    {
+        int sum = 0;
+        for (int i = 0; i < KEYS; i++)
+        {
+            sum += map.get(sortedKeys[i]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.FastestWeighting;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the extraction of a found path into points and instructions. The shortest path trees
+ * are calculated once in the setup, so the routing itself is not included.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PathBenchmark
+{
+    private static final int COUNT = 200;
+    private final List<EdgeEntry> entries = new ArrayList<EdgeEntry>();
+    private Graph graph;
+    private FlagEncoder encoder;
+    private int current;
+
+    @Setup
+    public void setUp()
+    {
+        GraphHopper hopper = BenchmarkGraphs.getPlain();
+        graph = hopper.getGraph();
+        encoder = hopper.getEncodingManager().getSingle();
+        int[] pairs = BenchmarkGraphs.createNodePairs(graph, COUNT);
+        for (int i = 0; i < pairs.length; i += 2)
+        {
+            Path path = new DijkstraBidirectionRef(graph, encoder, new FastestWeighting(encoder)).
+                    calcPath(pairs[i], pairs[i + 1]);
+            if (!path.isFound())
+                continue;
+
+            // keep the path as a chain of entries like the one a shortest path tree contains
+            EdgeEntry entry = new EdgeEntry(EdgeIterator.NO_EDGE, pairs[i], 0);
+            for (EdgeIteratorState edge : path.calcEdges())
+            {
+                EdgeEntry next = new EdgeEntry(edge.getEdge(), edge.getAdjNode(), 0);
+                next.parent = entry;
+                entry = next;
+            }
+            entries.add(entry);
+        }
+    }
+
+    private Path nextPath()
+    {
+        return new Path(graph, encoder).setEdgeEntry(entries.get(current++ % entries.size())).extract();
+    }
+
+    @Benchmark
+    public int calcPoints()
+    {
+        return nextPath().calcPoints().getSize();
+    }
+
+    @Benchmark
+    public int calcInstructions()
+    {
+        return nextPath().calcInstructions().size();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.reader.OSMElement;
+import com.graphhopper.reader.OSMInputFile;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures reading all elements of the bundled PBF file with different numbers of decoding
+ * threads.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PbfDecodingBenchmark
+{
+    @Param(
+    {
+        "1", "2", "4"
+    })
+    public int workerThreads;
+
+    @Benchmark
+    public int readAll() throws Exception
+    {
+        return count(new OSMInputFile(new File(BenchmarkGraphs.OSM_FILE)).setWorkerThreads(workerThreads));
+    }
+
+    /**
+     * Reads like the first pass of the import which skips all nodes.
+     */
+    @Benchmark
+    public int readWaysAndRelations() throws Exception
+    {
+        return count(new OSMInputFile(new File(BenchmarkGraphs.OSM_FILE)).setWorkerThreads(workerThreads).
+                setElementTypes(OSMElement.WAY, OSMElement.RELATION));
+    }
+
+    private int count( OSMInputFile in ) throws Exception
+    {
+        in.open();
+        try
+        {
+            int count = 0;
+            // the elements are only counted, decoding them is what is measured
+            while (in.getNext() != null)
+            {
+                count++;
+            }
+            return count;
+        } finally
+        {
+            in.close();
+        }
+    }
+}
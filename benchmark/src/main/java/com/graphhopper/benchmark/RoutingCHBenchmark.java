@@ -0,0 +1,67 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.storage.Graph;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the bidirectional algorithms on the graph prepared with contraction hierarchies.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoutingCHBenchmark
+{
+    private static final int COUNT = 10000;
+    @Param(
+    {
+        "dijkstrabi", "astarbi"
+    })
+    public String algorithm;
+    private PrepareContractionHierarchies prepare;
+    private int[] pairs;
+    private int current;
+
+    @Setup
+    public void setUp()
+    {
+        GraphHopper hopper = BenchmarkGraphs.getCH();
+        Graph graph = hopper.getGraph();
+        prepare = hopper.getPreparation(hopper.getEncodingManager().getSingle().toString(), "fastest");
+        pairs = BenchmarkGraphs.createNodePairs(graph, COUNT);
+    }
+
+    @Benchmark
+    public double route()
+    {
+        int i = 2 * (current++ % COUNT);
+        if ("astarbi".equals(algorithm))
+            return prepare.createAStar().calcPath(pairs[i], pairs[i + 1]).getDistance();
+
+        return prepare.createAlgo().calcPath(pairs[i], pairs[i + 1]).getDistance();
+    }
+}
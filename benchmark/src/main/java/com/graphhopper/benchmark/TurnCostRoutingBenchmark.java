@@ -0,0 +1,78 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.ch.PrepareEdgeBasedContractionHierarchies;
+import com.graphhopper.routing.util.AlgorithmPreparation;
+import com.graphhopper.routing.util.FastestWeighting;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.NoOpAlgorithmPreparation;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares node based algorithms with their edge based variants on the same graph including turn
+ * restrictions. Only the edge based variants read the restrictions, dijkstrabiEdgeBasedCH uses the
+ * edge based contraction hierarchies.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TurnCostRoutingBenchmark
+{
+    private static final int COUNT = 1000;
+    @Param(
+    {
+        "dijkstra", "dijkstraEdgeBased", "astar", "astarEdgeBased", "dijkstrabi", "dijkstrabiEdgeBased", "dijkstrabiEdgeBasedCH"
+    })
+    public String algorithm;
+    private AlgorithmPreparation prepare;
+    private int[] pairs;
+    private int current;
+
+    @Setup
+    public void setUp()
+    {
+        GraphHopper hopper = BenchmarkGraphs.getTurnCosts();
+        Graph graph = hopper.getGraph();
+        FlagEncoder encoder = hopper.getEncodingManager().getSingle();
+        Weighting weighting = new FastestWeighting(encoder);
+        if ("dijkstrabiEdgeBasedCH".equals(algorithm))
+            prepare = new PrepareEdgeBasedContractionHierarchies(encoder, weighting).setGraph(graph).doWork();
+        else
+            prepare = NoOpAlgorithmPreparation.createAlgoPrepare(graph, algorithm, encoder, weighting);
+        pairs = BenchmarkGraphs.createNodePairs(graph, COUNT);
+    }
+
+    @Benchmark
+    public double route()
+    {
+        int i = 2 * (current++ % COUNT);
+        RoutingAlgorithm algo = prepare.createAlgo();
+        return algo.calcPath(pairs[i], pairs[i + 1]).getDistance();
+    }
+}
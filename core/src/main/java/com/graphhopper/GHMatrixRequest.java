@@ -0,0 +1,111 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.shapes.GHPlace;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request to calculate the distances and times from all sources to all targets.
+ * <p/>
+ * @author Peter Karich
+ */
+public class GHMatrixRequest
+{
+    private final List<GHPlace> sources = new ArrayList<GHPlace>();
+    private final List<GHPlace> targets = new ArrayList<GHPlace>();
+    private String vehicle = "CAR";
+    private String weighting = "";
+
+    public GHMatrixRequest()
+    {
+    }
+
+    /**
+     * Creates a symmetric request where the specified places are sources and targets.
+     */
+    public GHMatrixRequest( List<GHPlace> places )
+    {
+        sources.addAll(places);
+        targets.addAll(places);
+    }
+
+    public GHMatrixRequest addSource( GHPlace place )
+    {
+        sources.add(place);
+        return this;
+    }
+
+    public List<GHPlace> getSources()
+    {
+        return sources;
+    }
+
+    public GHMatrixRequest addTarget( GHPlace place )
+    {
+        targets.add(place);
+        return this;
+    }
+
+    public List<GHPlace> getTargets()
+    {
+        return targets;
+    }
+
+    public void check()
+    {
+        if (sources.isEmpty())
+            throw new IllegalStateException("at least one source has to be specified");
+
+        if (targets.isEmpty())
+            throw new IllegalStateException("at least one target has to be specified");
+    }
+
+    /**
+     * By default it supports fastest and shortest. If empty GraphHopper uses the first prepared
+     * weighting with contraction hierarchies and shortest otherwise.
+     */
+    public GHMatrixRequest setWeighting( String w )
+    {
+        this.weighting = w;
+        return this;
+    }
+
+    public String getWeighting()
+    {
+        return weighting;
+    }
+
+    public GHMatrixRequest setVehicle( String vehicle )
+    {
+        this.vehicle = vehicle;
+        return this;
+    }
+
+    public String getVehicle()
+    {
+        return vehicle;
+    }
+
+    @Override
+    public String toString()
+    {
+        return sources.size() + "x" + targets.size() + " " + vehicle + " " + weighting;
+    }
+}
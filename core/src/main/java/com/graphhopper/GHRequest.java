@@ -18,7 +18,10 @@
 package com.graphhopper;
 
 import com.graphhopper.util.shapes.GHPlace;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -29,11 +32,10 @@ import java.util.Map;
 public class GHRequest
 {
     private String algo = "dijkstrabi";
-    private GHPlace from;
-    private GHPlace to;
+    private final List<GHPlace> places;
     private Map<String, Object> hints = new HashMap<String, Object>(5);
     private String vehicle = "CAR";
-    private String weighting = "shortest";
+    private String weighting = "";
 
     /**
      * Calculate the path from specified startPoint (fromLat, fromLon) to endPoint (toLat, toLon).
@@ -48,32 +50,64 @@ public class GHRequest
      */
     public GHRequest( GHPlace startPoint, GHPlace endPoint )
     {
-        this.from = startPoint;
-        this.to = endPoint;
+        places = new ArrayList<GHPlace>(2);
+        places.add(startPoint);
+        places.add(endPoint);
+    }
+
+    /**
+     * Calculate the path from the first to the last of the specified places visiting all places in
+     * between in the specified order.
+     */
+    public GHRequest( List<GHPlace> places )
+    {
+        this.places = new ArrayList<GHPlace>(places);
     }
 
     public void check()
     {
-        if (from == null)
-            throw new IllegalStateException("the 'from' point needs to be initialized but was null");
+        if (places.size() < 2)
+            throw new IllegalStateException("at least 2 points have to be specified but was:" + places.size());
+
+        for (int i = 0; i < places.size(); i++)
+        {
+            if (places.get(i) == null)
+                throw new IllegalStateException("point " + i + " needs to be initialized but was null");
+        }
+    }
+
+    /**
+     * Adds a place to the end of the route, i.e. the previous end point becomes a via point.
+     */
+    public GHRequest addPlace( GHPlace place )
+    {
+        places.add(place);
+        return this;
+    }
 
-        if (to == null)
-            throw new IllegalStateException("the 'to' point needs to be initialized but was null");
+    /**
+     * @return all places of this request in the order they will be visited
+     */
+    public List<GHPlace> getPlaces()
+    {
+        return places;
     }
 
     public GHPlace getFrom()
     {
-        return from;
+        return places.get(0);
     }
 
     public GHPlace getTo()
     {
-        return to;
+        return places.get(places.size() - 1);
     }
 
     /**
      * Possible values: astar (A* algorithm, default), astarbi (bidirectional A*) dijkstra
-     * (Dijkstra), dijkstrabi and dijkstraNative (a bit faster bidirectional Dijkstra).
+     * (Dijkstra), dijkstrabi and dijkstraNative (a bit faster bidirectional Dijkstra). Append
+     * 'Array' to dijkstra, astar or dijkstrabi for a variant which does not create garbage per
+     * visited node.
      */
     public GHRequest setAlgorithm( String algo )
     {
@@ -105,14 +139,31 @@ public class GHRequest
         return (T) obj;
     }
 
+    /**
+     * @return all hints, e.g. to compare requests. Use putHint to change them
+     */
+    public Map<String, Object> getHints()
+    {
+        return Collections.unmodifiableMap(hints);
+    }
+
     @Override
     public String toString()
     {
-        return from + " " + to + " (" + algo + ")";
+        String str = "";
+        for (GHPlace place : places)
+        {
+            if (!str.isEmpty())
+                str += " ";
+
+            str += place;
+        }
+        return str + " (" + algo + ")";
     }
 
     /**
-     * By default it supports fastest and shortest
+     * By default it supports fastest and shortest. If empty GraphHopper uses the first prepared
+     * weighting with contraction hierarchies and shortest otherwise.
      */
     public GHRequest setWeighting( String w )
     {
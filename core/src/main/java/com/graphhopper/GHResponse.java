@@ -17,6 +17,7 @@
  */
 package com.graphhopper;
 
+import com.graphhopper.util.Instruction;
 import com.graphhopper.util.InstructionList;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.BBox;
@@ -37,6 +38,8 @@ public class GHResponse
     private String debugInfo = "";
     private final List<Throwable> errors = new ArrayList<Throwable>(4);
     private InstructionList instructions = new InstructionList(0);
+    private final List<Double> legDistances = new ArrayList<Double>(2);
+    private final List<Long> legMillis = new ArrayList<Long>(2);
     private boolean found;
 
     public GHResponse()
@@ -82,6 +85,33 @@ public class GHResponse
         return time;
     }
 
+    /**
+     * Adds the distance and time of the next leg, i.e. the part of the route between two
+     * consecutive request points.
+     */
+    public GHResponse addLeg( double distance, long millis )
+    {
+        legDistances.add(distance);
+        legMillis.add(millis);
+        return this;
+    }
+
+    /**
+     * @return the distance in meter for every leg of the route
+     */
+    public List<Double> getLegDistances()
+    {
+        return legDistances;
+    }
+
+    /**
+     * @return the time in millis for every leg of the route
+     */
+    public List<Long> getLegMillis()
+    {
+        return legMillis;
+    }
+
     public GHResponse setFound( boolean found )
     {
         this.found = found;
@@ -155,6 +185,27 @@ public class GHResponse
         return "found:" + isFound() + ", nodes:" + list.getSize() + ": " + list.toString();
     }
 
+    /**
+     * @return a deep copy of this response, changing it does not change this response
+     */
+    public GHResponse copy()
+    {
+        GHResponse rsp = new GHResponse().setPoints(list.clone(false)).setDistance(distance).setMillis(time).
+                setFound(found).setDebugInfo(debugInfo);
+        for (int i = 0; i < legDistances.size(); i++)
+        {
+            rsp.addLeg(legDistances.get(i), legMillis.get(i));
+        }
+        rsp.errors.addAll(errors);
+        InstructionList instructionsCopy = new InstructionList(instructions.size());
+        for (Instruction instr : instructions)
+        {
+            instructionsCopy.add(instr.copy());
+        }
+        rsp.setInstructions(instructionsCopy);
+        return rsp;
+    }
+
     public void setInstructions( InstructionList instructions )
     {
         this.instructions = instructions;
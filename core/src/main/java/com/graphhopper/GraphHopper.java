@@ -18,16 +18,36 @@
 package com.graphhopper;
 
 import com.graphhopper.reader.OSMReader;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.MatrixCalculator;
+import com.graphhopper.routing.OneToManyMatrixCalculator;
 import com.graphhopper.routing.Path;
+import com.graphhopper.routing.QueryGraph;
 import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.RoutingContext;
+import com.graphhopper.routing.RoutingContextPool;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ch.PrepareEdgeBasedContractionHierarchies;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.*;
 import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.GHPlace;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +70,7 @@ public class GraphHopper implements GraphHopperAPI
             tests.start();
     }
 
+    private static final int BATCH_CHUNK_SIZE = 100;
     private final Logger logger = LoggerFactory.getLogger(getClass());
     // for graph:
     private GraphStorage graph;
@@ -67,6 +88,11 @@ public class GraphHopper implements GraphHopperAPI
     private int minNetworkSize = 200;
     // for CH prepare
     private AlgorithmPreparation prepare;
+    // one preparation per vehicle and weighting, all sharing the same LevelGraphStorage
+    private final Map<String, PrepareContractionHierarchies> chPreparations = new LinkedHashMap<String, PrepareContractionHierarchies>();
+    // used instead of chPreparations if turn restrictions are enabled, one line graph per vehicle and weighting
+    private final Map<String, PrepareEdgeBasedContractionHierarchies> edgeBasedPreparations
+            = new LinkedHashMap<String, PrepareEdgeBasedContractionHierarchies>();
     private boolean doPrepare = true;
     private boolean chEnabled = true;
     private String chWeighting = "fastest";
@@ -74,17 +100,32 @@ public class GraphHopper implements GraphHopperAPI
     private int lazyUpdates = 10;
     private int neighborUpdates = 20;
     private double logMessages = 20;
+    private int prepareThreads = 1;
+    // the phases of the import which are stored in the graph properties if checkpoints are enabled
+    private static final String PHASE = "import.phase";
+    private static final String PHASE_IMPORT = "import";
+    private static final String PHASE_CLEAN_UP = "cleanUp";
+    private static final String PHASE_OPTIMIZE = "optimize";
+    private static final String PHASE_DONE = "done";
+    private boolean checkpoints = false;
+    private int checkpointMinutes = 30;
     // for OSM import:
     private String osmFile;
     private EncodingManager encodingManager;
     private long expectedCapacity = 100;
     private double wayPointMaxDistance = 1;
     private int workerThreads = -1;
+    private int wayThreads = 1;
+    private boolean compressedNodeMap = false;
     private int defaultSegmentSize = -1;
     private boolean turnCosts = false;
+    private boolean compactEdges = false;
     private boolean enableInstructions = true;
     private boolean calcPoints = true;
     private boolean fullyLoaded = false;
+    private RoutingContextPool routingContextPool = new RoutingContextPool(Runtime.getRuntime().availableProcessors());
+    // created on the first routeBatch call without an executor
+    private ExecutorService batchExecutor;
 
     public GraphHopper()
     {
@@ -170,6 +211,20 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Keeps the graph in memory but outside of the Java heap to avoid long garbage collection
+     * pauses for big graphs.
+     */
+    public GraphHopper setDirectMemory( boolean storeOnFlush )
+    {
+        ensureNotLoaded();
+        if (storeOnFlush)
+            dataAccessType = DAType.DIRECT_STORE;
+        else
+            dataAccessType = DAType.DIRECT;
+        return this;
+    }
+
     // not yet stable enough to offer it for everyone
     private GraphHopper setUnsafeMemory()
     {
@@ -185,9 +240,11 @@ public class GraphHopper implements GraphHopperAPI
     }
 
     /**
-     * Enables the use of contraction hierarchies to reduce query times.
+     * Enables the use of contraction hierarchies to reduce query times. One hierarchy is prepared
+     * for every vehicle and every weighting, all of them share the nodes and edges of one graph.
      * <p/>
-     * @param weighting can be "fastest", "shortest" or your own weight-calculation type.
+     * @param weighting can be "fastest", "shortest" or your own weight-calculation type. Separate
+     * several weightings with a comma, e.g. "fastest,shortest".
      * @see #disableCHShortcuts()
      */
     public GraphHopper setCHShortcuts( String weighting )
@@ -218,6 +275,60 @@ public class GraphHopper implements GraphHopperAPI
         return chEnabled;
     }
 
+    /**
+     * Specifies the number of threads which prepare the ways while importing the OSM file. Default
+     * is 1, the resulting graph does not depend on this number.
+     */
+    public GraphHopper setWayThreads( int threads )
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads has to be at least 1 but was " + threads);
+
+        wayThreads = threads;
+        return this;
+    }
+
+    /**
+     * Stores the OSM node id mapping of the import in the DataAccess type of the graph instead of
+     * the heap, which reduces the required heap for big imports.
+     */
+    public GraphHopper setCompressedNodeMap( boolean compressedNodeMap )
+    {
+        this.compressedNodeMap = compressedNodeMap;
+        return this;
+    }
+
+    /**
+     * Stores the graph after every phase of the import and periodically while contracting the
+     * nodes. If the process dies importOrLoad continues from the last checkpoint instead of
+     * importing the OSM file again. If writing a checkpoint was interrupted the previous one is
+     * used. Requires a storage which writes its files only on flush, i.e. setInMemory(true, true).
+     * <p/>
+     * @param minutes the interval of the checkpoints while contracting the nodes
+     */
+    public GraphHopper setCheckpoints( boolean enable, int minutes )
+    {
+        if (minutes < 0)
+            throw new IllegalArgumentException("minutes cannot be negative but was " + minutes);
+
+        checkpoints = enable;
+        checkpointMinutes = minutes;
+        return this;
+    }
+
+    /**
+     * Specifies the number of threads used to contract the nodes while preparing contraction
+     * hierarchies. Default is 1 which uses the sequential contraction.
+     */
+    public GraphHopper setCHPrepareThreads( int threads )
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads has to be at least 1 but was " + threads);
+
+        prepareThreads = threads;
+        return this;
+    }
+
     /**
      * @return if import of turn restrictions is enabled
      */
@@ -227,7 +338,10 @@ public class GraphHopper implements GraphHopperAPI
     }
 
     /**
-     * This method specifies if the import should include turn restrictions if available
+     * This method specifies if the import should include turn restrictions if available. Without
+     * contraction hierarchies the routing then uses the edge based variant of the requested
+     * algorithm (dijkstra, astar or dijkstrabi) to consider them. With contraction hierarchies a
+     * line graph is prepared for every vehicle and weighting instead of the shortcuts in the graph.
      */
     public GraphHopper setEnableTurnRestrictions( boolean b )
     {
@@ -236,6 +350,26 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * @return if the graph uses the compact edge layout
+     */
+    public boolean isCompactEdges()
+    {
+        return compactEdges;
+    }
+
+    /**
+     * This method specifies if the edges should be stored in the compact layout which merges the
+     * references to the street name and the geometry. An existing graph has to be loaded with the
+     * layout it was imported with.
+     */
+    public GraphHopper setCompactEdges( boolean compactEdges )
+    {
+        ensureNotLoaded();
+        this.compactEdges = compactEdges;
+        return this;
+    }
+
     /**
      * This method specifies if the import should include way names to be able to return
      * instructions for a route.
@@ -256,6 +390,24 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Specifies how many RoutingContext objects are kept for reuse between requests. Should be
+     * roughly the number of threads doing requests at the same time.
+     */
+    public GraphHopper setRoutingContextPoolSize( int size )
+    {
+        routingContextPool = new RoutingContextPool(size);
+        return this;
+    }
+
+    /**
+     * @return the pool of the reusable routing data structures, e.g. to inspect its statistics
+     */
+    public RoutingContextPool getRoutingContextPool()
+    {
+        return routingContextPool;
+    }
+
     /**
      * This method specifies if the returned path should be simplified or not, via douglas-peucker
      * or similar algorithm.
@@ -329,6 +481,26 @@ public class GraphHopper implements GraphHopperAPI
         return prepare;
     }
 
+    /**
+     * @return the preparation of the hierarchy for the specified vehicle and weighting or null if
+     * this weighting was not prepared for the vehicle
+     */
+    public PrepareContractionHierarchies getPreparation( String vehicle, String weighting )
+    {
+        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+        return chPreparations.get(createCHKey(encoder, weighting));
+    }
+
+    /**
+     * @return the preparation of the line graph for the specified vehicle and weighting if turn
+     * restrictions are enabled, or null if this weighting was not prepared for the vehicle
+     */
+    public PrepareEdgeBasedContractionHierarchies getEdgeBasedPreparation( String vehicle, String weighting )
+    {
+        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+        return edgeBasedPreparations.get(createCHKey(encoder, weighting));
+    }
+
     /**
      * Sorts the graph which requires more RAM while import.
      */
@@ -380,6 +552,9 @@ public class GraphHopper implements GraphHopperAPI
         } else if (dataAccess.contains("UNSAFE"))
         {
             setUnsafeMemory();
+        } else if (dataAccess.contains("DIRECT"))
+        {
+            setDirectMemory(dataAccess.contains("STORE"));
         } else
         {
             if (dataAccess.contains("SAVE") || dataAccess.contains("INMEMORY"))
@@ -397,6 +572,7 @@ public class GraphHopper implements GraphHopperAPI
         sortGraph = args.getBool("graph.doSort", sortGraph);
         removeZipped = args.getBool("graph.removeZipped", removeZipped);
         turnCosts = args.getBool("graph.turnCosts", turnCosts);
+        compactEdges = args.getBool("graph.compactEdges", compactEdges);
 
         // optimizable prepare
         minNetworkSize = args.getInt("prepare.minNetworkSize", minNetworkSize);
@@ -404,7 +580,12 @@ public class GraphHopper implements GraphHopperAPI
         // prepare CH
         doPrepare = args.getBool("prepare.doPrepare", doPrepare);
         String chShortcuts = args.get("prepare.chShortcuts", "fastest");
-        chEnabled = "true".equals(chShortcuts) || "fastest".equals(chShortcuts) || "shortest".equals(chShortcuts);
+        chEnabled = true;
+        for (String tmpWeighting : chShortcuts.split(","))
+        {
+            tmpWeighting = tmpWeighting.trim();
+            chEnabled &= "true".equals(tmpWeighting) || "fastest".equals(tmpWeighting) || "shortest".equals(tmpWeighting);
+        }
         if (chEnabled)
             setCHShortcuts(chShortcuts);
 
@@ -412,16 +593,26 @@ public class GraphHopper implements GraphHopperAPI
         lazyUpdates = args.getInt("prepare.updates.lazy", lazyUpdates);
         neighborUpdates = args.getInt("prepare.updates.neighbor", neighborUpdates);
         logMessages = args.getDouble("prepare.logmessages", logMessages);
+        prepareThreads = args.getInt("prepare.threads", prepareThreads);
+        checkpoints = args.getBool("graph.checkpoints", checkpoints);
+        checkpointMinutes = args.getInt("prepare.checkpointMinutes", checkpointMinutes);
 
         // osm import
         wayPointMaxDistance = args.getDouble("osmreader.wayPointMaxDistance", wayPointMaxDistance);
         String flagEncoders = args.get("osmreader.acceptWay", "CAR");
         encodingManager = new EncodingManager(flagEncoders);
         workerThreads = args.getInt("osmreader.workerThreads", workerThreads);
+        wayThreads = args.getInt("osmreader.wayThreads", wayThreads);
+        compressedNodeMap = args.getBool("osmreader.compressedNodeMap", compressedNodeMap);
         enableInstructions = args.getBool("osmreader.instructions", enableInstructions);
 
         // index
         preciseIndexResolution = args.getInt("index.highResolution", preciseIndexResolution);
+
+        // routing
+        int contextPoolSize = args.getInt("routing.contextPoolSize", -1);
+        if (contextPoolSize >= 0)
+            setRoutingContextPoolSize(contextPoolSize);
         return this;
     }
 
@@ -453,6 +644,8 @@ public class GraphHopper implements GraphHopperAPI
             throw new IllegalStateException("No encodingManager was specified");
 
         setGraphHopperLocation(graphHopperLocation);
+        if (checkpoints && (!dataAccessType.isStoring() || dataAccessType.isMMap()))
+            throw new IllegalStateException("Checkpoints need a storage which writes its files on flush but was " + dataAccessType);
 
         try
         {
@@ -461,13 +654,58 @@ public class GraphHopper implements GraphHopperAPI
         {
             throw new RuntimeException("Cannot parse OSM file " + osmFileStr, ex);
         }
+        checkpoint(PHASE_IMPORT);
         cleanUp();
+        checkpoint(PHASE_CLEAN_UP);
         optimize();
+        checkpoint(PHASE_OPTIMIZE);
         postProcessing();
         flush();
         return this;
     }
 
+    /**
+     * Stores the graph and marks the specified phase as completed.
+     */
+    private void checkpoint( String phase )
+    {
+        if (!checkpoints)
+            return;
+
+        logger.info("checkpoint after phase " + phase + ", " + Helper.getMemInfo());
+        GHUtility.flushCheckpoint(graph, PHASE, phase);
+    }
+
+    /**
+     * Continues an import which was stopped after a checkpoint. The contraction continues in
+     * postProcessing.
+     * <p/>
+     * @return true if the import was not finished
+     */
+    private boolean resumeImport()
+    {
+        String phase = graph.getProperties().get(PHASE);
+        if (phase.isEmpty() || PHASE_DONE.equals(phase))
+            return false;
+
+        // the graph was created with checkpoints, so the contraction could have stored one too
+        checkpoints = true;
+        logger.info("resuming import of " + ghLocation + " after phase " + phase);
+        encodingManager = graph.getEncodingManager();
+        if (PHASE_IMPORT.equals(phase))
+        {
+            cleanUp();
+            checkpoint(PHASE_CLEAN_UP);
+            phase = PHASE_CLEAN_UP;
+        }
+        if (PHASE_CLEAN_UP.equals(phase))
+        {
+            optimize();
+            checkpoint(PHASE_OPTIMIZE);
+        }
+        return true;
+    }
+
     protected OSMReader importOSM( String _osmFile ) throws IOException
     {
         if (graph == null)
@@ -481,8 +719,8 @@ public class GraphHopper implements GraphHopperAPI
         }
 
         logger.info("start creating graph from " + osmFile);
-        OSMReader reader = new OSMReader(graph, expectedCapacity).setWorkerThreads(workerThreads).setEncodingManager(encodingManager)
-                .setWayPointMaxDistance(wayPointMaxDistance).setEnableInstructions(enableInstructions);
+        OSMReader reader = new OSMReader(graph, expectedCapacity).setWorkerThreads(workerThreads).setWayThreads(wayThreads).setEncodingManager(encodingManager)
+                .setCompressedNodeMap(compressedNodeMap).setWayPointMaxDistance(wayPointMaxDistance).setEnableInstructions(enableInstructions);
         logger.info("using " + graph.toString() + ", memory:" + Helper.getMemInfo());
         reader.doOSM2Graph(osmTmpFile);
         return reader;
@@ -529,21 +767,31 @@ public class GraphHopper implements GraphHopperAPI
             }
         }
         setGraphHopperLocation(graphHopperFolder);
+        if (GHUtility.restoreCheckpoint(ghLocation))
+            logger.warn("writing the last checkpoint of " + ghLocation + " was interrupted, continuing from the previous one");
 
         GHDirectory dir = new GHDirectory(ghLocation, dataAccessType);
 
-        if (chEnabled)
-            graph = new LevelGraphStorage(dir, encodingManager);
+        if (chEnabled && !turnCosts)
+        {
+            // without a configured encoding manager only one vehicle is assumed, loadExisting fails otherwise
+            int vehicles = encodingManager == null ? 1 : encodingManager.getVehicleCount();
+            graph = new LevelGraphStorage(dir, encodingManager, vehicles * getCHWeightings().size(), compactEdges);
+        }
         else if (turnCosts)
-            graph = new GraphHopperStorage(dir, encodingManager, new TurnCostStorage());
+            graph = new GraphHopperStorage(dir, encodingManager, new TurnCostStorage(), compactEdges);
         else
-            graph = new GraphHopperStorage(dir, encodingManager);
+            graph = new GraphHopperStorage(dir, encodingManager, new ExtendedStorage.NoExtendedStorage(), compactEdges);
 
         graph.setSegmentSize(defaultSegmentSize);
         if (!graph.loadExisting())
             return false;
 
+        boolean resumed = resumeImport();
         postProcessing();
+        if (resumed)
+            flush();
+
         fullyLoaded = true;
         return true;
     }
@@ -555,8 +803,14 @@ public class GraphHopper implements GraphHopperAPI
             initCHPrepare();
 
         if (!isPrepared())
+        {
             prepare();
-        initLocationIndex();
+            // sorting after the preparation includes the shortcuts
+            if (sortGraph && graph instanceof LevelGraph)
+                sortPreparedGraph();
+        }
+        if (locationIndex == null)
+            initLocationIndex();
     }
     
     private boolean isPrepared() {
@@ -565,16 +819,104 @@ public class GraphHopper implements GraphHopperAPI
 
     protected void initCHPrepare()
     {
-        FlagEncoder encoder = encodingManager.getSingle();
-        PrepareContractionHierarchies tmpPrepareCH = new PrepareContractionHierarchies(encoder,
-                createWeighting(chWeighting, encoder));
-        tmpPrepareCH.setPeriodicUpdates(periodicUpdates).
-                setLazyUpdates(lazyUpdates).
-                setNeighborUpdates(neighborUpdates).
-                setLogMessages(logMessages);
+        if (turnCosts)
+        {
+            initEdgeBasedCHPrepare();
+            return;
+        }
+
+        LevelGraphStorage lg = (LevelGraphStorage) graph;
+        List<String> weightings = getCHWeightings();
+        if (lg.getHierarchies() != encodingManager.getVehicleCount() * weightings.size())
+            throw new IllegalStateException("The graph has " + lg.getHierarchies() + " hierarchies but "
+                    + encodingManager + " and " + weightings + " need one per vehicle and weighting");
+
+        chPreparations.clear();
+        int hierarchy = 0;
+        for (int i = 0; i < encodingManager.getVehicleCount(); i++)
+        {
+            FlagEncoder encoder = encodingManager.getEncoder(i);
+            for (String tmpWeighting : weightings)
+            {
+                PrepareContractionHierarchies tmpPrepareCH = new PrepareContractionHierarchies(encoder,
+                        createWeighting(tmpWeighting, encoder));
+                tmpPrepareCH.setPeriodicUpdates(periodicUpdates).
+                        setLazyUpdates(lazyUpdates).
+                        setNeighborUpdates(neighborUpdates).
+                        setLogMessages(logMessages).
+                        setThreads(prepareThreads);
+
+                tmpPrepareCH.setGraph(lg.getHierarchy(hierarchy));
+                if (checkpoints && !isPrepared())
+                    tmpPrepareCH.setCheckpoints(lg, createCHKey(encoder, tmpWeighting).replace('|', '_'),
+                            checkpointMinutes * 60000L);
+                hierarchy++;
+                chPreparations.put(createCHKey(encoder, tmpWeighting), tmpPrepareCH);
+            }
+        }
+        prepare = chPreparations.values().iterator().next();
+    }
+
+    /**
+     * The graph itself is not contracted if turn restrictions are enabled. Instead every vehicle
+     * and weighting gets a contracted line graph which is stored in a sub folder of the graph.
+     */
+    private void initEdgeBasedCHPrepare()
+    {
+        edgeBasedPreparations.clear();
+        for (int i = 0; i < encodingManager.getVehicleCount(); i++)
+        {
+            FlagEncoder encoder = encodingManager.getEncoder(i);
+            for (String tmpWeighting : getCHWeightings())
+            {
+                String key = createCHKey(encoder, tmpWeighting);
+                PrepareEdgeBasedContractionHierarchies tmpPrepare = new PrepareEdgeBasedContractionHierarchies(
+                        encoder, createWeighting(tmpWeighting, encoder));
+                tmpPrepare.setName("linegraph_" + key.replace('|', '_').toLowerCase()).
+                        setLogMessages(logMessages).
+                        setThreads(prepareThreads).
+                        setGraph(graph);
+                if (isPrepared() && !tmpPrepare.loadExisting())
+                    throw new IllegalStateException("The line graph of " + key + " is missing in " + ghLocation
+                            + ". Import the graph again or disable turn restrictions");
+
+                edgeBasedPreparations.put(key, tmpPrepare);
+            }
+        }
+        prepare = edgeBasedPreparations.values().iterator().next();
+    }
+
+    private List<String> getCHWeightings()
+    {
+        List<String> weightings = new ArrayList<String>();
+        for (String tmpWeighting : chWeighting.split(","))
+        {
+            tmpWeighting = tmpWeighting.trim().toLowerCase();
+            if ("true".equals(tmpWeighting))
+                tmpWeighting = "fastest";
 
-        prepare = tmpPrepareCH;
-        prepare.setGraph(graph);
+            if (!weightings.contains(tmpWeighting))
+                weightings.add(tmpWeighting);
+        }
+        return weightings;
+    }
+
+    /**
+     * @return the specified weighting of a request or the default if it is empty: the first
+     * prepared weighting when using contraction hierarchies and shortest otherwise
+     */
+    private String getWeighting( String weighting )
+    {
+        if (!weighting.isEmpty())
+            return weighting;
+
+        return chEnabled ? getCHWeightings().get(0) : "shortest";
+    }
+
+    private static String createCHKey( FlagEncoder encoder, String weighting )
+    {
+        // see createWeighting: everything except shortest is fastest
+        return encoder + "|" + ("shortest".equalsIgnoreCase(weighting) ? "shortest" : "fastest");
     }
 
     protected Weighting createWeighting( String weighting, FlagEncoder encoder )
@@ -588,73 +930,367 @@ public class GraphHopper implements GraphHopperAPI
 
     @Override
     public GHResponse route( GHRequest request )
+    {
+        StopWatch sw = new StopWatch().start();
+        GHResponse rsp = new GHResponse();
+        List<QueryResult> qResults = lookup(request, rsp.getErrors());
+        if (!encodingManager.supports(request.getVehicle()))
+            return rsp;
+
+        return calcRoute(request, qResults, rsp, "idLookup:" + sw.stop().getSeconds() + "s");
+    }
+
+    /**
+     * Looks up the places of the specified request like route does. This makes it possible to
+     * inspect the snapped positions, e.g. for caching, before calling route(request, qResults).
+     * <p/>
+     * @param errors unsupported vehicles and places which cannot be found are reported into this
+     * list
+     */
+    public List<QueryResult> lookup( GHRequest request, List<Throwable> errors )
     {
         request.check();
         if (graph == null || !fullyLoaded)
             throw new IllegalStateException("Call load or importOrLoad before routing");
 
-        StopWatch sw = new StopWatch().start();
-        GHResponse rsp = new GHResponse();
+        if (!encodingManager.supports(request.getVehicle()))
+        {
+            errors.add(new IllegalArgumentException("Vehicle " + request.getVehicle() + " unsupported. Supported are: "
+                    + getEncodingManager()));
+            return Collections.emptyList();
+        }
 
+        FlagEncoder encoder = encodingManager.getEncoder(request.getVehicle());
+        return lookup(request.getPlaces(), new DefaultEdgeFilter(encoder), "point", errors);
+    }
+
+    /**
+     * Calculates the route through the places already looked up via lookup(request, errors). The
+     * query results are changed while routing and cannot be used for a second route.
+     */
+    public GHResponse route( GHRequest request, List<QueryResult> qResults )
+    {
+        request.check();
+        if (graph == null || !fullyLoaded)
+            throw new IllegalStateException("Call load or importOrLoad before routing");
+
+        GHResponse rsp = new GHResponse();
         if (!encodingManager.supports(request.getVehicle()))
         {
             rsp.addError(new IllegalArgumentException("Vehicle " + request.getVehicle() + " unsupported. Supported are: "
                     + getEncodingManager()));
             return rsp;
         }
+        if (qResults.size() != request.getPlaces().size())
+            throw new IllegalArgumentException("Query results " + qResults.size() + " do not match the places "
+                    + request.getPlaces().size());
 
+        return calcRoute(request, qResults, rsp, "idLookup:extern");
+    }
+
+    private GHResponse calcRoute( GHRequest request, List<QueryResult> qResults, GHResponse rsp, String debug )
+    {
+        StopWatch sw = new StopWatch().start();
         FlagEncoder encoder = encodingManager.getEncoder(request.getVehicle());
-        EdgeFilter edgeFilter = new DefaultEdgeFilter(encoder);
-        QueryResult fromRes = locationIndex.findClosest(request.getFrom().lat, request.getFrom().lon, edgeFilter);
-        QueryResult toRes = locationIndex.findClosest(request.getTo().lat, request.getTo().lon, edgeFilter);
+        AlgorithmPreparation tmpPrepare = createPreparation(request, encoder, rsp.getErrors());
+        if (rsp.hasErrors())
+            return rsp;
 
-        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+        RoutingContext routingContext = acquireRoutingContext(request);
+        try
+        {
+            return calcRoute(request, tmpPrepare, qResults, routingContext, rsp, debug, sw);
+        } finally
+        {
+            releaseRoutingContext(routingContext);
+        }
+    }
 
-        if (!fromRes.isValid())
-            rsp.addError(new IllegalArgumentException("Cannot find point 1: " + request.getFrom()));
+    /**
+     * @return a context of the pool if the algorithm of the specified request uses it, otherwise
+     * null as acquiring would only waste a slot of the pool
+     */
+    private RoutingContext acquireRoutingContext( GHRequest request )
+    {
+        if (chEnabled || !RoutingAlgorithmFactory.usesRoutingContext(request.getAlgorithm()))
+            return null;
 
-        if (!toRes.isValid())
-            rsp.addError(new IllegalArgumentException("Cannot find point 2: " + request.getTo()));
+        return routingContextPool.acquire();
+    }
 
-        sw = new StopWatch().start();
-        RoutingAlgorithm algo = null;
+    private void releaseRoutingContext( RoutingContext routingContext )
+    {
+        if (routingContext != null)
+            routingContextPool.release(routingContext);
+    }
+
+    /**
+     * Routes all requests in parallel on a thread pool of this instance with one thread per core.
+     * The pool is shared by all calls and shut down in close.
+     * <p/>
+     * @see #routeBatch(java.util.List, java.util.concurrent.ExecutorService,
+     * com.graphhopper.util.ProgressListener)
+     */
+    public List<GHResponse> routeBatch( List<GHRequest> requests )
+    {
+        return routeBatch(requests, getBatchExecutor(), null);
+    }
+
+    private synchronized ExecutorService getBatchExecutor()
+    {
+        if (batchExecutor == null)
+            batchExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        return batchExecutor;
+    }
+
+    /**
+     * Routes all requests which is a lot faster than calling route for every request. The requests
+     * are grouped by vehicle, weighting and algorithm and every group is split into chunks which
+     * are executed on the specified executor. Every chunk reuses the same RoutingContext for all
+     * its requests if the algorithm uses one. Errors of one request, including invalid requests, are reported in its
+     * response and do not stop the batch.
+     * <p/>
+     * @param progressListener is called with the number of finished requests after every chunk.
+     * Can be null. Attention: it is called from the threads of the executor.
+     * @return the responses in the order of the requests
+     */
+    public List<GHResponse> routeBatch( List<GHRequest> requests, ExecutorService executor,
+            final ProgressListener progressListener )
+    {
+        if (graph == null || !fullyLoaded)
+            throw new IllegalStateException("Call load or importOrLoad before routing");
+
+        final GHResponse[] responses = new GHResponse[requests.size()];
+        Map<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0; i < requests.size(); i++)
+        {
+            GHRequest request = requests.get(i);
+            String key = request.getVehicle().toUpperCase() + "|" + request.getWeighting().toLowerCase()
+                    + "|" + request.getAlgorithm();
+            List<Integer> group = groups.get(key);
+            if (group == null)
+            {
+                group = new ArrayList<Integer>();
+                groups.put(key, group);
+            }
+            group.add(i);
+        }
+
+        final AtomicLong finished = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        int chunkSize = Math.max(1, Math.min(BATCH_CHUNK_SIZE,
+                requests.size() / (4 * Runtime.getRuntime().availableProcessors())));
+        for (List<Integer> group : groups.values())
+        {
+            GHRequest first = requests.get(group.get(0));
+            List<Throwable> groupErrors = new ArrayList<Throwable>();
+            FlagEncoder encoder = null;
+            AlgorithmPreparation tmpPrepare = null;
+            if (!encodingManager.supports(first.getVehicle()))
+            {
+                groupErrors.add(new IllegalArgumentException("Vehicle " + first.getVehicle() + " unsupported. Supported are: "
+                        + getEncodingManager()));
+            } else
+            {
+                encoder = encodingManager.getEncoder(first.getVehicle());
+                tmpPrepare = createPreparation(first, encoder, groupErrors);
+            }
+
+            if (!groupErrors.isEmpty())
+            {
+                for (int index : group)
+                {
+                    responses[index] = new GHResponse();
+                    responses[index].getErrors().addAll(groupErrors);
+                }
+                finished.addAndGet(group.size());
+                continue;
+            }
+
+            for (int start = 0; start < group.size(); start += chunkSize)
+            {
+                final List<Integer> chunk = group.subList(start, Math.min(group.size(), start + chunkSize));
+                final List<GHRequest> allRequests = requests;
+                final FlagEncoder chunkEncoder = encoder;
+                final AlgorithmPreparation chunkPrepare = tmpPrepare;
+                futures.add(executor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        routeChunk(allRequests, chunk, chunkEncoder, chunkPrepare, responses);
+                        long count = finished.addAndGet(chunk.size());
+                        if (progressListener != null)
+                            progressListener.update(count);
+                    }
+                }));
+            }
+        }
+
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for batch routing", ex);
+            } catch (ExecutionException ex)
+            {
+                throw new RuntimeException("Problem while batch routing", ex.getCause());
+            }
+        }
+        return Arrays.asList(responses);
+    }
+
+    private void routeChunk( List<GHRequest> requests, List<Integer> chunk, FlagEncoder encoder,
+            AlgorithmPreparation tmpPrepare, GHResponse[] responses )
+    {
+        // look up all points of the chunk first to keep the location index hot
+        EdgeFilter edgeFilter = new DefaultEdgeFilter(encoder);
+        List<List<QueryResult>> lookups = new ArrayList<List<QueryResult>>(chunk.size());
+        String[] debugs = new String[chunk.size()];
+        for (int i = 0; i < chunk.size(); i++)
+        {
+            GHRequest request = requests.get(chunk.get(i));
+            GHResponse rsp = new GHResponse();
+            responses[chunk.get(i)] = rsp;
+            List<QueryResult> qResults = null;
+            try
+            {
+                request.check();
+                StopWatch sw = new StopWatch().start();
+                qResults = lookup(request.getPlaces(), edgeFilter, "point", rsp.getErrors());
+                debugs[i] = "idLookup:" + sw.stop().getSeconds() + "s";
+            } catch (Exception ex)
+            {
+                rsp.addError(ex);
+            }
+            lookups.add(qResults);
+        }
+
+        // all requests of a chunk have the same algorithm
+        RoutingContext routingContext = acquireRoutingContext(requests.get(chunk.get(0)));
+        try
+        {
+            for (int i = 0; i < chunk.size(); i++)
+            {
+                GHResponse rsp = responses[chunk.get(i)];
+                if (rsp.hasErrors())
+                    continue;
+
+                try
+                {
+                    calcRoute(requests.get(chunk.get(i)), tmpPrepare, lookups.get(i), routingContext, rsp,
+                            debugs[i], new StopWatch().start());
+                } catch (Exception ex)
+                {
+                    rsp.addError(ex);
+                }
+            }
+        } finally
+        {
+            releaseRoutingContext(routingContext);
+        }
+    }
+
+    /**
+     * Creates the preparation for the vehicle, weighting and algorithm of the specified request.
+     * Reports unsupported combinations into the specified errors list.
+     */
+    private AlgorithmPreparation createPreparation( GHRequest request, FlagEncoder encoder, List<Throwable> errors )
+    {
         if (chEnabled)
         {
             if (prepare == null)
                 throw new IllegalStateException(
                         "Preparation object is null. CH-preparation wasn't done or did you forgot to call disableCHShortcuts()?");
 
-            if (request.getAlgorithm().equals("dijkstrabi"))
-                algo = prepare.createAlgo();
-            else if (request.getAlgorithm().equals("astarbi"))
-                algo = ((PrepareContractionHierarchies) prepare).createAStar();
-            else
-                rsp.addError(new IllegalStateException(
+            if (!request.getAlgorithm().equals("dijkstrabi") && !request.getAlgorithm().equals("astarbi"))
+                errors.add(new IllegalStateException(
                         "Only dijkstrabi and astarbi is supported for LevelGraph (using contraction hierarchies)!"));
 
-        } else
-        {
-            Weighting weighting = createWeighting(request.getWeighting(), encoder);
-            prepare = NoOpAlgorithmPreparation.createAlgoPrepare(graph, request.getAlgorithm(), encoder, weighting);
-            algo = prepare.createAlgo();
+            String weightingStr = getWeighting(request.getWeighting());
+            AlgorithmPreparation tmpPrepare = turnCosts
+                    ? getEdgeBasedPreparation(encoder.toString(), weightingStr)
+                    : getPreparation(encoder.toString(), weightingStr);
+            if (tmpPrepare == null)
+                errors.add(new IllegalArgumentException("Weighting " + weightingStr + " not prepared for vehicle "
+                        + encoder + ". Prepared are: " + getCHWeightings()));
+
+            return tmpPrepare;
         }
 
-        if (rsp.hasErrors())
-            return rsp;
+        Weighting weighting = createWeighting(getWeighting(request.getWeighting()), encoder);
+        String algoStr = request.getAlgorithm();
+        // turn restrictions are only considered from edge based algorithms
+        if (turnCosts)
+            algoStr = RoutingAlgorithmFactory.toEdgeBased(algoStr);
 
+        return NoOpAlgorithmPreparation.createAlgoPrepare(graph, algoStr, encoder, weighting);
+    }
+
+    /**
+     * Calculates the route through the already looked up places and fills the response.
+     */
+    private GHResponse calcRoute( GHRequest request, AlgorithmPreparation tmpPrepare, List<QueryResult> qResults,
+            RoutingContext routingContext, GHResponse rsp, String debug, StopWatch sw )
+    {
+        // all legs share one QueryGraph containing the virtual nodes of all points
+        QueryGraph queryGraph = createAlgo(tmpPrepare, request).createQueryGraph();
+        queryGraph.lookup(qResults);
         debug += ", algoInit:" + sw.stop().getSeconds() + "s";
-        sw = new StopWatch().start();
 
-        Path path = algo.calcPath(fromRes, toRes);
-        debug += ", " + algo.getName() + "-routing:" + sw.stop().getSeconds() + "s, " + path.getDebugInfo();
+        boolean tmpCalcPoints = request.getHint("calcPoints", calcPoints);
+        boolean tmpEnableInstructions = request.getHint("instructions", enableInstructions);
+        boolean tmpSimplifyRequest = request.getHint("simplifyRequest", simplifyRequest);
+        PointList points = new PointList(qResults.size() * 10);
+        InstructionList instructions = new InstructionList(qResults.size() * 10);
+        boolean found = true;
+        double distance = 0;
+        long millis = 0;
+        for (int legIndex = 1; legIndex < qResults.size(); legIndex++)
+        {
+            sw = new StopWatch().start();
+            RoutingAlgorithm algo = createAlgo(tmpPrepare, request).setRoutingContext(routingContext);
+            Path path = algo.calcPath(queryGraph, qResults.get(legIndex - 1).getClosestNode(),
+                    qResults.get(legIndex).getClosestNode());
+            debug += ", " + algo.getName() + "-routing:" + sw.stop().getSeconds() + "s, " + path.getDebugInfo();
+
+            if (tmpCalcPoints)
+            {
+                PointList legPoints = path.calcPoints();
+                found = found && legPoints.getSize() > 1;
+                // skip the first point of subsequent legs as it is identical to the last point of the previous leg
+                points.add(legPoints, points.isEmpty() ? 0 : 1);
 
-        calcPoints = request.getHint("calcPoints", calcPoints);
-        if (calcPoints)
+                if (tmpEnableInstructions)
+                {
+                    sw = new StopWatch().start();
+                    boolean lastLeg = legIndex + 1 == qResults.size();
+                    for (Instruction instr : path.calcInstructions())
+                    {
+                        // only the last leg finishes the route
+                        if (!lastLeg && instr instanceof FinishInstruction)
+                            continue;
+
+                        instructions.add(instr);
+                    }
+                    debug += ", instructions:" + sw.stop().getSeconds() + "s";
+                }
+            } else
+                found = found && path.isFound();
+
+            distance += path.getDistance();
+            millis += path.getMillis();
+            rsp.addLeg(path.getDistance(), path.getMillis());
+        }
+
+        if (tmpCalcPoints)
         {
-            PointList points = path.calcPoints();
-            rsp.setFound(points.getSize() > 1);
-            simplifyRequest = request.getHint("simplifyRequest", simplifyRequest);
-            if (simplifyRequest)
+            if (tmpSimplifyRequest)
             {
                 sw = new StopWatch().start();
                 int orig = points.getSize();
@@ -666,20 +1302,111 @@ public class GraphHopper implements GraphHopperAPI
             }
             rsp.setPoints(points);
 
-            enableInstructions = request.getHint("instructions", enableInstructions);
-            if (enableInstructions)
-            {
-                sw = new StopWatch().start();
-                rsp.setInstructions(path.calcInstructions());
-                debug += ", instructions:" + sw.stop().getSeconds() + "s";
-            }
+            if (tmpEnableInstructions)
+                rsp.setInstructions(instructions);
+        }
+
+        return rsp.setFound(found).setDistance(distance).setMillis(millis).setDebugInfo(debug);
+    }
+
+    /**
+     * Calculates the distances and times from all sources to all targets of the specified request.
+     * This is a lot faster than calling route for every pair.
+     */
+    public GHMatrixResponse calcMatrix( GHMatrixRequest request )
+    {
+        request.check();
+        if (graph == null || !fullyLoaded)
+            throw new IllegalStateException("Call load or importOrLoad before routing");
+
+        StopWatch sw = new StopWatch().start();
+        GHMatrixResponse rsp = new GHMatrixResponse();
+        if (!encodingManager.supports(request.getVehicle()))
+        {
+            rsp.addError(new IllegalArgumentException("Vehicle " + request.getVehicle() + " unsupported. Supported are: "
+                    + getEncodingManager()));
+            return rsp;
+        }
+
+        FlagEncoder encoder = encodingManager.getEncoder(request.getVehicle());
+        EdgeFilter edgeFilter = new DefaultEdgeFilter(encoder);
+        List<QueryResult> sources = lookup(request.getSources(), edgeFilter, "source", rsp.getErrors());
+        List<QueryResult> targets = lookup(request.getTargets(), edgeFilter, "target", rsp.getErrors());
+        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+        if (rsp.hasErrors())
+            return rsp;
+
+        MatrixCalculator calc;
+        if (chEnabled)
+        {
+            if (prepare == null)
+                throw new IllegalStateException(
+                        "Preparation object is null. CH-preparation wasn't done or did you forgot to call disableCHShortcuts()?");
+
+            if (turnCosts)
+                return rsp.addError(new IllegalStateException(
+                        "The matrix with contraction hierarchies does not support turn restrictions"));
+
+            String weightingStr = getWeighting(request.getWeighting());
+            PrepareContractionHierarchies tmpPrepare = getPreparation(encoder.toString(), weightingStr);
+            if (tmpPrepare == null)
+                return rsp.addError(new IllegalArgumentException("Weighting " + weightingStr + " not prepared for vehicle "
+                        + encoder + ". Prepared are: " + getCHWeightings()));
+
+            calc = tmpPrepare.createMatrixCalculator();
         } else
-            rsp.setFound(path.isFound());
+        {
+            calc = new OneToManyMatrixCalculator(graph, encoder, createWeighting(getWeighting(request.getWeighting()), encoder));
+        }
 
-        return rsp.setDistance(path.getDistance()).setMillis(path.getMillis()).setDebugInfo(debug);
+        sw = new StopWatch().start();
+        DistanceMatrix matrix;
+        RoutingContext routingContext = routingContextPool.acquire();
+        try
+        {
+            matrix = calc.setRoutingContext(routingContext).calcMatrix(sources, targets);
+        } finally
+        {
+            routingContextPool.release(routingContext);
+        }
+        debug += ", " + calc.getName() + "-matrix:" + sw.stop().getSeconds() + "s";
+        return rsp.setMatrix(matrix).setDebugInfo(debug);
+    }
+
+    private List<QueryResult> lookup( List<GHPlace> places, EdgeFilter edgeFilter, String type, List<Throwable> errors )
+    {
+        List<QueryResult> results = new ArrayList<QueryResult>(places.size());
+        for (int placeIndex = 0; placeIndex < places.size(); placeIndex++)
+        {
+            GHPlace place = places.get(placeIndex);
+            QueryResult res = locationIndex.findClosest(place.lat, place.lon, edgeFilter);
+            if (!res.isValid())
+                errors.add(new IllegalArgumentException("Cannot find " + type + " " + (placeIndex + 1) + ": " + place));
+
+            results.add(res);
+        }
+        return results;
+    }
+
+    private RoutingAlgorithm createAlgo( AlgorithmPreparation tmpPrepare, GHRequest request )
+    {
+        // the edge based preparation has only a bidirectional dijkstra
+        if (chEnabled && !turnCosts && request.getAlgorithm().equals("astarbi"))
+            return ((PrepareContractionHierarchies) tmpPrepare).createAStar();
+
+        return tmpPrepare.createAlgo();
     }
 
     protected LocationIndex createLocationIndex( Directory dir )
+    {
+        LocationIndex tmpIndex = newLocationIndex(dir);
+        if (!tmpIndex.loadExisting())
+            tmpIndex.prepareIndex();
+
+        return tmpIndex;
+    }
+
+    private LocationIndex newLocationIndex( Directory dir )
     {
         LocationIndex tmpIndex;
         if (preciseIndexResolution > 0)
@@ -700,10 +1427,6 @@ public class GraphHopper implements GraphHopperAPI
             tmpIndex = new Location2IDQuadtree(graph, dir);
             tmpIndex.setResolution(Helper.calcIndexSize(graph.getBounds()));
         }
-
-        if (!tmpIndex.loadExisting())
-            tmpIndex.prepareIndex();
-
         return tmpIndex;
     }
 
@@ -727,12 +1450,9 @@ public class GraphHopper implements GraphHopperAPI
         logger.info("finished optimize (" + Helper.getMemInfo() + ")");
 
         // Later: move this into the GraphStorage.optimize method
-        // Or: Doing it after preparation to optimize shortcuts too. But not possible yet https://github.com/graphhopper/graphhopper/issues/12
-        if (sortGraph)
+        // A LevelGraph is sorted after the preparation to optimize the shortcuts too - see sortPreparedGraph
+        if (sortGraph && !(graph instanceof LevelGraph))
         {
-            if(graph instanceof LevelGraph && isPrepared())
-                throw new IllegalArgumentException("Sorting prepared LevelGraph is not possible yet. See #12");
-            
             logger.info("sorting ... (" + Helper.getMemInfo() + ")");
             GraphStorage newGraph = GHUtility.newStorage(graph);
             GHUtility.sortDFS(graph, newGraph);
@@ -740,17 +1460,51 @@ public class GraphHopper implements GraphHopperAPI
         }
     }
 
+    /**
+     * Sorts the prepared graph including its shortcuts so that nodes and edges which are near in
+     * the graph are also near in memory. This reduces the cache misses of the CH queries. The
+     * preparations and the location index are created again as the node ids change.
+     */
+    protected void sortPreparedGraph()
+    {
+        logger.info("sorting prepared graph ... (" + Helper.getMemInfo() + ")");
+        GraphStorage newGraph = GHUtility.newStorage(graph);
+        GHUtility.sortDFS(graph, newGraph);
+        graph.close();
+        graph = newGraph;
+        if (chEnabled)
+            initCHPrepare();
+
+        // an existing index refers to the old node ids and must not be loaded
+        if (locationIndex != null)
+            locationIndex.close();
+        locationIndex = newLocationIndex(graph.getDirectory());
+        locationIndex.prepareIndex();
+        logger.info("finished sorting (" + Helper.getMemInfo() + ")");
+    }
+
     protected void prepare()
     {
         boolean tmpPrepare = doPrepare && prepare != null;
         if (tmpPrepare)
         {
-            if (prepare instanceof PrepareContractionHierarchies && encodingManager.getVehicleCount() > 1)
-                throw new IllegalArgumentException("Contraction hierarchies preparation "
-                        + "requires (at the moment) only one vehicle. But was:" + encodingManager);
-
-            logger.info("calling prepare.doWork ... (" + Helper.getMemInfo() + ")");
-            prepare.doWork();
+            if (chPreparations.isEmpty() && edgeBasedPreparations.isEmpty())
+            {
+                logger.info("calling prepare.doWork ... (" + Helper.getMemInfo() + ")");
+                prepare.doWork();
+            } else
+            {
+                for (Map.Entry<String, PrepareContractionHierarchies> entry : chPreparations.entrySet())
+                {
+                    logger.info("calling prepare.doWork for " + entry.getKey() + " ... (" + Helper.getMemInfo() + ")");
+                    entry.getValue().doWork();
+                }
+                for (Map.Entry<String, PrepareEdgeBasedContractionHierarchies> entry : edgeBasedPreparations.entrySet())
+                {
+                    logger.info("calling prepare.doWork for line graph " + entry.getKey() + " ... (" + Helper.getMemInfo() + ")");
+                    entry.getValue().doWork();
+                }
+            }
         }
         graph.getProperties().put("prepare.done", tmpPrepare);
     }
@@ -772,6 +1526,12 @@ public class GraphHopper implements GraphHopperAPI
     protected void flush()
     {
         logger.info("flushing graph " + graph.toString() + ", details:" + graph.toDetailsString() + ", " + Helper.getMemInfo() + ")");
+        if (checkpoints)
+            graph.getProperties().put(PHASE, PHASE_DONE);
+        for (PrepareEdgeBasedContractionHierarchies tmpPrepare : edgeBasedPreparations.values())
+        {
+            tmpPrepare.flush();
+        }
         graph.flush();
         fullyLoaded = true;
     }
@@ -781,8 +1541,22 @@ public class GraphHopper implements GraphHopperAPI
         if (graph != null)
             graph.close();
 
+        for (PrepareEdgeBasedContractionHierarchies tmpPrepare : edgeBasedPreparations.values())
+        {
+            tmpPrepare.close();
+        }
+
         if (locationIndex != null)
             locationIndex.close();
+
+        synchronized (this)
+        {
+            if (batchExecutor != null)
+            {
+                batchExecutor.shutdown();
+                batchExecutor = null;
+            }
+        }
     }
 
     protected void ensureNotLoaded()
@@ -0,0 +1,311 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+/**
+ * A long->int map which stores its entries in DataAccess objects so that it can live in memory
+ * mapped or off-heap storage. In contrast to OSMIDMap keys can be inserted in any order.
+ * <p/>
+ * The keys are split into blocks of 256 consecutive keys and only the lowest byte of a key is
+ * stored, together with its 4 byte value. OSM ids are mostly dense and a way references nodes
+ * with neighbouring ids, so the blocks are well filled and nodes are mostly appended to a block.
+ * The entries of one block are sorted and stored in a slot with room for 8, 16, ... or 256
+ * entries, a full slot is copied into the next larger one. 256 blocks form a page which is
+ * created on demand, only the mapping from the page key to the page is kept on the heap.
+ * <p/>
+ * Concurrent calls of get are safe as long as no put happens.
+ * <p/>
+ * @author Peter Karich
+ */
+public class CompressedLongIntMap implements LongIntMap
+{
+    private static final int BLOCK_BITS = 8;
+    private static final int PAGE_BITS = 16;
+    // per block the slot pointer and the entry count plus size class
+    private static final int PAGE_BYTES = (1 << (PAGE_BITS - BLOCK_BITS)) * 8;
+    private static final int MIN_CAPACITY = 8;
+    private static final int SIZE_CLASSES = 6;
+    private final int noEntryValue;
+    private final Directory dir;
+    private final DataAccess pages;
+    private final DataAccess slots;
+    private final TLongIntHashMap pageIndex;
+    private final TIntArrayList[] freeSlots = new TIntArrayList[SIZE_CLASSES];
+    private final int[] keyBuffer = new int[(MIN_CAPACITY << (SIZE_CLASSES - 1)) / 4];
+    private final int[] valueBuffer = new int[MIN_CAPACITY << (SIZE_CLASSES - 1)];
+    private int pageCount;
+    // slot pointers are in units of 8 bytes, 0 marks an empty block
+    private int nextSlot = 1;
+    private long size;
+
+    public CompressedLongIntMap( Directory dir, String name )
+    {
+        this(dir, name, -1);
+    }
+
+    public CompressedLongIntMap( Directory dir, String name, int noNumber )
+    {
+        this.dir = dir;
+        this.noEntryValue = noNumber;
+        pageIndex = new TLongIntHashMap(100, .5f, Long.MIN_VALUE, -1);
+        pages = dir.find(name + "Pages");
+        pages.create(PAGE_BYTES * 4);
+        slots = dir.find(name + "Slots");
+        slots.create(1 << 16);
+        for (int i = 0; i < SIZE_CLASSES; i++)
+        {
+            freeSlots[i] = new TIntArrayList();
+        }
+    }
+
+    /**
+     * Releases the storage of this map.
+     */
+    public void remove()
+    {
+        dir.remove(pages);
+        dir.remove(slots);
+    }
+
+    @Override
+    public int put( long key, int value )
+    {
+        long pageKey = key >> PAGE_BITS;
+        int page = pageIndex.get(pageKey);
+        if (page < 0)
+        {
+            page = pageCount++;
+            long pagePos = (long) page * PAGE_BYTES;
+            pages.incCapacity(pagePos + PAGE_BYTES);
+            // newly allocated segments are not necessarily zeroed e.g. for pooled buffers
+            for (int i = 0; i < PAGE_BYTES; i += 4)
+            {
+                pages.setInt(pagePos + i, 0);
+            }
+            pageIndex.put(pageKey, page);
+        }
+
+        long blockPos = getBlockPos(page, key);
+        int pointer = pages.getInt(blockPos);
+        int keyByte = (int) key & 0xFF;
+        if (pointer == 0)
+        {
+            pointer = allocate(0);
+            long slotPos = pointer * 8L;
+            slots.setInt(slotPos, keyByte);
+            slots.setInt(slotPos + MIN_CAPACITY, value);
+            pages.setInt(blockPos, pointer);
+            pages.setInt(blockPos + 4, 1);
+            size++;
+            return noEntryValue;
+        }
+
+        int info = pages.getInt(blockPos + 4);
+        int count = info & 0xFFFF;
+        int sizeClass = info >>> 16;
+        int capacity = MIN_CAPACITY << sizeClass;
+        long slotPos = pointer * 8L;
+        int index = search(slotPos, count, keyByte);
+        if (index >= 0)
+        {
+            long valuePos = slotPos + capacity + index * 4L;
+            int oldValue = slots.getInt(valuePos);
+            slots.setInt(valuePos, value);
+            return oldValue;
+        }
+
+        index = ~index;
+        if (count == capacity)
+        {
+            // move the entries into the next larger slot
+            int newPointer = allocate(sizeClass + 1);
+            long newSlotPos = newPointer * 8L;
+            slots.getInts(slotPos, keyBuffer, 0, capacity / 4);
+            slots.getInts(slotPos + capacity, valueBuffer, 0, capacity);
+            slots.setInts(newSlotPos, keyBuffer, 0, capacity / 4);
+            slots.setInts(newSlotPos + capacity * 2, valueBuffer, 0, capacity);
+            freeSlots[sizeClass].add(pointer);
+            sizeClass++;
+            capacity *= 2;
+            pointer = newPointer;
+            slotPos = newSlotPos;
+            pages.setInt(blockPos, pointer);
+        }
+
+        if (index == count)
+        {
+            // the common case of increasing keys
+            setKeyByte(slotPos, index, keyByte);
+            slots.setInt(slotPos + capacity + index * 4L, value);
+        } else
+        {
+            int keyInts = (count + 4) / 4;
+            slots.getInts(slotPos, keyBuffer, 0, keyInts);
+            slots.getInts(slotPos + capacity, valueBuffer, 0, count);
+            for (int i = count; i > index; i--)
+            {
+                setKeyByte(keyBuffer, i, getKeyByte(keyBuffer, i - 1));
+                valueBuffer[i] = valueBuffer[i - 1];
+            }
+            setKeyByte(keyBuffer, index, keyByte);
+            valueBuffer[index] = value;
+            slots.setInts(slotPos, keyBuffer, 0, keyInts);
+            slots.setInts(slotPos + capacity, valueBuffer, 0, count + 1);
+        }
+        pages.setInt(blockPos + 4, (count + 1) | (sizeClass << 16));
+        size++;
+        return noEntryValue;
+    }
+
+    @Override
+    public int get( long key )
+    {
+        int page = pageIndex.get(key >> PAGE_BITS);
+        if (page < 0)
+            return noEntryValue;
+
+        long blockPos = getBlockPos(page, key);
+        int pointer = pages.getInt(blockPos);
+        if (pointer == 0)
+            return noEntryValue;
+
+        int info = pages.getInt(blockPos + 4);
+        long slotPos = pointer * 8L;
+        int index = search(slotPos, info & 0xFFFF, (int) key & 0xFF);
+        if (index < 0)
+            return noEntryValue;
+
+        return slots.getInt(slotPos + (MIN_CAPACITY << (info >>> 16)) + index * 4L);
+    }
+
+    private static long getBlockPos( int page, long key )
+    {
+        return (long) page * PAGE_BYTES + (((int) key >>> BLOCK_BITS) & 0xFF) * 8;
+    }
+
+    /**
+     * Binary search over the sorted key bytes of a slot. The last key is checked first as keys are
+     * mostly inserted and requested in increasing order.
+     * <p/>
+     * @return the index of the key or the bitwise complement of the insertion point
+     */
+    private int search( long slotPos, int count, int keyByte )
+    {
+        int low = 0, high = count - 1;
+        int last = getKeyByte(slotPos, high);
+        if (last < keyByte)
+            return ~count;
+        if (last == keyByte)
+            return high;
+
+        high--;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int midKey = getKeyByte(slotPos, mid);
+            if (midKey < keyByte)
+                low = mid + 1;
+            else if (midKey > keyByte)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return ~low;
+    }
+
+    private int getKeyByte( long slotPos, int index )
+    {
+        return (slots.getInt(slotPos + (index & ~3)) >>> ((index & 3) << 3)) & 0xFF;
+    }
+
+    private void setKeyByte( long slotPos, int index, int keyByte )
+    {
+        long pos = slotPos + (index & ~3);
+        int shift = (index & 3) << 3;
+        slots.setInt(pos, (slots.getInt(pos) & ~(0xFF << shift)) | (keyByte << shift));
+    }
+
+    private static int getKeyByte( int[] keys, int index )
+    {
+        return (keys[index >>> 2] >>> ((index & 3) << 3)) & 0xFF;
+    }
+
+    private static void setKeyByte( int[] keys, int index, int keyByte )
+    {
+        int shift = (index & 3) << 3;
+        keys[index >>> 2] = (keys[index >>> 2] & ~(0xFF << shift)) | (keyByte << shift);
+    }
+
+    /**
+     * @return the pointer to a slot of the specified size class, a freed slot is reused
+     */
+    private int allocate( int sizeClass )
+    {
+        TIntArrayList free = freeSlots[sizeClass];
+        if (!free.isEmpty())
+            return free.removeAt(free.size() - 1);
+
+        int pointer = nextSlot;
+        // key bytes plus 4 byte values
+        int units = (MIN_CAPACITY << sizeClass) * 5 / 8;
+        if ((long) pointer + units > Integer.MAX_VALUE)
+            throw new IllegalStateException("Too many entries for " + getClass().getSimpleName() + ": " + size);
+
+        nextSlot += units;
+        slots.incCapacity((long) nextSlot * 8);
+        return pointer;
+    }
+
+    @Override
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return the used off-heap or on-heap bytes of the pages and slots
+     */
+    public long getCapacity()
+    {
+        return pages.getCapacity() + slots.getCapacity();
+    }
+
+    @Override
+    public int getMemoryUsage()
+    {
+        // the page index has a load factor of 0.5 and stores a long and an int per page
+        return Math.round((getCapacity() + pageIndex.capacity() * 12L) / Helper.MB);
+    }
+
+    @Override
+    public void optimize()
+    {
+    }
+
+    @Override
+    public String toString()
+    {
+        return "size:" + size + ", pages:" + pageCount + ", slots:" + nextSlot + ", " + getMemoryUsage() + "MB";
+    }
+}
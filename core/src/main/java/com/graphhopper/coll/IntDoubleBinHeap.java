@@ -16,6 +16,10 @@ import java.util.Arrays;
 
 /**
  * Taken from opentripplanner.
+ * <p/>
+ * If created with an element capacity the heap additionally remembers the index of every element
+ * and update_ becomes a real decrease-key operation in O(log n) instead of a linear search. The
+ * elements then have to be smaller than the element capacity, e.g. node ids.
  */
 public class IntDoubleBinHeap implements BinHeapWrapper<Number, Integer>
 {
@@ -24,6 +28,8 @@ public class IntDoubleBinHeap implements BinHeapWrapper<Number, Integer>
     private int[] elem;
     private int size;
     private int capacity;
+    // optional, maps an element to its index in the heap
+    private int[] positions;
 
     public IntDoubleBinHeap()
     {
@@ -45,6 +51,33 @@ public class IntDoubleBinHeap implements BinHeapWrapper<Number, Integer>
         keys[0] = Float.NEGATIVE_INFINITY;
     }
 
+    /**
+     * @param elementCapacity all elements have to be smaller than this value
+     */
+    public IntDoubleBinHeap( int capacity, int elementCapacity )
+    {
+        this(capacity);
+        positions = new int[elementCapacity];
+    }
+
+    /**
+     * Makes sure that elements up to elementCapacity - 1 can be stored. Only valid for a heap with
+     * element index.
+     */
+    public void ensureElementCapacity( int elementCapacity )
+    {
+        if (positions == null)
+            throw new IllegalStateException("heap was created without element index");
+
+        if (elementCapacity > positions.length)
+            positions = Arrays.copyOf(positions, elementCapacity);
+    }
+
+    public boolean isIndexed()
+    {
+        return positions != null;
+    }
+
     @Override
     public int getSize()
     {
@@ -121,15 +154,13 @@ public class IntDoubleBinHeap implements BinHeapWrapper<Number, Integer>
             }
             if (lastPrio > keys[child])
             {
-                elem[i] = elem[child];
-                keys[i] = keys[child];
+                put(i, keys[child], elem[child]);
             } else
             {
                 break;
             }
         }
-        elem[i] = lastElem;
-        keys[i] = (float) lastPrio;
+        put(i, (float) lastPrio, lastElem);
         return minElem;
     }
 
@@ -141,17 +172,8 @@ public class IntDoubleBinHeap implements BinHeapWrapper<Number, Integer>
 
     public boolean update_( double key, int element )
     {
-        // Perform "inefficient" but straightforward linear search 
-        // for an element then change its key by sifting up or down
-        int i;
-        for (i = 1; i <= size; i++)
-        {
-            if (elem[i] == element)
-            {
-                break;
-            }
-        }
-        if (i > size)
+        int i = indexOf(element);
+        if (i < 1)
         {
             return false;
         }
@@ -168,31 +190,72 @@ public class IntDoubleBinHeap implements BinHeapWrapper<Number, Integer>
                 }
                 if (key > keys[child])
                 {
-                    elem[i] = elem[child];
-                    keys[i] = keys[child];
+                    put(i, keys[child], elem[child]);
                     i = child;
                 } else
                 {
                     break;
                 }
             }
-            elem[i] = element;
-            keys[i] = (float) key;
+            put(i, (float) key, element);
         } else
         {
             // sift down (as in insert_)
             while (keys[i / 2] > key)
             {
-                elem[i] = elem[i / 2];
-                keys[i] = keys[i / 2];
+                put(i, keys[i / 2], elem[i / 2]);
                 i /= 2;
             }
-            elem[i] = element;
-            keys[i] = (float) key;
+            put(i, (float) key, element);
         }
         return true;
     }
 
+    /**
+     * @return true if the specified element is currently in the heap
+     */
+    public boolean contains( int element )
+    {
+        return indexOf(element) >= 1;
+    }
+
+    /**
+     * @return the 1-based heap index of the specified element or -1 if not in the heap
+     */
+    private int indexOf( int element )
+    {
+        if (positions != null)
+        {
+            if (element < 0 || element >= positions.length)
+                return -1;
+
+            // positions is never cleared so verify that the entry is still valid
+            int i = positions[element];
+            if (i >= 1 && i <= size && elem[i] == element)
+                return i;
+
+            return -1;
+        }
+
+        // Perform "inefficient" but straightforward linear search 
+        for (int i = 1; i <= size; i++)
+        {
+            if (elem[i] == element)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void put( int index, float key, int element )
+    {
+        keys[index] = key;
+        elem[index] = element;
+        if (positions != null)
+            positions[element] = index;
+    }
+
     @Override
     public void insert( Number key, Integer element )
     {
@@ -209,11 +272,9 @@ public class IntDoubleBinHeap implements BinHeapWrapper<Number, Integer>
         }
         for (i = size; keys[i / 2] > key; i /= 2)
         {
-            elem[i] = elem[i / 2];
-            keys[i] = keys[i / 2];
+            put(i, keys[i / 2], elem[i / 2]);
         }
-        elem[i] = element;
-        keys[i] = (float) key;
+        put(i, (float) key, element);
     }
 
     @Override
@@ -246,8 +307,7 @@ public class IntDoubleBinHeap implements BinHeapWrapper<Number, Integer>
 
     void set( int index, float key, int element )
     {
-        keys[index] = key;
-        elem[index] = element;
+        put(index, key, element);
     }
 
     void trimTo( int toSize )
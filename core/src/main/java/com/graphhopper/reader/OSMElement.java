@@ -34,6 +34,10 @@ public abstract class OSMElement
     public static final int NODE = 0;
     public static final int WAY = 1;
     public static final int RELATION = 2;
+    /**
+     * Bit mask where the bit 1 << type is set for all types, see OSMInputFile.setElementTypes
+     */
+    public static final int ALL_TYPES = 1 << NODE | 1 << WAY | 1 << RELATION;
     protected final int type;
     protected final long id;
     protected Map<String, String> tags;
@@ -26,6 +26,9 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.*;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -45,14 +48,27 @@ public class OSMInputFile implements Sink, Closeable
     private XMLStreamReader parser;
     // for pbf parsing
     private boolean binary = false;
-    private final BlockingQueue<OSMElement> itemQueue;
-    private boolean hasIncomingData;
+    // marks the end of the decoded data, compared by identity so it cannot be confused with an
+    // empty batch of a caller
+    private static final List<OSMElement> END = new ArrayList<OSMElement>(0);
+    // every batch contains the elements of one pbf block, roughly 8000
+    private final BlockingQueue<List<OSMElement>> batchQueue;
+    private List<OSMElement> currentBatch = Collections.emptyList();
+    private int batchIndex;
+    private volatile boolean hasIncomingData;
+    // statistics, the first four are only changed from the decoding thread
+    private volatile long batches;
+    private volatile long queueSizeSum;
+    private volatile int maxQueueSize;
+    private volatile long decoderStallNanos;
+    private long readerStallNanos;
     private int workerThreads = -1;
+    private int elementTypes = OSMElement.ALL_TYPES;
 
     public OSMInputFile( File file ) throws IOException
     {
         bis = decode(file);
-        itemQueue = new LinkedBlockingQueue<OSMElement>(50000);
+        batchQueue = new LinkedBlockingQueue<List<OSMElement>>(8);
     }
 
     public OSMInputFile open() throws XMLStreamException
@@ -76,6 +92,26 @@ public class OSMInputFile implements Sink, Closeable
         return this;
     }
 
+    /**
+     * Only elements of the specified types are returned, e.g. OSMElement.WAY. For pbf the blocks of
+     * other types are not decoded, which makes reading without nodes a lot faster. Default is all
+     * types.
+     */
+    public OSMInputFile setElementTypes( int... types )
+    {
+        elementTypes = 0;
+        for (int type : types)
+        {
+            elementTypes |= 1 << type;
+        }
+        return this;
+    }
+
+    private boolean isWanted( int type )
+    {
+        return (elementTypes & 1 << type) != 0;
+    }
+
     @SuppressWarnings("unchecked")
     private InputStream decode( File file ) throws IOException
     {
@@ -189,7 +225,7 @@ public class OSMInputFile implements Sink, Closeable
                 {
                     case 'n':
                         // note vs. node
-                        if ("node".equals(name))
+                        if ("node".equals(name) && isWanted(OSMElement.NODE))
                         {
                             id = Long.parseLong(parser.getAttributeValue(null, "id"));
                             return new OSMNode(id, parser);
@@ -198,10 +234,14 @@ public class OSMInputFile implements Sink, Closeable
 
                     case 'w':
                     {
+                        if (!isWanted(OSMElement.WAY))
+                            break;
                         id = Long.parseLong(parser.getAttributeValue(null, "id"));
                         return new OSMWay(id, parser);
                     }
                     case 'r':
+                        if (!isWanted(OSMElement.RELATION))
+                            break;
                         id = Long.parseLong(parser.getAttributeValue(null, "id"));
                         return new OSMRelation(id, parser);
                 }
@@ -244,7 +284,7 @@ public class OSMInputFile implements Sink, Closeable
         if (workerThreads <= 0)
             workerThreads = 2;
 
-        PbfReader reader = new PbfReader(stream, this, workerThreads);
+        PbfReader reader = new PbfReader(stream, this, workerThreads, elementTypes);
         pbfReaderThread = new Thread(reader, "PBF Reader");
         pbfReaderThread.start();
     }
@@ -252,47 +292,142 @@ public class OSMInputFile implements Sink, Closeable
     @Override
     public void process( OSMElement item )
     {
+        process(Collections.singletonList(item));
+    }
+
+    @Override
+    public void process( List<OSMElement> items )
+    {
+        if (items.isEmpty())
+            return;
+
+        int size = batchQueue.size();
+        batches++;
+        queueSizeSum += size;
+        if (size > maxQueueSize)
+            maxQueueSize = size;
+
+        if (batchQueue.offer(items))
+            return;
+
+        long start = System.nanoTime();
         try
         {
             // blocks if full
-            itemQueue.put(item);
+            batchQueue.put(items);
         } catch (InterruptedException ex)
         {
             throw new RuntimeException(ex);
+        } finally
+        {
+            decoderStallNanos += System.nanoTime() - start;
         }
-
-        // throw exception if full
-        // itemQueue.add(item);
     }
 
     @Override
     public void complete()
     {
         hasIncomingData = false;
+        // if full the reader notices the end via hasIncomingData
+        batchQueue.offer(END);
     }
 
     private OSMElement getNextPBF()
     {
-        OSMElement next = null;
-        while (next == null)
+        // only one element of the current batch is accessed per call, no synchronization
+        while (batchIndex >= currentBatch.size())
         {
-            if (!hasIncomingData && itemQueue.isEmpty())
+            if (!nextBatch())
             {
-                // we are done, stop polling
                 eof = true;
-                break;
+                return null;
             }
+        }
+        return currentBatch.get(batchIndex++);
+    }
 
+    private boolean nextBatch()
+    {
+        currentBatch = Collections.emptyList();
+        List<OSMElement> batch = batchQueue.poll();
+        if (batch == null)
+        {
+            long start = System.nanoTime();
             try
             {
-                // we cannot use "itemQueue.take()" as it blocks and hasIncomingData can change
-                next = itemQueue.poll(10, TimeUnit.MILLISECONDS);
+                while (batch == null)
+                {
+                    if (!hasIncomingData && batchQueue.isEmpty())
+                        // we are done, stop polling
+                        return false;
+
+                    // we cannot use "batchQueue.take()" as it blocks if the end marker did not fit
+                    batch = batchQueue.poll(10, TimeUnit.MILLISECONDS);
+                }
             } catch (InterruptedException ex)
             {
-                eof = true;
-                break;
+                return false;
+            } finally
+            {
+                readerStallNanos += System.nanoTime() - start;
             }
         }
-        return next;
+
+        if (batch == END)
+            return false;
+
+        currentBatch = batch;
+        batchIndex = 0;
+        return true;
+    }
+
+    /**
+     * @return the number of decoded pbf blocks passed to the reader
+     */
+    public long getBatches()
+    {
+        return batches;
+    }
+
+    /**
+     * @return the average number of batches waiting in the queue when a new one was added. A value
+     * near the capacity of 8 means that the decoding is faster than the consumer of getNext
+     */
+    public double getAverageQueueSize()
+    {
+        long tmpBatches = batches;
+        return tmpBatches == 0 ? 0 : (double) queueSizeSum / tmpBatches;
+    }
+
+    public int getMaxQueueSize()
+    {
+        return maxQueueSize;
+    }
+
+    /**
+     * @return the time the decoding waited as the queue was full
+     */
+    public long getDecoderStallMillis()
+    {
+        return decoderStallNanos / 1000000;
+    }
+
+    /**
+     * @return the time getNext waited for decoded elements
+     */
+    public long getReaderStallMillis()
+    {
+        return readerStallNanos / 1000000;
+    }
+
+    /**
+     * @return the queue statistics, useful to find out if the decoding or the reader is the
+     * bottleneck
+     */
+    public String getQueueInfo()
+    {
+        return "batches:" + batches + ", avgQueueSize:" + Math.round(getAverageQueueSize() * 10) / 10d
+                + ", maxQueueSize:" + maxQueueSize + ", decoderStall:" + getDecoderStallMillis() + "ms"
+                + ", readerStall:" + getReaderStallMillis() + "ms";
     }
 }
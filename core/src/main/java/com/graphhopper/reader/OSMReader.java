@@ -22,22 +22,30 @@ import gnu.trove.list.TLongList;
 import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.map.TIntLongMap;
 import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TIntLongHashMap;
 import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLStreamException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.graphhopper.coll.CompressedLongIntMap;
 import com.graphhopper.coll.GHLongIntBTree;
 import com.graphhopper.coll.LongIntMap;
 import com.graphhopper.reader.OSMTurnRelation.TurnCostTableEntry;
@@ -104,7 +112,8 @@ public class OSMReader
     // same here: not applicable as ways introduces the nodes in 'wrong' order: new OSMIDSegmentedMap
     // memory overhead due to open addressing and full rehash:
     //        nodeOsmIdToIndexMap = new BigLongIntMap(expectedNodes, EMPTY);
-    // smaller memory overhead for bigger data sets because of avoiding a "rehash"
+    // smaller memory overhead for bigger data sets because of avoiding a "rehash": GHLongIntBTree
+    // no heap usage and less memory, stored in the DataAccess of the graph: CompressedLongIntMap
     // remember how many times a node was used to identify tower nodes
     private LongIntMap osmNodeIdToInternalNodeMap;
     private TLongLongHashMap osmNodeIdToNodeFlagsMap;
@@ -121,6 +130,15 @@ public class OSMReader
     // negative but increasing to avoid clash with custom created OSM files
     private long newUniqueOSMId = -Long.MAX_VALUE;
     private boolean exitOnlyPillarNodeException = true;
+    // ways are prepared concurrently in batches and then written in their order from the file
+    private int wayThreads = 1;
+    private int wayBatchSize = 10000;
+    private ExecutorService wayExecutor;
+    private final List<OSMWay> pendingWays = new ArrayList<OSMWay>();
+    private PreparedWay currentWay;
+    private int currentEdge;
+    private long predictedEdgeCount;
+    private long missedEdgeCount;
 
     public OSMReader( GraphStorage storage, long expectedCap )
     {
@@ -164,7 +182,9 @@ public class OSMReader
         OSMInputFile in = null;
         try
         {
-            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).open();
+            // nodes are not necessary here and skipping them avoids most of the decoding
+            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).
+                    setElementTypes(OSMElement.WAY, OSMElement.RELATION).open();
 
             long tmpWayCounter = 1;
             long tmpRelationCounter = 1;
@@ -212,6 +232,8 @@ public class OSMReader
 
                 }
             }
+            if (in.getBatches() > 0)
+                logger.info("pbf queue (preprocess) " + in.getQueueInfo());
         } catch (Exception ex)
         {
             throw new RuntimeException("Problem while parsing file", ex);
@@ -282,10 +304,16 @@ public class OSMReader
         {
             in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).open();
             LongIntMap nodeFilter = getNodeMap();
+            if (wayThreads > 1)
+                wayExecutor = Executors.newFixedThreadPool(wayThreads);
 
             OSMElement item;
             while ((item = in.getNext()) != null)
             {
+                // the maps must not change while pending ways are prepared
+                if (!item.isType(OSMElement.WAY))
+                    processPendingWays();
+
                 switch (item.getType()) {
                 case OSMElement.NODE:
                     if (nodeFilter.get(item.getId()) != -1)
@@ -300,7 +328,15 @@ public class OSMReader
                         logger.info(nf(counter) + ", now parsing ways");
                         wayStart = counter;
                     }
-                    processWay((OSMWay) item);
+                    if (wayExecutor == null)
+                    {
+                        processWay((OSMWay) item);
+                    } else
+                    {
+                        pendingWays.add((OSMWay) item);
+                        if (pendingWays.size() >= wayBatchSize)
+                            processPendingWays();
+                    }
                     break;
                 case OSMElement.RELATION:
                     if (relationStart < 0)
@@ -316,6 +352,12 @@ public class OSMReader
                     logger.info(nf(counter) + ", locs:" + nf(locations) + " (" + skippedLocations + ") " + Helper.getMemInfo());
                 }
             }
+            processPendingWays();
+            if (in.getBatches() > 0)
+                logger.info("pbf queue " + in.getQueueInfo());
+            if (wayExecutor != null)
+                logger.info("way threads:" + wayThreads + ", predicted edges:" + nf(predictedEdgeCount)
+                        + ", calculated edges:" + nf(missedEdgeCount));
 
             // logger.info("storage nodes:" + storage.nodes() + " vs. graph nodes:" + storage.getGraph().nodes());
         } catch (Exception ex)
@@ -324,6 +366,9 @@ public class OSMReader
         } finally
         {
             Helper.close(in);
+            if (wayExecutor != null)
+                wayExecutor.shutdown();
+            wayExecutor = null;
         }
 
         finishedReading();
@@ -335,19 +380,32 @@ public class OSMReader
      * Process properties, encode flags and create edges for the way.
      */
     void processWay( OSMWay way )
+    {
+        PreparedWay prepared = prepareWay(way, false);
+        if (prepared != null)
+            writeWay(prepared);
+    }
+
+    /**
+     * Analyzes the way without changing the graph or any of the maps: calculates the flags, the
+     * barriers where the way needs to be split and the name. If predictEdges is true the
+     * distances and the simplified geometries of the edges are calculated in advance too. This is
+     * called concurrently from the way workers, see processWays.
+     * <p/>
+     * @return null if the way should be ignored
+     */
+    PreparedWay prepareWay( OSMWay way, boolean predictEdges )
     {
         if (way.getNodes().size() < 2)
-            return;
+            return null;
 
         // ignore multipolygon geometry
         if (!way.hasTags())
-            return;
-
-        long wayOsmId = way.getId();
+            return null;
 
         long includeWay = encodingManager.acceptWay(way);
         if (includeWay == 0)
-            return;
+            return null;
 
         long relationFlags = getRelFlagsMap().get(way.getId());
 
@@ -369,12 +427,11 @@ public class OSMReader
 
         long wayFlags = encodingManager.handleWayTags(way, includeWay, relationFlags);
         if (wayFlags == 0)
-            return;
+            return null;
 
-        List<EdgeIteratorState> createdEdges = new ArrayList<EdgeIteratorState>();
+        PreparedWay prepared = new PreparedWay(way);
         // look for barriers along the way
         final int size = osmNodeIds.size();
-        int lastBarrier = -1;
         for (int i = 0; i < size; i++)
         {
             long nodeId = osmNodeIds.get(i);
@@ -383,57 +440,14 @@ public class OSMReader
             if (nodeFlags > 0)
             {
                 if ((nodeFlags & wayFlags) > 0)
-                {
-                    // remove barrier to avoid duplicates
-                    getNodeFlagsMap().put(nodeId, 0);
-
-                    // create shadow node copy for zero length edge
-                    long newNodeId = addBarrierNode(nodeId);
-                    if (i > 0)
-                    {
-                        // start at beginning of array if there was no previous barrier
-                        if (lastBarrier < 0)
-                            lastBarrier = 0;
-
-                        // add way up to barrier shadow node
-                        long transfer[] = osmNodeIds.toArray(lastBarrier, i - lastBarrier + 1);
-                        transfer[transfer.length - 1] = newNodeId;
-                        TLongList partIds = new TLongArrayList(transfer);
-                        createdEdges.addAll(addOSMWay(partIds, wayFlags, wayOsmId));
-
-                        // create zero length edge for barrier
-                        createdEdges.addAll(addBarrierEdge(newNodeId, nodeId, wayFlags, nodeFlags, wayOsmId));
-                    } else
-                    {
-                        // run edge from real first node to shadow node
-                        createdEdges.addAll(addBarrierEdge(nodeId, newNodeId, wayFlags, nodeFlags, wayOsmId));
-
-                        // exchange first node for created barrier node
-                        osmNodeIds.set(0, newNodeId);
-                    }
-                    // remember barrier for processing the way behind it
-                    lastBarrier = i;
-                }
+                    prepared.addBarrier(i, nodeFlags, wayFlags);
             } else if (nodeFlags < 0)
             {
                 wayFlags = encodingManager.applyNodeFlags(wayFlags, -nodeFlags);
             }
         }
+        prepared.wayFlags = wayFlags;
 
-        // just add remainder of way to graph if barrier was not the last node
-        if (lastBarrier >= 0)
-        {
-            if (lastBarrier < size - 1)
-            {
-                long transfer[] = osmNodeIds.toArray(lastBarrier, size - lastBarrier);
-                TLongList partNodeIds = new TLongArrayList(transfer);
-                createdEdges.addAll(addOSMWay(partNodeIds, wayFlags, wayOsmId));
-            }
-        } else
-        {
-            // no barriers - simply add the whole way
-            createdEdges.addAll(addOSMWay(way.getNodes(), wayFlags, wayOsmId));
-        }
         if (enableInstructions)
         {
             // String wayInfo = encodingManager.getWayInfo(way);
@@ -451,12 +465,332 @@ public class OSMReader
                     name += ", " + refName;
                 }
             }
+            prepared.name = name;
+        }
+
+        if (predictEdges)
+            predictEdges(prepared);
+
+        return prepared;
+    }
+
+    /**
+     * Splits the way at its barriers and creates the edges in the graph. Only called from the
+     * thread reading the file.
+     */
+    void writeWay( PreparedWay prepared )
+    {
+        OSMWay way = prepared.way;
+        long wayOsmId = way.getId();
+        TLongList osmNodeIds = way.getNodes();
+        final int size = osmNodeIds.size();
+        currentWay = prepared;
+        currentEdge = 0;
+        try
+        {
+            List<EdgeIteratorState> createdEdges = new ArrayList<EdgeIteratorState>();
+            int lastBarrier = -1;
+            for (int b = 0; b < prepared.barriers; b++)
+            {
+                int i = prepared.barrierIndices[b];
+                long nodeId = osmNodeIds.get(i);
+                // the barrier could have been removed from a previous way
+                if (getNodeFlagsMap().get(nodeId) <= 0)
+                    continue;
+
+                long nodeFlags = prepared.barrierFlags[b];
+                long wayFlags = prepared.barrierWayFlags[b];
+                // remove barrier to avoid duplicates
+                getNodeFlagsMap().put(nodeId, 0);
+
+                // create shadow node copy for zero length edge
+                long newNodeId = addBarrierNode(nodeId);
+                if (i > 0)
+                {
+                    // start at beginning of array if there was no previous barrier
+                    if (lastBarrier < 0)
+                        lastBarrier = 0;
+
+                    // add way up to barrier shadow node
+                    long transfer[] = osmNodeIds.toArray(lastBarrier, i - lastBarrier + 1);
+                    transfer[transfer.length - 1] = newNodeId;
+                    TLongList partIds = new TLongArrayList(transfer);
+                    createdEdges.addAll(addOSMWay(partIds, wayFlags, wayOsmId));
+
+                    // create zero length edge for barrier
+                    createdEdges.addAll(addBarrierEdge(newNodeId, nodeId, wayFlags, nodeFlags, wayOsmId));
+                } else
+                {
+                    // run edge from real first node to shadow node
+                    createdEdges.addAll(addBarrierEdge(nodeId, newNodeId, wayFlags, nodeFlags, wayOsmId));
+
+                    // exchange first node for created barrier node
+                    osmNodeIds.set(0, newNodeId);
+                }
+                // remember barrier for processing the way behind it
+                lastBarrier = i;
+            }
+
+            // just add remainder of way to graph if barrier was not the last node
+            if (lastBarrier >= 0)
+            {
+                if (lastBarrier < size - 1)
+                {
+                    long transfer[] = osmNodeIds.toArray(lastBarrier, size - lastBarrier);
+                    TLongList partNodeIds = new TLongArrayList(transfer);
+                    createdEdges.addAll(addOSMWay(partNodeIds, prepared.wayFlags, wayOsmId));
+                }
+            } else
+            {
+                // no barriers - simply add the whole way
+                createdEdges.addAll(addOSMWay(osmNodeIds, prepared.wayFlags, wayOsmId));
+            }
+
+            if (prepared.name != null)
+            {
+                for (EdgeIteratorState iter : createdEdges)
+                {
+                    iter.setName(prepared.name);
+                }
+            }
+        } finally
+        {
+            currentWay = null;
+        }
+    }
+
+    /**
+     * Calculates the edges which writeWay will most likely create, assuming that all barriers
+     * split the way and that no other way changes its nodes. The writer compares every predicted
+     * edge with its actual points and calculates the edge itself if they differ, so a wrong
+     * prediction costs time but never changes the graph.
+     */
+    private void predictEdges( PreparedWay prepared )
+    {
+        EdgePrediction prediction = new EdgePrediction();
+        prepared.predictedEdges = prediction.edges;
+        TLongList osmNodeIds = new TLongArrayList(prepared.way.getNodes());
+        final int size = osmNodeIds.size();
+        int lastBarrier = -1;
+        for (int b = 0; b < prepared.barriers; b++)
+        {
+            int i = prepared.barrierIndices[b];
+            long nodeId = osmNodeIds.get(i);
+            // only a key for the overlay of the prediction, the overlay is checked before the node map
+            long shadowId = Long.MIN_VALUE + b;
+            if (!prediction.addShadowNode(shadowId, nodeId))
+                return;
+
+            if (i > 0)
+            {
+                if (lastBarrier < 0)
+                    lastBarrier = 0;
+
+                long transfer[] = osmNodeIds.toArray(lastBarrier, i - lastBarrier + 1);
+                transfer[transfer.length - 1] = shadowId;
+                if (!prediction.addWay(new TLongArrayList(transfer))
+                        || !prediction.addWay(new TLongArrayList(new long[]
+                        {
+                            shadowId, nodeId
+                        })))
+                    return;
+            } else
+            {
+                if (!prediction.addWay(new TLongArrayList(new long[]
+                {
+                    nodeId, shadowId
+                })))
+                    return;
+
+                osmNodeIds.set(0, shadowId);
+            }
+            lastBarrier = i;
+        }
+
+        if (lastBarrier >= 0)
+        {
+            if (lastBarrier < size - 1)
+                prediction.addWay(new TLongArrayList(osmNodeIds.toArray(lastBarrier, size - lastBarrier)));
+        } else
+        {
+            prediction.addWay(osmNodeIds);
+        }
+    }
+
+    /**
+     * Replays addOSMWay without changing anything. Nodes which would be converted into tower nodes
+     * or created as barrier shadow nodes are kept in a local overlay of the node map.
+     */
+    private class EdgePrediction
+    {
+        final List<EdgeGeometry> edges = new ArrayList<EdgeGeometry>(5);
+        // osm id -> tower or pillar node created or converted while adding this way
+        private final TLongObjectMap<double[]> overlay = new TLongObjectHashMap<double[]>(4);
+
+        /**
+         * @return latitude, longitude and 1 for a tower or 0 for a pillar node, or null if the
+         * node has no coordinates
+         */
+        double[] toNode( int tmpNode )
+        {
+            if (tmpNode < TOWER_NODE)
+            {
+                tmpNode = -tmpNode - 3;
+                return new double[]
+                {
+                    graphStorage.getLatitude(tmpNode), graphStorage.getLongitude(tmpNode), 1
+                };
+            } else if (tmpNode > -TOWER_NODE)
+            {
+                tmpNode = tmpNode - 3;
+                int intlat = pillarLats.getInt(tmpNode * 4);
+                int intlon = pillarLons.getInt(tmpNode * 4);
+                if (intlat == Integer.MAX_VALUE || intlon == Integer.MAX_VALUE)
+                    return null;
+
+                return new double[]
+                {
+                    Helper.intToDegree(intlat), Helper.intToDegree(intlon), 0
+                };
+            }
+            return null;
+        }
+
+        /**
+         * Like addBarrierNode: the copy is stored as pillar node.
+         */
+        boolean addShadowNode( long shadowId, long nodeId )
+        {
+            double[] node = overlay.get(nodeId);
+            if (node == null)
+                node = toNode(getNodeMap().get(nodeId));
+            if (node == null)
+                return false;
+
+            overlay.put(shadowId, new double[]
+            {
+                toStoredDegree(node[0]), toStoredDegree(node[1]), 0
+            });
+            return true;
+        }
+
+        /**
+         * Like addOSMWay but only collects the edge geometries.
+         * <p/>
+         * @return false if the way contains a node which is too special to predict
+         */
+        boolean addWay( TLongList osmNodeIds )
+        {
+            PointList pointList = new PointList(osmNodeIds.size());
+            boolean firstNode = false;
+            int lastIndex = osmNodeIds.size() - 1;
+            for (int i = 0; i <= lastIndex; i++)
+            {
+                long osmId = osmNodeIds.get(i);
+                double[] node = overlay.get(osmId);
+                if (node == null)
+                {
+                    int tmpNode = getNodeMap().get(osmId);
+                    if (tmpNode == EMPTY || tmpNode == TOWER_NODE)
+                        continue;
+
+                    // a referenced node without data converts the previous pillar node, see addOSMWay
+                    if (tmpNode == PILLAR_NODE)
+                        return false;
+
+                    node = toNode(tmpNode);
+                    if (node == null)
+                        return false;
+                }
+
+                if (node[2] == 0)
+                {
+                    if (i > 0 && i < lastIndex)
+                    {
+                        pointList.add(node[0], node[1]);
+                        continue;
+                    }
+
+                    // end-standing pillar node is converted into a tower node
+                    node = new double[]
+                    {
+                        toStoredDegree(node[0]), toStoredDegree(node[1]), 1
+                    };
+                    overlay.put(osmId, node);
+                }
+
+                pointList.add(node[0], node[1]);
+                if (firstNode)
+                {
+                    edges.add(calcEdgeGeometry(pointList, true));
+                    pointList.clear();
+                    pointList.add(node[0], node[1]);
+                }
+                firstNode = true;
+            }
+            return true;
+        }
+    }
 
-            for (EdgeIteratorState iter : createdEdges)
+    /**
+     * The graph stores coordinates as integers, this returns the value read back after storing
+     * the specified one.
+     */
+    private static double toStoredDegree( double deg )
+    {
+        return Helper.intToDegree(Helper.degreeToInt(deg));
+    }
+
+    /**
+     * Prepares the pending ways with the way threads and writes them afterwards in their original
+     * order. While the workers are running nothing is changed, so the graph is identical to the one
+     * created by processWay for every way.
+     */
+    private void processPendingWays()
+    {
+        final int size = pendingWays.size();
+        if (size == 0)
+            return;
+
+        final PreparedWay[] prepared = new PreparedWay[size];
+        List<Future<?>> futures = new ArrayList<Future<?>>(wayThreads);
+        for (int w = 0; w < wayThreads; w++)
+        {
+            final int start = w;
+            futures.add(wayExecutor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = start; i < size; i += wayThreads)
+                    {
+                        prepared[i] = prepareWay(pendingWays.get(i), true);
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures)
+        {
+            try
             {
-                iter.setName(name);
+                future.get();
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while preparing ways", ex);
+            } catch (ExecutionException ex)
+            {
+                throw new RuntimeException("Problem while preparing ways", ex.getCause());
             }
         }
+
+        pendingWays.clear();
+        for (int i = 0; i < size; i++)
+        {
+            if (prepared[i] != null)
+                writeWay(prepared[i]);
+        }
     }
 
     public void processRelation( OSMRelation relation ) throws XMLStreamException
@@ -723,13 +1057,47 @@ public class OSMReader
         if (fromIndex < 0 || toIndex < 0)
             throw new AssertionError("to or from index is invalid for this edge " + fromIndex + "->" + toIndex + ", points:" + pointList);
 
+        EdgeGeometry geometry = nextPredictedEdge(pointList);
+        if (geometry == null)
+            geometry = calcEdgeGeometry(pointList, false);
+
+        double towerNodeDistance = geometry.distance;
+        if (towerNodeDistance == 0)
+        {
+            // As investigation shows often two paths should have crossed via one identical point 
+            // but end up in two very close points.
+            zeroCounter++;
+            towerNodeDistance = 0.0001;
+        }
+
+        EdgeIteratorState iter = graphStorage.edge(fromIndex, toIndex).setDistance(towerNodeDistance).setFlags(flags);
+        if (geometry.pillarNodes != null)
+            iter.setWayGeometry(geometry.pillarNodes);
+
+        storeOSMWayID(iter.getEdge(), wayOsmId);
+        return iter;
+    }
+
+    /**
+     * Calculates the distance and the simplified pillar nodes of an edge. Does not change any
+     * state and can be called concurrently.
+     * <p/>
+     * @param pointList the points including the tower nodes
+     * @param copyPoints true if the points should be kept to be compared later
+     */
+    EdgeGeometry calcEdgeGeometry( PointList pointList, boolean copyPoints )
+    {
         double towerNodeDistance = 0;
         double prevLat = pointList.getLatitude(0);
         double prevLon = pointList.getLongitude(0);
         double lat;
         double lon;
-        PointList pillarNodes = new PointList(pointList.getSize() - 2);
         int nodes = pointList.getSize();
+        PointList pillarNodes = nodes > 2 ? new PointList(nodes - 2) : null;
+        PointList points = copyPoints ? new PointList(nodes) : null;
+        if (points != null)
+            points.add(prevLat, prevLon);
+
         for (int i = 1; i < nodes; i++)
         {
             // we could save some lines if we would use pointListIncludingTowerNodes.calculateDistance(distCalc);
@@ -738,25 +1106,40 @@ public class OSMReader
             towerNodeDistance += distCalc.calcDist(prevLat, prevLon, lat, lon);
             prevLat = lat;
             prevLon = lon;
-            if (nodes > 2 && i < nodes - 1)
+            if (pillarNodes != null && i < nodes - 1)
                 pillarNodes.add(lat, lon);
-        }
-        if (towerNodeDistance == 0)
-        {
-            // As investigation shows often two paths should have crossed via one identical point 
-            // but end up in two very close points.
-            zeroCounter++;
-            towerNodeDistance = 0.0001;
+            if (points != null)
+                points.add(lat, lon);
         }
 
-        EdgeIteratorState iter = graphStorage.edge(fromIndex, toIndex).setDistance(towerNodeDistance).setFlags(flags);
-        if (nodes > 2)
-        {
+        if (pillarNodes != null)
             simplifyAlgo.simplify(pillarNodes);
-            iter.setWayGeometry(pillarNodes);
+
+        return new EdgeGeometry(points, towerNodeDistance, pillarNodes);
+    }
+
+    /**
+     * @return the predicted geometry of the next edge of the way currently written or null if
+     * there is no prediction or if it was calculated from different points
+     */
+    private EdgeGeometry nextPredictedEdge( PointList pointList )
+    {
+        if (currentWay == null || currentWay.predictedEdges == null)
+            return null;
+
+        List<EdgeGeometry> predicted = currentWay.predictedEdges;
+        int index = currentEdge++;
+        if (index < predicted.size())
+        {
+            EdgeGeometry geometry = predicted.get(index);
+            if (geometry.hasPoints(pointList))
+            {
+                predictedEdgeCount++;
+                return geometry;
+            }
         }
-        storeOSMWayID(iter.getEdge(), wayOsmId);
-        return iter;
+        missedEdgeCount++;
+        return null;
     }
 
     private void storeOSMWayID( int edgeId, long osmWayID )
@@ -805,6 +1188,8 @@ public class OSMReader
         dir.remove(pillarLons);
         pillarLons = null;
         pillarLats = null;
+        if (osmNodeIdToInternalNodeMap instanceof CompressedLongIntMap)
+            ((CompressedLongIntMap) osmNodeIdToInternalNodeMap).remove();
         osmNodeIdToInternalNodeMap = null;
         osmNodeIdToNodeFlagsMap = null;
         osmWayIdToRouteWeightMap = null;
@@ -949,6 +1334,54 @@ public class OSMReader
         return this;
     }
 
+    /**
+     * Stores the mapping from OSM node ids to the temporary node ids in a CompressedLongIntMap
+     * instead of the heap based GHLongIntBTree. It uses the DataAccess type of the graph directory,
+     * so with MMAP or DIRECT the biggest data structure of the import lives outside of the heap.
+     * Has to be called before the import.
+     */
+    public OSMReader setCompressedNodeMap( boolean compressed )
+    {
+        if (getNodeMap().getSize() > 0)
+            throw new IllegalStateException("Node map has to be selected before the import");
+
+        if (osmNodeIdToInternalNodeMap instanceof CompressedLongIntMap)
+            ((CompressedLongIntMap) osmNodeIdToInternalNodeMap).remove();
+        if (compressed)
+            osmNodeIdToInternalNodeMap = new CompressedLongIntMap(dir, "tmpNodeMap");
+        else
+            osmNodeIdToInternalNodeMap = new GHLongIntBTree(200);
+        return this;
+    }
+
+    /**
+     * Specifies the number of threads which calculate the flags, barriers and edge geometries of
+     * the ways in parallel. The edges are still created from one thread in the order of the file,
+     * so the graph does not depend on this number. Custom flag encoders need to be thread safe
+     * for acceptWay, handleWayTags and applyNodeFlags if more than one thread is used.
+     */
+    public OSMReader setWayThreads( int threads )
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads has to be at least 1 but was " + threads);
+
+        this.wayThreads = threads;
+        return this;
+    }
+
+    /**
+     * Specifies how many ways are collected before they are prepared in parallel. Only used if
+     * there is more than one way thread.
+     */
+    public OSMReader setWayBatchSize( int size )
+    {
+        if (size < 1)
+            throw new IllegalArgumentException("batch size has to be at least 1 but was " + size);
+
+        this.wayBatchSize = size;
+        return this;
+    }
+
     private void printInfo( String str )
     {
         LoggerFactory.getLogger(getClass()).info(
@@ -957,6 +1390,80 @@ public class OSMReader
                         + ", relFlagsMap.size:" + getRelFlagsMap().size() + " " + Helper.getMemInfo());
     }
 
+    /**
+     * The result of prepareWay which writeWay turns into edges.
+     */
+    static class PreparedWay
+    {
+        final OSMWay way;
+        long wayFlags;
+        String name;
+        int barriers;
+        // index of the barrier node in the way, its flags and the flags of the way at this node
+        int[] barrierIndices;
+        long[] barrierFlags;
+        long[] barrierWayFlags;
+        List<EdgeGeometry> predictedEdges;
+
+        PreparedWay( OSMWay way )
+        {
+            this.way = way;
+        }
+
+        void addBarrier( int index, long nodeFlags, long wayFlags )
+        {
+            if (barrierIndices == null)
+            {
+                barrierIndices = new int[2];
+                barrierFlags = new long[2];
+                barrierWayFlags = new long[2];
+            } else if (barriers == barrierIndices.length)
+            {
+                barrierIndices = Arrays.copyOf(barrierIndices, barriers * 2);
+                barrierFlags = Arrays.copyOf(barrierFlags, barriers * 2);
+                barrierWayFlags = Arrays.copyOf(barrierWayFlags, barriers * 2);
+            }
+            barrierIndices[barriers] = index;
+            barrierFlags[barriers] = nodeFlags;
+            barrierWayFlags[barriers] = wayFlags;
+            barriers++;
+        }
+    }
+
+    static class EdgeGeometry
+    {
+        // all points including the tower nodes, only kept for predicted edges
+        final PointList points;
+        final double distance;
+        // the simplified pillar nodes or null if there are none
+        final PointList pillarNodes;
+
+        EdgeGeometry( PointList points, double distance, PointList pillarNodes )
+        {
+            this.points = points;
+            this.distance = distance;
+            this.pillarNodes = pillarNodes;
+        }
+
+        /**
+         * The prediction is only used if the points are exactly the same, then the distance and
+         * the simplification are identical too.
+         */
+        boolean hasPoints( PointList other )
+        {
+            int size = points.getSize();
+            if (size != other.getSize())
+                return false;
+
+            for (int i = 0; i < size; i++)
+            {
+                if (points.getLatitude(i) != other.getLatitude(i) || points.getLongitude(i) != other.getLongitude(i))
+                    return false;
+            }
+            return true;
+        }
+    }
+
     @Override
     public String toString()
     {
@@ -1,7 +1,9 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package com.graphhopper.reader.pbf;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 import com.graphhopper.reader.OSMElement;
 import com.graphhopper.reader.OSMNode;
 import com.graphhopper.reader.OSMRelation;
@@ -32,6 +34,7 @@ public class PbfBlobDecoder implements Runnable
     private byte[] rawBlob;
     private PbfBlobDecoderListener listener;
     private List<OSMElement> decodedEntities;
+    private final int elementTypes;
 
     /**
      * Creates a new instance.
@@ -41,9 +44,20 @@ public class PbfBlobDecoder implements Runnable
      * @param listener The listener for receiving decoding results.
      */
     public PbfBlobDecoder( String blobType, byte[] rawBlob, PbfBlobDecoderListener listener )
+    {
+        this(blobType, rawBlob, OSMElement.ALL_TYPES, listener);
+    }
+
+    /**
+     * Creates a new instance which only decodes the primitive groups of the specified types.
+     * <p/>
+     * @param elementTypes The bit mask of the wanted element types, see OSMElement.ALL_TYPES.
+     */
+    public PbfBlobDecoder( String blobType, byte[] rawBlob, int elementTypes, PbfBlobDecoderListener listener )
     {
         this.blobType = blobType;
         this.rawBlob = rawBlob;
+        this.elementTypes = elementTypes;
         this.listener = listener;
     }
 
@@ -356,18 +370,83 @@ public class PbfBlobDecoder implements Runnable
         }
     }
 
-    private void processOsmPrimitives( byte[] data ) throws InvalidProtocolBufferException
+    private boolean isWanted( int type )
+    {
+        return (elementTypes & 1 << type) != 0;
+    }
+
+    /**
+     * Returns the element type of the specified field of a PrimitiveGroup or -1 for changesets.
+     */
+    private static int toElementType( int groupFieldNumber )
+    {
+        switch (groupFieldNumber)
+        {
+            case Osmformat.PrimitiveGroup.NODES_FIELD_NUMBER:
+            case Osmformat.PrimitiveGroup.DENSE_FIELD_NUMBER:
+                return OSMElement.NODE;
+            case Osmformat.PrimitiveGroup.WAYS_FIELD_NUMBER:
+                return OSMElement.WAY;
+            case Osmformat.PrimitiveGroup.RELATIONS_FIELD_NUMBER:
+                return OSMElement.RELATION;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Scans the raw block without decoding it. As every primitive group contains only one type
+     * of elements its first field is sufficient. Writers like osmosis put nodes, ways and
+     * relations into separate blocks, so most blocks can be skipped completely.
+     */
+    private boolean containsWantedGroup( byte[] data ) throws IOException
+    {
+        CodedInputStream input = CodedInputStream.newInstance(data);
+        while (true)
+        {
+            int tag = input.readTag();
+            if (tag == 0)
+                return false;
+
+            if (WireFormat.getTagFieldNumber(tag) != Osmformat.PrimitiveBlock.PRIMITIVEGROUP_FIELD_NUMBER)
+            {
+                input.skipField(tag);
+                continue;
+            }
+
+            int oldLimit = input.pushLimit(input.readRawVarint32());
+            int groupTag = input.readTag();
+            if (groupTag != 0)
+            {
+                int type = toElementType(WireFormat.getTagFieldNumber(groupTag));
+                if (type >= 0 && isWanted(type))
+                    return true;
+            }
+            input.skipRawBytes(input.getBytesUntilLimit());
+            input.popLimit(oldLimit);
+        }
+    }
+
+    private void processOsmPrimitives( byte[] data ) throws IOException
     {
+        if (elementTypes != OSMElement.ALL_TYPES && !containsWantedGroup(data))
+            return;
+
         Osmformat.PrimitiveBlock block = Osmformat.PrimitiveBlock.parseFrom(data);
         PbfFieldDecoder fieldDecoder = new PbfFieldDecoder(block);
 
         for (Osmformat.PrimitiveGroup primitiveGroup : block.getPrimitivegroupList())
         {
             log.debug("Processing OSM primitive group.");
-            processNodes(primitiveGroup.getDense(), fieldDecoder);
-            processNodes(primitiveGroup.getNodesList(), fieldDecoder);
-            processWays(primitiveGroup.getWaysList(), fieldDecoder);
-            processRelations(primitiveGroup.getRelationsList(), fieldDecoder);
+            if (isWanted(OSMElement.NODE))
+            {
+                processNodes(primitiveGroup.getDense(), fieldDecoder);
+                processNodes(primitiveGroup.getNodesList(), fieldDecoder);
+            }
+            if (isWanted(OSMElement.WAY))
+                processWays(primitiveGroup.getWaysList(), fieldDecoder);
+            if (isWanted(OSMElement.RELATION))
+                processRelations(primitiveGroup.getRelationsList(), fieldDecoder);
         }
     }
 
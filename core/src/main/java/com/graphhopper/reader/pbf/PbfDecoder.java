@@ -27,6 +27,7 @@ public class PbfDecoder implements Runnable
     private Lock lock;
     private Condition dataWaitCondition;
     private Queue<PbfBlobResult> blobResults;
+    private final int elementTypes;
 
     /**
      * Creates a new instance.
@@ -39,6 +40,18 @@ public class PbfDecoder implements Runnable
     public PbfDecoder( PbfStreamSplitter streamSplitter, ExecutorService executorService, int maxPendingBlobs,
             Sink sink )
     {
+        this(streamSplitter, executorService, maxPendingBlobs, sink, OSMElement.ALL_TYPES);
+    }
+
+    /**
+     * Creates a new instance which only decodes the specified element types.
+     * <p/>
+     * @param elementTypes The bit mask of the element types to decode, see OSMElement.ALL_TYPES.
+     */
+    public PbfDecoder( PbfStreamSplitter streamSplitter, ExecutorService executorService, int maxPendingBlobs,
+            Sink sink, int elementTypes )
+    {
+        this.elementTypes = elementTypes;
         this.streamSplitter = streamSplitter;
         this.executorService = executorService;
         this.maxPendingBlobs = maxPendingBlobs;
@@ -95,16 +108,15 @@ public class PbfDecoder implements Runnable
                 throw new RuntimeException("A PBF decoding worker thread failed, aborting.");
             }
 
-            // Send the processed entities to the sink. We can release the lock
-            // for the duration of processing to allow worker threads to post
-            // their results.
+            // Send the processed entities to the sink in one batch. We can release
+            // the lock for the duration of processing to allow worker threads to
+            // post their results.
             lock.unlock();
             try
             {
-                for (OSMElement entity : blobResult.getEntities())
-                {
-                    sink.process(entity);
-                }
+                List<OSMElement> entities = blobResult.getEntities();
+                if (!entities.isEmpty())
+                    sink.process(entities);
             } finally
             {
                 lock.lock();
@@ -162,7 +174,8 @@ public class PbfDecoder implements Runnable
             };
 
             // Create the blob decoder itself and execute it on a worker thread.
-            PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderListener);
+            PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), elementTypes,
+                    decoderListener);
             executorService.execute(blobDecoder);
 
             // If the number of pending blobs has reached capacity we must begin
@@ -1,6 +1,7 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package com.graphhopper.reader.pbf;
 
+import com.graphhopper.reader.OSMElement;
 import java.io.DataInputStream;
 import java.io.InputStream;
 import java.util.concurrent.ExecutorService;
@@ -16,6 +17,7 @@ public class PbfReader implements Runnable
     private InputStream inputStream;
     private Sink sink;
     private int workers;
+    private int elementTypes;
 
     /**
      * Creates a new instance.
@@ -24,10 +26,21 @@ public class PbfReader implements Runnable
      * @param workers The number of worker threads for decoding PBF blocks.
      */
     public PbfReader( InputStream in, Sink sink, int workers )
+    {
+        this(in, sink, workers, OSMElement.ALL_TYPES);
+    }
+
+    /**
+     * Creates a new instance which only decodes the specified element types.
+     * <p/>
+     * @param elementTypes The bit mask of the wanted types, see OSMElement.ALL_TYPES.
+     */
+    public PbfReader( InputStream in, Sink sink, int workers, int elementTypes )
     {
         this.inputStream = in;
         this.sink = sink;
         this.workers = workers;
+        this.elementTypes = elementTypes;
     }
 
     @Override
@@ -45,7 +58,7 @@ public class PbfReader implements Runnable
             // immediately ready for processing when a worker thread completes.
             // The main thread is responsible for splitting blobs from the
             // request stream, and sending decoded entities to the sink.
-            PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, sink);
+            PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, sink, elementTypes);
             pbfDecoder.run();
 
         } catch (Exception e)
@@ -18,6 +18,7 @@
 package com.graphhopper.reader.pbf;
 
 import com.graphhopper.reader.OSMElement;
+import java.util.List;
 
 /**
  * @author Nop
@@ -26,5 +27,11 @@ public interface Sink
 {
     void process( OSMElement item );
 
+    /**
+     * Processes all elements of a decoded block at once which avoids the synchronization per
+     * element.
+     */
+    void process( List<OSMElement> items );
+
     void complete();
 }
@@ -0,0 +1,144 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.*;
+
+/**
+ * Same as AStar but without AStarEdge objects. The weights from the start are stored in a
+ * ShortestPathTree of the RoutingContext and the estimated full weights are used as keys of
+ * its open set.
+ * <p/>
+ * @author Peter Karich
+ */
+public class AStarArray extends AbstractRoutingAlgorithm
+{
+    private DistanceCalc dist;
+    private ShortestPathTree tree;
+    private int visitedCount;
+    private int from = -1;
+    private int to1 = -1;
+    private int currNode = -1;
+    private double toLat;
+    private double toLon;
+
+    public AStarArray( Graph g, FlagEncoder encoder, Weighting weighting )
+    {
+        super(g, encoder, weighting);
+        setApproximation(true);
+    }
+
+    /**
+     * @param approx if true it enables an approximative distance calculation from lat,lon values
+     */
+    public AStarArray setApproximation( boolean approx )
+    {
+        if (approx)
+            dist = new DistancePlaneProjection();
+        else
+            dist = new DistanceCalcEarth();
+
+        return this;
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        checkAlreadyRun();
+        tree = getRoutingContext().getTree(0);
+        tree.init(graph.getNodes());
+        toLat = graph.getLatitude(to);
+        toLon = graph.getLongitude(to);
+        this.from = from;
+        to1 = to;
+        currNode = from;
+        tree.update(from, 0, -1, EdgeIterator.NO_EDGE);
+        tree.poll();
+        return runAlgo();
+    }
+
+    private Path runAlgo()
+    {
+        double currWeightToGoal, distEstimation, tmpLat, tmpLon;
+        EdgeExplorer explorer = outEdgeExplorer;
+        while (true)
+        {
+            visitedCount++;
+            if (finished())
+                break;
+
+            int currEdge = tree.getEdge(currNode);
+            double currWeight = tree.getWeight(currNode);
+            EdgeIterator iter = explorer.setBaseNode(currNode);
+            while (iter.next())
+            {
+                if (!accept(iter))
+                    continue;
+                if (currEdge == iter.getEdge())
+                    continue;
+
+                int neighborNode = iter.getAdjNode();
+                double alreadyVisitedWeight = weighting.calcWeight(iter) + currWeight;
+                if (tree.getWeight(neighborNode) > alreadyVisitedWeight)
+                {
+                    tmpLat = graph.getLatitude(neighborNode);
+                    tmpLon = graph.getLongitude(neighborNode);
+                    currWeightToGoal = dist.calcDist(toLat, toLon, tmpLat, tmpLon);
+                    currWeightToGoal = weighting.getMinWeight(currWeightToGoal);
+                    distEstimation = alreadyVisitedWeight + currWeightToGoal;
+                    tree.update(neighborNode, alreadyVisitedWeight, currNode, iter.getEdge(), distEstimation);
+                }
+            }
+
+            if (tree.isEmpty())
+                return createEmptyPath();
+
+            currNode = tree.poll();
+        }
+
+        return extractPath();
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        return new PathNative(graph, flagEncoder, tree.getParents(), tree.getEdges()).
+                setFromNode(from).setEndNode(to1).extract();
+    }
+
+    @Override
+    protected boolean finished()
+    {
+        return currNode == to1;
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedCount;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "astarArray";
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.AStar.AStarEdge;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TurnWeighting;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.*;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import java.util.PriorityQueue;
+
+/**
+ * An edge based version of A* which considers turn restrictions and turn costs, see
+ * DijkstraEdgeBased. The heuristic is the same as for AStar.
+ * <p/>
+ * @author Peter Karich
+ */
+public class AStarEdgeBased extends AbstractRoutingAlgorithm
+{
+    private final TurnWeighting turnWeighting;
+    private DistanceCalc dist;
+    private int visitedCount;
+    private TIntObjectMap<AStarEdge> fromMap;
+    private PriorityQueue<AStarEdge> prioQueueOpenSet;
+    private AStarEdge currEdge;
+    private int to1 = -1;
+    private double toLat;
+    private double toLon;
+
+    public AStarEdgeBased( Graph g, FlagEncoder encoder, Weighting weighting )
+    {
+        super(g, encoder, weighting);
+        turnWeighting = new TurnWeighting(g, encoder, weighting);
+        initCollections(1000);
+        setApproximation(true);
+    }
+
+    /**
+     * @param approx if true it enables an approximative distance calculation from lat,lon values
+     */
+    public AStarEdgeBased setApproximation( boolean approx )
+    {
+        if (approx)
+            dist = new DistancePlaneProjection();
+        else
+            dist = new DistanceCalcEarth();
+
+        return this;
+    }
+
+    protected void initCollections( int size )
+    {
+        fromMap = new TIntObjectHashMap<AStarEdge>();
+        prioQueueOpenSet = new PriorityQueue<AStarEdge>(size);
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        checkAlreadyRun();
+        turnWeighting.setGraph(graph);
+        toLat = graph.getLatitude(to);
+        toLon = graph.getLongitude(to);
+        to1 = to;
+        currEdge = createEdgeEntry(from, 0);
+        return runAlgo();
+    }
+
+    private Path runAlgo()
+    {
+        double currWeightToGoal, distEstimation;
+        EdgeExplorer explorer = outEdgeExplorer;
+        while (true)
+        {
+            int currNode = currEdge.endNode;
+            visitedCount++;
+            if (finished())
+                break;
+
+            EdgeIterator iter = explorer.setBaseNode(currNode);
+            while (iter.next())
+            {
+                if (!accept(iter))
+                    continue;
+                // no u-turns
+                if (currEdge.edge == iter.getEdge())
+                    continue;
+
+                double alreadyVisitedWeight = weighting.calcWeight(iter) + currEdge.weightToCompare
+                        + turnWeighting.calcTurnWeight(currEdge.edge, currNode, iter.getEdge());
+                if (Double.isInfinite(alreadyVisitedWeight))
+                    continue;
+
+                int key = turnWeighting.createTraversalKey(iter, false);
+                AStarEdge nEdge = fromMap.get(key);
+                if (nEdge == null || nEdge.weightToCompare > alreadyVisitedWeight)
+                {
+                    int neighborNode = iter.getAdjNode();
+                    currWeightToGoal = dist.calcDist(toLat, toLon, graph.getLatitude(neighborNode),
+                            graph.getLongitude(neighborNode));
+                    currWeightToGoal = weighting.getMinWeight(currWeightToGoal);
+                    distEstimation = alreadyVisitedWeight + currWeightToGoal;
+                    // an outdated entry stays in the queue and is skipped in pollEntry
+                    nEdge = new AStarEdge(iter.getEdge(), neighborNode, distEstimation, alreadyVisitedWeight);
+                    nEdge.parent = currEdge;
+                    fromMap.put(key, nEdge);
+                    prioQueueOpenSet.add(nEdge);
+                }
+            }
+
+            currEdge = pollEntry();
+            if (currEdge == null)
+                return createEmptyPath();
+        }
+
+        return extractPath();
+    }
+
+    /**
+     * Instead of the linear PriorityQueue.remove an improved edge gets a new entry, the outdated
+     * entries are skipped here.
+     * <p/>
+     * @return the entry with the smallest estimation or null if the queue is empty
+     */
+    private AStarEdge pollEntry()
+    {
+        while (!prioQueueOpenSet.isEmpty())
+        {
+            AStarEdge entry = prioQueueOpenSet.poll();
+            if (fromMap.get(turnWeighting.createTraversalKey(entry, false)) == entry)
+                return entry;
+        }
+        return null;
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        return new Path(graph, flagEncoder).setEdgeEntry(currEdge).extract();
+    }
+
+    @Override
+    protected AStarEdge createEdgeEntry( int node, double dist )
+    {
+        return new AStarEdge(EdgeIterator.NO_EDGE, node, dist, dist);
+    }
+
+    @Override
+    protected boolean finished()
+    {
+        return currEdge.endNode == to1;
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedCount;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "astarEdgeBased";
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.index.QueryResult;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Looks up all sources and targets in one QueryGraph and delegates the calculation on the
+ * resulting node ids to the subclass.
+ * <p/>
+ * @author Peter Karich
+ */
+public abstract class AbstractMatrixCalculator implements MatrixCalculator
+{
+    protected final Graph graph;
+    protected final FlagEncoder flagEncoder;
+    protected final Weighting weighting;
+    private RoutingContext routingContext;
+
+    public AbstractMatrixCalculator( Graph graph, FlagEncoder encoder, Weighting weighting )
+    {
+        this.graph = graph;
+        this.flagEncoder = encoder;
+        this.weighting = weighting;
+    }
+
+    @Override
+    public MatrixCalculator setRoutingContext( RoutingContext context )
+    {
+        this.routingContext = context;
+        return this;
+    }
+
+    protected RoutingContext getRoutingContext()
+    {
+        if (routingContext == null)
+            routingContext = RoutingContext.getForThread();
+
+        return routingContext;
+    }
+
+    protected QueryGraph createQueryGraph()
+    {
+        return new QueryGraph(graph);
+    }
+
+    @Override
+    public DistanceMatrix calcMatrix( List<QueryResult> sources, List<QueryResult> targets )
+    {
+        // a QueryResult must not be looked up twice, e.g. if it is source and target
+        List<QueryResult> results = new ArrayList<QueryResult>(sources.size() + targets.size());
+        Set<QueryResult> added = new HashSet<QueryResult>(sources.size() + targets.size());
+        for (QueryResult res : sources)
+        {
+            if (added.add(res))
+                results.add(res);
+        }
+        for (QueryResult res : targets)
+        {
+            if (added.add(res))
+                results.add(res);
+        }
+
+        QueryGraph queryGraph = createQueryGraph();
+        queryGraph.lookup(results);
+        DistanceMatrix matrix = new DistanceMatrix(sources.size(), targets.size());
+        calcMatrix(queryGraph, toNodes(sources), toNodes(targets), matrix);
+        return matrix;
+    }
+
+    private static int[] toNodes( List<QueryResult> results )
+    {
+        int[] nodes = new int[results.size()];
+        for (int i = 0; i < nodes.length; i++)
+        {
+            nodes[i] = results.get(i).getClosestNode();
+        }
+        return nodes;
+    }
+
+    /**
+     * Fills the specified matrix with the distances and times between the specified nodes of the
+     * already looked up query graph.
+     */
+    protected abstract void calcMatrix( QueryGraph queryGraph, int[] sourceNodes, int[] targetNodes,
+            DistanceMatrix matrix );
+
+    @Override
+    public String getName()
+    {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName() + "|" + weighting;
+    }
+}
@@ -41,6 +41,7 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
     protected final Weighting weighting;
     protected final FlagEncoder flagEncoder;
     private boolean alreadyRun;
+    private RoutingContext routingContext;
 
     /**
      * @param graph specifies the graph where this algorithm will run on
@@ -66,7 +67,8 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
         return this;
     }
 
-    protected QueryGraph createQueryGraph()
+    @Override
+    public QueryGraph createQueryGraph()
     {
         return new QueryGraph(graph);
     }
@@ -79,8 +81,29 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
         results.add(fromRes);
         results.add(toRes);
         queryGraph.lookup(results);
+        return calcPath(queryGraph, fromRes.getClosestNode(), toRes.getClosestNode());
+    }
+
+    @Override
+    public Path calcPath( QueryGraph queryGraph, int from, int to )
+    {
         setGraph(queryGraph);
-        return calcPath(fromRes.getClosestNode(), toRes.getClosestNode());
+        return calcPath(from, to);
+    }
+
+    @Override
+    public RoutingAlgorithm setRoutingContext( RoutingContext context )
+    {
+        this.routingContext = context;
+        return this;
+    }
+
+    protected RoutingContext getRoutingContext()
+    {
+        if (routingContext == null)
+            routingContext = RoutingContext.getForThread();
+
+        return routingContext;
     }
 
     public RoutingAlgorithm setEdgeFilter( EdgeFilter additionalEdgeFilter )
@@ -0,0 +1,122 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+/**
+ * Same as Dijkstra but without EdgeEntry objects. The shortest path tree is stored in a
+ * ShortestPathTree of the RoutingContext, so a query does not create garbage apart from the
+ * resulting Path.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DijkstraArray extends AbstractRoutingAlgorithm
+{
+    private ShortestPathTree tree;
+    private int visitedNodes;
+    private int from = -1;
+    private int to = -1;
+    private int currNode = -1;
+
+    public DijkstraArray( Graph g, FlagEncoder encoder, Weighting weighting )
+    {
+        super(g, encoder, weighting);
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        checkAlreadyRun();
+        tree = getRoutingContext().getTree(0);
+        tree.init(graph.getNodes());
+        this.from = from;
+        this.to = to;
+        currNode = from;
+        tree.update(from, 0, -1, EdgeIterator.NO_EDGE);
+        // start node does not need to be in the open set
+        tree.poll();
+        return runAlgo();
+    }
+
+    private Path runAlgo()
+    {
+        EdgeExplorer explorer = outEdgeExplorer;
+        while (true)
+        {
+            visitedNodes++;
+            if (finished())
+                break;
+
+            int currEdge = tree.getEdge(currNode);
+            double currWeight = tree.getWeight(currNode);
+            EdgeIterator iter = explorer.setBaseNode(currNode);
+            while (iter.next())
+            {
+                if (!accept(iter))
+                    continue;
+                // minor speed up
+                if (currEdge == iter.getEdge())
+                    continue;
+
+                int tmpNode = iter.getAdjNode();
+                double tmpWeight = weighting.calcWeight(iter) + currWeight;
+                if (tmpWeight < tree.getWeight(tmpNode))
+                    tree.update(tmpNode, tmpWeight, currNode, iter.getEdge());
+            }
+
+            if (tree.isEmpty())
+                return createEmptyPath();
+
+            currNode = tree.poll();
+        }
+        return extractPath();
+    }
+
+    @Override
+    protected boolean finished()
+    {
+        return currNode == to;
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        if (currNode < 0 || !finished())
+            return createEmptyPath();
+
+        return new PathNative(graph, flagEncoder, tree.getParents(), tree.getEdges()).
+                setFromNode(from).setEndNode(to).extract();
+    }
+
+    @Override
+    public String getName()
+    {
+        return "dijkstraArray";
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+}
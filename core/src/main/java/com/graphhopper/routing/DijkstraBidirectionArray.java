@@ -0,0 +1,181 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+/**
+ * Same as DijkstraBidirectionRef but without EdgeEntry objects. Both search directions use a
+ * ShortestPathTree of the RoutingContext, so a query does not create garbage apart from the
+ * resulting Path.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionArray extends AbstractBidirAlgo
+{
+    private ShortestPathTree treeFrom;
+    private ShortestPathTree treeTo;
+    private ShortestPathTree treeOther;
+    private int currFrom = -1;
+    private double currFromWeight;
+    private int currTo = -1;
+    private double currToWeight;
+    private PathBidirNative bestPath;
+
+    public DijkstraBidirectionArray( Graph graph, FlagEncoder encoder, Weighting weighting )
+    {
+        super(graph, encoder, weighting);
+    }
+
+    @Override
+    protected void initPath()
+    {
+        treeFrom = getRoutingContext().getTree(0);
+        treeTo = getRoutingContext().getTree(1);
+
+        int nodes = graph.getNodes();
+        treeFrom.init(nodes);
+        treeTo.init(nodes);
+        bestPath = new PathBidirNative(graph, flagEncoder, treeFrom, treeTo);
+    }
+
+    @Override
+    public void initFrom( int from, double dist )
+    {
+        currFrom = from;
+        currFromWeight = dist;
+        treeFrom.update(from, dist, -1, EdgeIterator.NO_EDGE);
+        if (currTo >= 0)
+        {
+            treeOther = treeTo;
+            updateShortest(from, dist);
+        }
+    }
+
+    @Override
+    public void initTo( int to, double dist )
+    {
+        currTo = to;
+        currToWeight = dist;
+        treeTo.update(to, dist, -1, EdgeIterator.NO_EDGE);
+        if (currFrom >= 0)
+        {
+            treeOther = treeFrom;
+            updateShortest(to, dist);
+        }
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        return bestPath.extract();
+    }
+
+    @Override
+    void checkState( int fromBase, int fromAdj, int toBase, int toAdj )
+    {
+        if (treeFrom.isEmpty() || treeTo.isEmpty())
+            throw new IllegalStateException("Either 'from'-edge or 'to'-edge is inaccessible. From:" + fromBase + ", to:" + toBase);
+    }
+
+    @Override
+    boolean fillEdgesFrom()
+    {
+        if (treeFrom.isEmpty())
+            return false;
+
+        currFrom = treeFrom.poll();
+        currFromWeight = treeFrom.getWeight(currFrom);
+        treeOther = treeTo;
+        fillEdges(currFrom, currFromWeight, treeFrom, outEdgeExplorer);
+        visitedFromCount++;
+        return true;
+    }
+
+    @Override
+    boolean fillEdgesTo()
+    {
+        if (treeTo.isEmpty())
+            return false;
+
+        currTo = treeTo.poll();
+        currToWeight = treeTo.getWeight(currTo);
+        treeOther = treeFrom;
+        fillEdges(currTo, currToWeight, treeTo, inEdgeExplorer);
+        visitedToCount++;
+        return true;
+    }
+
+    // http://www.cs.princeton.edu/courses/archive/spr06/cos423/Handouts/EPP%20shortest%20path%20algorithms.pdf
+    // a node from overlap may not be on the best path!
+    // => when scanning an arc (v, w) in the forward search and w is scanned in the reverseOrder 
+    //    search, update extractPath = μ if df (v) + (v, w) + dr (w) < μ            
+    @Override
+    protected boolean finished()
+    {
+        if (finishedFrom || finishedTo)
+            return true;
+
+        return currFromWeight + currToWeight >= bestPath.getWeight();
+    }
+
+    void fillEdges( int currNode, double currWeight, ShortestPathTree tree, EdgeExplorer explorer )
+    {
+        int currEdge = tree.getEdge(currNode);
+        EdgeIterator iter = explorer.setBaseNode(currNode);
+        while (iter.next())
+        {
+            if (!accept(iter))
+                continue;
+            // minor speed up
+            if (currEdge == iter.getEdge())
+                continue;
+
+            int neighborNode = iter.getAdjNode();
+            double tmpWeight = weighting.calcWeight(iter) + currWeight;
+            if (tree.getWeight(neighborNode) > tmpWeight)
+                tree.update(neighborNode, tmpWeight, currNode, iter.getEdge());
+
+            updateShortest(neighborNode, tree.getWeight(neighborNode));
+        }
+    }
+
+    void updateShortest( int node, double weight )
+    {
+        if (!treeOther.isReached(node))
+            return;
+
+        // update μ
+        double newShortest = weight + treeOther.getWeight(node);
+        if (newShortest < bestPath.getWeight())
+        {
+            bestPath.meetingNode = node;
+            bestPath.setWeight(newShortest);
+        }
+    }
+
+    @Override
+    public String getName()
+    {
+        return "dijkstrabiArray";
+    }
+}
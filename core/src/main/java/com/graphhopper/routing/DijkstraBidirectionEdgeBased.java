@@ -0,0 +1,238 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TurnWeighting;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import java.util.PriorityQueue;
+
+/**
+ * An edge based version of DijkstraBidirectionRef which considers turn restrictions and turn
+ * costs. Both searches settle traversed edges and meet on an edge traversed in the same direction,
+ * so the weight of this edge is contained in both entries and has to be subtracted once.
+ * <p/>
+ * @see DijkstraEdgeBased
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionEdgeBased extends AbstractBidirAlgo
+{
+    private final TurnWeighting turnWeighting;
+    private PriorityQueue<EdgeEntry> openSetFrom;
+    private PriorityQueue<EdgeEntry> openSetTo;
+    private TIntObjectMap<EdgeEntry> bestWeightMapFrom;
+    private TIntObjectMap<EdgeEntry> bestWeightMapTo;
+    private TIntObjectMap<EdgeEntry> bestWeightMapOther;
+    private EdgeEntry currFrom;
+    private EdgeEntry currTo;
+    private PathBidirRef bestPath;
+
+    public DijkstraBidirectionEdgeBased( Graph graph, FlagEncoder encoder, Weighting weighting )
+    {
+        super(graph, encoder, weighting);
+        turnWeighting = new TurnWeighting(graph, encoder, weighting);
+        initCollections(1000);
+    }
+
+    protected void initCollections( int nodes )
+    {
+        openSetFrom = new PriorityQueue<EdgeEntry>(nodes / 10);
+        bestWeightMapFrom = new TIntObjectHashMap<EdgeEntry>(nodes / 10);
+
+        openSetTo = new PriorityQueue<EdgeEntry>(nodes / 10);
+        bestWeightMapTo = new TIntObjectHashMap<EdgeEntry>(nodes / 10);
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        turnWeighting.setGraph(graph);
+        return super.calcPath(from, to);
+    }
+
+    @Override
+    public void initFrom( int from, double dist )
+    {
+        currFrom = createEdgeEntry(from, dist);
+        openSetFrom.add(currFrom);
+        if (currTo != null && currTo.endNode == from)
+            updateBestPath(currFrom, currTo, currFrom.weight + currTo.weight);
+    }
+
+    @Override
+    public void initTo( int to, double dist )
+    {
+        currTo = createEdgeEntry(to, dist);
+        openSetTo.add(currTo);
+        if (currFrom != null && currFrom.endNode == to)
+            updateBestPath(currFrom, currTo, currFrom.weight + currTo.weight);
+    }
+
+    @Override
+    protected void initPath()
+    {
+        bestPath = new PathBidirRef(graph, flagEncoder);
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        return bestPath.extract();
+    }
+
+    @Override
+    void checkState( int fromBase, int fromAdj, int toBase, int toAdj )
+    {
+        if (openSetFrom.isEmpty() || openSetTo.isEmpty())
+            throw new IllegalStateException("Either 'from'-edge or 'to'-edge is inaccessible. From:" + openSetFrom + ", to:" + openSetTo);
+    }
+
+    @Override
+    protected boolean fillEdgesFrom()
+    {
+        EdgeEntry entry = pollEntry(openSetFrom, bestWeightMapFrom, false);
+        if (entry == null)
+            return false;
+
+        currFrom = entry;
+        bestWeightMapOther = bestWeightMapTo;
+        fillEdges(currFrom, openSetFrom, bestWeightMapFrom, outEdgeExplorer, false);
+        visitedFromCount++;
+        return true;
+    }
+
+    @Override
+    protected boolean fillEdgesTo()
+    {
+        EdgeEntry entry = pollEntry(openSetTo, bestWeightMapTo, true);
+        if (entry == null)
+            return false;
+
+        currTo = entry;
+        bestWeightMapOther = bestWeightMapFrom;
+        fillEdges(currTo, openSetTo, bestWeightMapTo, inEdgeExplorer, true);
+        visitedToCount++;
+        return true;
+    }
+
+    @Override
+    protected boolean finished()
+    {
+        if (finishedFrom || finishedTo)
+            return true;
+
+        return currFrom.weight + currTo.weight >= bestPath.getWeight();
+    }
+
+    void fillEdges( EdgeEntry currEdge, PriorityQueue<EdgeEntry> prioQueue,
+            TIntObjectMap<EdgeEntry> shortestWeightMap, EdgeExplorer explorer, boolean reverse )
+    {
+        int currNode = currEdge.endNode;
+        EdgeIterator iter = explorer.setBaseNode(currNode);
+        while (iter.next())
+        {
+            if (!accept(iter))
+                continue;
+            // no u-turns
+            if (currEdge.edge == iter.getEdge())
+                continue;
+
+            double edgeWeight = weighting.calcWeight(iter);
+            double turnWeight = reverse
+                    ? turnWeighting.calcTurnWeight(iter.getEdge(), currNode, currEdge.edge)
+                    : turnWeighting.calcTurnWeight(currEdge.edge, currNode, iter.getEdge());
+            double tmpWeight = edgeWeight + turnWeight + currEdge.weight;
+            if (Double.isInfinite(tmpWeight))
+                continue;
+
+            int key = turnWeighting.createTraversalKey(iter, reverse);
+            EdgeEntry de = shortestWeightMap.get(key);
+            if (de == null)
+            {
+                de = new EdgeEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight);
+                de.parent = currEdge;
+                shortestWeightMap.put(key, de);
+                prioQueue.add(de);
+            } else if (de.weight > tmpWeight)
+            {
+                // the old entry stays in the queue and is skipped in pollEntry
+                de = new EdgeEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight);
+                de.parent = currEdge;
+                shortestWeightMap.put(key, de);
+                prioQueue.add(de);
+            } else
+                continue;
+
+            EdgeEntry entryOther = bestWeightMapOther.get(key);
+            if (entryOther == null)
+                continue;
+
+            // both entries contain the weight of the edge
+            if (reverse)
+                updateBestPath(entryOther, de.parent, tmpWeight + entryOther.weight - edgeWeight);
+            else
+                updateBestPath(de, entryOther.parent, tmpWeight + entryOther.weight - edgeWeight);
+        }
+    }
+
+    /**
+     * Removing an entry from the PriorityQueue is a linear scan. So instead an improved edge gets a
+     * new entry and the outdated entries are skipped here.
+     * <p/>
+     * @return the entry with the smallest weight or null if the queue is empty
+     */
+    private EdgeEntry pollEntry( PriorityQueue<EdgeEntry> prioQueue, TIntObjectMap<EdgeEntry> shortestWeightMap,
+            boolean reverse )
+    {
+        while (!prioQueue.isEmpty())
+        {
+            EdgeEntry entry = prioQueue.poll();
+            // the start entry is not in the map and cannot be outdated
+            if (entry.parent == null
+                    || shortestWeightMap.get(turnWeighting.createTraversalKey(entry, reverse)) == entry)
+                return entry;
+        }
+        return null;
+    }
+
+    /**
+     * @param entryFrom the entry of the forward search ending at the meeting node
+     * @param entryTo the entry of the backward search ending at the meeting node
+     */
+    private void updateBestPath( EdgeEntry entryFrom, EdgeEntry entryTo, double newWeight )
+    {
+        if (newWeight < bestPath.getWeight())
+        {
+            bestPath.setEdgeEntry(entryFrom);
+            bestPath.setEdgeEntryTo(entryTo);
+            bestPath.setWeight(newWeight);
+        }
+    }
+
+    @Override
+    public String getName()
+    {
+        return "dijkstrabiEdgeBased";
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TurnWeighting;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import java.util.PriorityQueue;
+
+/**
+ * An edge based version of Dijkstra which considers turn restrictions and turn costs. Instead of
+ * nodes the traversed edges (including their direction) are settled, which makes it possible to
+ * forbid a turn from one edge into another. U-turns are not allowed.
+ * <p/>
+ * @see TurnWeighting
+ * @author Peter Karich
+ */
+public class DijkstraEdgeBased extends AbstractRoutingAlgorithm
+{
+    private final TurnWeighting turnWeighting;
+    private TIntObjectMap<EdgeEntry> fromMap;
+    private PriorityQueue<EdgeEntry> fromHeap;
+    private int visitedNodes;
+    private int to = -1;
+    private EdgeEntry currEdge;
+
+    public DijkstraEdgeBased( Graph g, FlagEncoder encoder, Weighting weighting )
+    {
+        super(g, encoder, weighting);
+        turnWeighting = new TurnWeighting(g, encoder, weighting);
+        initCollections(1000);
+    }
+
+    protected void initCollections( int size )
+    {
+        fromHeap = new PriorityQueue<EdgeEntry>(size);
+        fromMap = new TIntObjectHashMap<EdgeEntry>(size);
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        checkAlreadyRun();
+        turnWeighting.setGraph(graph);
+        this.to = to;
+        currEdge = createEdgeEntry(from, 0);
+        return runAlgo();
+    }
+
+    private Path runAlgo()
+    {
+        EdgeExplorer explorer = outEdgeExplorer;
+        while (true)
+        {
+            visitedNodes++;
+            if (finished())
+                break;
+
+            int currNode = currEdge.endNode;
+            EdgeIterator iter = explorer.setBaseNode(currNode);
+            while (iter.next())
+            {
+                if (!accept(iter))
+                    continue;
+                // no u-turns
+                if (currEdge.edge == iter.getEdge())
+                    continue;
+
+                double tmpWeight = weighting.calcWeight(iter) + currEdge.weight
+                        + turnWeighting.calcTurnWeight(currEdge.edge, currNode, iter.getEdge());
+                if (Double.isInfinite(tmpWeight))
+                    continue;
+
+                int key = turnWeighting.createTraversalKey(iter, false);
+                EdgeEntry nEdge = fromMap.get(key);
+                if (nEdge == null)
+                {
+                    nEdge = new EdgeEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight);
+                    nEdge.parent = currEdge;
+                    fromMap.put(key, nEdge);
+                    fromHeap.add(nEdge);
+                } else if (nEdge.weight > tmpWeight)
+                {
+                    // the old entry stays in the heap and is skipped in pollEntry
+                    nEdge = new EdgeEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight);
+                    nEdge.parent = currEdge;
+                    fromMap.put(key, nEdge);
+                    fromHeap.add(nEdge);
+                }
+            }
+
+            currEdge = pollEntry();
+            if (currEdge == null)
+                return createEmptyPath();
+        }
+        return extractPath();
+    }
+
+    /**
+     * Removing an entry from the PriorityQueue is a linear scan. So instead an improved edge gets a
+     * new entry and the outdated entries are skipped here.
+     * <p/>
+     * @return the entry with the smallest weight or null if the heap is empty
+     */
+    private EdgeEntry pollEntry()
+    {
+        while (!fromHeap.isEmpty())
+        {
+            EdgeEntry entry = fromHeap.poll();
+            if (fromMap.get(turnWeighting.createTraversalKey(entry, false)) == entry)
+                return entry;
+        }
+        return null;
+    }
+
+    @Override
+    protected boolean finished()
+    {
+        return currEdge.endNode == to;
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        if (currEdge == null || !finished())
+            return createEmptyPath();
+        return new Path(graph, flagEncoder).setEdgeEntry(currEdge).extract();
+    }
+
+    @Override
+    public String getName()
+    {
+        return "dijkstraEdgeBased";
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+}
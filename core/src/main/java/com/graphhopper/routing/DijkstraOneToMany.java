@@ -137,9 +137,10 @@ public class DijkstraOneToMany extends AbstractRoutingAlgorithm
             changedNodes.add(currNode);
         } else
         {
-            // Cached! Re-use existing data structures
+            // Cached! Re-use existing data structures. The weight of an already reached node is
+            // only final if no smaller weight is left in the heap
             int parentNode = parents[to];
-            if (parentNode >= 0 || heap.isEmpty())
+            if (heap.isEmpty() || parentNode >= 0 && weights[to] <= heap.peek_key())
                 return to;
 
             currNode = heap.poll_element();
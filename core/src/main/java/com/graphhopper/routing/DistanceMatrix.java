@@ -0,0 +1,120 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import java.util.Arrays;
+
+/**
+ * Stores the distances and times between all pairs of sources and targets calculated from a
+ * MatrixCalculator. Unreachable pairs are marked as not found.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DistanceMatrix
+{
+    private final int sources;
+    private final int targets;
+    private final double[] distances;
+    private final long[] millis;
+
+    public DistanceMatrix( int sources, int targets )
+    {
+        this.sources = sources;
+        this.targets = targets;
+        distances = new double[sources * targets];
+        Arrays.fill(distances, Double.MAX_VALUE);
+        millis = new long[sources * targets];
+        Arrays.fill(millis, Long.MAX_VALUE);
+    }
+
+    public int getSources()
+    {
+        return sources;
+    }
+
+    public int getTargets()
+    {
+        return targets;
+    }
+
+    public DistanceMatrix set( int source, int target, double distance, long time )
+    {
+        int index = getIndex(source, target);
+        distances[index] = distance;
+        millis[index] = time;
+        return this;
+    }
+
+    /**
+     * @return true if a path from the specified source to the specified target was found
+     */
+    public boolean isFound( int source, int target )
+    {
+        return distances[getIndex(source, target)] != Double.MAX_VALUE;
+    }
+
+    /**
+     * @return distance in meter or Double.MAX_VALUE if not found
+     */
+    public double getDistance( int source, int target )
+    {
+        return distances[getIndex(source, target)];
+    }
+
+    /**
+     * @return time in millis or Long.MAX_VALUE if not found
+     */
+    public long getMillis( int source, int target )
+    {
+        return millis[getIndex(source, target)];
+    }
+
+    private int getIndex( int source, int target )
+    {
+        if (source < 0 || source >= sources)
+            throw new IndexOutOfBoundsException("source " + source + " has to be in [0, " + sources + ")");
+
+        if (target < 0 || target >= targets)
+            throw new IndexOutOfBoundsException("target " + target + " has to be in [0, " + targets + ")");
+
+        return source * targets + target;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < sources; s++)
+        {
+            if (s > 0)
+                sb.append("\n");
+
+            for (int t = 0; t < targets; t++)
+            {
+                if (t > 0)
+                    sb.append(", ");
+
+                if (isFound(s, t))
+                    sb.append(getDistance(s, t)).append("m ").append(getMillis(s, t)).append("ms");
+                else
+                    sb.append("-");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.NotThreadSafe;
+import java.util.List;
+
+/**
+ * Calculates the distances and times between all pairs of sources and targets with less effort
+ * than one RoutingAlgorithm per pair.
+ * <p/>
+ * @author Peter Karich
+ */
+@NotThreadSafe
+public interface MatrixCalculator
+{
+    /**
+     * Calculates the distances and times from every source to every target. The same QueryResult
+     * can be used as source and target.
+     */
+    DistanceMatrix calcMatrix( List<QueryResult> sources, List<QueryResult> targets );
+
+    /**
+     * Specifies the context whose reusable data structures should be used. If not set the context
+     * of the current thread is used. Calculators which do not support it ignore it.
+     */
+    MatrixCalculator setRoutingContext( RoutingContext context );
+
+    /**
+     * @return name of this calculator
+     */
+    String getName();
+}
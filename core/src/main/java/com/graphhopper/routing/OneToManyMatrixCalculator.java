@@ -0,0 +1,70 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+
+/**
+ * Calculates the matrix without any preparation. It needs one DijkstraOneToMany search per source
+ * as the search for the next target continues from the shortest path tree of the previous target
+ * and all arrays are reused for the next source.
+ * <p/>
+ * @author Peter Karich
+ */
+public class OneToManyMatrixCalculator extends AbstractMatrixCalculator
+{
+    public OneToManyMatrixCalculator( Graph graph, FlagEncoder encoder, Weighting weighting )
+    {
+        super(graph, encoder, weighting);
+    }
+
+    @Override
+    protected void calcMatrix( QueryGraph queryGraph, int[] sourceNodes, int[] targetNodes,
+            DistanceMatrix matrix )
+    {
+        DijkstraOneToMany algo = new DijkstraOneToMany(queryGraph, flagEncoder, weighting);
+        for (int s = 0; s < sourceNodes.length; s++)
+        {
+            int from = sourceNodes[s];
+            algo.clear();
+            for (int t = 0; t < targetNodes.length; t++)
+            {
+                int to = targetNodes[t];
+                if (from == to)
+                {
+                    matrix.set(s, t, 0, 0);
+                    continue;
+                }
+
+                Path path = algo.calcPath(from, to);
+                // the cached search returns the target also if the graph was fully explored
+                if (path.isFound() && algo.getWeight(to) != Double.MAX_VALUE)
+                    matrix.set(s, t, path.getDistance(), path.getMillis());
+            }
+        }
+        algo.close();
+    }
+
+    @Override
+    public String getName()
+    {
+        return "oneToManyMatrix";
+    }
+}
@@ -44,7 +44,7 @@ public class Path
     protected long millis;
     private boolean found;
     protected EdgeEntry edgeEntry;
-    final StopWatch extractSW = new StopWatch("extract");
+    protected final StopWatch extractSW = new StopWatch("extract");
     private int fromNode = -1;
     protected int endNode = -1;
     private TIntList edgeIds;
@@ -119,7 +119,7 @@ public class Path
         return this;
     }
 
-    void reverseOrder()
+    protected void reverseOrder()
     {
         if (!reverseOrder)
             throw new IllegalStateException("Switching order multiple times is not supported");
@@ -0,0 +1,80 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+
+/**
+ * This class creates a Path from the two ShortestPathTree's of DijkstraBidirectionArray meeting at
+ * one node.
+ * <p/>
+ * @author Peter Karich
+ */
+public class PathBidirNative extends Path
+{
+    private final ShortestPathTree treeFrom;
+    private final ShortestPathTree treeTo;
+    int meetingNode = -1;
+
+    public PathBidirNative( Graph g, FlagEncoder encoder, ShortestPathTree treeFrom, ShortestPathTree treeTo )
+    {
+        super(g, encoder);
+        this.treeFrom = treeFrom;
+        this.treeTo = treeTo;
+    }
+
+    /**
+     * Extracts path from two shortest-path-tree
+     */
+    @Override
+    public Path extract()
+    {
+        if (meetingNode < 0)
+            return this;
+
+        extractSW.start();
+        int node = meetingNode;
+        while (true)
+        {
+            int edgeId = treeFrom.getEdge(node);
+            if (!EdgeIterator.Edge.isValid(edgeId))
+                break;
+
+            processEdge(edgeId, node);
+            node = treeFrom.getParent(node);
+        }
+        setFromNode(node);
+        reverseOrder();
+
+        node = meetingNode;
+        while (true)
+        {
+            int edgeId = treeTo.getEdge(node);
+            if (!EdgeIterator.Edge.isValid(edgeId))
+                break;
+
+            node = treeTo.getParent(node);
+            processEdge(edgeId, node);
+        }
+        setEndNode(node);
+        extractSW.stop();
+        return setFound(true);
+    }
+}
@@ -234,19 +234,13 @@ public class QueryGraph implements Graph {
         // edges between base and snapped point
         EdgeIteratorState baseEdge = new VirtualEdgeIState(virtEdgeId + VE_BASE, prevNodeId, nodeId,
                 baseDistance, closestEdge.getFlags(), closestEdge.getName(), basePoints);
-        updateDistance(baseEdge);
         EdgeIteratorState baseReverseEdge = new VirtualEdgeIState(virtEdgeId + VE_BASE_REV, nodeId, prevNodeId,
                 baseDistance, swappedFlags, closestEdge.getName(), baseReversePoints);
-        updateDistance(baseReverseEdge);
 
         virtualEdges.add(baseEdge);
         virtualEdges.add(baseReverseEdge);
     }
 
-    // For workaround in CH algorithms: To set the weight to the distance of the edge
-    protected void updateDistance(EdgeIteratorState edge) {
-    }
-
     @Override
     public int getNodes() {
         return virtualNodes.getSize() + mainNodes;
@@ -298,6 +292,29 @@ public class QueryGraph implements Graph {
                 + ". found edges were:" + eis + ", " + eis2);
     }
 
+    /**
+     * @return the edge of the main graph which was split into the specified virtual edge or the
+     * specified edge itself if it is not virtual. E.g. necessary to look up turn costs.
+     */
+    public int getOriginalEdge(int edgeId) {
+        if (edgeId < mainEdges)
+            return edgeId;
+
+        // see virtualEdges comment above: 4 edges per virtual node in the order of queryResults
+        return queryResults.get((edgeId - mainEdges) / 4).getClosestEdge().getEdge();
+    }
+
+    /**
+     * The two directions of a virtual edge have different ids. This method returns the same id
+     * for both directions, like it is the case for the edges of the main graph.
+     */
+    public int getUndirectedEdge(int edgeId) {
+        if (edgeId < mainEdges)
+            return edgeId;
+
+        return edgeId - (edgeId - mainEdges) % 2;
+    }
+
     @Override
     public EdgeExplorer createEdgeExplorer(final EdgeFilter edgeFilter) {
         if (!isInitialized())
@@ -447,7 +464,7 @@ public class QueryGraph implements Graph {
         return new UnsupportedOperationException("QueryGraph cannot be modified.");
     }
 
-    static class VirtualEdgeIterator implements EdgeIterator {
+    static class VirtualEdgeIterator implements EdgeIterator, /* for shortcuts of a LevelGraph: */ EdgeSkipIterator {
 
         private final List<EdgeIteratorState> edges;
         private int current;
@@ -501,6 +518,11 @@ public class QueryGraph implements Graph {
             return edges.get(current).fetchWayGeometry(mode);
         }
 
+        @Override
+        public PointList fetchWayGeometry(int mode, PointList points) {
+            return edges.get(current).fetchWayGeometry(mode, points);
+        }
+
         @Override
         public EdgeIteratorState setWayGeometry(PointList list) {
             return edges.get(current).setWayGeometry(list);
@@ -556,6 +578,27 @@ public class QueryGraph implements Graph {
         {
             edges.get(current).copyProperties(edge);
         }
+
+        @Override
+        public boolean isShortcut() {
+            EdgeIteratorState edge = edges.get(current);
+            return edge instanceof EdgeSkipIterState && ((EdgeSkipIterState) edge).isShortcut();
+        }
+
+        @Override
+        public int getSkippedEdge1() {
+            return ((EdgeSkipIterState) edges.get(current)).getSkippedEdge1();
+        }
+
+        @Override
+        public int getSkippedEdge2() {
+            return ((EdgeSkipIterState) edges.get(current)).getSkippedEdge2();
+        }
+
+        @Override
+        public void setSkippedEdges(int edge1, int edge2) {
+            ((EdgeSkipIterState) edges.get(current)).setSkippedEdges(edge1, edge2);
+        }
     }
 
     /**
@@ -619,6 +662,21 @@ public class QueryGraph implements Graph {
             throw new UnsupportedOperationException("Illegal mode:" + mode);
         }
 
+        @Override
+        public PointList fetchWayGeometry(int mode, PointList points) {
+            if (mode < 0 || mode > 3)
+                throw new UnsupportedOperationException("Illegal mode:" + mode);
+
+            // the point list contains the base and the adjacent node
+            points.clear();
+            int from = (mode & 1) != 0 ? 0 : 1;
+            int end = (mode & 2) != 0 ? pointList.getSize() : pointList.getSize() - 1;
+            for (int i = from; i < end; i++) {
+                points.add(pointList.getLatitude(i), pointList.getLongitude(i));
+            }
+            return points;
+        }
+
         @Override
         public EdgeIteratorState setWayGeometry(PointList list) {
             throw new UnsupportedOperationException("Not supported for in-memory edge. Set when creating it.");
@@ -46,6 +46,27 @@ public interface RoutingAlgorithm
      */
     Path calcPath( QueryResult from, QueryResult to );
 
+    /**
+     * Calculates the best path between the specified nodes of a QueryGraph which was already
+     * created via createQueryGraph and looked up. Use this to share one QueryGraph between several
+     * legs of a route with via points.
+     * <p/>
+     * @return the path. Call the method found() to make sure that the path is valid.
+     */
+    Path calcPath( QueryGraph queryGraph, int from, int to );
+
+    /**
+     * Creates a QueryGraph on top of the graph of this algorithm, suitable to be passed to
+     * calcPath(QueryGraph, int, int) of this and other algorithms of the same kind.
+     */
+    QueryGraph createQueryGraph();
+
+    /**
+     * Specifies the context whose reusable data structures should be used. If not set the context
+     * of the current thread is used. Algorithms which do not support it ignore it.
+     */
+    RoutingAlgorithm setRoutingContext( RoutingContext context );
+
     /**
      * @return name of this algorithm
      */
@@ -31,7 +31,11 @@ public class RoutingAlgorithmFactory
 
     /**
      * @param algo possible values are astar (A* algorithm), astarbi (bidirectional A*) dijkstra
-     * (Dijkstra), dijkstrabi and dijkstraNative (a bit faster bidirectional Dijkstra).
+     * (Dijkstra), dijkstrabi and dijkstraNative (a bit faster bidirectional Dijkstra). The variants
+     * dijkstraArray, astarArray and dijkstrabiArray store the shortest path tree in arrays which
+     * are reused for subsequent queries of the same thread. The edge based variants
+     * dijkstraEdgeBased, astarEdgeBased and dijkstrabiEdgeBased consider turn restrictions and
+     * turn costs.
      */
     public RoutingAlgorithmFactory( String algo, boolean approx )
     {
@@ -39,6 +43,32 @@ public class RoutingAlgorithmFactory
         this.approx = approx;
     }
 
+    /**
+     * @return the edge based variant of the specified algorithm or the algorithm itself if there
+     * is no such variant.
+     */
+    public static String toEdgeBased( String algo )
+    {
+        if ("dijkstra".equalsIgnoreCase(algo))
+            return "dijkstraEdgeBased";
+        else if ("astar".equalsIgnoreCase(algo))
+            return "astarEdgeBased";
+        else if ("dijkstrabi".equalsIgnoreCase(algo))
+            return "dijkstrabiEdgeBased";
+        return algo;
+    }
+
+    /**
+     * @return true if the specified algorithm stores its shortest path trees in a RoutingContext.
+     * All other algorithms, including the ones of a contraction hierarchies preparation, ignore
+     * the context.
+     */
+    public static boolean usesRoutingContext( String algo )
+    {
+        return "dijkstraArray".equalsIgnoreCase(algo) || "astarArray".equalsIgnoreCase(algo)
+                || "dijkstrabiArray".equalsIgnoreCase(algo);
+    }
+
     public RoutingAlgorithm createAlgo( Graph g, FlagEncoder encoder, Weighting weighting )
     {
         if ("dijkstrabi".equalsIgnoreCase(algoStr))
@@ -53,6 +83,24 @@ public class RoutingAlgorithmFactory
         } else if ("astarbi".equalsIgnoreCase(algoStr))
         {
             return new AStarBidirection(g, encoder, weighting).setApproximation(approx);
+        } else if ("dijkstraArray".equalsIgnoreCase(algoStr))
+        {
+            return new DijkstraArray(g, encoder, weighting);
+        } else if ("astarArray".equalsIgnoreCase(algoStr))
+        {
+            return new AStarArray(g, encoder, weighting).setApproximation(approx);
+        } else if ("dijkstrabiArray".equalsIgnoreCase(algoStr))
+        {
+            return new DijkstraBidirectionArray(g, encoder, weighting);
+        } else if ("dijkstraEdgeBased".equalsIgnoreCase(algoStr))
+        {
+            return new DijkstraEdgeBased(g, encoder, weighting);
+        } else if ("astarEdgeBased".equalsIgnoreCase(algoStr))
+        {
+            return new AStarEdgeBased(g, encoder, weighting).setApproximation(approx);
+        } else if ("dijkstrabiEdgeBased".equalsIgnoreCase(algoStr))
+        {
+            return new DijkstraBidirectionEdgeBased(g, encoder, weighting);
         } else if ("dijkstraOneToMany".equalsIgnoreCase(algoStr))
         {
             return new DijkstraOneToMany(g, encoder, weighting);
@@ -0,0 +1,108 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.util.NotThreadSafe;
+
+/**
+ * Holds the data structures of a routing algorithm which are expensive to create and can be reused
+ * for subsequent queries, like the shortest path trees sized to the graph. A context must be used
+ * from only one thread at a time: either get the one of the current thread via getForThread or
+ * acquire one from a RoutingContextPool.
+ * <p/>
+ * Attention: only DijkstraArray, AStarArray, DijkstraBidirectionArray and MatrixCalculatorCH use
+ * the context. All other algorithms, e.g. the default DijkstraBidirectionRef and the algorithms
+ * of PrepareContractionHierarchies, still create their own collections for every query, see
+ * RoutingAlgorithmFactory.usesRoutingContext.
+ * <p/>
+ * @author Peter Karich
+ */
+@NotThreadSafe
+public class RoutingContext
+{
+    private static final ThreadLocal<RoutingContext> THREAD_CONTEXT = new ThreadLocal<RoutingContext>()
+    {
+        @Override
+        protected RoutingContext initialValue()
+        {
+            return new RoutingContext();
+        }
+    };
+
+    /**
+     * @return the context of the current thread which is used if an algorithm has no context
+     * specified.
+     */
+    public static RoutingContext getForThread()
+    {
+        return THREAD_CONTEXT.get();
+    }
+    private final ShortestPathTree[] trees;
+    private int usages;
+
+    public RoutingContext()
+    {
+        trees = new ShortestPathTree[]
+        {
+            new ShortestPathTree(), new ShortestPathTree()
+        };
+    }
+
+    /**
+     * @param index 0 for the forward search and 1 for the backward search
+     */
+    public ShortestPathTree getTree( int index )
+    {
+        return trees[index];
+    }
+
+    /**
+     * Marks the start of a new request.
+     */
+    void use()
+    {
+        usages++;
+    }
+
+    /**
+     * @return how often this context was acquired from a pool
+     */
+    public int getUsages()
+    {
+        return usages;
+    }
+
+    /**
+     * @return the approximated memory usage in bytes
+     */
+    public long getMemoryUsage()
+    {
+        long bytes = 0;
+        for (ShortestPathTree tree : trees)
+        {
+            bytes += tree.getMemoryUsage();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "usages:" + usages + ", memory:" + getMemoryUsage() / (1 << 20) + "MB";
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A bounded pool of RoutingContext objects. If no idle context is available a new one is created,
+ * so acquire never blocks. At most maxIdle contexts are kept when released, all other are left to
+ * the garbage collector. The statistics help to find a good size: if many contexts are discarded
+ * the pool is too small, if the peak of contexts in use is always smaller than the size it is too
+ * big.
+ * <p/>
+ * This class is thread safe.
+ * <p/>
+ * @author Peter Karich
+ */
+public class RoutingContextPool
+{
+    private final Deque<RoutingContext> idle = new ArrayDeque<RoutingContext>();
+    private final int maxIdle;
+    private long acquired;
+    private long created;
+    private long discarded;
+    private int inUse;
+    private int maxInUse;
+
+    /**
+     * @param maxIdle the maximum number of contexts kept for reuse, e.g. the number of threads
+     * doing requests
+     */
+    public RoutingContextPool( int maxIdle )
+    {
+        if (maxIdle < 0)
+            throw new IllegalArgumentException("maxIdle cannot be negative " + maxIdle);
+
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * @return an unused context. Call release after the request is finished.
+     */
+    public synchronized RoutingContext acquire()
+    {
+        acquired++;
+        RoutingContext ctx = idle.pollFirst();
+        if (ctx == null)
+        {
+            created++;
+            ctx = new RoutingContext();
+        }
+
+        inUse++;
+        if (inUse > maxInUse)
+            maxInUse = inUse;
+
+        ctx.use();
+        return ctx;
+    }
+
+    /**
+     * Returns the specified context into this pool. It must not be used afterwards.
+     */
+    public synchronized void release( RoutingContext ctx )
+    {
+        inUse--;
+        if (idle.size() < maxIdle)
+            // LIFO => the most recently used contexts are probably big enough and still in the cache
+            idle.addFirst(ctx);
+        else
+            discarded++;
+    }
+
+    public int getMaxIdle()
+    {
+        return maxIdle;
+    }
+
+    public synchronized int getIdle()
+    {
+        return idle.size();
+    }
+
+    public synchronized int getInUse()
+    {
+        return inUse;
+    }
+
+    /**
+     * @return the maximum number of contexts used at the same time
+     */
+    public synchronized int getMaxInUse()
+    {
+        return maxInUse;
+    }
+
+    public synchronized long getAcquired()
+    {
+        return acquired;
+    }
+
+    /**
+     * @return how often a new context had to be created as no idle one was available
+     */
+    public synchronized long getCreated()
+    {
+        return created;
+    }
+
+    /**
+     * @return how often a released context was thrown away as the pool was full
+     */
+    public synchronized long getDiscarded()
+    {
+        return discarded;
+    }
+
+    /**
+     * @return the approximated memory usage in bytes of the idle contexts
+     */
+    public synchronized long getIdleMemoryUsage()
+    {
+        long bytes = 0;
+        for (RoutingContext ctx : idle)
+        {
+            bytes += ctx.getMemoryUsage();
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "maxIdle:" + maxIdle + ", idle:" + idle.size() + ", inUse:" + inUse + ", maxInUse:" + maxInUse
+                + ", acquired:" + acquired + ", created:" + created + ", discarded:" + discarded
+                + ", idleMemory:" + getIdleMemoryUsage() / (1 << 20) + "MB";
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.util.EdgeIterator;
+import java.util.Arrays;
+
+/**
+ * The shortest path tree of one search direction stored in parallel primitive arrays indexed by
+ * node id plus the open set. Instead of clearing the arrays for every query a version stamp marks
+ * the entries of the current search, so one instance can be reused for many queries without
+ * creating garbage. The instances are usually owned by a RoutingContext.
+ * <p/>
+ * Attention: the arrays are as big as the graph, so prefer it for many queries on big graphs.
+ * <p/>
+ * @author Peter Karich
+ */
+public class ShortestPathTree
+{
+    // some room for the virtual nodes of a QueryGraph to avoid growing for every query
+    private static final int GROW_SLACK = 100;
+    private int version;
+    private int[] versions;
+    private double[] weights;
+    private int[] parents;
+    private int[] edges;
+    private final IntDoubleBinHeap heap;
+
+    public ShortestPathTree()
+    {
+        this(0);
+    }
+
+    public ShortestPathTree( int nodes )
+    {
+        versions = new int[nodes];
+        weights = new double[nodes];
+        parents = new int[nodes];
+        edges = new int[nodes];
+        heap = new IntDoubleBinHeap(1000, nodes);
+    }
+
+    /**
+     * Prepares this tree for a new search on a graph with the specified number of nodes. All
+     * entries of a previous search are invalidated in constant time.
+     */
+    public ShortestPathTree init( int nodes )
+    {
+        if (nodes > versions.length)
+        {
+            int newCapacity = nodes + GROW_SLACK;
+            versions = new int[newCapacity];
+            weights = new double[newCapacity];
+            parents = new int[newCapacity];
+            edges = new int[newCapacity];
+            heap.ensureElementCapacity(newCapacity);
+        } else if (version == Integer.MAX_VALUE)
+        {
+            Arrays.fill(versions, 0);
+            version = 0;
+        }
+
+        version++;
+        heap.clear();
+        return this;
+    }
+
+    /**
+     * Sets the weight, parent node and edge of the specified node and adds it to the open set or
+     * updates its key if it is already contained.
+     */
+    public void update( int node, double weight, int parent, int edge )
+    {
+        update(node, weight, parent, edge, weight);
+    }
+
+    /**
+     * @param key the value used to sort the open set, e.g. the weight plus the estimation to the
+     * goal for A*
+     */
+    public void update( int node, double weight, int parent, int edge, double key )
+    {
+        if (versions[node] != version)
+        {
+            versions[node] = version;
+            heap.insert_(key, node);
+        } else if (!heap.update_(key, node))
+        {
+            // already polled, e.g. for A* with an inconsistent estimation
+            heap.insert_(key, node);
+        }
+
+        weights[node] = weight;
+        parents[node] = parent;
+        edges[node] = edge;
+    }
+
+    public boolean isReached( int node )
+    {
+        return versions[node] == version;
+    }
+
+    /**
+     * @return the best known weight of the specified node or Double.MAX_VALUE if not reached
+     */
+    public double getWeight( int node )
+    {
+        if (versions[node] != version)
+            return Double.MAX_VALUE;
+
+        return weights[node];
+    }
+
+    /**
+     * @return the parent node or -1 if the node was not reached
+     */
+    public int getParent( int node )
+    {
+        if (versions[node] != version)
+            return -1;
+
+        return parents[node];
+    }
+
+    /**
+     * @return the edge to the parent node or NO_EDGE if the node was not reached or it is the start
+     */
+    public int getEdge( int node )
+    {
+        if (versions[node] != version)
+            return EdgeIterator.NO_EDGE;
+
+        return edges[node];
+    }
+
+    /**
+     * The arrays are only valid for nodes which are reached in the current search and change if
+     * the tree grows.
+     */
+    int[] getParents()
+    {
+        return parents;
+    }
+
+    int[] getEdges()
+    {
+        return edges;
+    }
+
+    public boolean isEmpty()
+    {
+        return heap.isEmpty();
+    }
+
+    /**
+     * Removes the node with the smallest key from the open set.
+     */
+    public int poll()
+    {
+        return heap.poll_element();
+    }
+
+    public int getCapacity()
+    {
+        return versions.length;
+    }
+
+    /**
+     * @return the approximated memory usage in bytes
+     */
+    public long getMemoryUsage()
+    {
+        // versions, weights, parents, edges and the element index of the heap
+        return (long) getCapacity() * (4 + 8 + 4 + 4 + 4) + (long) heap.getCapacity() * (4 + 4);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "version:" + version + ", capacity:" + getCapacity() + ", open:" + heap.getSize();
+    }
+}
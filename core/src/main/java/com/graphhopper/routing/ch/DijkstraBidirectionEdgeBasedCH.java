@@ -0,0 +1,479 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithm;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TurnWeighting;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.EdgeSkipIterState;
+import com.graphhopper.util.GHUtility;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import java.util.PriorityQueue;
+
+/**
+ * The bidirectional query for edge based contraction hierarchies. Both searches start with a small
+ * search on the original graph (or its QueryGraph) which leads from the start over the virtual
+ * nodes to the first edges. These traversed edges are the nodes of the line graph where the
+ * upward searches of the contraction hierarchies continue. The backward search starts at all
+ * edges from which a turn into the final edge is allowed, with the turn costs as initial weight.
+ * <p/>
+ * The found shortcuts are unpacked into the traversed edges and mapped back to the original graph,
+ * so the returned path is a normal Path of the original graph.
+ * <p/>
+ * @see PrepareEdgeBasedContractionHierarchies
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionEdgeBasedCH extends AbstractRoutingAlgorithm
+{
+    private final Graph baseGraph;
+    private final int baseNodes;
+    private final LevelGraph lineGraph;
+    private final TurnWeighting turnWeighting;
+    private final EdgeExplorer baseInExplorer;
+    private final EdgeExplorer lineOutExplorer;
+    private final EdgeExplorer lineInExplorer;
+    private final TIntObjectMap<EdgeEntry> fromMap = new TIntObjectHashMap<EdgeEntry>();
+    private final TIntObjectMap<EdgeEntry> toMap = new TIntObjectHashMap<EdgeEntry>();
+    private final PriorityQueue<EdgeEntry> fromHeap = new PriorityQueue<EdgeEntry>();
+    private final PriorityQueue<EdgeEntry> toHeap = new PriorityQueue<EdgeEntry>();
+    // the path in the graph from the start to every first traversed edge and from every last one to the end
+    private final TIntObjectMap<EdgeEntry> fromAccess = new TIntObjectHashMap<EdgeEntry>();
+    private final TIntObjectMap<EdgeEntry> toAccess = new TIntObjectHashMap<EdgeEntry>();
+    private EdgeEntry bestFrom;
+    private EdgeEntry bestTo;
+    // a path which is not leaving the virtual nodes, e.g. if start and end are on the same edge
+    private EdgeEntry bestDirect;
+    private double bestWeight = Double.MAX_VALUE;
+    private int visitedNodes;
+    private int from;
+    private int to;
+
+    /**
+     * @param graph the original graph containing the turn costs
+     * @param lineGraph the contracted line graph of the specified graph
+     */
+    public DijkstraBidirectionEdgeBasedCH( Graph graph, FlagEncoder encoder, Weighting weighting, LevelGraph lineGraph )
+    {
+        super(graph, encoder, weighting);
+        this.baseGraph = graph;
+        this.baseNodes = graph.getNodes();
+        this.lineGraph = lineGraph;
+        turnWeighting = new TurnWeighting(graph, encoder, weighting);
+        baseInExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, true, false));
+        lineOutExplorer = lineGraph.createEdgeExplorer(new DefaultEdgeFilter(encoder, false, true));
+        lineInExplorer = lineGraph.createEdgeExplorer(new DefaultEdgeFilter(encoder, true, false));
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        checkAlreadyRun();
+        this.from = from;
+        this.to = to;
+        if (from == to)
+        {
+            bestDirect = createEdgeEntry(from, 0);
+            bestWeight = 0;
+            return extractPath();
+        }
+
+        initFrom();
+        initTo();
+        runAlgo();
+        return extractPath();
+    }
+
+    private boolean isVirtual( int node )
+    {
+        return node >= baseNodes;
+    }
+
+    /**
+     * @return the node of the line graph for the specified edge of the current graph which is
+     * traversed into adjNode
+     */
+    private int createLineNode( int edge, int adjNode )
+    {
+        if (graph instanceof QueryGraph)
+            edge = ((QueryGraph) graph).getOriginalEdge(edge);
+
+        EdgeIteratorState origEdge = baseGraph.getEdgeProps(edge, adjNode);
+        return GHUtility.createEdgeKey(origEdge.getBaseNode(), adjNode, edge);
+    }
+
+    private void initFrom()
+    {
+        // search over the virtual nodes until the first edges are completely traversed
+        TIntObjectMap<EdgeEntry> visited = new TIntObjectHashMap<EdgeEntry>();
+        PriorityQueue<EdgeEntry> heap = new PriorityQueue<EdgeEntry>();
+        EdgeEntry start = createEdgeEntry(from, 0);
+        visited.put(from, start);
+        heap.add(start);
+        while (!heap.isEmpty())
+        {
+            EdgeEntry curr = heap.poll();
+            EdgeIterator iter = outEdgeExplorer.setBaseNode(curr.endNode);
+            while (iter.next())
+            {
+                if (!accept(iter))
+                    continue;
+
+                int adj = iter.getAdjNode();
+                double tmpWeight = curr.weight + weighting.calcWeight(iter);
+                EdgeEntry entry = new EdgeEntry(iter.getEdge(), adj, tmpWeight);
+                entry.parent = curr;
+                if (adj == to && tmpWeight < bestWeight)
+                {
+                    bestDirect = entry;
+                    bestWeight = tmpWeight;
+                }
+
+                if (isVirtual(adj))
+                {
+                    EdgeEntry old = visited.get(adj);
+                    if (old != null && old.weight <= tmpWeight)
+                        continue;
+
+                    if (old != null)
+                        heap.remove(old);
+                    visited.put(adj, entry);
+                    heap.add(entry);
+                } else if (adj != from)
+                {
+                    addStart(fromMap, fromHeap, fromAccess, createLineNode(iter.getEdge(), adj), tmpWeight, entry);
+                }
+            }
+        }
+    }
+
+    private void initTo()
+    {
+        EdgeEntry target = createEdgeEntry(to, 0);
+        if (!isVirtual(to))
+        {
+            addTargetEdges(target, EdgeIterator.NO_EDGE);
+            return;
+        }
+
+        TIntObjectMap<EdgeEntry> visited = new TIntObjectHashMap<EdgeEntry>();
+        PriorityQueue<EdgeEntry> heap = new PriorityQueue<EdgeEntry>();
+        visited.put(to, target);
+        heap.add(target);
+        while (!heap.isEmpty())
+        {
+            EdgeEntry curr = heap.poll();
+            EdgeIterator iter = inEdgeExplorer.setBaseNode(curr.endNode);
+            while (iter.next())
+            {
+                if (!accept(iter))
+                    continue;
+
+                int adj = iter.getAdjNode();
+                double tmpWeight = curr.weight + weighting.calcWeight(iter);
+                EdgeEntry entry = new EdgeEntry(iter.getEdge(), adj, tmpWeight);
+                entry.parent = curr;
+                if (isVirtual(adj))
+                {
+                    EdgeEntry old = visited.get(adj);
+                    if (old != null && old.weight <= tmpWeight)
+                        continue;
+
+                    if (old != null)
+                        heap.remove(old);
+                    visited.put(adj, entry);
+                    heap.add(entry);
+                } else
+                {
+                    int edge = iter.getEdge();
+                    if (graph instanceof QueryGraph)
+                        edge = ((QueryGraph) graph).getOriginalEdge(edge);
+                    addTargetEdges(entry, edge);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds all edges of the original graph as start of the backward search from which the turn into
+     * the specified edge is allowed.
+     */
+    private void addTargetEdges( EdgeEntry entry, int nextEdge )
+    {
+        int node = entry.endNode;
+        EdgeIterator iter = baseInExplorer.setBaseNode(node);
+        while (iter.next())
+        {
+            // no u-turns
+            if (iter.getEdge() == nextEdge)
+                continue;
+
+            double tmpWeight = entry.weight + turnWeighting.calcTurnWeight(iter.getEdge(), node, nextEdge);
+            if (Double.isInfinite(tmpWeight))
+                continue;
+
+            addStart(toMap, toHeap, toAccess, GHUtility.createEdgeKey(iter.getAdjNode(), node, iter.getEdge()),
+                    tmpWeight, entry);
+        }
+    }
+
+    private void addStart( TIntObjectMap<EdgeEntry> map, PriorityQueue<EdgeEntry> heap,
+            TIntObjectMap<EdgeEntry> access, int lineNode, double weight, EdgeEntry accessEntry )
+    {
+        EdgeEntry entry = map.get(lineNode);
+        if (entry == null)
+        {
+            entry = createEdgeEntry(lineNode, weight);
+            map.put(lineNode, entry);
+        } else if (entry.weight > weight)
+        {
+            heap.remove(entry);
+            entry.weight = weight;
+        } else
+            return;
+
+        access.put(lineNode, accessEntry);
+        heap.add(entry);
+    }
+
+    private void runAlgo()
+    {
+        TIntObjectMap<EdgeEntry> smallerMap = fromMap.size() < toMap.size() ? fromMap : toMap;
+        TIntObjectMap<EdgeEntry> otherMap = smallerMap == fromMap ? toMap : fromMap;
+        for (EdgeEntry entry : smallerMap.valueCollection())
+        {
+            EdgeEntry otherEntry = otherMap.get(entry.endNode);
+            if (otherEntry == null)
+                continue;
+
+            if (smallerMap == fromMap)
+                updateBestPath(entry, otherEntry);
+            else
+                updateBestPath(otherEntry, entry);
+        }
+
+        // we need to finish BOTH searches as in the node based contraction hierarchies
+        boolean finishedFrom = false;
+        boolean finishedTo = false;
+        while (!finishedFrom || !finishedTo)
+        {
+            if (!finishedFrom)
+                finishedFrom = !fillEdges(fromHeap, fromMap, toMap, lineOutExplorer, false);
+
+            if (!finishedTo)
+                finishedTo = !fillEdges(toHeap, toMap, fromMap, lineInExplorer, true);
+        }
+    }
+
+    private boolean fillEdges( PriorityQueue<EdgeEntry> heap, TIntObjectMap<EdgeEntry> map,
+            TIntObjectMap<EdgeEntry> otherMap, EdgeExplorer explorer, boolean reverse )
+    {
+        if (heap.isEmpty())
+            return false;
+
+        EdgeEntry curr = heap.poll();
+        if (curr.weight >= bestWeight)
+            return false;
+
+        visitedNodes++;
+        EdgeIterator iter = explorer.setBaseNode(curr.endNode);
+        while (iter.next())
+        {
+            // the distance of the line graph is the weight, also for shortcuts
+            double tmpWeight = curr.weight + iter.getDistance();
+            int adj = iter.getAdjNode();
+            EdgeEntry entry = map.get(adj);
+            if (entry == null)
+            {
+                entry = new EdgeEntry(iter.getEdge(), adj, tmpWeight);
+                map.put(adj, entry);
+            } else if (entry.weight > tmpWeight)
+            {
+                heap.remove(entry);
+                entry.edge = iter.getEdge();
+                entry.weight = tmpWeight;
+            } else
+                continue;
+
+            entry.parent = curr;
+            heap.add(entry);
+            EdgeEntry otherEntry = otherMap.get(adj);
+            if (otherEntry != null)
+            {
+                if (reverse)
+                    updateBestPath(otherEntry, entry);
+                else
+                    updateBestPath(entry, otherEntry);
+            }
+        }
+        return true;
+    }
+
+    private void updateBestPath( EdgeEntry entryFrom, EdgeEntry entryTo )
+    {
+        double weight = entryFrom.weight + entryTo.weight;
+        if (weight < bestWeight)
+        {
+            bestWeight = weight;
+            bestFrom = entryFrom;
+            bestTo = entryTo;
+            bestDirect = null;
+        }
+    }
+
+    @Override
+    protected boolean finished()
+    {
+        return fromHeap.isEmpty() && toHeap.isEmpty();
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        if (bestDirect == null && bestFrom == null)
+            return createEmptyPath();
+
+        EdgeEntry goal = bestDirect == null ? createGoalEntry() : bestDirect;
+        Path path = new Path(graph, flagEncoder).setEdgeEntry(goal).extract();
+        path.setWeight(bestWeight);
+        return path;
+    }
+
+    /**
+     * Unpacks the shortcuts of the best path and creates the edge entries of the original graph.
+     */
+    private EdgeEntry createGoalEntry()
+    {
+        TIntArrayList fromEdges = new TIntArrayList();
+        EdgeEntry curr = bestFrom;
+        while (EdgeIterator.Edge.isValid(curr.edge))
+        {
+            fromEdges.add(curr.edge);
+            fromEdges.add(curr.endNode);
+            curr = curr.parent;
+        }
+
+        int firstLineNode = curr.endNode;
+        TIntArrayList lineNodes = new TIntArrayList();
+        int base = firstLineNode;
+        for (int i = fromEdges.size() - 2; i >= 0; i -= 2)
+        {
+            int adj = fromEdges.get(i + 1);
+            expandLineEdge(fromEdges.get(i), base, adj, lineNodes);
+            base = adj;
+        }
+
+        curr = bestTo;
+        while (EdgeIterator.Edge.isValid(curr.edge))
+        {
+            expandLineEdge(curr.edge, curr.endNode, curr.parent.endNode, lineNodes);
+            curr = curr.parent;
+        }
+
+        // the edges from the start to the first traversed edge
+        EdgeEntry goal = fromAccess.get(firstLineNode);
+        for (int i = 0; i < lineNodes.size(); i++)
+        {
+            int lineNode = lineNodes.get(i);
+            EdgeEntry entry = new EdgeEntry(lineNode >>> 1, getAdjNode(lineNode), 0);
+            entry.parent = goal;
+            goal = entry;
+        }
+
+        // the edges from the last traversed edge to the end
+        curr = toAccess.get(curr.endNode);
+        while (EdgeIterator.Edge.isValid(curr.edge))
+        {
+            EdgeEntry entry = new EdgeEntry(curr.edge, curr.parent.endNode, 0);
+            entry.parent = goal;
+            goal = entry;
+            curr = curr.parent;
+        }
+        goal.weight = bestWeight;
+        return goal;
+    }
+
+    /**
+     * Adds the nodes of the line graph which are traversed by the specified edge from base to adj,
+     * excluding base.
+     */
+    private void expandLineEdge( int edge, int base, int adj, TIntArrayList lineNodes )
+    {
+        EdgeSkipIterState state = (EdgeSkipIterState) lineGraph.getEdgeProps(edge, adj);
+        if (state == null)
+            throw new IllegalStateException("Edge " + edge + " of the line graph not found with adjNode " + adj);
+
+        if (!state.isShortcut())
+        {
+            lineNodes.add(adj);
+            return;
+        }
+
+        int firstEdge = state.getSkippedEdge1();
+        int secondEdge = state.getSkippedEdge2();
+        EdgeIteratorState first = lineGraph.getEdgeProps(firstEdge, base);
+        if (first == null)
+        {
+            firstEdge = secondEdge;
+            secondEdge = state.getSkippedEdge1();
+            first = lineGraph.getEdgeProps(firstEdge, base);
+        }
+
+        // the state is seen from base so its base node is the skipped node
+        int skippedNode = first.getBaseNode();
+        expandLineEdge(firstEdge, base, skippedNode, lineNodes);
+        expandLineEdge(secondEdge, skippedNode, adj, lineNodes);
+    }
+
+    /**
+     * @return the node of the original graph where the traversed edge of the specified line node
+     * ends
+     */
+    private int getAdjNode( int lineNode )
+    {
+        EdgeIteratorState edge = baseGraph.getEdgeProps(lineNode >>> 1, Integer.MIN_VALUE);
+        boolean reverse = (lineNode & 1) == 1;
+        if (edge.getBaseNode() > edge.getAdjNode() == reverse)
+            return edge.getAdjNode();
+
+        return edge.getBaseNode();
+    }
+
+    @Override
+    public String getName()
+    {
+        return "dijkstrabiEdgeBasedCH";
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+}
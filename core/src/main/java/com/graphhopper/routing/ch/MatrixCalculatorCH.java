@@ -0,0 +1,243 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractMatrixCalculator;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.ShortestPathTree;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.util.Arrays;
+
+/**
+ * Bucket based many-to-many calculation on a graph prepared with contraction hierarchies. A
+ * complete upward search is done from every target in the reverse direction and its reached nodes
+ * are stored in buckets. Then a complete upward search is done from every source and for every
+ * reached node the buckets are scanned. So a NxM matrix needs only N+M searches.
+ * <p/>
+ * The searches use the ShortestPathTree's of the RoutingContext and the bucket entries are stored
+ * in primitive lists, so apart from the resulting paths no objects are created per settled node.
+ * <p/>
+ * Created via PrepareContractionHierarchies.createMatrixCalculator
+ * <p/>
+ * @author Peter Karich
+ */
+public class MatrixCalculatorCH extends AbstractMatrixCalculator
+{
+    private EdgeFilter additionalEdgeFilter;
+
+    MatrixCalculatorCH( LevelGraph g, FlagEncoder encoder, PreparationWeighting weighting )
+    {
+        super(g, encoder, weighting);
+    }
+
+    MatrixCalculatorCH setEdgeFilter( EdgeFilter additionalEdgeFilter )
+    {
+        this.additionalEdgeFilter = additionalEdgeFilter;
+        return this;
+    }
+
+    @Override
+    protected void calcMatrix( QueryGraph queryGraph, int[] sourceNodes, int[] targetNodes,
+            DistanceMatrix matrix )
+    {
+        EdgeExplorer outExplorer = queryGraph.createEdgeExplorer(new DefaultEdgeFilter(flagEncoder, false, true));
+        EdgeExplorer inExplorer = queryGraph.createEdgeExplorer(new DefaultEdgeFilter(flagEncoder, true, false));
+        int nodes = queryGraph.getNodes();
+
+        // 1. backward search from every target, every settled node becomes an entry in the bucket
+        // of this node. The entries of one bucket are linked via entryNext.
+        Buckets buckets = new Buckets();
+        TIntIntHashMap nodeEntries = new TIntIntHashMap(100, .5f, -1, -1);
+        ShortestPathTree treeTo = getRoutingContext().getTree(1);
+        for (int t = 0; t < targetNodes.length; t++)
+        {
+            nodeEntries.clear();
+            treeTo.init(nodes);
+            treeTo.update(targetNodes[t], 0, -1, EdgeIterator.NO_EDGE);
+            while (!treeTo.isEmpty())
+            {
+                int node = treeTo.poll();
+                // the parent is always settled before
+                int parent = treeTo.getParent(node);
+                int entry = buckets.add(t, node, treeTo.getWeight(node), treeTo.getEdge(node),
+                        parent < 0 ? -1 : nodeEntries.get(parent));
+                nodeEntries.put(node, entry);
+                fillEdges(inExplorer, treeTo, node);
+            }
+        }
+
+        // 2. forward search from every source and scan the buckets of all reached nodes
+        double[] bestWeights = new double[targetNodes.length];
+        int[] bestEntries = new int[targetNodes.length];
+        ShortestPathTree treeFrom = getRoutingContext().getTree(0);
+        for (int s = 0; s < sourceNodes.length; s++)
+        {
+            Arrays.fill(bestWeights, Double.MAX_VALUE);
+            Arrays.fill(bestEntries, -1);
+            treeFrom.init(nodes);
+            treeFrom.update(sourceNodes[s], 0, -1, EdgeIterator.NO_EDGE);
+            while (!treeFrom.isEmpty())
+            {
+                int node = treeFrom.poll();
+                double fromWeight = treeFrom.getWeight(node);
+                for (int entry = buckets.getFirst(node); entry >= 0; entry = buckets.entryNext.get(entry))
+                {
+                    int t = buckets.entryTarget.get(entry);
+                    double weight = fromWeight + buckets.entryWeight.get(entry);
+                    if (weight < bestWeights[t])
+                    {
+                        bestWeights[t] = weight;
+                        bestEntries[t] = entry;
+                    }
+                }
+                fillEdges(outExplorer, treeFrom, node);
+            }
+
+            for (int t = 0; t < targetNodes.length; t++)
+            {
+                if (bestEntries[t] < 0)
+                    continue;
+
+                // unpack the shortcuts to get the real distance and time
+                Path path = new MatrixPath(queryGraph, flagEncoder).extract(treeFrom, buckets, bestEntries[t]);
+                matrix.set(s, t, path.getDistance(), path.getMillis());
+            }
+        }
+    }
+
+    /**
+     * Explores the edges of the specified settled node. Without higher to lower edges (or with the
+     * LevelEdgeFilter) the complete search space is only the upward part of the graph which is
+     * small.
+     */
+    private void fillEdges( EdgeExplorer explorer, ShortestPathTree tree, int node )
+    {
+        int currEdge = tree.getEdge(node);
+        double currWeight = tree.getWeight(node);
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next())
+        {
+            if (additionalEdgeFilter != null && !additionalEdgeFilter.accept(iter))
+                continue;
+            // minor speed up
+            if (currEdge == iter.getEdge())
+                continue;
+
+            int adjNode = iter.getAdjNode();
+            double tmpWeight = weighting.calcWeight(iter) + currWeight;
+            if (tree.getWeight(adjNode) > tmpWeight)
+                tree.update(adjNode, tmpWeight, node, iter.getEdge());
+        }
+    }
+
+    /**
+     * The settled nodes of all backward searches. An entry references the entry of its parent node
+     * in the same search, so the path to the target can be extracted after the search tree was
+     * reused.
+     */
+    static class Buckets
+    {
+        private final TIntIntHashMap firstEntries = new TIntIntHashMap(100, .5f, -1, -1);
+        final TIntArrayList entryTarget = new TIntArrayList();
+        final TIntArrayList entryNode = new TIntArrayList();
+        final TIntArrayList entryEdge = new TIntArrayList();
+        final TIntArrayList entryParent = new TIntArrayList();
+        final TIntArrayList entryNext = new TIntArrayList();
+        final TDoubleArrayList entryWeight = new TDoubleArrayList();
+
+        int add( int target, int node, double weight, int edge, int parentEntry )
+        {
+            int entry = entryNode.size();
+            entryTarget.add(target);
+            entryNode.add(node);
+            entryEdge.add(edge);
+            entryParent.add(parentEntry);
+            entryWeight.add(weight);
+            entryNext.add(firstEntries.get(node));
+            firstEntries.put(node, entry);
+            return entry;
+        }
+
+        /**
+         * @return the last added entry of the specified node or -1
+         */
+        int getFirst( int node )
+        {
+            return firstEntries.get(node);
+        }
+    }
+
+    /**
+     * Extracts the path from the tree of the source and the entries of the target search meeting
+     * at the node of the specified entry.
+     */
+    static class MatrixPath extends Path4CH
+    {
+        MatrixPath( Graph g, FlagEncoder encoder )
+        {
+            super(g, encoder);
+        }
+
+        Path extract( ShortestPathTree treeFrom, Buckets buckets, int entry )
+        {
+            extractSW.start();
+            int node = buckets.entryNode.get(entry);
+            while (true)
+            {
+                int edgeId = treeFrom.getEdge(node);
+                if (!EdgeIterator.Edge.isValid(edgeId))
+                    break;
+
+                processEdge(edgeId, node);
+                node = treeFrom.getParent(node);
+            }
+            setFromNode(node);
+            reverseOrder();
+
+            while (true)
+            {
+                int edgeId = buckets.entryEdge.get(entry);
+                if (!EdgeIterator.Edge.isValid(edgeId))
+                    break;
+
+                entry = buckets.entryParent.get(entry);
+                processEdge(edgeId, buckets.entryNode.get(entry));
+            }
+            setEndNode(buckets.entryNode.get(entry));
+            extractSW.stop();
+            return setFound(true);
+        }
+    }
+
+    @Override
+    public String getName()
+    {
+        return "bucketMatrixCH";
+    }
+}
@@ -19,7 +19,6 @@ package com.graphhopper.routing.ch;
 
 import com.graphhopper.routing.PathBidirRef;
 import com.graphhopper.routing.util.FlagEncoder;
-import com.graphhopper.routing.util.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.EdgeSkipIterState;
@@ -32,12 +31,9 @@ import com.graphhopper.util.EdgeSkipIterState;
  */
 public class Path4CH extends PathBidirRef
 {
-    private final Weighting calc;
-
-    public Path4CH( Graph g, FlagEncoder encoder, Weighting calc )
+    public Path4CH( Graph g, FlagEncoder encoder )
     {
         super(g, encoder);
-        this.calc = calc;
     }
 
     @Override
@@ -48,12 +44,6 @@ public class Path4CH extends PathBidirRef
         expandEdge((EdgeSkipIterState) graph.getEdgeProps(tmpEdge, endNode), false);
     }
 
-    @Override
-    public double calcDistance( EdgeIteratorState mainIter )
-    {
-        return calc.revertWeight(mainIter, mainIter.getDistance());
-    }
-
     private void expandEdge( EdgeSkipIterState mainEdgeState, boolean revert )
     {
         if (!mainEdgeState.isShortcut())
@@ -0,0 +1,66 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.EdgeSkipIterState;
+
+/**
+ * The weighting used by the preparation and the algorithms of contraction hierarchies. A shortcut
+ * stores its weight as distance, all other edges keep their real distance and are weighted with
+ * the specified weighting. So several hierarchies with different weightings can share the edges.
+ * <p/>
+ * @author Peter Karich
+ */
+public class PreparationWeighting implements Weighting
+{
+    private final Weighting userWeighting;
+
+    public PreparationWeighting( Weighting userWeighting )
+    {
+        this.userWeighting = userWeighting;
+    }
+
+    @Override
+    public double getMinWeight( double distance )
+    {
+        return userWeighting.getMinWeight(distance);
+    }
+
+    @Override
+    public double calcWeight( EdgeIteratorState edge )
+    {
+        if (edge instanceof EdgeSkipIterState && ((EdgeSkipIterState) edge).isShortcut())
+            return edge.getDistance();
+
+        return userWeighting.calcWeight(edge);
+    }
+
+    @Override
+    public double revertWeight( EdgeIteratorState edge, double weight )
+    {
+        return userWeighting.revertWeight(edge, weight);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PREPARE+" + userWeighting;
+    }
+}
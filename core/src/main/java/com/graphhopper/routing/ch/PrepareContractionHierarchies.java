@@ -23,7 +23,6 @@ import com.graphhopper.routing.util.AbstractAlgoPreparation;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.LevelEdgeFilter;
 import com.graphhopper.routing.util.FlagEncoder;
-import com.graphhopper.routing.util.ShortestWeighting;
 import com.graphhopper.routing.util.Weighting;
 import com.graphhopper.routing.AStarBidirection;
 import com.graphhopper.routing.DijkstraBidirectionRef;
@@ -34,10 +33,16 @@ import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.LevelGraph;
 import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.util.*;
+import gnu.trove.list.array.TIntArrayList;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,15 +61,13 @@ import org.slf4j.LoggerFactory;
 public class PrepareContractionHierarchies extends AbstractAlgoPreparation<PrepareContractionHierarchies>
 {
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    // preparation dijkstra uses always shortest path as edges are rewritten - see doWork
-    private final Weighting shortestWeighting = new ShortestWeighting();
     private final Weighting prepareWeighting;
+    // uses the weight stored in the shortcuts - see PreparationWeighting
+    private final PreparationWeighting chWeighting;
     private final FlagEncoder prepareEncoder;
-    private EdgeSkipExplorer vehicleInExplorer;
     private EdgeSkipExplorer vehicleOutExplorer;
     private EdgeSkipExplorer vehicleAllExplorer;
     private EdgeSkipExplorer vehicleAllTmpExplorer;
-    private EdgeSkipExplorer calcPrioAllExplorer;
     private LevelGraph g;
     // the most important nodes comes last
     private GHTreeMapComposed sortedNodes;
@@ -73,22 +76,33 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     // shortcut is one direction, speed is only involved while recalculating the endNode weights - see prepareEdges
     private final long scOneDir;
     private final long scBothDir;
-    private final Map<Shortcut, Shortcut> shortcuts = new HashMap<Shortcut, Shortcut>();
-    private IgnoreNodeFilter levelEdgeFilter;
-    private DijkstraOneToMany algo;
+    // does the witness searches of the sequential contraction and is the first of the workers
+    private ContractionWorker mainWorker;
+    private ContractionWorker[] workers;
+    private ExecutorService executor;
+    private int threads = 1;
+    private int independentSetHops = 2;
     private boolean removesHigher2LowerEdges = true;
     private long counter;
+    private int level;
     private int newShortcuts;
-    private long dijkstraCount;
     private double meanDegree;
     private final Random rand = new Random(123);
-    private StopWatch dijkstraSW = new StopWatch();
+    // more candidates per round contract more nodes out of the order of their priority
+    private static final int MIN_PARALLEL_CANDIDATES = 8;
+    private static final String CHECKPOINT_DONE = "done";
     private int periodicUpdatesPercentage = 20;
     private int lastNodesLazyUpdatePercentage = 10;
     private final StopWatch allSW = new StopWatch();
     private int neighborUpdatePercentage = 10;
     private int initialCollectionSize = 10000;
     private double logMessagesPercentage = 20;
+    // the contraction state is stored together with this graph, see setCheckpoints
+    private GraphStorage checkpointGraph;
+    private String checkpointName;
+    private long checkpointInterval;
+    private long nextCheckpoint;
+    private DataAccess checkpointData;
 
     public PrepareContractionHierarchies( FlagEncoder encoder, Weighting weighting )
     {
@@ -96,6 +110,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         scOneDir = encoder.setAccess(0, true, false);
         scBothDir = encoder.setAccess(0, true, true);
         prepareWeighting = weighting;
+        chWeighting = new PreparationWeighting(weighting);
         originalEdges = new GHDirectory("", DAType.RAM_INT).find("originalEdges");
         originalEdges.create(1000);
     }
@@ -104,6 +119,10 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     public PrepareContractionHierarchies setGraph( Graph g )
     {
         this.g = (LevelGraph) g;
+        // edges of a hierarchy sharing its graph with other hierarchies must stay connected
+        if (!(g instanceof LevelGraphStorage) || ((LevelGraphStorage) g).getHierarchies() > 1)
+            removesHigher2LowerEdges = false;
+
         return this;
     }
 
@@ -172,14 +191,49 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
      * Disconnect is very important to improve query time and preparation if enabled. It will remove
      * the edge going from the higher level node to the currently contracted one. But the original
      * graph is no longer available, so it is only useful for bidirectional CH algorithms. Default
-     * is true.
+     * is true, but it is disabled for a hierarchy which shares the graph with other hierarchies.
      */
     public PrepareContractionHierarchies setRemoveHigher2LowerEdges( boolean removeHigher2LowerEdges )
     {
+        if (removeHigher2LowerEdges && (!(g instanceof LevelGraphStorage) || ((LevelGraphStorage) g).getHierarchies() > 1))
+            throw new IllegalStateException("Cannot remove edges of a graph shared by several hierarchies");
+
         this.removesHigher2LowerEdges = removeHigher2LowerEdges;
         return this;
     }
 
+    /**
+     * Contracts independent sets of nodes in parallel if more than one thread is specified. Then the
+     * witness searches and priority calculations run concurrently, every thread with its own
+     * DijkstraOneToMany, and the graph is only changed in between from the calling thread. The
+     * result does not depend on the thread scheduling or the number of threads, but it differs
+     * from the sequential contraction and creates slightly more shortcuts. Every thread needs
+     * additional memory for its witness search proportional to the number of nodes.
+     */
+    public PrepareContractionHierarchies setThreads( int threads )
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads has to be at least 1 but was " + threads);
+
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Specifies how far nodes contracted in the same parallel round have to be apart: all nodes
+     * within the specified number of hops of a selected node are excluded from the round. E.g. the
+     * default 2 avoids that two nodes contracted together share a neighbor. Only used if threads is
+     * bigger than 1.
+     */
+    public PrepareContractionHierarchies setIndependentSetHops( int hops )
+    {
+        if (hops < 1)
+            throw new IllegalArgumentException("hops has to be at least 1 but was " + hops);
+
+        this.independentSetHops = hops;
+        return this;
+    }
+
     /**
      * While creating an algorithm out of this preparation class 10 000 nodes are assumed which can
      * be too high for your mobile application. E.g. A 500km query only traverses roughly 2000
@@ -190,6 +244,25 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         this.initialCollectionSize = initialCollectionSize;
     }
 
+    /**
+     * Stores the levels, the priorities and the shortcuts found so far every interval milliseconds
+     * together with the specified graph, and once more after the contraction. If a checkpoint of
+     * the loaded graph exists doWork continues from it. The graph has to contain this hierarchy and
+     * its files must only change on flush, i.e. it must not be memory mapped.
+     * <p/>
+     * @param name identifies the checkpoint of this preparation in the graph directory
+     */
+    public PrepareContractionHierarchies setCheckpoints( GraphStorage graph, String name, long intervalMillis )
+    {
+        if (graph.getDirectory().getDefaultType().isMMap())
+            throw new IllegalArgumentException("Checkpoints are not possible for a memory mapped graph");
+
+        checkpointGraph = graph;
+        checkpointName = name;
+        checkpointInterval = intervalMillis;
+        return this;
+    }
+
     @Override
     public PrepareContractionHierarchies doWork()
     {
@@ -202,15 +275,44 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
 
         allSW.start();
         super.doWork();
+        if (checkpointGraph != null && CHECKPOINT_DONE.equals(getCheckpointProperty()))
+        {
+            logger.info("contraction was already finished, " + prepareWeighting + ", " + prepareEncoder);
+            return this;
+        }
 
         initFromGraph();
-        if (!prepareEdges())
+        level = 1;
+        counter = 0;
+        boolean resumed = loadCheckpoint();
+        if (!resumed && !prepareEdges())
             return this;
 
-        if (!prepareNodes())
-            return this;
+        if (threads > 1)
+            executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            if (!resumed && !prepareNodes())
+                return this;
 
-        contractNodes();
+            nextCheckpoint = System.currentTimeMillis() + checkpointInterval;
+            if (threads > 1)
+                contractNodesParallel();
+            else
+                contractNodes();
+
+            if (checkpointGraph != null)
+            {
+                GHUtility.flushCheckpoint(checkpointGraph, getCheckpointKey(), CHECKPOINT_DONE);
+                checkpointGraph.getDirectory().remove(checkpointData);
+                checkpointData = null;
+            }
+        } finally
+        {
+            if (executor != null)
+                executor.shutdown();
+            executor = null;
+        }
         return this;
     }
 
@@ -218,13 +320,12 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     {
         // In CH the setProperties (speed) are ignored as calculating the new setProperties for a shortcut is often not possible.
         // Also several shortcuts would be necessary with the different modes (e.g. fastest and shortest)
-        // So calculate the weight and store this as weight, then use only weight instead of calcWeight
+        // So a shortcut stores the weight instead of the distance - see PreparationWeighting
         EdgeIterator iter = g.getAllEdges();
         int c = 0;
         while (iter.next())
         {
             c++;
-            iter.setDistance(prepareWeighting.calcWeight(iter));
             setOrigEdgeCount(iter.getEdge(), 1);
         }
         return c > 0;
@@ -237,11 +338,21 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     boolean prepareNodes()
     {
         int len = g.getNodes();
-        
-        for (int node = 0; node < len; node++)
+        if (threads > 1)
         {
-            int priority = oldPriorities[node] = calculatePriority(node);
-            sortedNodes.insert(node, priority);
+            TIntArrayList nodes = new TIntArrayList(len);
+            for (int node = 0; node < len; node++)
+            {
+                nodes.add(node);
+            }
+            insertPriorities(nodes);
+        } else
+        {
+            for (int node = 0; node < len; node++)
+            {
+                int priority = oldPriorities[node] = calculatePriority(node);
+                sortedNodes.insert(node, priority);
+            }
         }
 
         if (sortedNodes.isEmpty())
@@ -253,8 +364,6 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     void contractNodes()
     {
         meanDegree = g.getAllEdges().getMaxId() / g.getNodes();
-        int level = 1;
-        counter = 0;
         int initSize = sortedNodes.getSize();
         int logSize = (int) Math.round(Math.max(10, sortedNodes.getSize() / 100 * logMessagesPercentage));
         if (logMessagesPercentage == 0)
@@ -283,9 +392,11 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             neighborUpdate = false;
 
         StopWatch neighborSW = new StopWatch();
-        LevelGraphStorage lg = ((LevelGraphStorage) g);
+        LevelGraphStorage lg = removesHigher2LowerEdges ? (LevelGraphStorage) g : null;
         while (!sortedNodes.isEmpty())
         {
+            writeCheckpointIfDue();
+
             // periodically update priorities of ALL nodes            
             if (periodicUpdate && counter > 0 && counter % periodicUpdatesCount == 0)
             {
@@ -311,15 +422,15 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
                 logger.info(Helper.nf(counter) + ", updates:" + updateCounter 
                         + ", nodes: " + Helper.nf(sortedNodes.getSize())
                         + ", shortcuts:" + Helper.nf(newShortcuts)
-                        + ", dijkstras:" + Helper.nf(dijkstraCount)
-                        + ", t(dijk):" + (int) dijkstraSW.getSeconds()
+                        + ", dijkstras:" + Helper.nf(mainWorker.dijkstraCount)
+                        + ", t(dijk):" + (int) mainWorker.dijkstraSW.getSeconds()
                         + ", t(period):" + (int) periodSW.getSeconds()
                         + ", t(lazy):" + (int) lazySW.getSeconds()
                         + ", t(neighbor):" + (int) neighborSW.getSeconds()
                         + ", meanDegree:" + (long) meanDegree
-                        + ", algo:" + algo.getMemoryUsageAsString()
+                        + ", algo:" + mainWorker.algo.getMemoryUsageAsString()
                         + ", " + Helper.getMemInfo());
-                dijkstraSW = new StopWatch();
+                mainWorker.dijkstraSW = new StopWatch();
                 periodSW = new StopWatch();
                 lazySW = new StopWatch();
                 neighborSW = new StopWatch();
@@ -378,8 +489,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
                 + ", " + prepareWeighting
                 + ", " + prepareEncoder
                 + ", removeHigher2LowerEdges:" + removesHigher2LowerEdges
-                + ", dijkstras:" + dijkstraCount
-                + ", t(dijk):" + (int) dijkstraSW.getSeconds()
+                + ", dijkstras:" + mainWorker.dijkstraCount
+                + ", t(dijk):" + (int) mainWorker.dijkstraSW.getSeconds()
                 + ", t(period):" + (int) periodSW.getSeconds()
                 + ", t(lazy):" + (int) lazySW.getSeconds()
                 + ", t(neighbor):" + (int) neighborSW.getSeconds()                
@@ -390,15 +501,444 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
                 + ", neighbor:" + neighborUpdatePercentage);
     }
 
+    /**
+     * Contracts independent sets of nodes: the nodes are selected sequentially in the order of
+     * their priority, then their shortcuts are searched in parallel while the graph is not
+     * changed, and finally the shortcuts are added sequentially in the order of the selection.
+     */
+    void contractNodesParallel()
+    {
+        meanDegree = g.getAllEdges().getMaxId() / g.getNodes();
+        int initSize = sortedNodes.getSize();
+        long logSize = Math.round(Math.max(10, sortedNodes.getSize() / 100 * logMessagesPercentage));
+        if (logMessagesPercentage == 0)
+            logSize = Long.MAX_VALUE;
+
+        // the counter is not 0 if the contraction continues from a checkpoint
+        long nextLog = counter;
+        int updateCounter = 0;
+        int periodicUpdatesCount = Math.max(10, sortedNodes.getSize() / 100 * periodicUpdatesPercentage);
+        long nextPeriodicUpdate = periodicUpdatesPercentage == 0 ? Long.MAX_VALUE : counter + periodicUpdatesCount;
+        int lastNodesLazyUpdates = lastNodesLazyUpdatePercentage == 0
+                ? 0
+                : sortedNodes.getSize() / 100 * lastNodesLazyUpdatePercentage;
+        boolean neighborUpdate = neighborUpdatePercentage != 0;
+
+        int nodes = g.getNodes();
+        // the arrays store the round in which a node was blocked, selected or marked for an update
+        final int[] blocked = new int[nodes];
+        final int[] selected = new int[nodes];
+        int[] updated = new int[nodes];
+
+        final TIntArrayList batch = new TIntArrayList();
+        TIntArrayList deferred = new TIntArrayList();
+        TIntArrayList neighbors = new TIntArrayList();
+        EdgeExplorer hopExplorer = g.createEdgeExplorer(new DefaultEdgeFilter(prepareEncoder, true, true));
+        StopWatch periodSW = new StopWatch();
+        StopWatch neighborSW = new StopWatch();
+        StopWatch shortcutSW = new StopWatch();
+        int rounds = 0;
+        LevelGraphStorage lg = removesHigher2LowerEdges ? (LevelGraphStorage) g : null;
+        while (!sortedNodes.isEmpty())
+        {
+            writeCheckpointIfDue();
+
+            if (counter >= nextPeriodicUpdate)
+            {
+                periodSW.start();
+                TIntArrayList uncontracted = new TIntArrayList(sortedNodes.getSize());
+                for (int node = 0; node < nodes; node++)
+                {
+                    if (g.getLevel(node) == 0)
+                        uncontracted.add(node);
+                }
+                sortedNodes.clear();
+                insertPriorities(uncontracted);
+                periodSW.stop();
+                updateCounter++;
+                nextPeriodicUpdate += periodicUpdatesCount;
+            }
+
+            if (counter >= nextLog)
+            {
+                logger.info(Helper.nf(counter) + ", updates:" + updateCounter
+                        + ", rounds:" + rounds
+                        + ", nodes: " + Helper.nf(sortedNodes.getSize())
+                        + ", shortcuts:" + Helper.nf(newShortcuts)
+                        + ", dijkstras:" + Helper.nf(getDijkstraCount())
+                        + ", t(shortcuts):" + (int) shortcutSW.getSeconds()
+                        + ", t(period):" + (int) periodSW.getSeconds()
+                        + ", t(neighbor):" + (int) neighborSW.getSeconds()
+                        + ", meanDegree:" + (long) meanDegree
+                        + ", " + Helper.getMemInfo());
+                nextLog += logSize;
+            }
+
+            // select an independent set: skip nodes close to already selected ones
+            final int round = ++rounds;
+            batch.reset();
+            deferred.reset();
+            int maxCandidates = Math.max(MIN_PARALLEL_CANDIDATES, sortedNodes.getSize() / 100);
+            for (int candidates = 0; candidates < maxCandidates && !sortedNodes.isEmpty(); candidates++)
+            {
+                int polledNode = sortedNodes.pollKey();
+                if (blocked[polledNode] == round)
+                {
+                    // a node is only selected if no node with a smaller priority is deferred
+                    // nearby, so the order of the contraction stays close to the sequential one
+                    deferred.add(polledNode);
+                    blockNeighborhood(hopExplorer, polledNode, blocked, round);
+                    continue;
+                }
+
+                if (sortedNodes.getSize() < lastNodesLazyUpdates)
+                {
+                    int priority = oldPriorities[polledNode] = calculatePriority(polledNode);
+                    if (!sortedNodes.isEmpty() && priority > sortedNodes.peekValue())
+                    {
+                        sortedNodes.insert(polledNode, priority);
+                        continue;
+                    }
+                }
+
+                batch.add(polledNode);
+                selected[polledNode] = round;
+                blockNeighborhood(hopExplorer, polledNode, blocked, round);
+            }
+
+            for (int i = 0; i < deferred.size(); i++)
+            {
+                int node = deferred.get(i);
+                sortedNodes.insert(node, oldPriorities[node]);
+            }
+
+            // find the shortcuts of all selected nodes. The witness searches avoid all nodes
+            // selected in this round, so the found witnesses still exist after the whole set is
+            // contracted. The priority calculations must not avoid them.
+            shortcutSW.start();
+            final int batchSize = batch.size();
+            final Shortcut[][] results = new Shortcut[batchSize][];
+            final long[] degrees = new long[batchSize];
+            runParallel(batchSize, new ParallelTask()
+            {
+                @Override
+                public void run( ContractionWorker worker, int index )
+                {
+                    worker.levelEdgeFilter.setAvoidNodes(selected, round);
+                    try
+                    {
+                        degrees[index] = worker.findShortcuts(worker.addScHandler.setNode(batch.get(index)));
+                    } finally
+                    {
+                        worker.levelEdgeFilter.setAvoidNodes(null, 0);
+                    }
+                    results[index] = worker.shortcuts.keySet().toArray(new Shortcut[worker.shortcuts.size()]);
+                }
+            });
+            shortcutSW.stop();
+
+            for (int i = 0; i < batchSize; i++)
+            {
+                // sliding mean value when using "*2" => slower changes
+                meanDegree = (meanDegree * 2 + degrees[i]) / 3;
+                newShortcuts += addShortcuts(Arrays.asList(results[i]));
+                g.setLevel(batch.get(i), level);
+                level++;
+                counter++;
+            }
+
+            neighbors.reset();
+            for (int i = 0; i < batchSize; i++)
+            {
+                EdgeSkipIterator iter = vehicleAllExplorer.setBaseNode(batch.get(i));
+                while (iter.next())
+                {
+                    int nn = iter.getAdjNode();
+                    if (g.getLevel(nn) != 0)
+                        // already contracted no update necessary
+                        continue;
+
+                    if (neighborUpdate && rand.nextInt(100) < neighborUpdatePercentage && updated[nn] != round)
+                    {
+                        updated[nn] = round;
+                        neighbors.add(nn);
+                    }
+
+                    if (removesHigher2LowerEdges)
+                        lg.disconnect(vehicleAllTmpExplorer, iter);
+                }
+            }
+
+            neighborSW.start();
+            int[] priorities = calculatePriorities(neighbors);
+            for (int i = 0; i < priorities.length; i++)
+            {
+                int nn = neighbors.get(i);
+                int oldPrio = oldPriorities[nn];
+                if (priorities[i] != oldPrio)
+                {
+                    oldPriorities[nn] = priorities[i];
+                    sortedNodes.update(nn, oldPrio, priorities[i]);
+                }
+            }
+            neighborSW.stop();
+        }
+
+        close();
+        logger.info("took:" + (int) allSW.stop().getSeconds()
+                + ", new shortcuts: " + newShortcuts
+                + ", " + prepareWeighting
+                + ", " + prepareEncoder
+                + ", removeHigher2LowerEdges:" + removesHigher2LowerEdges
+                + ", threads:" + threads
+                + ", rounds:" + rounds
+                + ", dijkstras:" + getDijkstraCount()
+                + ", t(shortcuts):" + (int) shortcutSW.getSeconds()
+                + ", t(period):" + (int) periodSW.getSeconds()
+                + ", t(neighbor):" + (int) neighborSW.getSeconds()
+                + ", meanDegree:" + (long) meanDegree
+                + ", initSize:" + initSize
+                + ", periodic:" + periodicUpdatesPercentage
+                + ", lazy:" + lastNodesLazyUpdatePercentage
+                + ", neighbor:" + neighborUpdatePercentage);
+    }
+
+    /**
+     * Marks all uncontracted nodes within independentSetHops of the specified node.
+     */
+    private void blockNeighborhood( EdgeExplorer explorer, int node, int[] blocked, int round )
+    {
+        TIntArrayList current = new TIntArrayList();
+        TIntArrayList next = new TIntArrayList();
+        blocked[node] = round;
+        current.add(node);
+        for (int hop = 0; hop < independentSetHops && !current.isEmpty(); hop++)
+        {
+            next.reset();
+            for (int i = 0; i < current.size(); i++)
+            {
+                EdgeIterator iter = explorer.setBaseNode(current.get(i));
+                while (iter.next())
+                {
+                    int adj = iter.getAdjNode();
+                    if (blocked[adj] == round || g.getLevel(adj) != 0)
+                        continue;
+
+                    blocked[adj] = round;
+                    next.add(adj);
+                }
+            }
+            TIntArrayList tmp = current;
+            current = next;
+            next = tmp;
+        }
+    }
+
+    /**
+     * Calculates the priorities of the specified nodes in parallel and inserts them.
+     */
+    private void insertPriorities( TIntArrayList nodes )
+    {
+        int[] priorities = calculatePriorities(nodes);
+        for (int i = 0; i < priorities.length; i++)
+        {
+            int node = nodes.get(i);
+            oldPriorities[node] = priorities[i];
+            sortedNodes.insert(node, priorities[i]);
+        }
+    }
+
+    private int[] calculatePriorities( final TIntArrayList nodes )
+    {
+        final int[] priorities = new int[nodes.size()];
+        runParallel(nodes.size(), new ParallelTask()
+        {
+            @Override
+            public void run( ContractionWorker worker, int index )
+            {
+                priorities[index] = worker.calculatePriority(nodes.get(index));
+            }
+        });
+        return priorities;
+    }
+
+    interface ParallelTask
+    {
+        void run( ContractionWorker worker, int index );
+    }
+
+    /**
+     * Runs the task for all indices from 0 to size - 1. Every worker processes every n-th index
+     * in its own thread. The graph must not be changed meanwhile.
+     */
+    private void runParallel( final int size, final ParallelTask task )
+    {
+        if (executor == null || size < workers.length)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                task.run(mainWorker, i);
+            }
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<Future<?>>(workers.length);
+        for (int w = 0; w < workers.length; w++)
+        {
+            final ContractionWorker worker = workers[w];
+            final int start = w;
+            futures.add(executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = start; i < size; i += workers.length)
+                    {
+                        task.run(worker, i);
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while contracting nodes", ex);
+            } catch (ExecutionException ex)
+            {
+                throw new RuntimeException("Problem while contracting nodes", ex.getCause());
+            }
+        }
+    }
+
+    long getDijkstraCount()
+    {
+        long count = 0;
+        for (ContractionWorker worker : workers)
+        {
+            count += worker.dijkstraCount;
+        }
+        return count;
+    }
+
+    private String getCheckpointKey()
+    {
+        return "prepare.checkpoint." + checkpointName;
+    }
+
+    /**
+     * @return the number of contracted nodes of the last checkpoint, "done" or an empty string if
+     * there is no checkpoint
+     */
+    private String getCheckpointProperty()
+    {
+        return checkpointGraph.getProperties().get(getCheckpointKey());
+    }
+
+    /**
+     * Restores the priorities, the original edge counts and the counters of the last checkpoint.
+     * The levels and shortcuts are already part of the loaded graph.
+     * <p/>
+     * @return false if there is no checkpoint
+     */
+    private boolean loadCheckpoint()
+    {
+        if (checkpointGraph == null)
+            return false;
+
+        checkpointData = checkpointGraph.getDirectory().find("chCheckpoint_" + checkpointName);
+        String property = getCheckpointProperty();
+        if (property.isEmpty())
+        {
+            checkpointData.create(1000);
+            return false;
+        }
+
+        if (!checkpointData.loadExisting() || !property.equals(Integer.toString(checkpointData.getHeader(3 * 4))))
+            throw new IllegalStateException("Checkpoint " + checkpointName + " is missing or does not match the graph, "
+                    + property + " contracted nodes expected");
+
+        int nodes = checkpointData.getHeader(0);
+        int edges = checkpointData.getHeader(1 * 4);
+        if (nodes != g.getNodes())
+            throw new IllegalStateException("Checkpoint " + checkpointName + " has " + nodes + " nodes but the graph " + g.getNodes());
+
+        level = checkpointData.getHeader(2 * 4);
+        counter = checkpointData.getHeader(3 * 4);
+        newShortcuts = checkpointData.getHeader(4 * 4);
+        checkpointData.getInts(0, oldPriorities, 0, nodes);
+        int[] buffer = new int[Math.min(edges, 1 << 16)];
+        for (int edge = 0; edge < edges; edge += buffer.length)
+        {
+            int length = Math.min(buffer.length, edges - edge);
+            checkpointData.getInts((long) (nodes + edge) * 4, buffer, 0, length);
+            for (int i = 0; i < length; i++)
+            {
+                setOrigEdgeCount(edge + i, buffer[i]);
+            }
+        }
+
+        for (int node = 0; node < nodes; node++)
+        {
+            if (g.getLevel(node) == 0)
+                sortedNodes.insert(node, oldPriorities[node]);
+        }
+        logger.info("continue contraction from checkpoint " + checkpointName + " after " + Helper.nf(counter)
+                + " nodes, remaining: " + Helper.nf(sortedNodes.getSize()) + ", shortcuts: " + Helper.nf(newShortcuts));
+        return true;
+    }
+
+    /**
+     * Stores the state of the contraction together with the graph if the checkpoint interval is
+     * over. Called before a node or set of nodes is contracted, when all uncontracted nodes are
+     * in sortedNodes with their priority from oldPriorities.
+     */
+    private void writeCheckpointIfDue()
+    {
+        if (checkpointGraph == null || System.currentTimeMillis() < nextCheckpoint)
+            return;
+
+        StopWatch sw = new StopWatch().start();
+        int nodes = g.getNodes();
+        int edges = g.getAllEdges().getMaxId();
+        checkpointData.incCapacity((long) (nodes + edges) * 4);
+        checkpointData.setInts(0, oldPriorities, 0, nodes);
+        int[] buffer = new int[Math.min(edges, 1 << 16)];
+        for (int edge = 0; edge < edges; edge += buffer.length)
+        {
+            int length = Math.min(buffer.length, edges - edge);
+            for (int i = 0; i < length; i++)
+            {
+                buffer[i] = getOrigEdgeCount(edge + i);
+            }
+            checkpointData.setInts((long) (nodes + edge) * 4, buffer, 0, length);
+        }
+        checkpointData.setHeader(0, nodes);
+        checkpointData.setHeader(1 * 4, edges);
+        checkpointData.setHeader(2 * 4, level);
+        checkpointData.setHeader(3 * 4, (int) counter);
+        checkpointData.setHeader(4 * 4, newShortcuts);
+        GHUtility.flushCheckpoint(checkpointGraph, getCheckpointKey(), (int) counter, checkpointData);
+        logger.info("checkpoint " + checkpointName + " after " + Helper.nf(counter) + " nodes took "
+                + sw.stop().getSeconds() + "s");
+        nextCheckpoint = System.currentTimeMillis() + checkpointInterval;
+    }
+
     public void close()
     {
-        algo.close();
+        for (ContractionWorker worker : workers)
+        {
+            worker.algo.close();
+        }
         originalEdges.close();
         sortedNodes = null;
         oldPriorities = null;
     }
-    AddShortcutHandler addScHandler = new AddShortcutHandler();
-    CalcShortcutHandler calcScHandler = new CalcShortcutHandler();
 
     interface ShortcutHandler
     {
@@ -441,10 +981,12 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
 
     class AddShortcutHandler implements ShortcutHandler
     {
+        private final Map<Shortcut, Shortcut> shortcuts;
         int node;
 
-        public AddShortcutHandler()
+        public AddShortcutHandler( Map<Shortcut, Shortcut> shortcuts )
         {
+            this.shortcuts = shortcuts;
         }
 
         @Override
@@ -496,119 +1038,148 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
 
     Set<Shortcut> testFindShortcuts( int node )
     {
-        findShortcuts(addScHandler.setNode(node));
-        return shortcuts.keySet();
+        mainWorker.findShortcuts(mainWorker.addScHandler.setNode(node));
+        return mainWorker.shortcuts.keySet();
+    }
+
+    int calculatePriority( int v )
+    {
+        return mainWorker.calculatePriority(v);
     }
 
     /**
-     * Calculates the priority of endNode v without changing the graph. Warning: the calculated
-     * priority must NOT depend on priority(v) and therefor findShortcuts should also not depend on
-     * the priority(v). Otherwise updating the priority before contracting in contractNodes() could
-     * lead to a slowishor even endless loop.
+     * The state of the witness searches. Several workers can search concurrently as long as the
+     * graph is not changed.
      */
-    int calculatePriority( int v )
+    class ContractionWorker
     {
-        // set of shortcuts that would be added if endNode v would be contracted next.
-        findShortcuts(calcScHandler.setNode(v));
+        final EdgeSkipExplorer inExplorer;
+        final EdgeSkipExplorer outExplorer;
+        final EdgeSkipExplorer allExplorer;
+        final IgnoreNodeFilter levelEdgeFilter;
+        final DijkstraOneToMany algo;
+        final Map<Shortcut, Shortcut> shortcuts = new HashMap<Shortcut, Shortcut>();
+        final AddShortcutHandler addScHandler = new AddShortcutHandler(shortcuts);
+        final CalcShortcutHandler calcScHandler = new CalcShortcutHandler();
+        long dijkstraCount;
+        StopWatch dijkstraSW = new StopWatch();
+
+        ContractionWorker()
+        {
+            inExplorer = g.createEdgeExplorer(new DefaultEdgeFilter(prepareEncoder, true, false));
+            outExplorer = g.createEdgeExplorer(new DefaultEdgeFilter(prepareEncoder, false, true));
+            allExplorer = g.createEdgeExplorer(new DefaultEdgeFilter(prepareEncoder, true, true));
+            levelEdgeFilter = new IgnoreNodeFilter(g);
+            algo = new DijkstraOneToMany(g, prepareEncoder, chWeighting);
+        }
+
+        /**
+         * Calculates the priority of endNode v without changing the graph. Warning: the calculated
+         * priority must NOT depend on priority(v) and therefor findShortcuts should also not depend on
+         * the priority(v). Otherwise updating the priority before contracting in contractNodes() could
+         * lead to a slowishor even endless loop.
+         */
+        int calculatePriority( int v )
+        {
+            // set of shortcuts that would be added if endNode v would be contracted next.
+            findShortcuts(calcScHandler.setNode(v));
 
 //        System.out.println(v + "\t " + tmpShortcuts);
-        // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
-        //
-        // every endNode has an 'original edge' number associated. initially it is r=1
-        // when a new shortcut is introduced then r of the associated edges is summed up:
-        // r(u,w)=r(u,v)+r(v,w) now we can define
-        // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
-        int originalEdgesCount = calcScHandler.originalEdgesCount;
+            // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
+            //
+            // every endNode has an 'original edge' number associated. initially it is r=1
+            // when a new shortcut is introduced then r of the associated edges is summed up:
+            // r(u,w)=r(u,v)+r(v,w) now we can define
+            // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
+            int originalEdgesCount = calcScHandler.originalEdgesCount;
 //        for (Shortcut sc : tmpShortcuts) {
 //            originalEdgesCount += sc.originalEdges;
 //        }
 
-        // # lowest influence on preparation speed or shortcut creation count 
-        // (but according to paper should speed up queries)
-        //
-        // number of already contracted neighbors of v
-        int contractedNeighbors = 0;
-        int degree = 0;
-        EdgeSkipIterator iter = calcPrioAllExplorer.setBaseNode(v);
-        while (iter.next())
-        {
-            degree++;
-            if (iter.isShortcut())
-                contractedNeighbors++;
-        }
-
-        // from shortcuts we can compute the edgeDifference
-        // # low influence: with it the shortcut creation is slightly faster
-        //
-        // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|        
-        // meanDegree is used instead of outDegree+inDegree as if one endNode is in both directions
-        // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
-        int edgeDifference = calcScHandler.shortcuts - degree;
+            // # lowest influence on preparation speed or shortcut creation count 
+            // (but according to paper should speed up queries)
+            //
+            // number of already contracted neighbors of v
+            int contractedNeighbors = 0;
+            int degree = 0;
+            EdgeSkipIterator iter = allExplorer.setBaseNode(v);
+            while (iter.next())
+            {
+                degree++;
+                if (iter.isShortcut())
+                    contractedNeighbors++;
+            }
 
-        // according to the paper do a simple linear combination of the properties to get the priority.
-        // this is the current optimum for unterfranken:
-        return 10 * edgeDifference + originalEdgesCount + contractedNeighbors;
-    }
+            // from shortcuts we can compute the edgeDifference
+            // # low influence: with it the shortcut creation is slightly faster
+            //
+            // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|        
+            // meanDegree is used instead of outDegree+inDegree as if one endNode is in both directions
+            // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
+            int edgeDifference = calcScHandler.shortcuts - degree;
+
+            // according to the paper do a simple linear combination of the properties to get the priority.
+            // this is the current optimum for unterfranken:
+            return 10 * edgeDifference + originalEdgesCount + contractedNeighbors;
+        }
 
-    /**
-     * Finds shortcuts, does not change the underlying graph.
-     */
-    void findShortcuts( ShortcutHandler sch )
-    {
-        long tmpDegreeCounter = 0;
-        EdgeIterator incomingEdges = vehicleInExplorer.setBaseNode(sch.getNode());
-        // collect outgoing nodes (goal-nodes) only once
-        while (incomingEdges.next())
+        /**
+         * Finds shortcuts, does not change the underlying graph.
+         * <p/>
+         * @return the number of incoming edges for which witness searches were done
+         */
+        long findShortcuts( ShortcutHandler sch )
         {
-            int u_fromNode = incomingEdges.getAdjNode();
-            // accept only uncontracted nodes
-            if (g.getLevel(u_fromNode) != 0)
-                continue;
-
-            double v_u_weight = incomingEdges.getDistance();
-            int skippedEdge1 = incomingEdges.getEdge();
-            int incomingEdgeOrigCount = getOrigEdgeCount(skippedEdge1);
+            long tmpDegreeCounter = 0;
+            EdgeIterator incomingEdges = inExplorer.setBaseNode(sch.getNode());
             // collect outgoing nodes (goal-nodes) only once
-            EdgeIterator outgoingEdges = vehicleOutExplorer.setBaseNode(sch.getNode());
-            // force fresh maps etc as this cannot be determined by from node alone (e.g. same from node but different avoidNode)
-            algo.clear();
-            tmpDegreeCounter++;
-            while (outgoingEdges.next())
-            {
-                int w_toNode = outgoingEdges.getAdjNode();
-                // add only uncontracted nodes
-                if (g.getLevel(w_toNode) != 0 || u_fromNode == w_toNode)
-                {
+            while (incomingEdges.next())
+            {
+                int u_fromNode = incomingEdges.getAdjNode();
+                // accept only uncontracted nodes
+                if (g.getLevel(u_fromNode) != 0)
                     continue;
-                }
 
-                // Limit weight as ferries or forbidden edges can increase local search too much.
-                // If we decrease the correct weight we only explore less and introduce more shortcuts.
-                // I.e. no change to accuracy is made.
-                double existingDirectWeight = v_u_weight + outgoingEdges.getDistance();
-                algo.setLimitWeight(existingDirectWeight)
-                        .setLimitVisitedNodes((int) meanDegree * 100)
-                        .setEdgeFilter(levelEdgeFilter.setAvoidNode(sch.getNode()));
-
-                dijkstraSW.start();
-                dijkstraCount++;
-                int endNode = algo.findEndNode(u_fromNode, w_toNode);
-                dijkstraSW.stop();
-
-                // compare end node as the limit could force dijkstra to finish earlier
-                if (endNode == w_toNode && algo.getWeight(endNode) <= existingDirectWeight)
-                    // FOUND witness path, so do not add shortcut                
-                    continue;
+                double v_u_weight = chWeighting.calcWeight(incomingEdges);
+                int skippedEdge1 = incomingEdges.getEdge();
+                int incomingEdgeOrigCount = getOrigEdgeCount(skippedEdge1);
+                // collect outgoing nodes (goal-nodes) only once
+                EdgeIterator outgoingEdges = outExplorer.setBaseNode(sch.getNode());
+                // force fresh maps etc as this cannot be determined by from node alone (e.g. same from node but different avoidNode)
+                algo.clear();
+                tmpDegreeCounter++;
+                while (outgoingEdges.next())
+                {
+                    int w_toNode = outgoingEdges.getAdjNode();
+                    // add only uncontracted nodes
+                    if (g.getLevel(w_toNode) != 0 || u_fromNode == w_toNode)
+                    {
+                        continue;
+                    }
+
+                    // Limit weight as ferries or forbidden edges can increase local search too much.
+                    // If we decrease the correct weight we only explore less and introduce more shortcuts.
+                    // I.e. no change to accuracy is made.
+                    double existingDirectWeight = v_u_weight + chWeighting.calcWeight(outgoingEdges);
+                    algo.setLimitWeight(existingDirectWeight)
+                            .setLimitVisitedNodes((int) meanDegree * 100)
+                            .setEdgeFilter(levelEdgeFilter.setAvoidNode(sch.getNode()));
+
+                    dijkstraSW.start();
+                    dijkstraCount++;
+                    int endNode = algo.findEndNode(u_fromNode, w_toNode);
+                    dijkstraSW.stop();
+
+                    // compare end node as the limit could force dijkstra to finish earlier
+                    if (endNode == w_toNode && algo.getWeight(endNode) <= existingDirectWeight)
+                        // FOUND witness path, so do not add shortcut                
+                        continue;
 
-                sch.foundShortcut(u_fromNode, w_toNode, existingDirectWeight,
-                        outgoingEdges, skippedEdge1, incomingEdgeOrigCount);
+                    sch.foundShortcut(u_fromNode, w_toNode, existingDirectWeight,
+                            outgoingEdges, skippedEdge1, incomingEdgeOrigCount);
+                }
             }
-        }
-        if (sch instanceof AddShortcutHandler)
-        {
-            // sliding mean value when using "*2" => slower changes
-            meanDegree = (meanDegree * 2 + tmpDegreeCounter) / 3;
-            // meanDegree = (meanDegree + tmpDegreeCounter) / 2;
+            return tmpDegreeCounter;
         }
     }
 
@@ -617,10 +1188,20 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
      */
     int addShortcuts( int v )
     {
-        shortcuts.clear();
-        findShortcuts(addScHandler.setNode(v));
+        long tmpDegreeCounter = mainWorker.findShortcuts(mainWorker.addScHandler.setNode(v));
+        // sliding mean value when using "*2" => slower changes
+        meanDegree = (meanDegree * 2 + tmpDegreeCounter) / 3;
+        // meanDegree = (meanDegree + tmpDegreeCounter) / 2;
+        return addShortcuts(mainWorker.shortcuts.keySet());
+    }
+
+    /**
+     * Adds the specified shortcuts to the graph or updates existing ones.
+     */
+    int addShortcuts( Collection<Shortcut> shortcuts )
+    {
         int tmpNewShortcuts = 0;
-        for (Shortcut sc : shortcuts.keySet())
+        for (Shortcut sc : shortcuts)
         {
             boolean updatedInGraph = false;
             // check if we need to update some existing shortcut in the graph
@@ -655,19 +1236,21 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     PrepareContractionHierarchies initFromGraph()
     {
         checkGraph();
-        vehicleInExplorer = g.createEdgeExplorer(new DefaultEdgeFilter(prepareEncoder, true, false));
         vehicleOutExplorer = g.createEdgeExplorer(new DefaultEdgeFilter(prepareEncoder, false, true));
         vehicleAllExplorer = g.createEdgeExplorer(new DefaultEdgeFilter(prepareEncoder, true, true));
         vehicleAllTmpExplorer = g.createEdgeExplorer(new DefaultEdgeFilter(prepareEncoder, true, true));
-        calcPrioAllExplorer = g.createEdgeExplorer(new DefaultEdgeFilter(prepareEncoder, true, true));
-        levelEdgeFilter = new IgnoreNodeFilter(g);
         // Use an alternative to PriorityQueue as it has some advantages: 
         //   1. Gets automatically smaller if less entries are stored => less total RAM used (as Graph is increasing until the end)
         //   2. is slightly faster
         //   but we need additional priorities array to keep old value which is necessary for update method
         sortedNodes = new GHTreeMapComposed();
         oldPriorities = new int[g.getNodes()];
-        algo = new DijkstraOneToMany(g, prepareEncoder, shortestWeighting);
+        workers = new ContractionWorker[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            workers[i] = new ContractionWorker();
+        }
+        mainWorker = workers[0];
         return this;
     }
 
@@ -680,6 +1263,9 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     {
         int avoidNode;
         LevelGraph graph;
+        // optional, avoids all nodes marked with avoidMark
+        int[] avoidNodes;
+        int avoidMark;
 
         public IgnoreNodeFilter( LevelGraph g )
         {
@@ -692,12 +1278,26 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             return this;
         }
 
+        /**
+         * Additionally avoids all nodes with the specified mark, e.g. the nodes contracted in the
+         * current parallel round. Use null to disable it.
+         */
+        public IgnoreNodeFilter setAvoidNodes( int[] marks, int mark )
+        {
+            this.avoidNodes = marks;
+            this.avoidMark = mark;
+            return this;
+        }
+
         @Override
         public final boolean accept( EdgeIteratorState iter )
         {
             // ignore if it is skipNode or a endNode already contracted
             int node = iter.getAdjNode();
-            return avoidNode != node && graph.getLevel(node) == 0;
+            if (avoidNode == node || graph.getLevel(node) != 0)
+                return false;
+
+            return avoidNodes == null || avoidNodes[node] != avoidMark;
         }
     }
 
@@ -712,7 +1312,10 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     {
         // TODO possible memory usage improvement: avoid storing the value 1 for normal edges (does not change)!
         long tmp = (long) index * 4;
-        originalEdges.incCapacity(tmp + 4);
+        // do not increase the capacity here as this is called concurrently from the workers
+        if (tmp + 4 > originalEdges.getCapacity())
+            return 0;
+
         return originalEdges.getInt(tmp);
     }
 
@@ -720,8 +1323,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     public RoutingAlgorithm createAlgo()
     {
         checkGraph();
-        // do not change weight within DijkstraBidirectionRef => so use ShortestWeighting
-        DijkstraBidirectionRef dijkstrabi = new DijkstraBidirectionRef(g, prepareEncoder, shortestWeighting)
+        DijkstraBidirectionRef dijkstrabi = new DijkstraBidirectionRef(g, prepareEncoder, chWeighting)
         {
             @Override
             protected void initCollections( int nodes )
@@ -730,19 +1332,6 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
                 super.initCollections(Math.min(initialCollectionSize, nodes));
             }
 
-            @Override
-            protected QueryGraph createQueryGraph()
-            {
-                return new QueryGraph(graph)
-                {
-                    @Override
-                    protected void updateDistance( EdgeIteratorState edge )
-                    {
-                        edge.setDistance(prepareWeighting.calcWeight(edge));
-                    }
-                };
-            }
-
             @Override
             public boolean finished()
             {
@@ -757,10 +1346,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             @Override
             public void initPath()
             {
-                // CH changes the weight in prepareEdges to the weight
-                // now we need to transform it back to the real weight
-                Weighting w = createWeighting();
-                bestPath = new Path4CH(graph, flagEncoder, w);
+                bestPath = new Path4CH(graph, flagEncoder);
             }
 
             @Override
@@ -785,7 +1371,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     public AStarBidirection createAStar()
     {
         checkGraph();
-        AStarBidirection astar = new AStarBidirection(g, prepareEncoder, shortestWeighting)
+        AStarBidirection astar = new AStarBidirection(g, prepareEncoder, chWeighting)
         {
             @Override
             protected void initCollections( int nodes )
@@ -794,19 +1380,6 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
                 super.initCollections(Math.min(initialCollectionSize, nodes));
             }
 
-            @Override
-            protected QueryGraph createQueryGraph()
-            {
-                return new QueryGraph(graph)
-                {
-                    @Override
-                    protected void updateDistance( EdgeIteratorState edge )
-                    {
-                        edge.setDistance(prepareWeighting.calcWeight(edge));
-                    }
-                };
-            }
-
             @Override
             protected boolean finished()
             {
@@ -822,10 +1395,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             @Override
             protected void initPath()
             {
-                // CH changes the weight in prepareEdges to the weight
-                // now we need to transform it back to the real weight
-                Weighting wc = createWeighting();
-                bestPath = new Path4CH(graph, flagEncoder, wc);
+                bestPath = new Path4CH(graph, flagEncoder);
             }
 
             @Override
@@ -847,34 +1417,17 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         return astar;
     }
 
-    Weighting createWeighting()
+    /**
+     * @return a calculator for distance matrices on the prepared graph
+     */
+    public MatrixCalculator createMatrixCalculator()
     {
-        return new Weighting()
-        {
-            @Override
-            public String toString()
-            {
-                return "CH_DIST_ONLY";
-            }
-
-            @Override
-            public double getMinWeight( double distance )
-            {
-                throw new IllegalStateException("getMinWeight not supported yet");
-            }
-
-            @Override
-            public double calcWeight( EdgeIteratorState edge )
-            {
-                return edge.getDistance();
-            }
+        checkGraph();
+        MatrixCalculatorCH calc = new MatrixCalculatorCH(g, prepareEncoder, chWeighting);
+        if (!removesHigher2LowerEdges)
+            calc.setEdgeFilter(new LevelEdgeFilter(g));
 
-            @Override
-            public double revertWeight( EdgeIteratorState iter, double weight )
-            {
-                return prepareWeighting.revertWeight(iter, weight);
-            }
-        };
+        return calc;
     }
 
     private void checkGraph()
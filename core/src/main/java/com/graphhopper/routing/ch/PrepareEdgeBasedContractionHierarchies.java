@@ -0,0 +1,250 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.util.AbstractAlgoPreparation;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.ShortestWeighting;
+import com.graphhopper.routing.util.TurnWeighting;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepares contraction hierarchies which consider the turn restrictions and turn costs of the
+ * graph. The original graph is converted into a line graph where every node is an edge traversed
+ * in one direction (see GHUtility.createEdgeKey) and every allowed turn from one edge into the
+ * next is an arc. The weight of an arc is the weight of the next edge plus the turn costs, u-turns
+ * and restricted turns get no arc. The line graph is then contracted with the normal node based
+ * preparation so its shortcuts connect an incoming with an outgoing edge of the original graph.
+ * <p/>
+ * The algorithm returned by createAlgo runs on the original graph (or a QueryGraph of it) and is
+ * as edge based as DijkstraEdgeBased but with the speed of contraction hierarchies. The original
+ * graph is not modified and needs no LevelGraph. The line graph is stored in a sub folder of the
+ * directory of the original graph, see flush and loadExisting.
+ * <p/>
+ * @see DijkstraBidirectionEdgeBasedCH
+ * @see TurnWeighting
+ * @author Peter Karich
+ */
+public class PrepareEdgeBasedContractionHierarchies
+        extends AbstractAlgoPreparation<PrepareEdgeBasedContractionHierarchies>
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final FlagEncoder prepareEncoder;
+    private final Weighting prepareWeighting;
+    // the turn costs are already included in the distance of the arcs
+    private final PrepareContractionHierarchies lineGraphPrepare;
+    private final long arcFlags;
+    private GraphStorage graph;
+    private LevelGraphStorage lineGraph;
+    private String name = "linegraph";
+    private int arcs;
+
+    public PrepareEdgeBasedContractionHierarchies( FlagEncoder encoder, Weighting weighting )
+    {
+        prepareEncoder = encoder;
+        prepareWeighting = weighting;
+        lineGraphPrepare = new PrepareContractionHierarchies(encoder, new ShortestWeighting());
+        arcFlags = encoder.setAccess(0, true, false);
+    }
+
+    /**
+     * @param g the original graph, its TurnCostStorage is used to create the line graph
+     */
+    @Override
+    public PrepareEdgeBasedContractionHierarchies setGraph( Graph g )
+    {
+        if (!(g instanceof GraphStorage))
+            throw new IllegalArgumentException("Edge based contraction hierarchies need a GraphStorage but was " + g);
+
+        graph = (GraphStorage) g;
+        return this;
+    }
+
+    /**
+     * @param name the sub folder of the line graph in the directory of the original graph. Has to
+     * be unique if several line graphs are stored for one graph.
+     */
+    public PrepareEdgeBasedContractionHierarchies setName( String name )
+    {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * @see PrepareContractionHierarchies#setThreads(int)
+     */
+    public PrepareEdgeBasedContractionHierarchies setThreads( int threads )
+    {
+        lineGraphPrepare.setThreads(threads);
+        return this;
+    }
+
+    /**
+     * @see PrepareContractionHierarchies#setLogMessages(double)
+     */
+    public PrepareEdgeBasedContractionHierarchies setLogMessages( double logMessages )
+    {
+        lineGraphPrepare.setLogMessages(logMessages);
+        return this;
+    }
+
+    @Override
+    public PrepareEdgeBasedContractionHierarchies doWork()
+    {
+        checkGraph();
+        super.doWork();
+        StopWatch sw = new StopWatch().start();
+        createLineGraph();
+        logger.info("created line graph with " + lineGraph.getNodes() + " nodes and " + arcs + " arcs in "
+                + sw.stop().getSeconds() + "s, " + prepareWeighting);
+
+        lineGraphPrepare.setGraph(lineGraph).doWork();
+        return this;
+    }
+
+    void createLineGraph()
+    {
+        lineGraph = newLineGraph();
+        lineGraph.create(Math.max(1000, 2 * graph.getAllEdges().getMaxId()));
+
+        // the node of a traversed edge is located at its adjacent node
+        AllEdgesIterator allIter = graph.getAllEdges();
+        while (allIter.next())
+        {
+            int base = allIter.getBaseNode();
+            int adj = allIter.getAdjNode();
+            lineGraph.setNode(GHUtility.createEdgeKey(base, adj, allIter.getEdge()),
+                    graph.getLatitude(adj), graph.getLongitude(adj));
+            lineGraph.setNode(GHUtility.createEdgeKey(adj, base, allIter.getEdge()),
+                    graph.getLatitude(base), graph.getLongitude(base));
+        }
+
+        TurnWeighting turnWeighting = new TurnWeighting(graph, prepareEncoder, prepareWeighting);
+        EdgeExplorer inExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(prepareEncoder, true, false));
+        EdgeExplorer outExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(prepareEncoder, false, true));
+        arcs = 0;
+        int nodes = graph.getNodes();
+        for (int node = 0; node < nodes; node++)
+        {
+            EdgeIterator inIter = inExplorer.setBaseNode(node);
+            while (inIter.next())
+            {
+                int inEdge = inIter.getEdge();
+                int inKey = GHUtility.createEdgeKey(inIter.getAdjNode(), node, inEdge);
+                EdgeIterator outIter = outExplorer.setBaseNode(node);
+                while (outIter.next())
+                {
+                    // no u-turns
+                    if (outIter.getEdge() == inEdge)
+                        continue;
+
+                    double weight = prepareWeighting.calcWeight(outIter)
+                            + turnWeighting.calcTurnWeight(inEdge, node, outIter.getEdge());
+                    if (Double.isInfinite(weight))
+                        continue;
+
+                    int outKey = GHUtility.createEdgeKey(node, outIter.getAdjNode(), outIter.getEdge());
+                    lineGraph.edge(inKey, outKey).setDistance(weight).setFlags(arcFlags);
+                    arcs++;
+                }
+            }
+        }
+    }
+
+    private LevelGraphStorage newLineGraph()
+    {
+        Directory dir = graph.getDirectory();
+        return new LevelGraphStorage(new GHDirectory(dir.getLocation() + name, dir.getDefaultType()),
+                graph.getEncodingManager());
+    }
+
+    /**
+     * Loads the line graph of a previous preparation of the same graph.
+     * <p/>
+     * @return false if no line graph was stored
+     */
+    public boolean loadExisting()
+    {
+        checkGraph();
+        LevelGraphStorage tmpGraph = newLineGraph();
+        if (!tmpGraph.loadExisting())
+            return false;
+
+        lineGraph = tmpGraph;
+        return true;
+    }
+
+    /**
+     * Stores the line graph if the directory of the original graph is storing.
+     */
+    public void flush()
+    {
+        if (lineGraph != null)
+            lineGraph.flush();
+    }
+
+    public void close()
+    {
+        if (lineGraph != null)
+            lineGraph.close();
+    }
+
+    /**
+     * @return the contracted line graph whose nodes are the traversed edges of the original graph
+     */
+    public LevelGraph getLineGraph()
+    {
+        return lineGraph;
+    }
+
+    public int getShortcuts()
+    {
+        return lineGraphPrepare.getShortcuts();
+    }
+
+    @Override
+    public RoutingAlgorithm createAlgo()
+    {
+        checkGraph();
+        if (lineGraph == null)
+            throw new IllegalStateException("Call doWork before createAlgo");
+
+        return new DijkstraBidirectionEdgeBasedCH(graph, prepareEncoder, prepareWeighting, lineGraph);
+    }
+
+    private void checkGraph()
+    {
+        if (graph == null)
+            throw new NullPointerException("setGraph before usage");
+    }
+}
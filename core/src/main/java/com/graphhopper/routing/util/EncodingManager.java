@@ -244,6 +244,14 @@ public class EncodingManager
         return edgeEncoders.size();
     }
 
+    /**
+     * @return the encoder at the specified index, in the order of registration
+     */
+    public FlagEncoder getEncoder( int index )
+    {
+        return edgeEncoders.get(index);
+    }
+
     @Override
     public String toString()
     {
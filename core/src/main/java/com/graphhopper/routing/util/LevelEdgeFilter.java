@@ -28,15 +28,23 @@ import com.graphhopper.util.EdgeIteratorState;
 public class LevelEdgeFilter implements EdgeFilter
 {
     protected LevelGraph graph;
+    private final int maxNodes;
 
     public LevelEdgeFilter( LevelGraph g )
     {
         graph = g;
+        maxNodes = g.getNodes();
     }
 
     @Override
     public boolean accept( EdgeIteratorState edgeIter )
     {
-        return graph.getLevel(edgeIter.getBaseNode()) <= graph.getLevel(edgeIter.getAdjNode());
+        int base = edgeIter.getBaseNode();
+        int adj = edgeIter.getAdjNode();
+        // always accept virtual nodes of a QueryGraph, they have no level
+        if (base >= maxNodes || adj >= maxNodes)
+            return true;
+
+        return graph.getLevel(base) <= graph.getLevel(adj);
     }
 }
@@ -124,6 +124,12 @@ public class RoutingAlgorithmSpecialAreaTests
         prepare.add(new ME(createAlgoPrepare(g, "dijkstraNative", encoder, weighting), idx));
         prepare.add(new ME(createAlgoPrepare(g, "dijkstrabi", encoder, weighting), idx));
         prepare.add(new ME(createAlgoPrepare(g, "dijkstra", encoder, weighting), idx));
+        prepare.add(new ME(createAlgoPrepare(g, "astarArray", encoder, weighting), idx));
+        prepare.add(new ME(createAlgoPrepare(g, "dijkstrabiArray", encoder, weighting), idx));
+        prepare.add(new ME(createAlgoPrepare(g, "dijkstraArray", encoder, weighting), idx));
+        prepare.add(new ME(createAlgoPrepare(g, "dijkstraEdgeBased", encoder, weighting), idx));
+        prepare.add(new ME(createAlgoPrepare(g, "astarEdgeBased", encoder, weighting), idx));
+        prepare.add(new ME(createAlgoPrepare(g, "dijkstrabiEdgeBased", encoder, weighting), idx));
 
         if (withCh)
         {
@@ -0,0 +1,162 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.ExtendedStorage;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.TurnCostStorage;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+
+/**
+ * Calculates the additional weight of a turn from one edge over a node into another edge. The
+ * turn restrictions and costs are read from the TurnCostStorage of the graph, a restricted turn
+ * results in an infinite weight. If the graph has no TurnCostStorage all turns are free.
+ * <p/>
+ * Turn costs are stored in seconds and are only considered for the FastestWeighting.
+ * <p/>
+ * @author Peter Karich
+ */
+public class TurnWeighting
+{
+    private final TurnCostEncoder turnCostEncoder;
+    private final TurnCostStorage turnCostStorage;
+    private final boolean considerCosts;
+    private QueryGraph queryGraph;
+
+    /**
+     * @param graph the graph (not a QueryGraph) where the turn costs are fetched from
+     */
+    public TurnWeighting( Graph graph, FlagEncoder encoder, Weighting weighting )
+    {
+        this.turnCostStorage = findTurnCostStorage(graph);
+        if (encoder instanceof TurnCostEncoder)
+            turnCostEncoder = (TurnCostEncoder) encoder;
+        else
+            turnCostEncoder = new TurnCostEncoder.NoTurnCostsEncoder();
+
+        considerCosts = weighting instanceof FastestWeighting;
+    }
+
+    static TurnCostStorage findTurnCostStorage( Graph graph )
+    {
+        if (graph instanceof GraphHopperStorage)
+        {
+            ExtendedStorage extStorage = ((GraphHopperStorage) graph).getExtendedStorage();
+            if (extStorage instanceof TurnCostStorage)
+                return (TurnCostStorage) extStorage;
+        }
+        return null;
+    }
+
+    /**
+     * Specifies the graph of the current query. If it is a QueryGraph virtual edges are mapped to
+     * the original edges before the turn costs are looked up.
+     */
+    public TurnWeighting setGraph( Graph graph )
+    {
+        if (graph instanceof QueryGraph)
+            queryGraph = (QueryGraph) graph;
+        else
+            queryGraph = null;
+        return this;
+    }
+
+    /**
+     * @return true if the graph contains turn costs and restrictions
+     */
+    public boolean isEnabled()
+    {
+        return turnCostStorage != null;
+    }
+
+    /**
+     * @return the weight of the turn from edgeFrom into edgeTo via the specified node or
+     * Double.POSITIVE_INFINITY if the turn is restricted.
+     */
+    public double calcTurnWeight( int edgeFrom, int nodeVia, int edgeTo )
+    {
+        // only few nodes have an entry so check this first
+        if (turnCostStorage == null || !EdgeIterator.Edge.isValid(edgeFrom)
+                || !turnCostStorage.hasTurnCosts(nodeVia))
+            return 0;
+
+        if (queryGraph != null)
+        {
+            edgeFrom = queryGraph.getOriginalEdge(edgeFrom);
+            edgeTo = queryGraph.getOriginalEdge(edgeTo);
+        }
+
+        long flags = turnCostStorage.getTurnCosts(nodeVia, edgeFrom, edgeTo);
+        if (flags == 0)
+            return 0;
+
+        if (turnCostEncoder.isTurnRestricted(flags))
+            return Double.POSITIVE_INFINITY;
+
+        if (considerCosts)
+            // weight of FastestWeighting is meter per km/h which is seconds / 3.6
+            return turnCostEncoder.getTurnCosts(flags) / 3.6;
+
+        return 0;
+    }
+
+    /**
+     * @param reverse if true the edge is traversed from its adjacent to its base node. Used for the
+     * backward search of bidirectional algorithms.
+     * @return a key for the edge and its traversal direction. The key is identical for both
+     * searches of a bidirectional algorithm if the edge is traversed in the same direction.
+     */
+    public int createTraversalKey( EdgeIteratorState edge, boolean reverse )
+    {
+        int edgeId = edge.getEdge();
+        if (queryGraph != null)
+            edgeId = queryGraph.getUndirectedEdge(edgeId);
+
+        if (reverse)
+            return GHUtility.createEdgeKey(edge.getAdjNode(), edge.getBaseNode(), edgeId);
+
+        return GHUtility.createEdgeKey(edge.getBaseNode(), edge.getAdjNode(), edgeId);
+    }
+
+    /**
+     * Creates the same key as createTraversalKey(EdgeIteratorState, boolean) for an entry which
+     * was reached from its parent.
+     */
+    public int createTraversalKey( EdgeEntry entry, boolean reverse )
+    {
+        int edgeId = entry.edge;
+        if (queryGraph != null)
+            edgeId = queryGraph.getUndirectedEdge(edgeId);
+
+        if (reverse)
+            return GHUtility.createEdgeKey(entry.endNode, entry.parent.endNode, edgeId);
+
+        return GHUtility.createEdgeKey(entry.parent.endNode, entry.endNode, edgeId);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TURN|" + (isEnabled() ? turnCostStorage.entries() : 0);
+    }
+}
@@ -84,6 +84,27 @@ public abstract class AbstractDataAccess implements DataAccess
         return header[bytePos];
     }
 
+    /**
+     * Stores the long value as two integers, necessary if it is distributed over two segments.
+     */
+    protected final void setLongViaInts( long bytePos, long value )
+    {
+        if (byteOrder == ByteOrder.LITTLE_ENDIAN)
+        {
+            setInt(bytePos, (int) value);
+            setInt(bytePos + 4, (int) (value >>> 32));
+        } else
+        {
+            setInt(bytePos, (int) (value >>> 32));
+            setInt(bytePos + 4, (int) value);
+        }
+    }
+
+    protected final long getLongViaInts( long bytePos )
+    {
+        return bitUtil.toLong(getInt(bytePos), getInt(bytePos + 4));
+    }
+
     /**
      * Writes some internal data into the beginning of the specified file.
      */
@@ -50,10 +50,19 @@ public class DAType
      * Experimental API. Do not use yet.
      */
     public static final DAType UNSAFE_STORE = new DAType(MemRef.UNSAFE, true, false);
+    /**
+     * The DA object is hold in-memory but outside of the Java heap, so it is not scanned by the
+     * garbage collector. Loading and flushing is a no-op. See DirectDataAccess.
+     */
+    public static final DAType DIRECT = new DAType(MemRef.DIRECT, false, false);
+    /**
+     * Like DIRECT but it will load from disc and flush to it in the same format as RAM_STORE.
+     */
+    public static final DAType DIRECT_STORE = new DAType(MemRef.DIRECT, true, false);
 
     public enum MemRef
     {
-        HEAP, MMAP, UNSAFE /*, DIRECT */
+        HEAP, MMAP, UNSAFE, DIRECT
 
     };
     private final MemRef memRef;
@@ -101,6 +110,14 @@ public class DAType
         return memRef == MemRef.MMAP;
     }
 
+    /**
+     * Off-heap memory via direct ByteBuffers?
+     */
+    public boolean isDirect()
+    {
+        return memRef == MemRef.DIRECT;
+    }
+
     /**
      * Temporary data or store (with loading and storing)? default is false
      */
@@ -135,6 +152,8 @@ public class DAType
             str = "MMAP";
         else if (getMemRef() == MemRef.HEAP)
             str = "RAM";
+        else if (getMemRef() == MemRef.DIRECT)
+            str = "DIRECT";
         else
             str = "UNSAFE";
 
@@ -52,6 +52,39 @@ public interface DataAccess extends Storable<DataAccess>
      */
     int getInt( long bytePos );
 
+    /**
+     * Set 2 bytes at position 'index' to the specified value
+     */
+    void setShort( long bytePos, short value );
+
+    /**
+     * Get 2 bytes from position 'index'
+     */
+    short getShort( long bytePos );
+
+    /**
+     * Set 8 bytes at position 'index' to the specified value. The position has to be a multiple of
+     * 4 like for integers.
+     */
+    void setLong( long bytePos, long value );
+
+    /**
+     * Get 8 bytes from position 'index'
+     */
+    long getLong( long bytePos );
+
+    /**
+     * Set length integers from position 'index' to the specified values starting at offset
+     */
+    void setInts( long bytePos, int[] values, int offset, int length );
+
+    /**
+     * Get length integers from position 'index'
+     * <p/>
+     * @param values acts as output, the first integer is stored at offset
+     */
+    void getInts( long bytePos, int[] values, int offset, int length );
+
     /**
      * Set bytes from position 'index' to the specified values
      */
@@ -0,0 +1,564 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is an in-memory byte-based data structure like RAMDataAccess but the segments are direct
+ * ByteBuffers outside of the Java heap. So even a big graph does not increase the time of a full
+ * garbage collection. The file format is identical to the one of RAMDataAccess. Thread safe for
+ * reads.
+ * <p/>
+ * The memory of a segment is freed explicitly on close and trimTo instead of waiting for the
+ * garbage collector. A limited amount of the released segments is kept in a pool shared by all
+ * instances and reused for new segments of the same size. Increase -XX:MaxDirectMemorySize if
+ * the graph does not fit into the default limit.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DirectDataAccess extends AbstractDataAccess
+{
+    private static final Map<Integer, List<ByteBuffer>> pool = new HashMap<Integer, List<ByteBuffer>>();
+    private static long maxPooledBytes = 64L << 20;
+    private static long pooledBytes = 0;
+    private ByteBuffer[] segments = new ByteBuffer[0];
+    private boolean closed = false;
+    private boolean store;
+
+    DirectDataAccess( String name, String location, boolean store, ByteOrder order )
+    {
+        super(name, location, order);
+        this.store = store;
+    }
+
+    /**
+     * Specifies how many bytes of released segments are kept for reuse. Segments exceeding this
+     * limit are freed immediately. Default is 64MB.
+     */
+    public static void setMaxPooledBytes( long bytes )
+    {
+        synchronized (pool)
+        {
+            maxPooledBytes = bytes;
+            if (pooledBytes > maxPooledBytes)
+                clearPool();
+        }
+    }
+
+    /**
+     * @return the number of bytes currently kept in the pool of released segments
+     */
+    public static long getPooledBytes()
+    {
+        synchronized (pool)
+        {
+            return pooledBytes;
+        }
+    }
+
+    /**
+     * Frees all pooled segments.
+     */
+    public static void clearPool()
+    {
+        synchronized (pool)
+        {
+            for (List<ByteBuffer> list : pool.values())
+            {
+                for (ByteBuffer bb : list)
+                {
+                    free(bb);
+                }
+            }
+            pool.clear();
+            pooledBytes = 0;
+        }
+    }
+
+    private ByteBuffer allocateSegment()
+    {
+        ByteBuffer bb = null;
+        synchronized (pool)
+        {
+            List<ByteBuffer> list = pool.get(segmentSizeInBytes);
+            if (list != null && !list.isEmpty())
+            {
+                bb = list.remove(list.size() - 1);
+                pooledBytes -= bb.capacity();
+            }
+        }
+
+        if (bb == null)
+            return ByteBuffer.allocateDirect(segmentSizeInBytes).order(byteOrder);
+
+        // a new segment has to be empty like a freshly allocated one
+        for (int i = 0; i < segmentSizeInBytes; i += 8)
+        {
+            bb.putLong(i, 0L);
+        }
+        return bb.order(byteOrder);
+    }
+
+    private static void releaseSegment( ByteBuffer bb )
+    {
+        synchronized (pool)
+        {
+            if (pooledBytes + bb.capacity() <= maxPooledBytes)
+            {
+                List<ByteBuffer> list = pool.get(bb.capacity());
+                if (list == null)
+                {
+                    list = new ArrayList<ByteBuffer>();
+                    pool.put(bb.capacity(), list);
+                }
+                list.add(bb);
+                pooledBytes += bb.capacity();
+                return;
+            }
+        }
+        free(bb);
+    }
+
+    private static void free( ByteBuffer bb )
+    {
+        try
+        {
+            Helper.cleanMappedByteBuffer(bb);
+        } catch (RuntimeException ex)
+        {
+            // not possible on this JVM, the garbage collector will free it later
+        }
+    }
+
+    /**
+     * @param store true if in-memory data should be saved when calling flush
+     */
+    public DirectDataAccess store( boolean store )
+    {
+        this.store = store;
+        return this;
+    }
+
+    @Override
+    public boolean isStoring()
+    {
+        return store;
+    }
+
+    @Override
+    public DataAccess copyTo( DataAccess da )
+    {
+        if (da instanceof DirectDataAccess)
+        {
+            DirectDataAccess dda = (DirectDataAccess) da;
+            for (int h = 0; h < header.length * 4; h += 4)
+            {
+                dda.setHeader(h, getHeader(h));
+            }
+            for (ByteBuffer bb : dda.segments)
+            {
+                releaseSegment(bb);
+            }
+            dda.setSegmentSize(segmentSizeInBytes);
+            dda.segments = new ByteBuffer[segments.length];
+            for (int i = 0; i < segments.length; i++)
+            {
+                ByteBuffer copy = dda.allocateSegment();
+                copy.duplicate().put(segments[i].duplicate());
+                dda.segments[i] = copy;
+            }
+            // leave id, store and close unchanged
+            return da;
+        } else
+        {
+            return super.copyTo(da);
+        }
+    }
+
+    @Override
+    public DirectDataAccess create( long bytes )
+    {
+        if (segments.length > 0)
+            throw new IllegalThreadStateException("already created");
+
+        // initialize transient values
+        setSegmentSize(segmentSizeInBytes);
+        incCapacity(Math.max(10 * 4, bytes));
+        return this;
+    }
+
+    @Override
+    public boolean incCapacity( long bytes )
+    {
+        if (bytes < 0)
+            throw new IllegalArgumentException("new capacity has to be strictly positive");
+
+        long cap = getCapacity();
+        long todoBytes = bytes - cap;
+        if (todoBytes <= 0)
+            return false;
+
+        int segmentsToCreate = (int) (todoBytes / segmentSizeInBytes);
+        if (todoBytes % segmentSizeInBytes != 0)
+            segmentsToCreate++;
+
+        ByteBuffer[] newSegs = Arrays.copyOf(segments, segments.length + segmentsToCreate);
+        int i = segments.length;
+        try
+        {
+            for (; i < newSegs.length; i++)
+            {
+                newSegs[i] = allocateSegment();
+            }
+            segments = newSegs;
+        } catch (OutOfMemoryError err)
+        {
+            for (int j = segments.length; j < i; j++)
+            {
+                releaseSegment(newSegs[j]);
+            }
+            throw new OutOfMemoryError(err.getMessage() + " - problem when allocating new direct memory, "
+                    + "increase -XX:MaxDirectMemorySize. Old capacity: "
+                    + cap + ", new bytes:" + todoBytes + ", segmentSizeIntsPower:" + segmentSizePower
+                    + ", new segments:" + segmentsToCreate + ", existing:" + segments.length);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (segments.length > 0)
+            throw new IllegalStateException("already initialized");
+
+        if (!store || closed)
+            return false;
+
+        File file = new File(getFullName());
+        if (!file.exists() || file.length() == 0)
+            return false;
+
+        try
+        {
+            RandomAccessFile raFile = new RandomAccessFile(getFullName(), "r");
+            try
+            {
+                long byteCount = readHeader(raFile) - HEADER_OFFSET;
+                if (byteCount < 0)
+                    return false;
+
+                raFile.seek(HEADER_OFFSET);
+                FileChannel channel = raFile.getChannel();
+                int segmentCount = (int) (byteCount / segmentSizeInBytes);
+                if (byteCount % segmentSizeInBytes != 0)
+                    segmentCount++;
+
+                ByteBuffer[] newSegs = new ByteBuffer[segmentCount];
+                for (int s = 0; s < segmentCount; s++)
+                {
+                    ByteBuffer bb = allocateSegment();
+                    newSegs[s] = bb;
+                    ByteBuffer tmp = bb.duplicate();
+                    int read = 0;
+                    while (tmp.hasRemaining())
+                    {
+                        int tmpRead = channel.read(tmp);
+                        if (tmpRead < 0)
+                            break;
+                        read += tmpRead;
+                    }
+                    if (read <= 0)
+                    {
+                        for (int j = 0; j <= s; j++)
+                        {
+                            releaseSegment(newSegs[j]);
+                        }
+                        throw new IllegalStateException("segment " + s + " is empty? " + toString());
+                    }
+                }
+                segments = newSegs;
+                return true;
+            } finally
+            {
+                raFile.close();
+            }
+        } catch (IOException ex)
+        {
+            throw new RuntimeException("Problem while loading " + getFullName(), ex);
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        if (closed)
+            throw new IllegalStateException("already closed");
+
+        if (!store)
+            return;
+
+        try
+        {
+            RandomAccessFile raFile = new RandomAccessFile(getFullName(), "rw");
+            try
+            {
+                long len = getCapacity();
+                writeHeader(raFile, len, segmentSizeInBytes);
+                raFile.seek(HEADER_OFFSET);
+                FileChannel channel = raFile.getChannel();
+                for (int s = 0; s < segments.length; s++)
+                {
+                    ByteBuffer tmp = segments[s].duplicate();
+                    tmp.clear();
+                    while (tmp.hasRemaining())
+                    {
+                        channel.write(tmp);
+                    }
+                }
+            } finally
+            {
+                raFile.close();
+            }
+        } catch (Exception ex)
+        {
+            throw new RuntimeException("Couldn't store bytes to " + toString(), ex);
+        }
+    }
+
+    @Override
+    public final void setInt( long bytePos, int value )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 4 <= segmentSizeInBytes : "integer cannot be distributed over two segments";
+        segments[bufferIndex].putInt(index, value);
+    }
+
+    @Override
+    public final int getInt( long bytePos )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 4 <= segmentSizeInBytes : "integer cannot be distributed over two segments";
+        return segments[bufferIndex].getInt(index);
+    }
+
+    @Override
+    public final void setShort( long bytePos, short value )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 2 <= segmentSizeInBytes : "short cannot be distributed over two segments";
+        segments[bufferIndex].putShort(index, value);
+    }
+
+    @Override
+    public final short getShort( long bytePos )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 2 <= segmentSizeInBytes : "short cannot be distributed over two segments";
+        return segments[bufferIndex].getShort(index);
+    }
+
+    @Override
+    public final void setLong( long bytePos, long value )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 8 <= segmentSizeInBytes)
+            segments[bufferIndex].putLong(index, value);
+        else
+            setLongViaInts(bytePos, value);
+    }
+
+    @Override
+    public final long getLong( long bytePos )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 8 <= segmentSizeInBytes)
+            return segments[bufferIndex].getLong(index);
+
+        return getLongViaInts(bytePos);
+    }
+
+    @Override
+    public void setInts( long bytePos, int[] values, int offset, int length )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        ByteBuffer seg = segments[bufferIndex];
+        int end = offset + length;
+        // use only absolute positions, the buffer position is not thread safe
+        for (int i = offset; i < end; i++, index += 4)
+        {
+            if (index == segmentSizeInBytes)
+            {
+                seg = segments[++bufferIndex];
+                index = 0;
+            }
+            seg.putInt(index, values[i]);
+        }
+    }
+
+    @Override
+    public void getInts( long bytePos, int[] values, int offset, int length )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        ByteBuffer seg = segments[bufferIndex];
+        int end = offset + length;
+        for (int i = offset; i < end; i++, index += 4)
+        {
+            if (index == segmentSizeInBytes)
+            {
+                seg = segments[++bufferIndex];
+                index = 0;
+            }
+            values[i] = seg.getInt(index);
+        }
+    }
+
+    @Override
+    public void setBytes( long bytePos, byte[] values, int length )
+    {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        ByteBuffer seg = segments[bufferIndex];
+        // use only absolute positions, the buffer position is not thread safe
+        for (int i = 0; i < length; i++, index++)
+        {
+            if (index == segmentSizeInBytes)
+            {
+                seg = segments[++bufferIndex];
+                index = 0;
+            }
+            seg.put(index, values[i]);
+        }
+    }
+
+    @Override
+    public void getBytes( long bytePos, byte[] values, int length )
+    {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        ByteBuffer seg = segments[bufferIndex];
+        for (int i = 0; i < length; i++, index++)
+        {
+            if (index == segmentSizeInBytes)
+            {
+                seg = segments[++bufferIndex];
+                index = 0;
+            }
+            values[i] = seg.get(index);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        super.close();
+        for (ByteBuffer bb : segments)
+        {
+            releaseSegment(bb);
+        }
+        segments = new ByteBuffer[0];
+        closed = true;
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return (long) getSegments() * segmentSizeInBytes;
+    }
+
+    @Override
+    public int getSegments()
+    {
+        return segments.length;
+    }
+
+    @Override
+    public void trimTo( long capacity )
+    {
+        if (capacity > getCapacity())
+        {
+            throw new IllegalStateException("Cannot increase capacity (" + getCapacity() + ") to " + capacity
+                    + " via trimTo. Use ensureCapacity instead. ");
+        }
+
+        if (capacity < segmentSizeInBytes)
+            capacity = segmentSizeInBytes;
+
+        int remainingSegments = (int) (capacity / segmentSizeInBytes);
+        if (capacity % segmentSizeInBytes != 0)
+            remainingSegments++;
+
+        for (int i = remainingSegments; i < segments.length; i++)
+        {
+            releaseSegment(segments[i]);
+        }
+        segments = Arrays.copyOf(segments, remainingSegments);
+    }
+
+    @Override
+    public void rename( String newName )
+    {
+        if (!checkBeforeRename(newName))
+            return;
+
+        if (store)
+            super.rename(newName);
+
+        // in every case set the name
+        name = newName;
+    }
+
+    @Override
+    public DAType getType()
+    {
+        if (isStoring())
+            return DAType.DIRECT_STORE;
+        return DAType.DIRECT;
+    }
+}
@@ -122,6 +122,9 @@ public class GHDirectory implements Directory
         } else if (type.isMMap())
         {
             da = new MMapDataAccess(name, location, byteOrder);
+        } else if (type.isDirect())
+        {
+            da = new DirectDataAccess(name, location, type.isStoring(), byteOrder);
         } else
         {
             da = new UnsafeDataAccess(name, location, byteOrder);
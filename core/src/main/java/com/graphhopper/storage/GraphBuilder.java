@@ -31,6 +31,7 @@ public class GraphBuilder
     private boolean mmap;
     private boolean store;
     private boolean level;
+    private boolean compactEdges;
     private long byteCapacity = 100;
 
     public GraphBuilder( EncodingManager encodingManager )
@@ -67,6 +68,17 @@ public class GraphBuilder
         return this;
     }
 
+    /**
+     * If true the graph uses the compact edge layout
+     * <p/>
+     * @see GraphHopperStorage#isCompactEdges()
+     */
+    public GraphBuilder setCompactEdges( boolean compactEdges )
+    {
+        this.compactEdges = compactEdges;
+        return this;
+    }
+
     public GraphBuilder setExpectedSize( byte cap )
     {
         this.byteCapacity = cap;
@@ -104,10 +116,10 @@ public class GraphBuilder
         GraphStorage graph;
         if (level)
         {
-            graph = new LevelGraphStorage(dir, encodingManager);
+            graph = new LevelGraphStorage(dir, encodingManager, 1, compactEdges);
         } else
         {
-            graph = new GraphHopperStorage(dir, encodingManager);
+            graph = new GraphHopperStorage(dir, encodingManager, new ExtendedStorage.NoExtendedStorage(), compactEdges);
         }
         return graph;
     }
@@ -27,6 +27,7 @@ import com.graphhopper.search.NameIndex;
 import com.graphhopper.util.*;
 import static com.graphhopper.util.Helper.nf;
 import com.graphhopper.util.shapes.BBox;
+import java.nio.ByteOrder;
 
 /**
  * The main implementation which handles nodes and edges file format. It can be used with different
@@ -53,6 +54,7 @@ public class GraphHopperStorage implements GraphStorage
     private static final double INT_DIST_FACTOR = 1000f;
     private final Directory dir;
     // edge memory layout: nodeA,nodeB,linkA,linkB,dist,flags,geometryRef,streetNameRef
+    // the compact layout stores the streetNameRef in the geometryRef, see setNameRef
     protected final int E_NODEA, E_NODEB, E_LINKA, E_LINKB, E_DIST, E_FLAGS, E_GEO, E_NAME, E_ADDITIONAL;
     protected int edgeEntryBytes;
     protected DataAccess edges;
@@ -75,11 +77,11 @@ public class GraphHopperStorage implements GraphStorage
     // remove markers are not yet persistent!
     private GHBitSet removedNodes;
     private int edgeEntryIndex = -4, nodeEntryIndex = -4;
-    // length | nodeA | nextNode | ... | nodeB
-    // as we use integer index in 'egdes' area => 'geometry' area is limited to 2GB
+    // length | zig-zag varint deltas of lat,lon of the pillar nodes, see setWayGeometry
+    // as we use an unsigned integer index of 4 byte units in 'egdes' area => 'geometry' area is limited to 16GB
     private final DataAccess wayGeometry;
-    // 0 stands for no separate geoRef
-    private int maxGeoRef = 4;
+    // in bytes, 0 stands for no separate geoRef
+    private long maxGeoRef = 4;
     private boolean initialized = false;
     private EncodingManager encodingManager;
     private final NameIndex nameIndex;
@@ -87,6 +89,7 @@ public class GraphHopperStorage implements GraphStorage
     private final StorableProperties properties;
     private final BitUtil bitUtil;
     private ExtendedStorage extStorage;
+    private final boolean compactEdges;
 
     public GraphHopperStorage( Directory dir, EncodingManager encodingManager )
     {
@@ -94,10 +97,22 @@ public class GraphHopperStorage implements GraphStorage
     }
 
     public GraphHopperStorage( Directory dir, EncodingManager encodingManager, ExtendedStorage extendedStorage )
+    {
+        this(dir, encodingManager, extendedStorage, false);
+    }
+
+    /**
+     * @param compactEdges if true the edges are stored 4 bytes smaller. Then the reference to the
+     * street name is stored in the geometry field: directly for edges without pillar nodes and
+     * otherwise in front of the pillar nodes. The geometry is limited to 8GB instead of 16GB.
+     */
+    public GraphHopperStorage( Directory dir, EncodingManager encodingManager, ExtendedStorage extendedStorage,
+            boolean compactEdges )
     {
         // here encoding manager can be null e.g. if we want to load existing
         // graph
         this.encodingManager = encodingManager;
+        this.compactEdges = compactEdges;
         this.extStorage = extendedStorage;
         allEdgesFilter = EdgeFilter.ALL_EDGES;
         this.dir = dir;
@@ -115,7 +130,7 @@ public class GraphHopperStorage implements GraphStorage
         E_DIST = nextEdgeEntryIndex();
         E_FLAGS = nextEdgeEntryIndex();
         E_GEO = nextEdgeEntryIndex();
-        E_NAME = nextEdgeEntryIndex();
+        E_NAME = compactEdges ? E_GEO : nextEdgeEntryIndex();
         if (extStorage.isRequireEdgeField())
         {
             E_ADDITIONAL = nextEdgeEntryIndex();
@@ -147,6 +162,14 @@ public class GraphHopperStorage implements GraphStorage
         }
     }
 
+    /**
+     * @return true if the edges use the compact layout without a separate field for the street name
+     */
+    public boolean isCompactEdges()
+    {
+        return compactEdges;
+    }
+
     protected final int nextEdgeEntryIndex()
     {
         edgeEntryIndex += 4;
@@ -204,6 +227,7 @@ public class GraphHopperStorage implements GraphStorage
         nameIndex.create(1000);
         properties.create(100);
         properties.put("osmreader.acceptWay", encodingManager.getEncoderList());
+        properties.put("edges.compact", compactEdges);
         properties.putCurrentVersions();
         extStorage.create(initSize);
         initialized = true;
@@ -393,11 +417,14 @@ public class GraphHopperStorage implements GraphStorage
         return iter;
     }
 
-    private int nextGeoRef( int arrayLength )
+    private long nextGeoRef( int byteLength )
     {
-        int tmp = maxGeoRef;
-        // one more integer to store also the size itself
-        maxGeoRef += arrayLength + 1;
+        long tmp = maxGeoRef;
+        maxGeoRef += byteLength;
+        // the edges store the reference in units of 4 bytes as unsigned integer
+        if (maxGeoRef > (compactEdges ? 1L << 33 : 1L << 34))
+            throw new IllegalStateException("Geometry is too large. Cannot contain more than "
+                    + (compactEdges ? "8GB for the compact edge layout" : "16GB"));
         return tmp;
     }
 
@@ -651,21 +678,25 @@ public class GraphHopperStorage implements GraphStorage
         @Override
         public PointList fetchWayGeometry( int type )
         {
-            return GraphHopperStorage.this.fetchWayGeometry(edgePointer, getBaseNode() > getAdjNode(), type, getBaseNode(), getAdjNode());
+            return GraphHopperStorage.this.fetchWayGeometry(edgePointer, getBaseNode() > getAdjNode(), type, getBaseNode(), getAdjNode(), null);
+        }
+
+        @Override
+        public PointList fetchWayGeometry( int type, PointList points )
+        {
+            return GraphHopperStorage.this.fetchWayGeometry(edgePointer, getBaseNode() > getAdjNode(), type, getBaseNode(), getAdjNode(), points);
         }
 
         @Override
         public String getName()
         {
-            int nameIndexRef = edges.getInt(edgePointer + E_NAME);
-            return nameIndex.get(nameIndexRef);
+            return nameIndex.get(getNameRef(edgePointer));
         }
 
         @Override
         public EdgeIteratorState setName( String name )
         {
-            int nameIndexRef = nameIndex.put(name);
-            edges.setInt(edgePointer + E_NAME, nameIndexRef);
+            setNameRef(edgePointer, nameIndex.put(name));
             return this;
         }
 
@@ -907,7 +938,13 @@ public class GraphHopperStorage implements GraphStorage
         @Override
         public final PointList fetchWayGeometry( int mode )
         {
-            return GraphHopperStorage.this.fetchWayGeometry(edgePointer, baseNode > node, mode, getBaseNode(), getAdjNode());
+            return GraphHopperStorage.this.fetchWayGeometry(edgePointer, baseNode > node, mode, getBaseNode(), getAdjNode(), null);
+        }
+
+        @Override
+        public final PointList fetchWayGeometry( int mode, PointList points )
+        {
+            return GraphHopperStorage.this.fetchWayGeometry(edgePointer, baseNode > node, mode, getBaseNode(), getAdjNode(), points);
         }
 
         @Override
@@ -919,15 +956,13 @@ public class GraphHopperStorage implements GraphStorage
         @Override
         public String getName()
         {
-            int nameIndexRef = edges.getInt(edgePointer + E_NAME);
-            return nameIndex.get(nameIndexRef);
+            return nameIndex.get(getNameRef(edgePointer));
         }
 
         @Override
         public EdgeIteratorState setName( String name )
         {
-            int nameIndexRef = nameIndex.put(name);
-            edges.setInt(edgePointer + E_NAME, nameIndexRef);
+            setNameRef(edgePointer, nameIndex.put(name));
             return this;
         }
 
@@ -975,54 +1010,147 @@ public class GraphHopperStorage implements GraphStorage
         }
     }
 
+    private int getNameRef( long edgePointer )
+    {
+        int ref = edges.getInt(edgePointer + E_NAME);
+        if (!compactEdges)
+            return ref;
+
+        // the lowest bit marks a geometry which starts with the name reference
+        if ((ref & 1) == 0)
+            return ref >>> 1;
+        return wayGeometry.getInt(toGeoPointer(ref >>> 1));
+    }
+
+    private void setNameRef( long edgePointer, int nameRef )
+    {
+        if (!compactEdges)
+        {
+            edges.setInt(edgePointer + E_NAME, nameRef);
+            return;
+        }
+
+        // check also if the name goes into the geometry as removing the geometry moves it into the edge
+        checkCompactNameRef(nameRef);
+        int ref = edges.getInt(edgePointer + E_GEO);
+        if ((ref & 1) == 0)
+            edges.setInt(edgePointer + E_GEO, nameRef << 1);
+        else
+            wayGeometry.setInt(toGeoPointer(ref >>> 1), nameRef);
+    }
+
+    /**
+     * The compact layout stores the name reference shifted by one bit into the edge.
+     */
+    private static void checkCompactNameRef( int nameRef )
+    {
+        if (nameRef >= 1 << 30)
+            throw new IllegalStateException("Name index is too large for the compact edge layout. Cannot contain more than 1GB");
+    }
+
+    /**
+     * The edges store the geometry reference as unsigned integer in units of 4 bytes.
+     */
+    private static long toGeoPointer( int ref )
+    {
+        return (ref & 0xFFFFFFFFL) << 2;
+    }
+
+    /**
+     * @return the byte position of the point count or 0 if the edge has no pillar nodes
+     */
+    private long getGeoPointer( long edgePointer )
+    {
+        int ref = edges.getInt(edgePointer + E_GEO);
+        if (!compactEdges)
+            return toGeoPointer(ref);
+
+        // skip the name reference of the compact layout
+        if ((ref & 1) == 0)
+            return 0;
+        return toGeoPointer(ref >>> 1) + 4;
+    }
+
+    /**
+     * Stores the pillar nodes as point count followed by the zig-zag encoded variable length
+     * deltas of the latitude and longitude integers, starting from 0 so that the first point is
+     * absolute. The compact layout puts the name reference in front of the count.
+     */
     private void setWayGeometry( PointList pillarNodes, long edgePointer, boolean reverse )
     {
+        int nameRef = compactEdges ? getNameRef(edgePointer) : 0;
         if (pillarNodes != null && !pillarNodes.isEmpty())
         {
             int len = pillarNodes.getSize();
-            int tmpRef = nextGeoRef(len * 2);
-            edges.setInt(edgePointer + E_GEO, tmpRef);
-            long geoRef = (long) tmpRef * 4;
-            ensureGeometry(geoRef, len * 8 + 4);
-            byte[] bytes = new byte[len * 2 * 4 + 4];
-            bitUtil.fromInt(bytes, len, 0);
-            if (reverse)
-                pillarNodes.reverse();
-
-            int tmpOffset = 4;
+            int headerBytes = compactEdges ? 8 : 4;
+            // usually two bytes per delta
+            VLongStorage deltas = new VLongStorage(len * 4 + 8);
+            int prevLat = 0;
+            int prevLon = 0;
             for (int i = 0; i < len; i++)
             {
-                bitUtil.fromInt(bytes, Helper.degreeToInt(pillarNodes.getLatitude(i)), tmpOffset);
-                tmpOffset += 4;
-                bitUtil.fromInt(bytes, Helper.degreeToInt(pillarNodes.getLongitude(i)), tmpOffset);
-                tmpOffset += 4;
+                int index = reverse ? len - 1 - i : i;
+                int lat = Helper.degreeToInt(pillarNodes.getLatitude(index));
+                int lon = Helper.degreeToInt(pillarNodes.getLongitude(index));
+                deltas.writeVLong(zigZag(lat - prevLat));
+                deltas.writeVLong(zigZag(lon - prevLon));
+                prevLat = lat;
+                prevLon = lon;
             }
 
-            wayGeometry.setBytes(geoRef, bytes, bytes.length);
+            // every geometry starts at a multiple of 4 so that the header can be read as integers
+            int deltaBytes = (int) deltas.getPosition();
+            int byteLength = (headerBytes + deltaBytes + 3) & ~3;
+            long geoRef = nextGeoRef(byteLength);
+            int ref = (int) (geoRef >>> 2);
+            edges.setInt(edgePointer + E_GEO, compactEdges ? ref << 1 | 1 : ref);
+            ensureGeometry(geoRef, byteLength);
+            byte[] bytes = new byte[byteLength];
+            if (compactEdges)
+                bitUtil.fromInt(bytes, nameRef, 0);
+            bitUtil.fromInt(bytes, len, headerBytes - 4);
+            System.arraycopy(deltas.getBytes(), 0, bytes, headerBytes, deltaBytes);
+            // write integers as a long geometry can span several segments
+            for (int i = 0; i < byteLength; i += 4)
+            {
+                wayGeometry.setInt(geoRef + i, bitUtil.toInt(bytes, i));
+            }
+        } else if (compactEdges)
+        {
+            checkCompactNameRef(nameRef);
+            edges.setInt(edgePointer + E_GEO, nameRef << 1);
         } else
         {
             edges.setInt(edgePointer + E_GEO, 0);
         }
     }
 
-    private PointList fetchWayGeometry( long edgePointer, boolean reverse, int mode, int baseNode, int adjNode )
+    private static long zigZag( int value )
     {
-        long geoRef = edges.getInt(edgePointer + E_GEO);
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @param pillarNodes if null a new list is created, otherwise it is cleared and filled
+     */
+    private PointList fetchWayGeometry( long edgePointer, boolean reverse, int mode, int baseNode, int adjNode,
+            PointList pillarNodes )
+    {
+        long geoPointer = getGeoPointer(edgePointer);
         int count = 0;
-        byte[] bytes = null;
-        if (geoRef > 0)
-        {
-            geoRef *= 4;
-            count = wayGeometry.getInt(geoRef);
-            wayGeometry.getInt(geoRef);
+        if (geoPointer > 0)
+            count = wayGeometry.getInt(geoPointer);
 
-            geoRef += 4;
-            bytes = new byte[count * 2 * 4];
-            wayGeometry.getBytes(geoRef, bytes, bytes.length);
-        } else if (mode == 0)
-            return PointList.EMPTY;
+        if (pillarNodes == null)
+        {
+            if (count == 0 && mode == 0)
+                return PointList.EMPTY;
+            pillarNodes = new PointList(count + mode);
+        } else
+        {
+            pillarNodes.clear();
+        }
 
-        PointList pillarNodes = new PointList(count + mode);
         if (reverse)
         {
             if ((mode & 2) != 0)
@@ -1033,15 +1161,8 @@ public class GraphHopperStorage implements GraphStorage
                 pillarNodes.add(getLatitude(baseNode), getLongitude(baseNode));
         }
 
-        int index = 0;
-        for (int i = 0; i < count; i++)
-        {
-            double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            pillarNodes.add(lat, lon);
-        }
+        if (count > 0)
+            readWayGeometry(geoPointer + 4, count, pillarNodes);
 
         if (reverse)
         {
@@ -1057,10 +1178,54 @@ public class GraphHopperStorage implements GraphStorage
         return pillarNodes;
     }
 
+    /**
+     * Decodes the deltas of setWayGeometry. It reads integers and takes their bytes in the order
+     * of the DataAccess to avoid a temporary byte array.
+     */
+    private void readWayGeometry( long bytePos, int count, PointList pillarNodes )
+    {
+        boolean littleEndian = dir.getByteOrder() == ByteOrder.LITTLE_ENDIAN;
+        int lat = 0;
+        int lon = 0;
+        int word = 0;
+        int value = 0;
+        int shift = 0;
+        int values = 0;
+        while (values < count * 2)
+        {
+            int byteIndex = (int) (bytePos & 3);
+            if (byteIndex == 0)
+                word = wayGeometry.getInt(bytePos);
+
+            int b = word >>> ((littleEndian ? byteIndex : 3 - byteIndex) << 3) & 0xFF;
+            bytePos++;
+            value |= (b & 0x7F) << shift;
+            if (b >= 0x80)
+            {
+                shift += 7;
+                continue;
+            }
+
+            int delta = (value >>> 1) ^ -(value & 1);
+            if ((values & 1) == 0)
+            {
+                lat += delta;
+            } else
+            {
+                lon += delta;
+                pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon));
+            }
+            values++;
+            value = 0;
+            shift = 0;
+        }
+    }
+
     @Override
     public Graph copyTo( Graph g )
     {
-        if (g.getClass().equals(getClass()))
+        // a different edge layout is converted edge by edge
+        if (g.getClass().equals(getClass()) && ((GraphHopperStorage) g).compactEdges == compactEdges)
         {
             return _copyTo((GraphHopperStorage) g);
         } else
@@ -1071,7 +1236,7 @@ public class GraphHopperStorage implements GraphStorage
 
     Graph _copyTo( GraphHopperStorage clonedG )
     {
-        if (clonedG.edgeEntryBytes != edgeEntryBytes)
+        if (clonedG.edgeEntryBytes != edgeEntryBytes || clonedG.compactEdges != compactEdges)
         {
             throw new IllegalStateException("edgeEntrySize cannot be different for cloned graph");
         }
@@ -1317,7 +1482,7 @@ public class GraphHopperStorage implements GraphStorage
             writeEdge(edge, updatedA, updatedB, linkA, linkB);
             setFlags(edgePointer, updatedA, updatedB, flags);
             if (updatedA < updatedB != nodeA < nodeB)
-                setWayGeometry(fetchWayGeometry(edgePointer, true, 0, -1, -1), edgePointer, false);
+                setWayGeometry(fetchWayGeometry(edgePointer, true, 0, -1, -1, null), edgePointer, false);
         }
 
         // we do not remove the invalid edges => edgeCount stays the same!
@@ -1413,6 +1578,12 @@ public class GraphHopperStorage implements GraphStorage
                 throw new IllegalStateException("Encoding does not match:\nGraphhopper config: " + encodingManager.getEncoderList() + "\nGraph: " + acceptStr);
             }
 
+            // graphs without this property use the default layout
+            boolean compactGraph = "true".equals(properties.get("edges.compact"));
+            if (compactGraph != compactEdges)
+                throw new IllegalStateException("Edge layout does not match:\nGraphhopper config: compact edges " + compactEdges
+                        + "\nGraph: compact edges " + compactGraph);
+
             // nodes
             int hash = nodes.getHeader(0);
             if (hash != getClass().getName().hashCode())
@@ -1432,7 +1603,7 @@ public class GraphHopperStorage implements GraphStorage
             edgeCount = edges.getHeader(1 * 4);
 
             // geometry
-            maxGeoRef = wayGeometry.getHeader(0);
+            maxGeoRef = (long) wayGeometry.getHeader(0) << 32 | wayGeometry.getHeader(1 * 4) & 0xFFFFFFFFL;
             initialized = true;
             return true;
         }
@@ -1458,14 +1629,16 @@ public class GraphHopperStorage implements GraphStorage
         edges.setHeader(3 * 4, extStorage.hashCode());
 
         // geometry
-        wayGeometry.setHeader(0, maxGeoRef);
+        wayGeometry.setHeader(0, (int) (maxGeoRef >>> 32));
+        wayGeometry.setHeader(1 * 4, (int) maxGeoRef);
 
         properties.flush();
         wayGeometry.flush();
         nameIndex.flush();
         edges.flush();
-        nodes.flush();
+        // the extended storage can change the additional node field, e.g. TurnCostStorage.compact
         extStorage.flush();
+        nodes.flush();
     }
 
     @Override
@@ -1486,9 +1659,21 @@ public class GraphHopperStorage implements GraphStorage
                 + extStorage.getCapacity();
     }
 
+    /**
+     * @return the average bytes of an edge entry including its geometry, rounded to one decimal
+     */
+    public double getBytesPerEdge()
+    {
+        if (edgeCount == 0)
+            return 0;
+
+        long bytes = (long) edgeCount * edgeEntryBytes + maxGeoRef;
+        return Math.round(bytes * 10.0 / edgeCount) / 10.0;
+    }
+
     public String toDetailsString()
     {
-        return "edges:" + nf(edgeCount) + "(" + edges.getCapacity() / Helper.MB + "), "
+        return "edges:" + nf(edgeCount) + "(" + edges.getCapacity() / Helper.MB + ", " + getBytesPerEdge() + " bytes/edge), "
                 + "nodes:" + nf(nodeCount) + "(" + nodes.getCapacity() / Helper.MB + "), "
                 + "name: - (" + nameIndex.getCapacity() / Helper.MB + "), "
                 + "geo:" + nf(maxGeoRef) + "(" + wayGeometry.getCapacity() / Helper.MB + "), "
@@ -25,11 +25,20 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeSkipExplorer;
 import com.graphhopper.util.EdgeSkipIterator;
 import com.graphhopper.util.EdgeSkipIterState;
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
+import com.graphhopper.util.shapes.BBox;
+import gnu.trove.list.TIntList;
 
 /**
  * A Graph necessary for shortcut algorithms like Contraction Hierarchies. This class enables the
  * storage to hold the level of a node and a shortcut edge per edge.
  * <p/>
+ * Several hierarchies, e.g. one per vehicle and weighting, can share the nodes and edges of one
+ * storage. Then every hierarchy stores its own level per node and its shortcuts are only visible
+ * in the LevelGraph returned from getHierarchy. Methods called directly on this storage like
+ * getLevel or shortcut refer to the first hierarchy, but its explorers return all edges.
+ * <p/>
  * @see GraphBuilder
  * @author Peter Karich
  */
@@ -37,39 +46,108 @@ public class LevelGraphStorage extends GraphHopperStorage implements LevelGraph
 {
     private final int I_SKIP_EDGE1;
     private final int I_SKIP_EDGE2;
+    // 0 for a normal edge, otherwise the hierarchy of the shortcut plus one. -1 if only one hierarchy
+    private final int I_HIERARCHY;
     private final int I_LEVEL;
+    private final int hierarchies;
+    private final LevelGraph[] hierarchyGraphs;
 
     public LevelGraphStorage( Directory dir, EncodingManager encodingManager )
     {
-        super(dir, encodingManager);
+        this(dir, encodingManager, 1);
+    }
+
+    /**
+     * @param hierarchies the number of contraction hierarchies sharing this storage. With only one
+     * hierarchy the storage layout is unchanged.
+     */
+    public LevelGraphStorage( Directory dir, EncodingManager encodingManager, int hierarchies )
+    {
+        this(dir, encodingManager, hierarchies, false);
+    }
+
+    /**
+     * @param compactEdges see GraphHopperStorage
+     */
+    public LevelGraphStorage( Directory dir, EncodingManager encodingManager, int hierarchies,
+            boolean compactEdges )
+    {
+        super(dir, encodingManager, new ExtendedStorage.NoExtendedStorage(), compactEdges);
+        if (hierarchies < 1)
+            throw new IllegalArgumentException("hierarchies has to be at least 1 but was " + hierarchies);
+
+        this.hierarchies = hierarchies;
         I_SKIP_EDGE1 = nextEdgeEntryIndex();
         I_SKIP_EDGE2 = nextEdgeEntryIndex();
+        I_HIERARCHY = hierarchies > 1 ? nextEdgeEntryIndex() : -1;
         I_LEVEL = nextNodeEntryIndex();
+        for (int i = 1; i < hierarchies; i++)
+        {
+            nextNodeEntryIndex();
+        }
         initNodeAndEdgeEntrySize();
+
+        hierarchyGraphs = new LevelGraph[hierarchies];
+        if (hierarchies == 1)
+            hierarchyGraphs[0] = this;
+        else
+            for (int i = 0; i < hierarchies; i++)
+            {
+                hierarchyGraphs[i] = new HierarchyGraph(i);
+            }
+    }
+
+    public int getHierarchies()
+    {
+        return hierarchies;
+    }
+
+    /**
+     * @return the graph of the specified hierarchy which shares the nodes and edges of this
+     * storage. With only one hierarchy this is the storage itself.
+     */
+    public LevelGraph getHierarchy( int hierarchy )
+    {
+        return hierarchyGraphs[hierarchy];
     }
 
     @Override
     public final void setLevel( int index, int level )
     {
-        ensureNodeIndex(index);
-        nodes.setInt((long) index * nodeEntryBytes + I_LEVEL, level);
+        setLevel(0, index, level);
     }
 
     @Override
     public final int getLevel( int index )
+    {
+        return getLevel(0, index);
+    }
+
+    final void setLevel( int hierarchy, int index, int level )
     {
         ensureNodeIndex(index);
-        return nodes.getInt((long) index * nodeEntryBytes + I_LEVEL);
+        nodes.setInt((long) index * nodeEntryBytes + I_LEVEL + hierarchy * 4, level);
+    }
+
+    final int getLevel( int hierarchy, int index )
+    {
+        ensureNodeIndex(index);
+        return nodes.getInt((long) index * nodeEntryBytes + I_LEVEL + hierarchy * 4);
     }
 
     @Override
     public EdgeSkipIterState shortcut( int a, int b )
     {
-        return edge(a, b);
+        return createEdge(a, b, 1);
     }
 
     @Override
     public EdgeSkipIterState edge( int a, int b )
+    {
+        return createEdge(a, b, 0);
+    }
+
+    private EdgeSkipIterState createEdge( int a, int b, int hierarchyTag )
     {
         ensureNodeIndex(Math.max(a, b));
         int edgeId = internalEdgeAdd(a, b);
@@ -78,6 +156,9 @@ public class LevelGraphStorage extends GraphHopperStorage implements LevelGraph
         iter.setEdgeId(edgeId);
         iter.next();
         iter.setSkippedEdges(EdgeIterator.NO_EDGE, EdgeIterator.NO_EDGE);
+        if (I_HIERARCHY >= 0)
+            edges.setInt(iter.edgePointer + I_HIERARCHY, hierarchyTag);
+
         return iter;
     }
 
@@ -100,6 +181,23 @@ public class LevelGraphStorage extends GraphHopperStorage implements LevelGraph
         return this;
     }
 
+    @Override
+    public boolean loadExisting()
+    {
+        int expectedNodeEntryBytes = nodeEntryBytes;
+        int expectedEdgeEntryBytes = edgeEntryBytes;
+        if (!super.loadExisting())
+            return false;
+
+        if (nodeEntryBytes != expectedNodeEntryBytes || edgeEntryBytes != expectedEdgeEntryBytes)
+            throw new IllegalStateException("Cannot load the graph with " + hierarchies + " hierarchies. "
+                    + "Configure the same vehicles and weightings as for the preparation. Entry bytes "
+                    + "of nodes: " + nodeEntryBytes + " vs. " + expectedNodeEntryBytes
+                    + ", edges: " + edgeEntryBytes + " vs. " + expectedEdgeEntryBytes);
+
+        return true;
+    }
+
     @Override
     public final EdgeSkipIterState getEdgeProps( int edgeId, int endNode )
     {
@@ -166,7 +264,7 @@ public class LevelGraphStorage extends GraphHopperStorage implements LevelGraph
         public void copyProperties( EdgeIteratorState edge )
         {
             super.copyProperties(edge);
-            EdgeSkipIterator eSkip = (EdgeSkipIterator) edge;
+            EdgeSkipIterState eSkip = (EdgeSkipIterState) edge;
 //            setSkippedEdges(eSkip.getSkippedEdge1(), eSkip.getSkippedEdge2());
         }
     }
@@ -200,6 +298,117 @@ public class LevelGraphStorage extends GraphHopperStorage implements LevelGraph
             internalEdgeDisconnect(edgeState.getEdge(), (long) tmpPrevEdge * edgeEntryBytes, edgeState.getAdjNode(), edgeState.getBaseNode());
     }
 
+    /**
+     * Copies this graph into the specified empty graph and renumbers the nodes as specified. The
+     * edges are renumbered too: all edges of a node are stored next to each other, ordered by the
+     * smaller new node of an edge. Unlike GHUtility.sortDFS for a normal graph this keeps the
+     * shortcuts, their skipped edges, the levels of all hierarchies and the disconnected edges,
+     * so a prepared graph can be sorted.
+     * <p/>
+     * @param oldToNewNodeList the new node id for every old node id or -1 for a removed node
+     */
+    public LevelGraphStorage copySortedTo( LevelGraphStorage sortedGraph, TIntList oldToNewNodeList )
+    {
+        if (sortedGraph.hierarchies != hierarchies)
+            throw new IllegalArgumentException("The sorted graph needs " + hierarchies + " hierarchies but has "
+                    + sortedGraph.hierarchies);
+
+        int nodes = getNodes();
+        for (int old = 0; old < nodes; old++)
+        {
+            int newNode = oldToNewNodeList.get(old);
+            if (newNode < 0)
+                continue;
+
+            sortedGraph.setNode(newNode, getLatitude(old), getLongitude(old));
+            for (int h = 0; h < hierarchies; h++)
+            {
+                sortedGraph.setLevel(h, newNode, getLevel(h, old));
+            }
+        }
+
+        // edges only reachable from one of its nodes were disconnected in the preparation
+        int maxEdgeId = getAllEdges().getMaxId();
+        GHBitSet connected = new GHBitSetImpl(2 * maxEdgeId);
+        EdgeSkipExplorer explorer = createEdgeExplorer(EdgeFilter.ALL_EDGES);
+        for (int old = 0; old < nodes; old++)
+        {
+            EdgeSkipIterator iter = explorer.setBaseNode(old);
+            while (iter.next())
+            {
+                int adj = iter.getAdjNode();
+                if (old == adj)
+                {
+                    connected.add(2 * iter.getEdge());
+                    connected.add(2 * iter.getEdge() + 1);
+                } else
+                    connected.add(2 * iter.getEdge() + (old < adj ? 0 : 1));
+            }
+        }
+
+        // counting sort of the edges by their smaller new node
+        int[] edgeStart = new int[sortedGraph.getNodes() + 1];
+        AllEdgesSkipIterator allIter = getAllEdges();
+        while (allIter.next())
+        {
+            edgeStart[getNewMinNode(allIter, oldToNewNodeList) + 1]++;
+        }
+        for (int i = 1; i < edgeStart.length; i++)
+        {
+            edgeStart[i] += edgeStart[i - 1];
+        }
+        int[] sortedEdges = new int[edgeStart[edgeStart.length - 1]];
+        allIter = getAllEdges();
+        while (allIter.next())
+        {
+            sortedEdges[edgeStart[getNewMinNode(allIter, oldToNewNodeList)]++] = allIter.getEdge();
+        }
+
+        int[] oldToNewEdge = new int[maxEdgeId];
+        for (int i = 0; i < sortedEdges.length; i++)
+        {
+            EdgeSkipIterState oldEdge = getEdgeProps(sortedEdges[i], Integer.MIN_VALUE);
+            int hierarchyTag = I_HIERARCHY >= 0 ? edges.getInt((long) oldEdge.getEdge() * edgeEntryBytes + I_HIERARCHY)
+                    : (oldEdge.isShortcut() ? 1 : 0);
+            EdgeSkipIterState newEdge = sortedGraph.createEdge(oldToNewNodeList.get(oldEdge.getBaseNode()),
+                    oldToNewNodeList.get(oldEdge.getAdjNode()), hierarchyTag);
+            newEdge.copyProperties(oldEdge);
+            newEdge.setName(oldEdge.getName());
+            oldToNewEdge[oldEdge.getEdge()] = newEdge.getEdge();
+        }
+
+        EdgeSkipExplorer sortedExplorer = sortedGraph.createEdgeExplorer(EdgeFilter.ALL_EDGES);
+        for (int i = 0; i < sortedEdges.length; i++)
+        {
+            EdgeSkipIterState oldEdge = getEdgeProps(sortedEdges[i], Integer.MIN_VALUE);
+            int newEdgeId = oldToNewEdge[oldEdge.getEdge()];
+            int newBase = oldToNewNodeList.get(oldEdge.getBaseNode());
+            int newAdj = oldToNewNodeList.get(oldEdge.getAdjNode());
+            if (oldEdge.isShortcut())
+                sortedGraph.getEdgeProps(newEdgeId, newAdj).setSkippedEdges(oldToNewEdge[oldEdge.getSkippedEdge1()],
+                        oldToNewEdge[oldEdge.getSkippedEdge2()]);
+
+            // the base node of an edge from getEdgeProps with MIN_VALUE is the smaller one
+            if (!connected.contains(2 * oldEdge.getEdge()))
+                sortedGraph.disconnect(sortedExplorer, sortedGraph.getEdgeProps(newEdgeId, newBase));
+            if (!connected.contains(2 * oldEdge.getEdge() + 1))
+                sortedGraph.disconnect(sortedExplorer, sortedGraph.getEdgeProps(newEdgeId, newAdj));
+        }
+
+        getProperties().copyTo(sortedGraph.getProperties());
+        return sortedGraph;
+    }
+
+    private static int getNewMinNode( EdgeIteratorState edge, TIntList oldToNewNodeList )
+    {
+        int newBase = oldToNewNodeList.get(edge.getBaseNode());
+        int newAdj = oldToNewNodeList.get(edge.getAdjNode());
+        if (newBase < 0 || newAdj < 0)
+            throw new IllegalStateException("empty entries should be connected to the others");
+
+        return Math.min(newBase, newAdj);
+    }
+
     @Override
     public AllEdgesSkipIterator getAllEdges()
     {
@@ -272,4 +481,155 @@ public class LevelGraphStorage extends GraphHopperStorage implements LevelGraph
             return EdgeIterator.Edge.isValid(getSkippedEdge1());
         }
     }
+
+    /**
+     * Accepts normal edges and the shortcuts of one hierarchy.
+     */
+    class HierarchyEdgeFilter implements EdgeFilter
+    {
+        private final int hierarchyTag;
+        private final EdgeFilter filter;
+
+        public HierarchyEdgeFilter( int hierarchy, EdgeFilter filter )
+        {
+            this.hierarchyTag = hierarchy + 1;
+            this.filter = filter;
+        }
+
+        @Override
+        public final boolean accept( EdgeIteratorState edgeState )
+        {
+            int tag = edges.getInt(((EdgeIterable) edgeState).edgePointer + I_HIERARCHY);
+            return (tag == 0 || tag == hierarchyTag) && filter.accept(edgeState);
+        }
+    }
+
+    /**
+     * The view of one hierarchy. Nodes and normal edges are shared with the other hierarchies and
+     * are changed in the underlying storage.
+     */
+    class HierarchyGraph implements LevelGraph
+    {
+        private final int hierarchy;
+
+        public HierarchyGraph( int hierarchy )
+        {
+            this.hierarchy = hierarchy;
+        }
+
+        @Override
+        public void setLevel( int index, int level )
+        {
+            LevelGraphStorage.this.setLevel(hierarchy, index, level);
+        }
+
+        @Override
+        public int getLevel( int index )
+        {
+            return LevelGraphStorage.this.getLevel(hierarchy, index);
+        }
+
+        @Override
+        public EdgeSkipIterState shortcut( int a, int b )
+        {
+            return createEdge(a, b, hierarchy + 1);
+        }
+
+        @Override
+        public EdgeSkipIterState edge( int a, int b )
+        {
+            return LevelGraphStorage.this.edge(a, b);
+        }
+
+        @Override
+        public EdgeIteratorState edge( int a, int b, double distance, boolean bothDirections )
+        {
+            return LevelGraphStorage.this.edge(a, b, distance, bothDirections);
+        }
+
+        @Override
+        public EdgeSkipIterState getEdgeProps( int edgeId, int endNode )
+        {
+            return LevelGraphStorage.this.getEdgeProps(edgeId, endNode);
+        }
+
+        @Override
+        public EdgeSkipExplorer createEdgeExplorer()
+        {
+            return createEdgeExplorer(allEdgesFilter);
+        }
+
+        @Override
+        public EdgeSkipExplorer createEdgeExplorer( EdgeFilter filter )
+        {
+            return new EdgeSkipIteratorImpl(new HierarchyEdgeFilter(hierarchy, filter));
+        }
+
+        /**
+         * @return all edges of the storage including the shortcuts of the other hierarchies
+         */
+        @Override
+        public AllEdgesSkipIterator getAllEdges()
+        {
+            return LevelGraphStorage.this.getAllEdges();
+        }
+
+        @Override
+        public int getNodes()
+        {
+            return LevelGraphStorage.this.getNodes();
+        }
+
+        @Override
+        public void setNode( int node, double lat, double lon )
+        {
+            LevelGraphStorage.this.setNode(node, lat, lon);
+        }
+
+        @Override
+        public double getLatitude( int nodeId )
+        {
+            return LevelGraphStorage.this.getLatitude(nodeId);
+        }
+
+        @Override
+        public double getLongitude( int nodeId )
+        {
+            return LevelGraphStorage.this.getLongitude(nodeId);
+        }
+
+        @Override
+        public int getAdditionalNodeField( int nodeId )
+        {
+            return LevelGraphStorage.this.getAdditionalNodeField(nodeId);
+        }
+
+        @Override
+        public void setAdditionalNodeField( int nodeId, int additionalValue )
+        {
+            LevelGraphStorage.this.setAdditionalNodeField(nodeId, additionalValue);
+        }
+
+        @Override
+        public BBox getBounds()
+        {
+            return LevelGraphStorage.this.getBounds();
+        }
+
+        /**
+         * Nodes and edges are shared between the hierarchies, so this copies the whole storage
+         * including the shortcuts and levels of all hierarchies.
+         */
+        @Override
+        public Graph copyTo( Graph g )
+        {
+            return LevelGraphStorage.this.copyTo(g);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "hierarchy " + hierarchy + " of " + LevelGraphStorage.this;
+        }
+    }
 }
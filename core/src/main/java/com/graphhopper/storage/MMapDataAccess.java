@@ -304,6 +304,82 @@ public class MMapDataAccess extends AbstractDataAccess
         return segments.get(bufferIndex).getInt(index);
     }
 
+    @Override
+    public final void setShort( long bytePos, short value )
+    {
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 2 <= segmentSizeInBytes : "short cannot be distributed over two segments";
+        segments.get(bufferIndex).putShort(index, value);
+    }
+
+    @Override
+    public final short getShort( long bytePos )
+    {
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 2 <= segmentSizeInBytes : "short cannot be distributed over two segments";
+        return segments.get(bufferIndex).getShort(index);
+    }
+
+    @Override
+    public final void setLong( long bytePos, long value )
+    {
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 8 <= segmentSizeInBytes)
+            segments.get(bufferIndex).putLong(index, value);
+        else
+            setLongViaInts(bytePos, value);
+    }
+
+    @Override
+    public final long getLong( long bytePos )
+    {
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 8 <= segmentSizeInBytes)
+            return segments.get(bufferIndex).getLong(index);
+
+        return getLongViaInts(bytePos);
+    }
+
+    @Override
+    public void setInts( long bytePos, int[] values, int offset, int length )
+    {
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        ByteBuffer seg = segments.get(bufferIndex);
+        int end = offset + length;
+        for (int i = offset; i < end; i++, index += 4)
+        {
+            if (index == segmentSizeInBytes)
+            {
+                seg = segments.get(++bufferIndex);
+                index = 0;
+            }
+            seg.putInt(index, values[i]);
+        }
+    }
+
+    @Override
+    public void getInts( long bytePos, int[] values, int offset, int length )
+    {
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        ByteBuffer seg = segments.get(bufferIndex);
+        int end = offset + length;
+        for (int i = offset; i < end; i++, index += 4)
+        {
+            if (index == segmentSizeInBytes)
+            {
+                seg = segments.get(++bufferIndex);
+                index = 0;
+            }
+            values[i] = seg.getInt(index);
+        }
+    }
+
     @Override
     public void setBytes( long bytePos, byte[] values, int length )
     {
@@ -232,6 +232,92 @@ public class RAMDataAccess extends AbstractDataAccess
         return bitUtil.toInt(segments[bufferIndex], index);
     }
 
+    @Override
+    public final void setShort( long bytePos, short value )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 2 <= segmentSizeInBytes : "short cannot be distributed over two segments";
+        bitUtil.fromShort(segments[bufferIndex], value, index);
+    }
+
+    @Override
+    public final short getShort( long bytePos )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 2 <= segmentSizeInBytes : "short cannot be distributed over two segments";
+        return bitUtil.toShort(segments[bufferIndex], index);
+    }
+
+    @Override
+    public final void setLong( long bytePos, long value )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 8 <= segmentSizeInBytes)
+        {
+            bitUtil.fromLong(segments[bufferIndex], value, index);
+        } else
+        {
+            // only possible if the position is not a multiple of 8
+            setLongViaInts(bytePos, value);
+        }
+    }
+
+    @Override
+    public final long getLong( long bytePos )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        if (index + 8 <= segmentSizeInBytes)
+            return bitUtil.toLong(segments[bufferIndex], index);
+
+        return getLongViaInts(bytePos);
+    }
+
+    @Override
+    public void setInts( long bytePos, int[] values, int offset, int length )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        byte[] seg = segments[bufferIndex];
+        int end = offset + length;
+        for (int i = offset; i < end; i++, index += 4)
+        {
+            if (index == segmentSizeInBytes)
+            {
+                seg = segments[++bufferIndex];
+                index = 0;
+            }
+            bitUtil.fromInt(seg, values[i], index);
+        }
+    }
+
+    @Override
+    public void getInts( long bytePos, int[] values, int offset, int length )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        byte[] seg = segments[bufferIndex];
+        int end = offset + length;
+        for (int i = offset; i < end; i++, index += 4)
+        {
+            if (index == segmentSizeInBytes)
+            {
+                seg = segments[++bufferIndex];
+                index = 0;
+            }
+            values[i] = bitUtil.toInt(seg, index);
+        }
+    }
+
     @Override
     public void setBytes( long bytePos, byte[] values, int length )
     {
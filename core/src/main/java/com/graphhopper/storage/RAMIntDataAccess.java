@@ -241,6 +241,92 @@ class RAMIntDataAccess extends AbstractDataAccess
         return segments[bufferIndex][index];
     }
 
+    @Override
+    public final void setShort( long bytePos, short value )
+    {
+        assert segmentSizeIntsPower > 0 : "call create or loadExisting before usage!";
+        int shift = getShortShift(bytePos);
+        long longIndex = bytePos >>> 2;
+        int bufferIndex = (int) (longIndex >>> segmentSizeIntsPower);
+        int index = (int) (longIndex & indexDivisor);
+        int[] seg = segments[bufferIndex];
+        seg[index] = seg[index] & ~(0xFFFF << shift) | (value & 0xFFFF) << shift;
+    }
+
+    @Override
+    public final short getShort( long bytePos )
+    {
+        assert segmentSizeIntsPower > 0 : "call create or loadExisting before usage!";
+        int shift = getShortShift(bytePos);
+        long longIndex = bytePos >>> 2;
+        int bufferIndex = (int) (longIndex >>> segmentSizeIntsPower);
+        int index = (int) (longIndex & indexDivisor);
+        return (short) (segments[bufferIndex][index] >>> shift);
+    }
+
+    /**
+     * @return the position of the short within its integer, so that the stored bytes are the same
+     * as for a byte based DataAccess
+     */
+    private int getShortShift( long bytePos )
+    {
+        assert (bytePos & 1) == 0 : "short cannot be distributed over two integers";
+        int lowerHalf = (bytePos & 2) == 0 ? 0 : 16;
+        if (byteOrder == ByteOrder.LITTLE_ENDIAN)
+            return lowerHalf;
+        return 16 - lowerHalf;
+    }
+
+    @Override
+    public final void setLong( long bytePos, long value )
+    {
+        setLongViaInts(bytePos, value);
+    }
+
+    @Override
+    public final long getLong( long bytePos )
+    {
+        return getLongViaInts(bytePos);
+    }
+
+    @Override
+    public void setInts( long bytePos, int[] values, int offset, int length )
+    {
+        assert segmentSizeIntsPower > 0 : "call create or loadExisting before usage!";
+        long longIndex = bytePos >>> 2;
+        int bufferIndex = (int) (longIndex >>> segmentSizeIntsPower);
+        int index = (int) (longIndex & indexDivisor);
+        int segmentSizeInInts = segmentSizeInBytes >>> 2;
+        while (length > 0)
+        {
+            int copy = Math.min(length, segmentSizeInInts - index);
+            System.arraycopy(values, offset, segments[bufferIndex], index, copy);
+            offset += copy;
+            length -= copy;
+            bufferIndex++;
+            index = 0;
+        }
+    }
+
+    @Override
+    public void getInts( long bytePos, int[] values, int offset, int length )
+    {
+        assert segmentSizeIntsPower > 0 : "call create or loadExisting before usage!";
+        long longIndex = bytePos >>> 2;
+        int bufferIndex = (int) (longIndex >>> segmentSizeIntsPower);
+        int index = (int) (longIndex & indexDivisor);
+        int segmentSizeInInts = segmentSizeInBytes >>> 2;
+        while (length > 0)
+        {
+            int copy = Math.min(length, segmentSizeInInts - index);
+            System.arraycopy(segments[bufferIndex], index, values, offset, copy);
+            offset += copy;
+            length -= copy;
+            bufferIndex++;
+            index = 0;
+        }
+    }
+
     @Override
     public void getBytes( long bytePos, byte[] values, int length )
     {
@@ -57,6 +57,42 @@ class SynchedDAWrapper implements DataAccess
         return inner.getInt(bytePos);
     }
 
+    @Override
+    public synchronized void setShort( long bytePos, short value )
+    {
+        inner.setShort(bytePos, value);
+    }
+
+    @Override
+    public synchronized short getShort( long bytePos )
+    {
+        return inner.getShort(bytePos);
+    }
+
+    @Override
+    public synchronized void setLong( long bytePos, long value )
+    {
+        inner.setLong(bytePos, value);
+    }
+
+    @Override
+    public synchronized long getLong( long bytePos )
+    {
+        return inner.getLong(bytePos);
+    }
+
+    @Override
+    public synchronized void setInts( long bytePos, int[] values, int offset, int length )
+    {
+        inner.setInts(bytePos, values, offset, length);
+    }
+
+    @Override
+    public synchronized void getInts( long bytePos, int[] values, int offset, int length )
+    {
+        inner.getInts(bytePos, values, offset, length);
+    }
+
     @Override
     public synchronized void setBytes( long bytePos, byte[] values, int length )
     {
@@ -25,6 +25,11 @@ import com.graphhopper.util.TurnCostIterator;
  * towards the first entry within a node cost table to identify turn restrictions, or later, turn
  * costs.
  * <p>
+ * While importing the entries are appended and the entries of a node are linked via TC_NEXT. On
+ * flush the entries are compacted: the entries of every node are stored contiguously and sorted by
+ * the from and to edge, so getTurnCosts reads one block and stops early. Entries added after the
+ * compaction are linked again until the next flush.
+ * <p>
  * @author karl.huebner
  */
 public class TurnCostStorage implements ExtendedStorage
@@ -43,6 +48,8 @@ public class TurnCostStorage implements ExtendedStorage
     protected int turnCostsEntryIndex = -4;
     protected int turnCostsEntryBytes;
     protected int turnCostsCount;
+    // true if the entries of every node are contiguous and sorted by from and to edge
+    protected boolean compacted;
 
     private GraphStorage graph;
 
@@ -93,11 +100,102 @@ public class TurnCostStorage implements ExtendedStorage
     @Override
     public void flush()
     {
+        if (!compacted)
+            compact();
+
         turnCosts.setHeader(0, turnCostsEntryBytes);
         turnCosts.setHeader(1 * 4, turnCostsCount);
+        turnCosts.setHeader(2 * 4, compacted ? 1 : 0);
         turnCosts.flush();
     }
 
+    /**
+     * Rewrites the entries grouped by node and sorted by from and to edge. Duplicate entries are
+     * removed, the first added entry wins as before. The next pointers stay valid so the entries
+     * can still be iterated and appended.
+     */
+    public void compact()
+    {
+        compacted = true;
+        if (turnCostsCount == 0)
+            return;
+
+        int nodes = graph.getNodes();
+        int[] firstEntries = new int[nodes];
+        int[] nodeEntries = new int[turnCostsCount];
+        // from, to and costs of all entries in the new order
+        int[] packed = new int[3 * turnCostsCount];
+        int count = 0;
+        for (int node = 0; node < nodes; node++)
+        {
+            int index = getCostTableAdress(node);
+            if (index == NO_COST_ENTRY)
+            {
+                firstEntries[node] = NO_COST_ENTRY;
+                continue;
+            }
+
+            firstEntries[node] = count;
+            int start = count;
+            for (; index != NO_COST_ENTRY; index = turnCosts.getInt((long) index * turnCostsEntryBytes + TC_NEXT))
+            {
+                long ptr = (long) index * turnCostsEntryBytes;
+                int from = turnCosts.getInt(ptr + TC_FROM);
+                int to = turnCosts.getInt(ptr + TC_TO);
+                // insertion sort, the entries of one node are only a few
+                int pos = count;
+                while (pos > start && compare(packed, pos - 1, from, to) > 0)
+                {
+                    pos--;
+                }
+                if (pos > start && compare(packed, pos - 1, from, to) == 0)
+                    continue;
+
+                System.arraycopy(packed, 3 * pos, packed, 3 * pos + 3, 3 * (count - pos));
+                packed[3 * pos] = from;
+                packed[3 * pos + 1] = to;
+                packed[3 * pos + 2] = turnCosts.getInt(ptr + TC_COSTS);
+                nodeEntries[count] = node;
+                count++;
+            }
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            long ptr = (long) i * turnCostsEntryBytes;
+            turnCosts.setInt(ptr + TC_FROM, packed[3 * i]);
+            turnCosts.setInt(ptr + TC_TO, packed[3 * i + 1]);
+            turnCosts.setInt(ptr + TC_COSTS, packed[3 * i + 2]);
+            boolean last = i + 1 == count || nodeEntries[i + 1] != nodeEntries[i];
+            turnCosts.setInt(ptr + TC_NEXT, last ? NO_COST_ENTRY : i + 1);
+        }
+        for (int node = 0; node < nodes; node++)
+        {
+            if (firstEntries[node] != getCostTableAdress(node))
+                graph.setAdditionalNodeField(node, firstEntries[node]);
+        }
+        turnCostsCount = count;
+    }
+
+    private static int compare( int[] packed, int pos, int from, int to )
+    {
+        int fromDiff = compare(packed[3 * pos], from);
+        return fromDiff == 0 ? compare(packed[3 * pos + 1], to) : fromDiff;
+    }
+
+    private static int compare( int a, int b )
+    {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    /**
+     * @return true if the entries were compacted and not changed since then
+     */
+    public boolean isCompacted()
+    {
+        return compacted;
+    }
+
     @Override
     public void close()
     {
@@ -123,6 +221,7 @@ public class TurnCostStorage implements ExtendedStorage
 
         turnCostsEntryBytes = turnCosts.getHeader(0);
         turnCostsCount = turnCosts.getHeader(4);
+        compacted = turnCosts.getHeader(2 * 4) == 1;
         return true;
     }
 
@@ -145,6 +244,7 @@ public class TurnCostStorage implements ExtendedStorage
         // append
         int newEntryIndex = turnCostsCount;
         turnCostsCount++;
+        compacted = false;
         ensureTurnCostsIndex(newEntryIndex);
 
         // determine if we already have an cost entry for this node
@@ -178,15 +278,45 @@ public class TurnCostStorage implements ExtendedStorage
         turnCosts.setInt(costsBase + TC_NEXT, NO_COST_ENTRY);
     }
 
+    /**
+     * @return true if the specified node has at least one turn cost entry. This is a single lookup
+     * of the additional node field and makes it cheap to skip the majority of nodes.
+     */
+    public boolean hasTurnCosts( int node )
+    {
+        return getCostTableAdress(node) != NO_COST_ENTRY;
+    }
+
+    /**
+     * @return the turn cost flags of the specified turn or 0 if there is no entry. Does not
+     * allocate objects.
+     */
     public int getTurnCosts( int node, int edgeFrom, int edgeTo )
     {
-        if (edgeFrom != EdgeIterator.NO_EDGE && edgeTo != EdgeIterator.NO_EDGE)
+        if (edgeFrom == EdgeIterator.NO_EDGE || edgeTo == EdgeIterator.NO_EDGE)
+            return 0;
+
+        int index = getCostTableAdress(node);
+        for (int i = 0; index != NO_COST_ENTRY; i++)
         {
-            TurnCostIterator tc = createTurnCostIterable(node, edgeFrom, edgeTo);
-            if (tc.next())
+            long ptr = (long) index * turnCostsEntryBytes;
+            int from = turnCosts.getInt(ptr + TC_FROM);
+            if (from == edgeFrom)
             {
-                return tc.costs();
-            }
+                int to = turnCosts.getInt(ptr + TC_TO);
+                if (to == edgeTo)
+                    return turnCosts.getInt(ptr + TC_COSTS);
+
+                if (compacted && to > edgeTo)
+                    return 0;
+            } else if (compacted && from > edgeFrom)
+                return 0;
+
+            // so many turn restrictions on one node? here is something wrong
+            if (i > 1000)
+                throw new IllegalStateException("something went wrong: no end of turn cost-list found");
+
+            index = turnCosts.getInt(ptr + TC_NEXT);
         }
         return 0;
     }
@@ -244,6 +374,7 @@ public class TurnCostStorage implements ExtendedStorage
 
         turnCosts.copyTo(clonedTC.turnCosts);
         clonedTC.turnCostsCount = turnCostsCount;
+        clonedTC.compacted = compacted;
 
         return clonedStorage;
     }
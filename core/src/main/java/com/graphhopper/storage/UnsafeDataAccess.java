@@ -60,6 +60,7 @@ public class UnsafeDataAccess extends AbstractDataAccess
         }
     }
 
+    private static final long INT_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(int[].class);
     private long address;
     private long capacity;
     private transient boolean closed = false;
@@ -220,6 +221,42 @@ public class UnsafeDataAccess extends AbstractDataAccess
         return UNSAFE.getInt(address + bytePos);
     }
 
+    @Override
+    public final void setShort( long bytePos, short value )
+    {
+        UNSAFE.putShort(address + bytePos, value);
+    }
+
+    @Override
+    public final short getShort( long bytePos )
+    {
+        return UNSAFE.getShort(address + bytePos);
+    }
+
+    @Override
+    public final void setLong( long bytePos, long value )
+    {
+        UNSAFE.putLong(address + bytePos, value);
+    }
+
+    @Override
+    public final long getLong( long bytePos )
+    {
+        return UNSAFE.getLong(address + bytePos);
+    }
+
+    @Override
+    public final void setInts( long bytePos, int[] values, int offset, int length )
+    {
+        UNSAFE.copyMemory(values, INT_ARRAY_OFFSET + offset * 4L, null, address + bytePos, length * 4L);
+    }
+
+    @Override
+    public final void getInts( long bytePos, int[] values, int offset, int length )
+    {
+        UNSAFE.copyMemory(null, address + bytePos, values, INT_ARRAY_OFFSET + offset * 4L, length * 4L);
+    }
+
     @Override
     public final void setBytes( long bytePos, byte[] values, int length )
     {
@@ -18,7 +18,6 @@
 package com.graphhopper.storage.index;
 
 import com.graphhopper.coll.GHBitSet;
-import com.graphhopper.coll.GHTBitSet;
 import com.graphhopper.geohash.SpatialKeyAlgo;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
@@ -27,8 +26,10 @@ import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
+import gnu.trove.TIntCollection;
+import gnu.trove.list.array.TDoubleArrayList;
 import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.procedure.TIntProcedure;
+import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -74,6 +75,16 @@ public class LocationIndexTree implements LocationIndex
      * algorithm can stop search.
      */
     private double equalNormedDelta;
+    // the reused data structures of findClosest, one per thread to avoid garbage per lookup. The
+    // context must not reference this index, otherwise the thread would keep both alive forever
+    private final ThreadLocal<LookupContext> lookupContext = new ThreadLocal<LookupContext>()
+    {
+        @Override
+        protected LookupContext initialValue()
+        {
+            return new LookupContext(graph, getEdgeFilter(), equalNormedDelta);
+        }
+    };
 
     public LocationIndexTree( Graph g, Directory dir )
     {
@@ -351,6 +362,7 @@ public class LocationIndexTree implements LocationIndex
         void prepare()
         {
             final EdgeIterator allIter = getAllEdges();
+            PointList points = new PointList(10);
             try
             {
                 while (allIter.next())
@@ -361,7 +373,7 @@ public class LocationIndexTree implements LocationIndex
                     double lon1 = graph.getLongitude(nodeA);
                     double lat2;
                     double lon2;
-                    PointList points = allIter.fetchWayGeometry(0);
+                    allIter.fetchWayGeometry(0, points);
                     int len = points.getSize();
                     for (int i = 0; i < len; i++)
                     {
@@ -552,7 +564,7 @@ public class LocationIndexTree implements LocationIndex
     }
 
     // fillIDs according to how they are stored    
-    void fillIDs( long keyPart, int intIndex, TIntHashSet set, int depth )
+    void fillIDs( long keyPart, int intIndex, TIntCollection set, int depth )
     {
         long pointer = (long) intIndex << 2;
         if (depth == entries.length)
@@ -596,106 +608,380 @@ public class LocationIndexTree implements LocationIndex
     protected TIntHashSet findNetworkEntries( double queryLat, double queryLon )
     {
         TIntHashSet storedNetworkEntryIds = new TIntHashSet();
+        findNetworkEntries(queryLat, queryLon, storedNetworkEntryIds);
+        return storedNetworkEntryIds;
+    }
+
+    /**
+     * Adds the stored network entries of the specified location into the specified collection.
+     * Lists can contain duplicates.
+     */
+    protected void findNetworkEntries( double queryLat, double queryLon, TIntCollection storedNetworkEntryIds )
+    {
         if (regionSearch)
         {
             // search all rasters around minResolutionInMeter as we did not fill empty entries
-            double maxLat = queryLat + deltaLat;
-            double maxLon = queryLon + deltaLon;
-            for (double tmpLat = queryLat - deltaLat; tmpLat <= maxLat; tmpLat += deltaLat)
-            {
-                for (double tmpLon = queryLon - deltaLon; tmpLon <= maxLon; tmpLon += deltaLon)
-                {
-                    long keyPart = createReverseKey(tmpLat, tmpLon);
-                    // System.out.println(BitUtilLittle.toBitString(key, keyAlgo.bits()));
-                    fillIDs(keyPart, START_POINTER, storedNetworkEntryIds, 0);
-                }
-            }
+            findNetworkEntries(queryLat, queryLon, 1, 1, storedNetworkEntryIds);
         } else
         {
             long keyPart = createReverseKey(queryLat, queryLon);
             fillIDs(keyPart, START_POINTER, storedNetworkEntryIds, 0);
         }
-        return storedNetworkEntryIds;
     }
 
+    /**
+     * Adds the stored network entries of all rasters which are at most latCells and lonCells
+     * away from the raster of the specified location.
+     */
+    void findNetworkEntries( double queryLat, double queryLon, int latCells, int lonCells,
+            TIntCollection storedNetworkEntryIds )
+    {
+        for (int latIndex = -latCells; latIndex <= latCells; latIndex++)
+        {
+            double tmpLat = queryLat + latIndex * deltaLat;
+            for (int lonIndex = -lonCells; lonIndex <= lonCells; lonIndex++)
+            {
+                long keyPart = createReverseKey(tmpLat, queryLon + lonIndex * deltaLon);
+                fillIDs(keyPart, START_POINTER, storedNetworkEntryIds, 0);
+            }
+        }
+    }
+
+    /**
+     * Sorts the specified entries and removes duplicates without allocating memory.
+     */
+    static void sortUnique( TIntArrayList entries )
+    {
+        entries.sort();
+        int size = 0;
+        for (int i = 0; i < entries.size(); i++)
+        {
+            int entry = entries.getQuick(i);
+            if (size == 0 || entries.getQuick(size - 1) != entry)
+            {
+                entries.setQuick(size, entry);
+                size++;
+            }
+        }
+        entries.remove(size, entries.size() - size);
+    }
+
+    /**
+     * Finds the closest edge or node. Apart from the returned QueryResult no objects are created
+     * as the lookup reuses the data structures of the current thread.
+     */
     @Override
     public QueryResult findClosest( final double queryLat, final double queryLon,
             final EdgeFilter edgeFilter )
     {
-        final TIntHashSet storedNetworkEntryIds = findNetworkEntries(queryLat, queryLon);
+        LookupContext context = lookupContext.get();
+        TIntArrayList storedNetworkEntryIds = context.networkEntries;
+        storedNetworkEntryIds.resetQuick();
+        findNetworkEntries(queryLat, queryLon, storedNetworkEntryIds);
         final QueryResult closestMatch = new QueryResult(queryLat, queryLon);
         if (storedNetworkEntryIds.isEmpty())
             return closestMatch;
 
-        // clone storedIds to avoid interference with forEach
-        final GHBitSet checkBitset = new GHTBitSet(new TIntHashSet(storedNetworkEntryIds));
+        sortUnique(storedNetworkEntryIds);
         // find nodes from the network entries which are close to 'point'
-        final EdgeExplorer explorer = graph.createEdgeExplorer(getEdgeFilter());
-        storedNetworkEntryIds.forEach(new TIntProcedure()
+        context.init(queryLat, queryLon, edgeFilter);
+        for (int i = 0; i < storedNetworkEntryIds.size(); i++)
         {
-            @Override
-            public boolean execute( final int networkEntryNodeId )
-            {
-                new XFirstSearchCheck(queryLat, queryLon, checkBitset, edgeFilter)
-                {
-                    @Override
-                    protected double getQueryDistance()
-                    {
-                        return closestMatch.getQueryDistance();
-                    }
-
-                    @Override
-                    protected boolean check( int node, double normedDist, int wayIndex, EdgeIteratorState edge, QueryResult.Position pos )
-                    {
-                        if (normedDist < closestMatch.getQueryDistance())
-                        {
-                            closestMatch.setQueryDistance(normedDist);
-                            closestMatch.setClosestNode(node);
-                            closestMatch.setClosestEdge(edge.detach());
-                            closestMatch.setWayIndex(wayIndex);
-                            closestMatch.setSnappedPosition(pos);
-                            return true;
-                        }
-                        return false;
-                    }
-                }.start(explorer, networkEntryNodeId, false);
-                return true;
-            }
-        });
+            context.checkNode(context.explorer, storedNetworkEntryIds.getQuick(i));
+        }
 
-        if (closestMatch.isValid())
+        if (context.closestEdge != EdgeIterator.NO_EDGE)
         {
             // denormalize distance            
-            closestMatch.setQueryDistance(distCalc.calcDenormalizedDist(closestMatch.getQueryDistance()));
+            closestMatch.setQueryDistance(distCalc.calcDenormalizedDist(context.closestNormedDist));
+            closestMatch.setClosestNode(context.closestNode);
+            closestMatch.setClosestEdge(graph.getEdgeProps(context.closestEdge, context.closestAdjNode));
+            closestMatch.setWayIndex(context.closestWayIndex);
+            closestMatch.setSnappedPosition(context.closestPosition);
             closestMatch.calcSnappedPoint(distCalc);
         }
 
         return closestMatch;
     }
 
+    /**
+     * Finds the closest edge or node for every specified location, see findClosest. The locations
+     * are looked up in the order of their spatial key so that close locations walk the same part
+     * of the tree one after another.
+     * <p/>
+     * @return the results in the order of the specified locations
+     */
+    public List<QueryResult> findClosest( double[] queryLats, double[] queryLons, EdgeFilter edgeFilter )
+    {
+        if (queryLats.length != queryLons.length)
+            throw new IllegalArgumentException("latitudes and longitudes differ in length "
+                    + queryLats.length + " vs. " + queryLons.length);
+
+        // the upper 31 bits of the spatial key are enough to keep close locations together and
+        // leave room for the index in the lower bits, so that a primitive sort is possible
+        int keyShift = Math.max(0, keyAlgo.getBits() - 31);
+        long[] sorted = new long[queryLats.length];
+        for (int i = 0; i < sorted.length; i++)
+        {
+            long key = keyAlgo.encode(queryLats[i], queryLons[i]) >>> keyShift;
+            sorted[i] = key << 32 | i;
+        }
+        Arrays.sort(sorted);
+
+        QueryResult[] results = new QueryResult[queryLats.length];
+        for (long entry : sorted)
+        {
+            int i = (int) (entry & 0xFFFFFFFFL);
+            results[i] = findClosest(queryLats[i], queryLons[i], edgeFilter);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Finds at most k edges which are closer than radiusInMeter to the specified location. Every
+     * edge is returned only once, with its closest point to the location.
+     * <p/>
+     * @return the results sorted by increasing query distance
+     */
+    public List<QueryResult> findKClosest( double queryLat, double queryLon, int k, double radiusInMeter,
+            EdgeFilter edgeFilter )
+    {
+        if (k <= 0)
+            throw new IllegalArgumentException("k has to be positive but was " + k);
+
+        // the rasters around the location need to cover the radius
+        double radiusLat = radiusInMeter / DistanceCalcEarth.C * 360;
+        double radiusLon = radiusInMeter / preciseDistCalc.calcCircumference(queryLat) * 360;
+        int latCells = Math.max(1, (int) Math.ceil(radiusLat / deltaLat));
+        int lonCells = Math.max(1, (int) Math.ceil(radiusLon / deltaLon));
+        // more rasters than the whole bounds contain would only find the same entries again
+        BBox bounds = graph.getBounds();
+        latCells = Math.min(latCells, (int) Math.ceil((bounds.maxLat - bounds.minLat) / deltaLat));
+        lonCells = Math.min(lonCells, (int) Math.ceil((bounds.maxLon - bounds.minLon) / deltaLon));
+
+        TIntArrayList storedNetworkEntryIds = new TIntArrayList();
+        findNetworkEntries(queryLat, queryLon, latCells, lonCells, storedNetworkEntryIds);
+        List<QueryResult> results = new ArrayList<QueryResult>();
+        if (storedNetworkEntryIds.isEmpty())
+            return results;
+
+        sortUnique(storedNetworkEntryIds);
+        KClosestCheck check = new KClosestCheck(graph, getEdgeFilter(), equalNormedDelta);
+        check.setQuery(queryLat, queryLon, edgeFilter);
+        for (int i = 0; i < storedNetworkEntryIds.size(); i++)
+        {
+            check.checkNode(check.explorer, storedNetworkEntryIds.getQuick(i));
+        }
+
+        double maxNormedDist = distCalc.calcNormalizedDist(radiusInMeter);
+        int[] best = check.getKClosest(k, maxNormedDist);
+        for (int index : best)
+        {
+            QueryResult res = new QueryResult(queryLat, queryLon);
+            res.setQueryDistance(distCalc.calcDenormalizedDist(check.normedDists.get(index)));
+            res.setClosestNode(check.nodes.get(index));
+            res.setClosestEdge(graph.getEdgeProps(check.edges.get(index), check.adjNodes.get(index)));
+            res.setWayIndex(check.wayIndices.get(index));
+            res.setSnappedPosition(check.positions.get(index));
+            res.calcSnappedPoint(distCalc);
+            results.add(res);
+        }
+        return results;
+    }
+
+    /**
+     * The data structures of findClosest which are reused for all lookups of one thread. It keeps
+     * only the edge id of the best match and creates its EdgeIteratorState at the end.
+     */
+    static class LookupContext extends XFirstSearchCheck
+    {
+        final TIntArrayList networkEntries = new TIntArrayList();
+        final EdgeExplorer explorer;
+        double closestNormedDist;
+        int closestNode;
+        int closestEdge;
+        int closestAdjNode;
+        int closestWayIndex;
+        QueryResult.Position closestPosition;
+
+        LookupContext( Graph graph, EdgeFilter explorerFilter, double equalNormedDelta )
+        {
+            super(graph, equalNormedDelta, 0, 0, null, null);
+            explorer = graph.createEdgeExplorer(explorerFilter);
+        }
+
+        void init( double queryLat, double queryLon, EdgeFilter edgeFilter )
+        {
+            setQuery(queryLat, queryLon, edgeFilter);
+            closestNormedDist = Double.MAX_VALUE;
+            closestNode = -1;
+            closestEdge = EdgeIterator.NO_EDGE;
+            closestAdjNode = -1;
+            closestWayIndex = -1;
+            closestPosition = null;
+        }
+
+        @Override
+        protected double getQueryDistance()
+        {
+            return closestNormedDist;
+        }
+
+        @Override
+        protected boolean check( int node, double normedDist, int wayIndex, EdgeIteratorState edge, QueryResult.Position pos )
+        {
+            if (normedDist < closestNormedDist)
+            {
+                closestNormedDist = normedDist;
+                closestNode = node;
+                closestEdge = edge.getEdge();
+                closestAdjNode = edge.getAdjNode();
+                closestWayIndex = wayIndex;
+                closestPosition = pos;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Collects the closest match of every visited edge for findKClosest.
+     */
+    static class KClosestCheck extends XFirstSearchCheck
+    {
+        final EdgeExplorer explorer;
+        // maps the edge id to the index of its candidate
+        final TIntIntHashMap edgeToIndex = new TIntIntHashMap(16, 0.5f, -1, -1);
+        final TDoubleArrayList normedDists = new TDoubleArrayList();
+        final TIntArrayList nodes = new TIntArrayList();
+        final TIntArrayList edges = new TIntArrayList();
+        final TIntArrayList adjNodes = new TIntArrayList();
+        final TIntArrayList wayIndices = new TIntArrayList();
+        final List<QueryResult.Position> positions = new ArrayList<QueryResult.Position>();
+
+        KClosestCheck( Graph graph, EdgeFilter explorerFilter, double equalNormedDelta )
+        {
+            super(graph, equalNormedDelta, 0, 0, null, null);
+            explorer = graph.createEdgeExplorer(explorerFilter);
+        }
+
+        @Override
+        protected double getQueryDistance()
+        {
+            // never stop early as all edges around are of interest
+            return Double.MAX_VALUE;
+        }
+
+        @Override
+        protected boolean check( int node, double normedDist, int wayIndex, EdgeIteratorState edge, QueryResult.Position pos )
+        {
+            int index = edgeToIndex.get(edge.getEdge());
+            if (index < 0)
+            {
+                edgeToIndex.put(edge.getEdge(), normedDists.size());
+                normedDists.add(normedDist);
+                nodes.add(node);
+                edges.add(edge.getEdge());
+                adjNodes.add(edge.getAdjNode());
+                wayIndices.add(wayIndex);
+                positions.add(pos);
+                return true;
+            }
+
+            if (normedDist < normedDists.get(index))
+            {
+                normedDists.set(index, normedDist);
+                nodes.set(index, node);
+                adjNodes.set(index, edge.getAdjNode());
+                wayIndices.set(index, wayIndex);
+                positions.set(index, pos);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return the indices of at most k candidates not further away than maxNormedDist, sorted
+         * by increasing distance
+         */
+        int[] getKClosest( int k, double maxNormedDist )
+        {
+            int[] best = new int[Math.min(k, normedDists.size())];
+            int size = 0;
+            for (int index = 0; index < normedDists.size(); index++)
+            {
+                double dist = normedDists.get(index);
+                if (dist > maxNormedDist || size == best.length && dist >= normedDists.get(best[size - 1]))
+                    continue;
+
+                // insertion sort into the small array of the best candidates
+                int pos = size < best.length ? size++ : size - 1;
+                while (pos > 0 && normedDists.get(best[pos - 1]) > dist)
+                {
+                    best[pos] = best[pos - 1];
+                    pos--;
+                }
+                best[pos] = index;
+            }
+            return Arrays.copyOf(best, size);
+        }
+    }
+
     /**
      * Make it possible to collect nearby location also for other purposes.
      */
-    protected abstract class XFirstSearchCheck extends XFirstSearch
+    protected static abstract class XFirstSearchCheck extends XFirstSearch
     {
+        final Graph graph;
+        final double equalNormedDelta;
         boolean goFurther = true;
         double currNormedDist;
         double currLat;
         double currLon;
         int currNode;
-        final double queryLat;
-        final double queryLon;
+        double queryLat;
+        double queryLon;
         final GHBitSet checkBitset;
-        final EdgeFilter edgeFilter;
+        EdgeFilter edgeFilter;
+        // reused for the geometry of all checked edges
+        final PointList wayGeometry = new PointList(10);
 
-        public XFirstSearchCheck( double queryLat, double queryLon, GHBitSet checkBitset, EdgeFilter edgeFilter )
+        public XFirstSearchCheck( Graph graph, double equalNormedDelta, double queryLat, double queryLon,
+                GHBitSet checkBitset, EdgeFilter edgeFilter )
         {
+            this.graph = graph;
+            this.equalNormedDelta = equalNormedDelta;
             this.queryLat = queryLat;
             this.queryLon = queryLon;
             this.checkBitset = checkBitset;
             this.edgeFilter = edgeFilter;
         }
 
+        /**
+         * Makes this instance reusable for another query.
+         */
+        protected void setQuery( double queryLat, double queryLon, EdgeFilter edgeFilter )
+        {
+            this.queryLat = queryLat;
+            this.queryLon = queryLon;
+            this.edgeFilter = edgeFilter;
+            goFurther = true;
+        }
+
+        /**
+         * Checks all edges of the specified node like start does for its start node, but without
+         * a bitset and a queue.
+         */
+        protected void checkNode( EdgeExplorer explorer, int node )
+        {
+            goFurther(node);
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+            {
+                checkAdjacent(iter);
+            }
+        }
+
         @Override
         protected GHBitSet createBitSet()
         {
@@ -741,7 +1027,7 @@ public class LocationIndexTree implements LocationIndex
             double tmpLat = currLat;
             double tmpLon = currLon;
             double tmpNormedDist;
-            PointList pointList = currEdge.fetchWayGeometry(2);
+            PointList pointList = currEdge.fetchWayGeometry(2, wayGeometry);
             int len = pointList.getSize();
             for (int pointIndex = 0; pointIndex < len; pointIndex++)
             {
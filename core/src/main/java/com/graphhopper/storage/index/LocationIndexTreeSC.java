@@ -121,6 +121,12 @@ public class LocationIndexTreeSC extends LocationIndexTree
                 return tmpIter.fetchWayGeometry(type);
             }
 
+            @Override
+            public PointList fetchWayGeometry( int type, PointList points )
+            {
+                return tmpIter.fetchWayGeometry(type, points);
+            }
+
             @Override
             public EdgeIteratorState setWayGeometry( PointList list )
             {
@@ -128,6 +128,10 @@ public abstract class BitUtil
 
     public abstract void fromInt( byte[] bytes, int value, int offset );
 
+    public abstract short toShort( byte[] b, int offset );
+
+    public abstract void fromShort( byte[] bytes, short value, int offset );
+
     public final long toLong( byte[] b )
     {
         return toLong(b, 0);
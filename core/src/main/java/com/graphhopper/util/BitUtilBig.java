@@ -44,6 +44,19 @@ public class BitUtilBig extends BitUtil
         bytes[++offset] = (byte) (value);
     }
 
+    @Override
+    public final short toShort( byte[] b, int offset )
+    {
+        return (short) ((b[offset] & 0xFF) << 8 | (b[offset + 1] & 0xFF));
+    }
+
+    @Override
+    public final void fromShort( byte[] bytes, short value, int offset )
+    {
+        bytes[offset] = (byte) (value >> 8);
+        bytes[offset + 1] = (byte) (value);
+    }
+
     @Override
     public final long toLong( int int0, int int1 )
     {
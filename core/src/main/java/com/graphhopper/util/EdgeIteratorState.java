@@ -61,6 +61,15 @@ public interface EdgeIteratorState
      */
     PointList fetchWayGeometry( int mode );
 
+    /**
+     * Like fetchWayGeometry(mode) but fills the specified list instead of creating a new one,
+     * which avoids the garbage if the geometry of many edges is read.
+     * <p/>
+     * @param points is cleared and then filled
+     * @return the specified list
+     */
+    PointList fetchWayGeometry( int mode, PointList points );
+
     /**
      * @param list is a sorted collection of nodes between the baseNode and the current adjacent
      * node. Specify the list without the adjacent and base nodes.
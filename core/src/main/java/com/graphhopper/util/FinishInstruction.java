@@ -32,4 +32,10 @@ public class FinishInstruction extends Instruction
             }
         });
     }
+
+    @Override
+    public Instruction copy()
+    {
+        return new FinishInstruction(getFirstLat(), getFirstLon()).setDistance(getDistance()).setMillis(getMillis());
+    }
 }
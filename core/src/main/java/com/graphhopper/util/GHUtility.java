@@ -24,6 +24,7 @@ import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.*;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
+import java.io.File;
 import java.util.*;
 
 /**
@@ -34,6 +35,14 @@ import java.util.*;
  */
 public class GHUtility
 {
+    /**
+     * While a checkpoint is written the files of the previous one are kept in this sub folder of
+     * the graph, see flushCheckpoint and restoreCheckpoint.
+     */
+    public static final String CHECKPOINT_PREVIOUS = "checkpoint_previous";
+    private static final String CHECKPOINT_MOVING = CHECKPOINT_PREVIOUS + "_moving";
+    private static final String CHECKPOINT_OBSOLETE = CHECKPOINT_PREVIOUS + "_obsolete";
+
     /**
      * @throws could throw exception if uncatched problems like index out of bounds etc
      */
@@ -172,7 +181,8 @@ public class GHUtility
 
     /**
      * Sorts the graph according to depth-first search traversal. Other traversals have either no
-     * significant difference (bfs) for querying or are worse (z-curve).
+     * significant difference (bfs) for querying or are worse (z-curve). A prepared LevelGraphStorage
+     * is sorted including its shortcuts.
      */
     public static Graph sortDFS( Graph g, Graph sortedGraph )
     {
@@ -207,6 +217,9 @@ public class GHUtility
 
     static Graph createSortedGraph( Graph g, Graph sortedGraph, final TIntList oldToNewNodeList )
     {
+        if (g instanceof LevelGraphStorage && sortedGraph instanceof LevelGraphStorage)
+            return ((LevelGraphStorage) g).copySortedTo((LevelGraphStorage) sortedGraph, oldToNewNodeList);
+
         int len = oldToNewNodeList.size();
         // important to avoid creating two edges for edges with both directions
         GHBitSet bitset = new GHBitSetImpl(len);
@@ -254,12 +267,13 @@ public class GHUtility
     static GraphStorage guessStorage( Graph g, Directory outdir, EncodingManager encodingManager )
     {
         GraphStorage store;
+        boolean compactEdges = g instanceof GraphHopperStorage && ((GraphHopperStorage) g).isCompactEdges();
         if (g instanceof LevelGraphStorage)
         {
-            store = new LevelGraphStorage(outdir, encodingManager);
+            store = new LevelGraphStorage(outdir, encodingManager, ((LevelGraphStorage) g).getHierarchies(), compactEdges);
         } else
         {
-            store = new GraphHopperStorage(outdir, encodingManager);
+            store = new GraphHopperStorage(outdir, encodingManager, new ExtendedStorage.NoExtendedStorage(), compactEdges);
         }
         return store;
     }
@@ -302,7 +316,7 @@ public class GHUtility
                     continue;
 
                 to.edge(oldNode, adjacentNodeIndex).setDistance(eIter.getDistance()).setFlags(eIter.getFlags()).
-                        setWayGeometry(eIter.fetchWayGeometry(0));
+                        setWayGeometry(eIter.fetchWayGeometry(0)).setName(eIter.getName());
             }
         }
         return to;
@@ -404,6 +418,12 @@ public class GHUtility
             throw new UnsupportedOperationException("Not supported. Edge is empty.");
         }
 
+        @Override
+        public PointList fetchWayGeometry( int type, PointList points )
+        {
+            throw new UnsupportedOperationException("Not supported. Edge is empty.");
+        }
+
         @Override
         public EdgeIteratorState setWayGeometry( PointList list )
         {
@@ -441,6 +461,16 @@ public class GHUtility
         }
     };
 
+    /**
+     * Creates a key for the specified edge traversed from base to adj. Both directions of an edge
+     * get a different key which makes it usable for edge based algorithms.
+     */
+    public static int createEdgeKey( int base, int adj, int edgeId )
+    {
+        edgeId = edgeId << 1;
+        return base > adj ? edgeId + 1 : edgeId;
+    }
+
     /**
      * @return the <b>first</b> edge containing the specified nodes base and adj. Returns null if
      * not found.
@@ -455,4 +485,104 @@ public class GHUtility
         }
         return null;
     }
+
+    /**
+     * Flushes the specified storables and the graph together with the specified property as a
+     * checkpoint of a long running preparation. The files of the previous checkpoint are moved into
+     * the sub folder CHECKPOINT_PREVIOUS before and removed only after all files are written, so if
+     * writing is interrupted restoreCheckpoint falls back to them.
+     */
+    public static void flushCheckpoint( GraphStorage graph, String key, Object value, Storable<?>... storables )
+    {
+        File dir = new File(graph.getDirectory().getLocation());
+        File moving = new File(dir, CHECKPOINT_MOVING);
+        File previous = new File(dir, CHECKPOINT_PREVIOUS);
+        if (moving.exists() || previous.exists())
+            throw new IllegalStateException("An interrupted checkpoint exists in " + dir
+                    + ", call restoreCheckpoint before loading the graph");
+
+        // renaming the folder marks the previous checkpoint as complete
+        if (!moving.mkdirs())
+            throw new IllegalStateException("Couldn't create " + moving);
+        moveFiles(dir, moving);
+        rename(moving, previous);
+
+        for (Storable<?> storable : storables)
+        {
+            storable.flush();
+        }
+        graph.getProperties().put(key, value);
+        graph.flush();
+
+        // files which were not written again are still valid
+        moveFiles(previous, dir);
+        File obsolete = new File(dir, CHECKPOINT_OBSOLETE);
+        rename(previous, obsolete);
+        Helper.removeDir(obsolete);
+    }
+
+    /**
+     * Falls back to the previous checkpoint if writing a checkpoint into the specified graph folder
+     * was interrupted. Has to be called before the graph is loaded.
+     * <p/>
+     * @return true if the files of the previous checkpoint were restored
+     * @throws IllegalStateException if writing the first checkpoint was interrupted, then there is
+     * no complete checkpoint to fall back to
+     */
+    public static boolean restoreCheckpoint( String location )
+    {
+        File dir = new File(location);
+        File obsolete = new File(dir, CHECKPOINT_OBSOLETE);
+        if (obsolete.exists())
+            Helper.removeDir(obsolete);
+
+        // moving the files was interrupted, nothing was written yet
+        File moving = new File(dir, CHECKPOINT_MOVING);
+        if (moving.exists())
+        {
+            moveFiles(moving, dir);
+            if (!moving.delete())
+                throw new IllegalStateException("Couldn't remove " + moving);
+        }
+
+        File previous = new File(dir, CHECKPOINT_PREVIOUS);
+        if (!previous.exists())
+            return false;
+
+        if (!new File(previous, "properties").exists())
+            throw new IllegalStateException("Writing the first checkpoint of " + location + " was interrupted and "
+                    + "there is no previous checkpoint to fall back to. Remove the folder and import again");
+
+        // all files in the graph folder were written by the interrupted checkpoint
+        for (File file : dir.listFiles())
+        {
+            if (file.isFile() && !file.delete())
+                throw new IllegalStateException("Couldn't remove " + file);
+        }
+        moveFiles(previous, dir);
+        if (!previous.delete())
+            throw new IllegalStateException("Couldn't remove " + previous);
+
+        return true;
+    }
+
+    /**
+     * Moves the files, but not the folders, from one folder into another. Files which already
+     * exist in the target folder are skipped.
+     */
+    private static void moveFiles( File from, File to )
+    {
+        for (File file : from.listFiles())
+        {
+            File target = new File(to, file.getName());
+            if (file.isFile() && !target.exists())
+                rename(file, target);
+        }
+    }
+
+    private static void rename( File from, File to )
+    {
+        if (!from.renameTo(to))
+            throw new IllegalStateException("Couldn't move " + from + " to " + to);
+    }
 }
@@ -106,7 +106,7 @@ public class Instruction
     /**
      * Latitude of the location where this instruction should take place.
      */
-    double getFirstLat()
+    public double getFirstLat()
     {
         return points.getLatitude(0);
     }
@@ -114,11 +114,20 @@ public class Instruction
     /**
      * Longitude of the location where this instruction should take place.
      */
-    double getFirstLon()
+    public double getFirstLon()
     {
         return points.getLongitude(0);
     }
 
+    /**
+     * @return an independent copy of this instruction
+     */
+    public Instruction copy()
+    {
+        return new Instruction(indication, name, waytype, pavementType, points.clone(false)).
+                setDistance(distance).setMillis(millis);
+    }
+
     double getLastLat()
     {
         return points.getLatitude(points.size() - 1);
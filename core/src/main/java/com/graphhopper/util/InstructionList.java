@@ -17,6 +17,7 @@
  */
 package com.graphhopper.util;
 
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 
 import java.util.ArrayList;
@@ -254,6 +255,25 @@ public class InstructionList implements Iterable<Instruction>
      * @return string to be stored as gpx file
      */
     public String createGPX( String trackName, long startTimeMillis, String timeZoneId )
+    {
+        StringBuilder sb = new StringBuilder();
+        try
+        {
+            writeGPX(sb, trackName, startTimeMillis, timeZoneId);
+        } catch (IOException ex)
+        {
+            // cannot happen for a StringBuilder
+            throw new IllegalStateException(ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the GPX Format of the points to the specified output while it creates the entries of
+     * only one instruction at a time.
+     */
+    public void writeGPX( Appendable out, String trackName, long startTimeMillis, String timeZoneId )
+            throws IOException
     {
         SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
         TimeZone tz = TimeZone.getDefault();
@@ -261,26 +281,42 @@ public class InstructionList implements Iterable<Instruction>
             tz = TimeZone.getTimeZone(timeZoneId);
 
         formatter.setTimeZone(tz);
-        String header = "<?xml version='1.0' encoding='UTF-8' standalone='no' ?>"
-                + "<gpx xmlns='http://www.topografix.com/GPX/1/1' creator='Graphhopper' version='1.1' >"
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\" ?>"
+                + "<gpx xmlns=\"http://www.topografix.com/GPX/1/1\" creator=\"Graphhopper\" version=\"1.1\" >"
                 + "<metadata>"
-                + "<link href='http://graphhopper.com'>"
+                + "<link href=\"http://graphhopper.com\">"
                 + "<text>GraphHopper GPX</text>"
                 + "</link>"
-                + "<time>" + tzHack(formatter.format(startTimeMillis)) + "</time>"
-                + "</metadata>";
-        StringBuilder track = new StringBuilder(header);
-        track.append("<trk><name>").append(trackName).append("</name>");
-        track.append("<trkseg>");
-        for (GPXEntry entry : createGPXList())
+                + "<time>").append(tzHack(formatter.format(startTimeMillis))).append("</time>"
+                + "</metadata>");
+        out.append("<trk><name>").append(escapeXml(trackName)).append("</name>");
+        out.append("<trkseg>");
+        List<GPXEntry> gpxList = new ArrayList<GPXEntry>();
+        long timeOffset = 0;
+        double prevLat = Double.NaN, prevLon = Double.NaN;
+        double prevFactor = 0;
+        for (Instruction i : this)
         {
-            track.append("<trkpt lat='").append(entry.getLat()).append("' lon='").append(entry.getLon()).append("'>");
-            track.append("<time>").append(tzHack(formatter.format(startTimeMillis + entry.getMillis()))).append("</time>");
-            track.append("</trkpt>");
+            gpxList.clear();
+            timeOffset = i.fillGPXList(gpxList, timeOffset, prevFactor, prevLat, prevLon);
+            prevFactor = i.getDistance() / i.getMillis();
+            prevLat = i.getLastLat();
+            prevLon = i.getLastLon();
+            for (GPXEntry entry : gpxList)
+            {
+                out.append("<trkpt lat=\"").append(String.valueOf(entry.getLat())).
+                        append("\" lon=\"").append(String.valueOf(entry.getLon())).append("\">");
+                out.append("<time>").append(tzHack(formatter.format(startTimeMillis + entry.getMillis()))).append("</time>");
+                out.append("</trkpt>");
+            }
         }
-        track.append("</trkseg>");
-        track.append("</trk></gpx>");
-        return track.toString().replaceAll("\\'", "\"");
+        out.append("</trkseg>");
+        out.append("</trk></gpx>");
+    }
+
+    private static String escapeXml( String str )
+    {
+        return str.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
     }
 
     /**
@@ -75,6 +75,13 @@ public class Measurement
             put("prepare.time", sw.stop().getTime());
             put("prepare.shortcuts", getGraph().getAllEdges().getMaxId() - edges);
         }
+
+        public void doSortPreparedGraph()
+        {
+            StopWatch sw = new StopWatch().start();
+            sortPreparedGraph();
+            put("sort.time", sw.stop().getTime());
+        }
     }
 
     // creates properties file in the format key=value
@@ -124,6 +131,10 @@ public class Measurement
             hopper.setCHShortcuts("fastest");
             hopper.doPostProcessing();
             printTimeOfRouteQuery(hopper, count, "routingCH", vehicleStr);
+
+            // sort nodes and edges including the shortcuts to measure the improved memory locality
+            hopper.doSortPreparedGraph();
+            printTimeOfRouteQuery(hopper, count, "routingCHSorted", vehicleStr);
             logger.info("store into " + propLocation);
         } catch (Exception ex)
         {
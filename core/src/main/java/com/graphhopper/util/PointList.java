@@ -71,6 +71,18 @@ public class PointList
         size = newSize;
     }
 
+    /**
+     * Appends all points of the specified list starting from the specified index.
+     */
+    public void add( PointList points, int fromIndex )
+    {
+        int len = points.getSize();
+        for (int i = fromIndex; i < len; i++)
+        {
+            add(points.getLatitude(i), points.getLongitude(i));
+        }
+    }
+
     public int size()
     {
         return size;
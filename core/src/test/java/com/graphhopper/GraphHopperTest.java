@@ -17,12 +17,24 @@
  */
 package com.graphhopper;
 
+import com.graphhopper.reader.OSMReader;
+import com.graphhopper.routing.RoutingContextPool;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.ProgressListener;
+import com.graphhopper.util.shapes.GHPlace;
 import com.graphhopper.util.shapes.GHPoint;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.After;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -37,6 +49,7 @@ public class GraphHopperTest
     private static final String ghLoc = "./target/tmp/ghosm";
     private static final String testOsm = "./src/test/resources/com/graphhopper/reader/test-osm.xml";
     private static final String testOsm3 = "./src/test/resources/com/graphhopper/reader/test-osm3.xml";
+    private static final String testRestrictions = "./src/test/resources/com/graphhopper/reader/test-restrictions.xml";
     private GraphHopper instance;
 
     @Before
@@ -87,6 +100,27 @@ public class GraphHopperTest
         assertEquals(3, ph.getPoints().getSize());
     }
 
+    @Test
+    public void testWeightingNotPrepared()
+    {
+        instance = new GraphHopper().setInMemory(true, false).
+                setEncodingManager(new EncodingManager("CAR")).
+                setCHShortcuts("shortest").
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+        assertNull(instance.getPreparation("CAR", "fastest"));
+
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).setWeighting("fastest"));
+        assertTrue(rsp.hasErrors());
+        assertTrue(rsp.getErrors().toString(), rsp.getErrors().get(0).getMessage().contains("not prepared"));
+
+        // without a weighting the prepared one is used
+        rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertTrue(rsp.isFound());
+    }
+
     @Test
     public void testSortedGraph_noCH()
     {
@@ -105,6 +139,37 @@ public class GraphHopperTest
         assertEquals(new GHPoint(51.199999850988384, 9.39999970197677), ph.getPoints().toGHPoint(2));
     }
 
+    @Test
+    public void testSortedGraph_CH()
+    {
+        GraphHopper noCH = new GraphHopper().setInMemory(true, false).
+                setEncodingManager(new EncodingManager("CAR")).
+                disableCHShortcuts().
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm3);
+        noCH.importOrLoad();
+
+        instance = new GraphHopper().setInMemory(true, false).
+                setSortGraph(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setCHShortcuts("fastest").
+                setGraphHopperLocation(ghLoc + "/ch").
+                setOSMFile(testOsm3);
+        instance.importOrLoad();
+        assertEquals(noCH.getGraph().getNodes(), instance.getGraph().getNodes());
+
+        for (GHRequest req : Arrays.asList(new GHRequest(11.1, 50, 11.3, 51),
+                new GHRequest(11.1, 50, 10, 51), new GHRequest(10, 51, 11.1, 50)))
+        {
+            GHResponse expected = noCH.route(req.setAlgorithm("dijkstra"));
+            GHResponse res = instance.route(req.setAlgorithm("dijkstrabi"));
+            assertFalse(res.getErrors().toString(), res.hasErrors());
+            assertEquals(expected.isFound(), res.isFound());
+            assertEquals(expected.getDistance(), res.getDistance(), 1e-3);
+            assertEquals(expected.getPoints(), res.getPoints());
+        }
+    }
+
     @Test
     public void testFootAndCar()
     {
@@ -149,6 +214,248 @@ public class GraphHopperTest
         assertEquals(3, res.getPoints().getSize());
     }
 
+    @Test
+    public void testFootAndCarCH()
+    {
+        GraphHopper noCH = new GraphHopper().setInMemory(true, false).
+                setEncodingManager(new EncodingManager("CAR,FOOT")).
+                disableCHShortcuts().
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm3);
+        noCH.importOrLoad();
+
+        instance = new GraphHopper().setInMemory(true, true).
+                setEncodingManager(new EncodingManager("CAR,FOOT")).
+                setCHShortcuts("fastest,shortest").
+                setGraphHopperLocation(ghLoc + "/ch").
+                setOSMFile(testOsm3);
+        instance.importOrLoad();
+        // the hierarchies share the nodes
+        assertEquals(noCH.getGraph().getNodes(), instance.getGraph().getNodes());
+        assertEquals(4, ((LevelGraphStorage) instance.getGraph()).getHierarchies());
+
+        List<GHRequest> requests = Arrays.asList(new GHRequest(11.1, 50, 11.3, 51),
+                new GHRequest(11.1, 50, 10, 51), new GHRequest(10, 51, 11.1, 50));
+        for (String vehicle : Arrays.asList(EncodingManager.CAR, EncodingManager.FOOT))
+        {
+            for (String weighting : Arrays.asList("fastest", "shortest"))
+            {
+                assertNotNull(instance.getPreparation(vehicle, weighting));
+                for (GHRequest req : requests)
+                {
+                    req.setVehicle(vehicle).setWeighting(weighting);
+                    GHResponse expected = noCH.route(req.setAlgorithm("dijkstra"));
+                    GHResponse res = instance.route(req.setAlgorithm("dijkstrabi"));
+                    assertFalse(res.getErrors().toString(), res.hasErrors());
+                    assertEquals(vehicle + " " + weighting, expected.isFound(), res.isFound());
+                    assertEquals(vehicle + " " + weighting, expected.getDistance(), res.getDistance(), 1e-3);
+                    assertEquals(expected.getPoints(), res.getPoints());
+                }
+            }
+        }
+        assertTrue(instance.getPreparation(EncodingManager.CAR, "fastest") != instance.getPreparation(EncodingManager.FOOT, "fastest"));
+        instance.close();
+
+        // the prepared hierarchies are loaded again
+        instance = new GraphHopper().setInMemory(true, true).
+                setEncodingManager(new EncodingManager("CAR,FOOT")).
+                setCHShortcuts("fastest,shortest");
+        assertTrue(instance.load(ghLoc + "/ch"));
+        GHResponse res = instance.route(new GHRequest(11.1, 50, 10, 51).setVehicle(EncodingManager.FOOT).setWeighting("shortest"));
+        assertEquals(noCH.route(new GHRequest(11.1, 50, 10, 51).setVehicle(EncodingManager.FOOT).setWeighting("shortest")).getDistance(),
+                res.getDistance(), 1e-3);
+        instance.close();
+    }
+
+    @Test
+    public void testTurnRestrictionsCH()
+    {
+        GraphHopper noRestrictions = new GraphHopper().setInMemory(true, false).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc + "/free").
+                setOSMFile(testRestrictions);
+        noRestrictions.importOrLoad();
+
+        instance = new GraphHopper().setInMemory(true, true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setEnableTurnRestrictions(true).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testRestrictions);
+        instance.importOrLoad();
+        assertNotNull(instance.getEdgeBasedPreparation("CAR", "fastest"));
+        assertTrue(new File(ghLoc + "/linegraph_car_fastest").isDirectory());
+
+        // 2-3-8 is the shortest way but the turn from 2-3 into 3-8 is restricted, the turn from 4-3
+        // into 3-8 too and 9 can only be left with a u-turn
+        GHRequest to8 = new GHRequest(52, 10, 54, 11);
+        assertTrue(noRestrictions.route(to8).isFound());
+        GHResponse rsp = instance.route(to8);
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertFalse(rsp.isFound());
+
+        // going straight on is allowed
+        GHRequest to4 = new GHRequest(52, 10, 52, 12);
+        rsp = instance.route(to4);
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertEquals(noRestrictions.route(to4).getDistance(), rsp.getDistance(), 1e-3);
+        noRestrictions.close();
+        instance.close();
+
+        // the line graph is loaded with the graph
+        instance = new GraphHopper().setInMemory(true, true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setEnableTurnRestrictions(true);
+        assertTrue(instance.load(ghLoc));
+        assertFalse(instance.route(to8).isFound());
+        assertTrue(instance.route(to4).isFound());
+    }
+
+    @Test
+    public void testViaPoints()
+    {
+        instance = new GraphHopper().setInMemory(true, false).
+                setEncodingManager(new EncodingManager("CAR")).
+                disableCHShortcuts().
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm3);
+        instance.importOrLoad();
+
+        // A to D to E
+        GHResponse ad = instance.route(new GHRequest(11.1, 50, 11.3, 51).putHint("simplifyRequest", false));
+        GHResponse de = instance.route(new GHRequest(11.3, 51, 10, 51).putHint("simplifyRequest", false));
+        GHResponse res = instance.route(new GHRequest(Arrays.asList(new GHPlace(11.1, 50),
+                new GHPlace(11.3, 51), new GHPlace(10, 51))).putHint("simplifyRequest", false));
+        assertFalse(res.hasErrors());
+        assertTrue(res.isFound());
+        assertEquals(2, res.getLegDistances().size());
+        assertEquals(ad.getDistance(), res.getLegDistances().get(0), 1e-3);
+        assertEquals(de.getDistance(), res.getLegDistances().get(1), 1e-3);
+        assertEquals(ad.getDistance() + de.getDistance(), res.getDistance(), 1e-3);
+        assertEquals(ad.getMillis() + de.getMillis(), res.getMillis());
+        // the via point is only included once
+        assertEquals(ad.getPoints().getSize() + de.getPoints().getSize() - 1, res.getPoints().getSize());
+        assertEquals(51, res.getPoints().getLongitude(res.getPoints().getSize() - 1), 1e-3);
+        assertEquals(10, res.getPoints().getLatitude(res.getPoints().getSize() - 1), 1e-3);
+        // only one finish instruction
+        assertEquals(ad.getInstructions().getSize() + de.getInstructions().getSize() - 1,
+                res.getInstructions().getSize());
+    }
+
+    @Test
+    public void testRoutingContextReuse()
+    {
+        instance = new GraphHopper().setInMemory(true, false).
+                setEncodingManager(new EncodingManager("CAR")).
+                disableCHShortcuts().
+                setRoutingContextPoolSize(1).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm3);
+        instance.importOrLoad();
+
+        GHResponse expected = instance.route(new GHRequest(11.1, 50, 10, 51));
+        // the default algorithm does not use a context
+        assertEquals(0, instance.getRoutingContextPool().getAcquired());
+        for (int i = 0; i < 3; i++)
+        {
+            GHResponse rsp = instance.route(new GHRequest(11.1, 50, 10, 51).setAlgorithm("dijkstrabiArray"));
+            assertTrue(rsp.isFound());
+            assertEquals(expected.getDistance(), rsp.getDistance(), 1e-3);
+            assertEquals(expected.getPoints(), rsp.getPoints());
+        }
+
+        RoutingContextPool pool = instance.getRoutingContextPool();
+        assertEquals(3, pool.getAcquired());
+        assertEquals(1, pool.getCreated());
+        assertEquals(1, pool.getIdle());
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    public void testLookupAndRoute()
+    {
+        instance = new GraphHopper().setInMemory(true, false).
+                setEncodingManager(new EncodingManager("CAR")).
+                disableCHShortcuts().
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm3);
+        instance.importOrLoad();
+
+        GHRequest request = new GHRequest(11.1, 50, 10, 51);
+        GHResponse expected = instance.route(request);
+        List<Throwable> errors = new ArrayList<Throwable>();
+        List<QueryResult> qResults = instance.lookup(request, errors);
+        assertTrue(errors.isEmpty());
+        assertEquals(2, qResults.size());
+        GHResponse rsp = instance.route(request, qResults);
+        assertFalse(rsp.hasErrors());
+        assertEquals(expected.getDistance(), rsp.getDistance(), 1e-3);
+        assertEquals(expected.getPoints(), rsp.getPoints());
+
+        assertTrue(instance.lookup(new GHRequest(11.1, 50, 10, 51).setVehicle("FOOT"), errors).isEmpty());
+        assertEquals(1, errors.size());
+    }
+
+    @Test
+    public void testRouteBatch()
+    {
+        instance = new GraphHopper().setInMemory(true, false).
+                setEncodingManager(new EncodingManager("CAR")).
+                disableCHShortcuts().
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm3);
+        instance.importOrLoad();
+
+        List<GHRequest> requests = new ArrayList<GHRequest>();
+        for (int i = 0; i < 10; i++)
+        {
+            requests.add(new GHRequest(11.1, 50, 10, 51));
+            requests.add(new GHRequest(11.1, 50, 11.3, 51).setWeighting("shortest"));
+            requests.add(new GHRequest(11.3, 51, 10, 51).setAlgorithm("dijkstrabiArray"));
+        }
+        requests.add(5, new GHRequest(11.1, 50, 10, 51).setVehicle("FOOT"));
+        requests.add(7, new GHRequest(Arrays.asList(new GHPlace(11.1, 50))));
+
+        final AtomicLong progress = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<GHResponse> responses = instance.routeBatch(requests, executor, new ProgressListener()
+        {
+            @Override
+            public void update( long val )
+            {
+                synchronized (progress)
+                {
+                    progress.set(Math.max(progress.get(), val));
+                }
+            }
+        });
+        executor.shutdown();
+
+        assertEquals(requests.size(), responses.size());
+        assertEquals(requests.size(), progress.get());
+        assertTrue(responses.get(5).hasErrors());
+        assertTrue(responses.get(7).hasErrors());
+        for (int i = 0; i < requests.size(); i++)
+        {
+            if (i == 5 || i == 7)
+                continue;
+
+            GHResponse expected = instance.route(requests.get(i));
+            GHResponse rsp = responses.get(i);
+            assertFalse(rsp.hasErrors());
+            assertEquals(expected.getDistance(), rsp.getDistance(), 1e-3);
+            assertEquals(expected.getPoints(), rsp.getPoints());
+        }
+
+        // the shared executor of the instance is reused for subsequent batches
+        for (int run = 0; run < 2; run++)
+        {
+            responses = instance.routeBatch(requests);
+            assertEquals(requests.size(), responses.size());
+            assertFalse(responses.get(0).hasErrors());
+            assertEquals(instance.route(requests.get(0)).getDistance(), responses.get(0).getDistance(), 1e-3);
+        }
+    }
+
     @Test
     public void testFailsForWrongConfig() throws IOException
     {
@@ -292,4 +599,54 @@ public class GraphHopperTest
                 setOSMFile(testOsm3);
         instance.load(ghLoc);
     }
+
+    @Test
+    public void testResumeImport()
+    {
+        instance = new GraphHopper()
+        {
+            @Override
+            protected void optimize()
+            {
+                throw new IllegalStateException("stopped while optimizing");
+            }
+        }.setInMemory(true, true).
+                setCheckpoints(true, 30).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        try
+        {
+            instance.importOrLoad();
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+            assertEquals("stopped while optimizing", ex.getMessage());
+        }
+        instance.close();
+
+        // the OSM file must not be read again
+        instance = new GraphHopper()
+        {
+            @Override
+            protected OSMReader importOSM( String _osmFile ) throws IOException
+            {
+                throw new IllegalStateException("import should be resumed");
+            }
+        }.setInMemory(true, true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+        GHResponse ph = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertTrue(ph.isFound());
+        assertEquals(3, ph.getPoints().getSize());
+        instance.close();
+
+        instance = new GraphHopper().setInMemory(true, true);
+        assertTrue(instance.load(ghLoc));
+        ph = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertTrue(ph.isFound());
+        assertEquals(3, ph.getPoints().getSize());
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.RAMDirectory;
+import gnu.trove.map.hash.TLongIntHashMap;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class CompressedLongIntMapTest
+{
+    CompressedLongIntMap createMap()
+    {
+        return new CompressedLongIntMap(new RAMDirectory(), "test");
+    }
+
+    @Test
+    public void testGet()
+    {
+        CompressedLongIntMap map = createMap();
+        map.put(9, 0);
+        map.put(10, -50);
+        map.put(12, 3);
+        map.put(11, 2);
+        map.put(300, 6);
+        map.put(1L << 40, 5);
+
+        assertEquals(6, map.getSize());
+        assertEquals(-1, map.get(8));
+        assertEquals(0, map.get(9));
+        assertEquals(-50, map.get(10));
+        assertEquals(2, map.get(11));
+        assertEquals(3, map.get(12));
+        assertEquals(-1, map.get(13));
+        assertEquals(-1, map.get(256 + 12));
+        assertEquals(6, map.get(300));
+        assertEquals(5, map.get(1L << 40));
+        assertEquals(-1, map.get((1L << 40) + 1));
+    }
+
+    @Test
+    public void testUpdate()
+    {
+        CompressedLongIntMap map = createMap();
+        assertEquals(-1, map.put(100, 10));
+        assertEquals(10, map.put(100, 9));
+        assertEquals(9, map.get(100));
+        assertEquals(1, map.getSize());
+    }
+
+    @Test
+    public void testNegativeKeys()
+    {
+        CompressedLongIntMap map = createMap();
+        map.put(-1, 1);
+        map.put(-256, 2);
+        map.put(-257, 3);
+        map.put(-Long.MAX_VALUE, 4);
+        map.put(Long.MAX_VALUE, 5);
+        map.put(0, 6);
+
+        assertEquals(1, map.get(-1));
+        assertEquals(2, map.get(-256));
+        assertEquals(3, map.get(-257));
+        assertEquals(4, map.get(-Long.MAX_VALUE));
+        assertEquals(5, map.get(Long.MAX_VALUE));
+        assertEquals(6, map.get(0));
+        assertEquals(-1, map.get(-2));
+        assertEquals(-1, map.get(1));
+    }
+
+    @Test
+    public void testFullBlock()
+    {
+        CompressedLongIntMap map = createMap();
+        // descending keys are inserted at the beginning of a block
+        for (int i = 511; i >= 0; i--)
+        {
+            map.put(i, i * 2);
+        }
+        assertEquals(512, map.getSize());
+        for (int i = 0; i < 512; i++)
+        {
+            assertEquals(i * 2, map.get(i));
+        }
+        assertEquals(-1, map.get(512));
+    }
+
+    @Test
+    public void testRandom()
+    {
+        CompressedLongIntMap map = createMap();
+        TLongIntHashMap expected = new TLongIntHashMap(100, .5f, -1, -1);
+        Random rand = new Random(123);
+        for (int i = 0; i < 50000; i++)
+        {
+            // mostly increasing ids with jumps, similar to the nodes of the ways
+            long key = rand.nextInt(10) == 0 ? rand.nextInt(5000000) : i * 3 + rand.nextInt(100);
+            int value = rand.nextInt();
+            assertEquals(expected.put(key, value), map.put(key, value));
+        }
+
+        assertEquals(expected.size(), map.getSize());
+        for (long key : expected.keys())
+        {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        for (int i = 0; i < 1000; i++)
+        {
+            long key = rand.nextInt(6000000);
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
@@ -17,6 +17,10 @@
  */
 package com.graphhopper.coll;
 
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
 /**
  *
  * @author Peter Karich
@@ -28,4 +32,59 @@ public class IntDoubleBinHeapTest extends AbstractBinHeapTest
     {
         return new IntDoubleBinHeap(capacity);
     }
+
+    @Test
+    public void testIndexedUpdate()
+    {
+        IntDoubleBinHeap heap = new IntDoubleBinHeap(10, 5);
+        assertFalse(heap.update_(1, 3));
+        heap.insert_(10, 3);
+        heap.insert_(20, 4);
+        heap.insert_(30, 1);
+        assertTrue(heap.contains(4));
+        assertTrue(heap.update_(5, 4));
+        assertEquals(4, heap.peek_element());
+        assertEquals(4, heap.poll_element());
+        assertFalse(heap.contains(4));
+        assertFalse(heap.update_(1, 4));
+
+        heap.ensureElementCapacity(20);
+        heap.insert_(1, 15);
+        assertEquals(15, heap.poll_element());
+        assertEquals(3, heap.poll_element());
+        assertEquals(1, heap.poll_element());
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(1));
+    }
+
+    @Test
+    public void testIndexedEqualsLinear()
+    {
+        Random rand = new Random(1);
+        int elements = 200;
+        IntDoubleBinHeap linear = new IntDoubleBinHeap(10);
+        IntDoubleBinHeap indexed = new IntDoubleBinHeap(10, elements);
+        boolean[] inHeap = new boolean[elements];
+        for (int i = 0; i < 10000; i++)
+        {
+            int element = rand.nextInt(elements);
+            double key = rand.nextInt(1000);
+            if (rand.nextInt(4) == 0 && !linear.isEmpty())
+            {
+                int polled = linear.poll_element();
+                assertEquals(polled, indexed.poll_element());
+                inHeap[polled] = false;
+            } else if (inHeap[element])
+            {
+                assertTrue(linear.update_(key, element));
+                assertTrue(indexed.update_(key, element));
+            } else
+            {
+                linear.insert_(key, element);
+                indexed.insert_(key, element);
+                inHeap[element] = true;
+            }
+            assertEquals(linear.getSize(), indexed.getSize());
+        }
+    }
 }
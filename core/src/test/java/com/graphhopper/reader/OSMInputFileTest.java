@@ -0,0 +1,121 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import java.io.File;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class OSMInputFileTest
+{
+    int[] count( OSMInputFile in ) throws Exception
+    {
+        int[] counts = new int[3];
+        try
+        {
+            in.open();
+            OSMElement item;
+            while ((item = in.getNext()) != null)
+            {
+                counts[item.getType()]++;
+            }
+        } finally
+        {
+            in.close();
+        }
+        return counts;
+    }
+
+    void checkElementTypes( File file ) throws Exception
+    {
+        int[] all = count(new OSMInputFile(file).setWorkerThreads(2));
+        assertTrue(all[OSMElement.NODE] > 0);
+        assertTrue(all[OSMElement.WAY] > 0);
+        assertTrue(all[OSMElement.RELATION] > 0);
+
+        int[] noNodes = count(new OSMInputFile(file).setWorkerThreads(2).
+                setElementTypes(OSMElement.WAY, OSMElement.RELATION));
+        assertEquals(0, noNodes[OSMElement.NODE]);
+        assertEquals(all[OSMElement.WAY], noNodes[OSMElement.WAY]);
+        assertEquals(all[OSMElement.RELATION], noNodes[OSMElement.RELATION]);
+
+        int[] onlyNodes = count(new OSMInputFile(file).setWorkerThreads(2).setElementTypes(OSMElement.NODE));
+        assertEquals(all[OSMElement.NODE], onlyNodes[OSMElement.NODE]);
+        assertEquals(0, onlyNodes[OSMElement.WAY]);
+        assertEquals(0, onlyNodes[OSMElement.RELATION]);
+    }
+
+    @Test
+    public void testElementTypesPbf() throws Exception
+    {
+        checkElementTypes(new File("files/andorra.osm.pbf"));
+    }
+
+    @Test
+    public void testBatchStatistics() throws Exception
+    {
+        OSMInputFile in = new OSMInputFile(new File("files/andorra.osm.pbf")).setWorkerThreads(2);
+        int[] counts = count(in);
+        assertTrue(counts[OSMElement.NODE] > 0);
+        // at least one block per element type
+        assertTrue(in.getBatches() >= 3);
+        assertTrue(in.getMaxQueueSize() <= 8);
+        assertTrue(in.getAverageQueueSize() <= in.getMaxQueueSize());
+        assertTrue(in.getDecoderStallMillis() >= 0);
+        assertTrue(in.getQueueInfo(), in.getQueueInfo().startsWith("batches:" + in.getBatches()));
+
+        in = new OSMInputFile(new File(getClass().getResource("test-restrictions.xml").toURI()));
+        count(in);
+        assertEquals(0, in.getBatches());
+    }
+
+    @Test
+    public void testEmptyBatchDoesNotEndImport() throws Exception
+    {
+        File file = new File("files/andorra.osm.pbf");
+        int[] expected = count(new OSMInputFile(file).setWorkerThreads(2));
+
+        OSMInputFile in = new OSMInputFile(file).setWorkerThreads(2);
+        int[] counts = new int[3];
+        try
+        {
+            in.open();
+            in.process(Collections.<OSMElement>emptyList());
+            OSMElement item;
+            while ((item = in.getNext()) != null)
+            {
+                counts[item.getType()]++;
+            }
+        } finally
+        {
+            in.close();
+        }
+        assertArrayEquals(expected, counts);
+    }
+
+    @Test
+    public void testElementTypesXml() throws Exception
+    {
+        checkElementTypes(new File(getClass().getResource("test-restrictions.xml").toURI()));
+    }
+}
@@ -39,6 +39,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.CarFlagEncoder;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EncodedValue;
@@ -56,6 +57,7 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.GHPoint;
 
 /**
@@ -655,4 +657,86 @@ public class OSMReaderTest
         assertEquals(11119.5, d, 1e-1);
         assertEquals(1, increased.get());
     }
+
+    @Test
+    public void testWayThreads() throws Exception
+    {
+        for (String file : new String[]
+        {
+            file1, file4, fileNegIds, fileBarriers
+        })
+        {
+            File osmFile = new File(getClass().getResource(file).toURI());
+            assertSameGraph(file, importWithWayThreads(osmFile, 1), importWithWayThreads(osmFile, 3));
+        }
+
+        File andorra = new File("files/andorra.osm.pbf");
+        assertSameGraph("andorra", importWithWayThreads(andorra, 1), importWithWayThreads(andorra, 3));
+    }
+
+    @Test
+    public void testCompressedNodeMap() throws Exception
+    {
+        for (String file : new String[]
+        {
+            file1, file4, fileNegIds, fileBarriers
+        })
+        {
+            File osmFile = new File(getClass().getResource(file).toURI());
+            assertSameGraph(file, importWithNodeMap(osmFile, false), importWithNodeMap(osmFile, true));
+        }
+
+        File andorra = new File("files/andorra.osm.pbf");
+        assertSameGraph("andorra", importWithNodeMap(andorra, false), importWithNodeMap(andorra, true));
+    }
+
+    GraphStorage importWithNodeMap( File osmFile, boolean compressed ) throws IOException
+    {
+        EncodingManager manager = new EncodingManager("CAR,FOOT");
+        GraphStorage graph = new GraphHopperStorage(new RAMDirectory(), manager);
+        new OSMReader(graph, 1000).setEncodingManager(manager).setCompressedNodeMap(compressed).
+                doOSM2Graph(osmFile);
+        return graph;
+    }
+
+    GraphStorage importWithWayThreads( File osmFile, int threads ) throws IOException
+    {
+        EncodingManager manager = new EncodingManager("CAR,FOOT");
+        GraphStorage graph = new GraphHopperStorage(new RAMDirectory(), manager);
+        new OSMReader(graph, 1000).setEncodingManager(manager).setWayThreads(threads).setWayBatchSize(2).
+                doOSM2Graph(osmFile);
+        return graph;
+    }
+
+    void assertSameGraph( String msg, GraphStorage expected, GraphStorage graph )
+    {
+        assertEquals(msg, expected.getNodes(), graph.getNodes());
+        for (int node = 0; node < expected.getNodes(); node++)
+        {
+            assertEquals(msg, expected.getLatitude(node), graph.getLatitude(node), 0);
+            assertEquals(msg, expected.getLongitude(node), graph.getLongitude(node), 0);
+        }
+
+        AllEdgesIterator expectedIter = expected.getAllEdges();
+        AllEdgesIterator iter = graph.getAllEdges();
+        assertEquals(msg, expectedIter.getMaxId(), iter.getMaxId());
+        while (expectedIter.next())
+        {
+            assertTrue(msg, iter.next());
+            assertEquals(msg, expectedIter.getBaseNode(), iter.getBaseNode());
+            assertEquals(msg, expectedIter.getAdjNode(), iter.getAdjNode());
+            assertEquals(msg, expectedIter.getFlags(), iter.getFlags());
+            assertEquals(msg, expectedIter.getDistance(), iter.getDistance(), 0);
+            assertEquals(msg, expectedIter.getName(), iter.getName());
+            PointList expectedPoints = expectedIter.fetchWayGeometry(3);
+            PointList points = iter.fetchWayGeometry(3);
+            assertEquals(msg, expectedPoints.getSize(), points.getSize());
+            for (int i = 0; i < points.getSize(); i++)
+            {
+                assertEquals(msg, expectedPoints.getLatitude(i), points.getLatitude(i), 0);
+                assertEquals(msg, expectedPoints.getLongitude(i), points.getLongitude(i), 0);
+            }
+        }
+        assertFalse(msg, iter.next());
+    }
 }
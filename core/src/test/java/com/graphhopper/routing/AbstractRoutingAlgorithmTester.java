@@ -371,6 +371,24 @@ public abstract class AbstractRoutingAlgorithmTester
         assertEquals(38f, p.getDistance(), 1e-3);
     }
 
+    @Test
+    public void testSubsequentQueries()
+    {
+        // algorithms could reuse internal data structures
+        Graph g = getMatrixGraph();
+        AlgorithmPreparation prepare = prepareGraph(g);
+        Random rand = new Random(1);
+        for (int i = 0; i < 50; i++)
+        {
+            int from = rand.nextInt(g.getNodes());
+            int to = rand.nextInt(g.getNodes());
+            Path expected = new Dijkstra(getMatrixAlikeGraph(), carEncoder, new ShortestWeighting()).calcPath(from, to);
+            Path p = prepare.createAlgo().calcPath(from, to);
+            assertEquals(from + "->" + to, expected.isFound(), p.isFound());
+            assertEquals(from + "->" + to, expected.getDistance(), p.getDistance(), 1e-3);
+        }
+    }
+
     @Test
     public void testCannotCalculateSP()
     {
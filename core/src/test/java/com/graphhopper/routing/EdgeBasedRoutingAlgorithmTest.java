@@ -0,0 +1,150 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.TurnCostStorage;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests turn restrictions for all edge based algorithms.
+ * <p/>
+ * @author Peter Karich
+ */
+public class EdgeBasedRoutingAlgorithmTest
+{
+    private final String[] algos = new String[]
+    {
+        "dijkstraEdgeBased", "astarEdgeBased", "dijkstrabiEdgeBased"
+    };
+    private EncodingManager encodingManager;
+    private CarFlagEncoder carEncoder;
+    private TurnCostStorage turnCostStorage;
+    private GraphStorage graph;
+    private EdgeIteratorState edge01, edge12, edge13;
+
+    @Before
+    public void setUp()
+    {
+        encodingManager = new EncodingManager("CAR");
+        carEncoder = (CarFlagEncoder) encodingManager.getEncoder("CAR");
+        turnCostStorage = new TurnCostStorage();
+        graph = new GraphHopperStorage(new RAMDirectory(), encodingManager, turnCostStorage).create(100);
+        // 0-1-2
+        //   | |
+        //   3-4
+        graph.setNode(0, 0, 0);
+        graph.setNode(1, 0, 0.001);
+        graph.setNode(2, 0, 0.002);
+        graph.setNode(3, -0.001, 0.001);
+        graph.setNode(4, -0.001, 0.002);
+        edge01 = graph.edge(0, 1, 100, true);
+        edge12 = graph.edge(1, 2, 100, true);
+        edge13 = graph.edge(1, 3, 100, true);
+        graph.edge(3, 4, 100, true);
+        graph.edge(4, 2, 100, true);
+    }
+
+    RoutingAlgorithm createAlgo( String algo )
+    {
+        return new RoutingAlgorithmFactory(algo, false).
+                createAlgo(graph, carEncoder, new ShortestWeighting());
+    }
+
+    void restrict( int node, EdgeIteratorState from, EdgeIteratorState to )
+    {
+        turnCostStorage.setTurnCosts(node, from.getEdge(), to.getEdge(), (int) carEncoder.getTurnFlags(true, 0));
+    }
+
+    @Test
+    public void testWithoutRestriction()
+    {
+        for (String algo : algos)
+        {
+            Path p = createAlgo(algo).calcPath(0, 2);
+            assertEquals(algo, Helper.createTList(0, 1, 2), p.calcNodes());
+            assertEquals(algo, 200, p.getDistance(), 1e-6);
+        }
+    }
+
+    @Test
+    public void testRestriction()
+    {
+        restrict(1, edge01, edge12);
+        for (String algo : algos)
+        {
+            Path p = createAlgo(algo).calcPath(0, 2);
+            assertEquals(algo, Helper.createTList(0, 1, 3, 4, 2), p.calcNodes());
+            assertEquals(algo, 400, p.getDistance(), 1e-6);
+
+            // opposite direction is not restricted
+            p = createAlgo(algo).calcPath(2, 0);
+            assertEquals(algo, Helper.createTList(2, 1, 0), p.calcNodes());
+        }
+
+        // node based algorithms ignore the restriction
+        Path p = new RoutingAlgorithmFactory("dijkstra", false).
+                createAlgo(graph, carEncoder, new ShortestWeighting()).calcPath(0, 2);
+        assertEquals(Helper.createTList(0, 1, 2), p.calcNodes());
+    }
+
+    @Test
+    public void testNoUTurnToAvoidRestriction()
+    {
+        restrict(1, edge01, edge12);
+        restrict(1, edge01, edge13);
+        for (String algo : algos)
+        {
+            Path p = createAlgo(algo).calcPath(0, 2);
+            assertFalse(algo, p.isFound());
+        }
+    }
+
+    @Test
+    public void testRestrictionWithQueryGraph()
+    {
+        restrict(1, edge01, edge12);
+        for (String algo : algos)
+        {
+            // query point in the middle of edge 0-1 splits the restricted edge
+            QueryResult from = new QueryResult(0.0001, 0.0005);
+            from.setClosestEdge(graph.getEdgeProps(edge01.getEdge(), 1));
+            from.setWayIndex(0);
+            from.setSnappedPosition(QueryResult.Position.EDGE);
+            from.calcSnappedPoint(new DistanceCalcEarth());
+            QueryResult to = new QueryResult(0, 0.002);
+            to.setClosestNode(2);
+
+            RoutingAlgorithm algoImpl = createAlgo(algo);
+            QueryGraph queryGraph = algoImpl.createQueryGraph();
+            queryGraph.lookup(Arrays.asList(from));
+            Path p = algoImpl.calcPath(queryGraph, from.getClosestNode(), 2);
+            assertEquals(algo, Helper.createTList(5, 1, 3, 4, 2), p.calcNodes());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.ShortestWeighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.QueryResult;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class OneToManyMatrixCalculatorTest
+{
+    static final double[][] POINTS =
+    {
+        {
+            0.0009, 0
+        },
+        {
+            0.001, 0.001105
+        },
+        {
+            0.010, 0.0011
+        },
+        {
+            0.00002, 0.002
+        },
+        {
+            0, 0
+        }
+    };
+    private final EncodingManager encodingManager = new EncodingManager("CAR");
+    private final FlagEncoder carEncoder = encodingManager.getEncoder("CAR");
+
+    protected Graph createGraph()
+    {
+        return new GraphBuilder(encodingManager).create();
+    }
+
+    protected LocationIndex createIndex( Graph graph )
+    {
+        LocationIndex index = new LocationIndexTree(graph, new RAMDirectory());
+        index.prepareIndex();
+        return index;
+    }
+
+    protected MatrixCalculator createCalculator( Graph graph )
+    {
+        return new OneToManyMatrixCalculator(graph, carEncoder, new ShortestWeighting());
+    }
+
+    /**
+     * The path between two points of the matrix calculated from a normal routing algorithm
+     */
+    protected Path calcPath( Graph graph, QueryResult from, QueryResult to )
+    {
+        return new Dijkstra(graph, carEncoder, new ShortestWeighting()).calcPath(from, to);
+    }
+
+    protected static List<QueryResult> lookup( LocationIndex index, int... points )
+    {
+        List<QueryResult> list = new ArrayList<QueryResult>();
+        for (int p : points)
+        {
+            list.add(index.findClosest(POINTS[p][0], POINTS[p][1], EdgeFilter.ALL_EDGES));
+        }
+        return list;
+    }
+
+    @Test
+    public void testMatrixEqualsSinglePaths()
+    {
+        Graph graph = createGraph();
+        AbstractRoutingAlgorithmTester.initBiGraph(graph);
+        LocationIndex index = createIndex(graph);
+        DistanceMatrix matrix = createCalculator(graph).calcMatrix(lookup(index, 0, 1, 2),
+                lookup(index, 3, 4, 0, 1));
+        assertEquals(3, matrix.getSources());
+        assertEquals(4, matrix.getTargets());
+
+        int[] sources =
+        {
+            0, 1, 2
+        };
+        int[] targets =
+        {
+            3, 4, 0, 1
+        };
+        for (int s = 0; s < sources.length; s++)
+        {
+            for (int t = 0; t < targets.length; t++)
+            {
+                // query results are changed from the lookup so use fresh ones for every path
+                List<QueryResult> res = lookup(index, sources[s], targets[t]);
+                Path p = calcPath(graph, res.get(0), res.get(1));
+                assertTrue(matrix.isFound(s, t));
+                assertEquals(s + "->" + t, p.getDistance(), matrix.getDistance(s, t), 1e-3);
+                assertEquals(s + "->" + t, p.getMillis(), matrix.getMillis(s, t));
+            }
+        }
+
+        // identical source and target
+        assertEquals(0, matrix.getDistance(0, 2), 1e-5);
+        assertEquals(0, matrix.getDistance(1, 3), 1e-5);
+    }
+
+    @Test
+    public void testNotFound()
+    {
+        Graph graph = createGraph();
+        AbstractRoutingAlgorithmTester.initBiGraph(graph);
+        // disconnected from the rest
+        graph.setNode(9, 0.05, 0.05);
+        graph.setNode(10, 0.051, 0.051);
+        graph.edge(9, 10, 150, true);
+        LocationIndex index = createIndex(graph);
+        List<QueryResult> targets = lookup(index, 1);
+        targets.add(index.findClosest(0.0505, 0.0505, EdgeFilter.ALL_EDGES));
+        DistanceMatrix matrix = createCalculator(graph).calcMatrix(lookup(index, 0), targets);
+        assertTrue(matrix.isFound(0, 0));
+        assertFalse(matrix.isFound(0, 1));
+    }
+}
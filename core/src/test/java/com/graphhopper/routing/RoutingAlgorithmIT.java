@@ -360,7 +360,9 @@ public class RoutingAlgorithmIT
             float perRun = sw.stop().getSeconds() / ((float) (N - noJvmWarming));
             System.out.println("# " + getClass().getSimpleName() + " " + prepare.createAlgo().getName()
                     + ":" + sw.stop().getSeconds() + ", per run:" + perRun);
-            assertTrue("speed to low!? " + perRun + " per run", perRun < 0.07);
+            // the nodes of this graph have ~25 edges, so edge based algorithms settle many more entries
+            float maxPerRun = prepare.createAlgo().getName().endsWith("EdgeBased") ? 0.3f : 0.07f;
+            assertTrue("speed to low!? " + perRun + " per run", perRun < maxPerRun);
         }
     }
 
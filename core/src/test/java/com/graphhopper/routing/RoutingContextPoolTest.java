@@ -0,0 +1,72 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.ShortestWeighting;
+import com.graphhopper.storage.Graph;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class RoutingContextPoolTest
+{
+    @Test
+    public void testAcquireAndRelease()
+    {
+        RoutingContextPool pool = new RoutingContextPool(1);
+        RoutingContext ctx1 = pool.acquire();
+        RoutingContext ctx2 = pool.acquire();
+        assertNotSame(ctx1, ctx2);
+        assertEquals(2, pool.getInUse());
+        assertEquals(2, pool.getCreated());
+
+        pool.release(ctx1);
+        pool.release(ctx2);
+        assertEquals(0, pool.getInUse());
+        assertEquals(2, pool.getMaxInUse());
+        assertEquals(1, pool.getIdle());
+        assertEquals(1, pool.getDiscarded());
+
+        // reuse the idle one
+        assertSame(ctx1, pool.acquire());
+        assertEquals(3, pool.getAcquired());
+        assertEquals(2, pool.getCreated());
+        assertEquals(2, ctx1.getUsages());
+    }
+
+    @Test
+    public void testReuseTrees()
+    {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        ShortestWeighting weighting = new ShortestWeighting();
+        RoutingContext ctx = new RoutingContext();
+        new DijkstraBidirectionArray(g, AbstractRoutingAlgorithmTester.encodingManager.getEncoder("CAR"), weighting).
+                setRoutingContext(ctx).calcPath(34, 36);
+        long memory = ctx.getMemoryUsage();
+        assertTrue(ctx.getTree(0).getCapacity() >= g.getNodes());
+        assertTrue(ctx.getTree(1).getCapacity() >= g.getNodes());
+
+        Path p = new DijkstraBidirectionArray(g, AbstractRoutingAlgorithmTester.encodingManager.getEncoder("CAR"), weighting).
+                setRoutingContext(ctx).calcPath(45, 72);
+        assertEquals(38f, p.getDistance(), 1e-3);
+        assertEquals(memory, ctx.getMemoryUsage());
+    }
+}
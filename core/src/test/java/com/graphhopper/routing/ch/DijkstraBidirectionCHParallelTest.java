@@ -0,0 +1,125 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.ShortestWeighting;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.LevelGraph;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Runs the routing tests against graphs prepared with the parallel contraction.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionCHParallelTest extends DijkstraBidirectionCHTest
+{
+    private static Graph preparedMatrixGraph;
+
+    @Override
+    public Graph getMatrixGraph()
+    {
+        if (preparedMatrixGraph == null)
+        {
+            LevelGraph lg = createGraph();
+            getMatrixAlikeGraph().copyTo(lg);
+            prepareGraph(lg);
+            preparedMatrixGraph = lg;
+        }
+        return preparedMatrixGraph;
+    }
+
+    @Override
+    public PrepareContractionHierarchies prepareGraph( Graph g, FlagEncoder encoder, Weighting w )
+    {
+        PrepareContractionHierarchies ch = new PrepareContractionHierarchies(encoder, w).
+                setThreads(3).setGraph(g);
+        if (g != preparedMatrixGraph)
+            ch.doWork();
+
+        return ch;
+    }
+
+    @Test
+    public void testIndependentOfThreadCount()
+    {
+        LevelGraph lg2 = prepareMatrixGraph(2, 2);
+        LevelGraph lg4 = prepareMatrixGraph(4, 2);
+        assertEquals(lg2.getAllEdges().getMaxId(), lg4.getAllEdges().getMaxId());
+        for (int node = 0; node < lg2.getNodes(); node++)
+        {
+            assertEquals(lg2.getLevel(node), lg4.getLevel(node));
+        }
+
+        // also nodes with common neighbors can be contracted together
+        LevelGraph lg1Hop = prepareMatrixGraph(4, 1);
+        for (int node = 0; node < lg1Hop.getNodes(); node++)
+        {
+            assertTrue(lg1Hop.getLevel(node) > 0);
+        }
+    }
+
+    @Test
+    public void testSimilarToSequential()
+    {
+        PrepareContractionHierarchies sequential = prepareMatrix(1, 2);
+        PrepareContractionHierarchies parallel = prepareMatrix(2, 2);
+        // the independent sets change the order of the contraction but must not lead to a much
+        // bigger hierarchy
+        String msg = "parallel:" + parallel.getShortcuts() + ", sequential:" + sequential.getShortcuts();
+        assertTrue(msg, parallel.getShortcuts() <= sequential.getShortcuts() * 1.2);
+
+        Graph graph = getMatrixAlikeGraph();
+        Random rand = new Random(12);
+        for (int i = 0; i < 100; i++)
+        {
+            int from = rand.nextInt(graph.getNodes());
+            int to = rand.nextInt(graph.getNodes());
+            Path expected = sequential.createAlgo().calcPath(from, to);
+            Path path = parallel.createAlgo().calcPath(from, to);
+            assertEquals(from + "->" + to, expected.isFound(), path.isFound());
+            assertEquals(from + "->" + to, expected.getDistance(), path.getDistance(), 1e-5);
+        }
+    }
+
+    LevelGraph prepareMatrixGraph( int threads, int hops )
+    {
+        LevelGraph lg = createGraph();
+        prepareMatrix(lg, threads, hops);
+        return lg;
+    }
+
+    PrepareContractionHierarchies prepareMatrix( int threads, int hops )
+    {
+        return prepareMatrix(createGraph(), threads, hops);
+    }
+
+    PrepareContractionHierarchies prepareMatrix( LevelGraph lg, int threads, int hops )
+    {
+        getMatrixAlikeGraph().copyTo(lg);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(carEncoder, new ShortestWeighting()).
+                setThreads(threads).setIndependentSetHops(hops).setGraph(lg);
+        prepare.doWork();
+        return prepare;
+    }
+}
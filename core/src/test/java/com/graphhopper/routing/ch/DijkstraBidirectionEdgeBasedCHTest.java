@@ -0,0 +1,50 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.util.AlgorithmPreparation;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+
+/**
+ * Without turn costs edge based contraction hierarchies have to find the same paths as the other
+ * algorithms.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionEdgeBasedCHTest extends AbstractRoutingAlgorithmTester
+{
+    // the matrix graph is expensive to prepare and always used with the same weighting
+    private static AlgorithmPreparation preparedMatrixGraph;
+
+    @Override
+    public AlgorithmPreparation prepareGraph( Graph g, FlagEncoder encoder, Weighting w )
+    {
+        boolean matrixGraph = g == getMatrixGraph();
+        if (matrixGraph && preparedMatrixGraph != null)
+            return preparedMatrixGraph;
+
+        AlgorithmPreparation prepare = new PrepareEdgeBasedContractionHierarchies(encoder, w).setGraph(g).doWork();
+        if (matrixGraph)
+            preparedMatrixGraph = prepare;
+
+        return prepare;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.MatrixCalculator;
+import com.graphhopper.routing.OneToManyMatrixCalculatorTest;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingContext;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.ShortestWeighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexTreeSC;
+import com.graphhopper.storage.index.QueryResult;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests if the bucket based matrix calculation on the prepared graph returns the same results as
+ * the bidirectional CH query.
+ * <p/>
+ * @author Peter Karich
+ */
+public class MatrixCalculatorCHTest extends OneToManyMatrixCalculatorTest
+{
+    private final EncodingManager encodingManager = new EncodingManager("CAR");
+
+    @Override
+    protected Graph createGraph()
+    {
+        return new GraphBuilder(encodingManager).levelGraphCreate();
+    }
+
+    private PrepareContractionHierarchies prepare( Graph graph )
+    {
+        return new PrepareContractionHierarchies(encodingManager.getEncoder("CAR"), new ShortestWeighting()).
+                setGraph(graph);
+    }
+
+    @Override
+    protected LocationIndex createIndex( Graph graph )
+    {
+        // the index has to be created after the preparation
+        prepare(graph).doWork();
+        LocationIndex index = new LocationIndexTreeSC((LevelGraph) graph, new RAMDirectory());
+        index.prepareIndex();
+        return index;
+    }
+
+    @Override
+    protected MatrixCalculator createCalculator( Graph graph )
+    {
+        return prepare(graph).createMatrixCalculator();
+    }
+
+    @Override
+    protected Path calcPath( Graph graph, QueryResult from, QueryResult to )
+    {
+        return prepare(graph).createAlgo().calcPath(from, to);
+    }
+
+    @Test
+    public void testUsesRoutingContext()
+    {
+        Graph graph = createGraph();
+        AbstractRoutingAlgorithmTester.initBiGraph(graph);
+        LocationIndex index = createIndex(graph);
+        RoutingContext context = new RoutingContext();
+        DistanceMatrix matrix = createCalculator(graph).setRoutingContext(context).
+                calcMatrix(lookup(index, 0, 1), lookup(index, 3, 4));
+        assertTrue(matrix.isFound(1, 0));
+        // the searches of both directions were done in the trees of the specified context
+        assertTrue(context.getTree(0).getCapacity() >= graph.getNodes());
+        assertTrue(context.getTree(1).getCapacity() >= graph.getNodes());
+    }
+}
@@ -29,6 +29,7 @@ import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.util.EdgeSkipExplorer;
 import com.graphhopper.storage.GraphBuilder;
 import com.graphhopper.util.*;
+import java.io.File;
 import java.util.Collection;
 import java.util.Iterator;
 import static org.junit.Assert.*;
@@ -334,35 +335,37 @@ public class PrepareContractionHierarchiesTest
                 return flags;
             }
         };
-        g.edge(10, 0).setDistance(w.calcWeight(edge)).setFlags(flags);
+        g.edge(10, 0).setDistance(1).setFlags(flags);
         EdgeIteratorState iterTmp1 = g.edge(0, 1);
-        iterTmp1.setDistance(w.calcWeight(edge)).setFlags(flags);
-        EdgeIteratorState iter2 = g.edge(1, 2).setDistance(w.calcWeight(edge)).setFlags(flags);
-        EdgeIteratorState iter3 = g.edge(2, 3).setDistance(w.calcWeight(edge)).setFlags(flags);
-        EdgeIteratorState iter4 = g.edge(3, 4).setDistance(w.calcWeight(edge)).setFlags(flags);
-        EdgeIteratorState iter5 = g.edge(4, 5).setDistance(w.calcWeight(edge)).setFlags(flags);
-        EdgeIteratorState iter6 = g.edge(5, 6).setDistance(w.calcWeight(edge)).setFlags(flags);
+        iterTmp1.setDistance(1).setFlags(flags);
+        EdgeIteratorState iter2 = g.edge(1, 2).setDistance(1).setFlags(flags);
+        EdgeIteratorState iter3 = g.edge(2, 3).setDistance(1).setFlags(flags);
+        EdgeIteratorState iter4 = g.edge(3, 4).setDistance(1).setFlags(flags);
+        EdgeIteratorState iter5 = g.edge(4, 5).setDistance(1).setFlags(flags);
+        EdgeIteratorState iter6 = g.edge(5, 6).setDistance(1).setFlags(flags);
         long oneDirFlags = new PrepareContractionHierarchies(carEncoder, w).getScOneDir();
+        // only shortcuts store the weight instead of the distance
+        double weight = w.calcWeight(edge);
 
         int tmp = iterTmp1.getEdge();
         EdgeSkipIterState iter1 = g.shortcut(0, 2);
-        iter1.setDistance(2).setFlags(oneDirFlags);
+        iter1.setDistance(2 * weight).setFlags(oneDirFlags);
         iter1.setSkippedEdges(tmp, iter2.getEdge());
         tmp = iter1.getEdge();
         iter1 = g.shortcut(0, 3);
-        iter1.setDistance(3).setFlags(oneDirFlags);
+        iter1.setDistance(3 * weight).setFlags(oneDirFlags);
         iter1.setSkippedEdges(tmp, iter3.getEdge());
         tmp = iter1.getEdge();
         iter1 = g.shortcut(0, 4);
-        iter1.setDistance(4).setFlags(oneDirFlags);
+        iter1.setDistance(4 * weight).setFlags(oneDirFlags);
         iter1.setSkippedEdges(tmp, iter4.getEdge());
         tmp = iter1.getEdge();
         iter1 = g.shortcut(0, 5);
-        iter1.setDistance(5).setFlags(oneDirFlags);
+        iter1.setDistance(5 * weight).setFlags(oneDirFlags);
         iter1.setSkippedEdges(tmp, iter5.getEdge());
         tmp = iter1.getEdge();
         iter1 = g.shortcut(0, 6);
-        iter1.setDistance(6).setFlags(oneDirFlags);
+        iter1.setDistance(6 * weight).setFlags(oneDirFlags);
         iter1.setSkippedEdges(tmp, iter6.getEdge());
         g.setLevel(0, 10);
         g.setLevel(6, 9);
@@ -524,6 +527,71 @@ public class PrepareContractionHierarchiesTest
 //        }
 //        System.out.println("---");
 //    }
+    @Test
+    public void testResumeFromCheckpoint()
+    {
+        String location = "./target/tmp/chcheckpoint";
+        Helper.removeDir(new File(location));
+        GraphBuilder builder = new GraphBuilder(encodingManager).setLocation(location).setStore(true);
+        final LevelGraphStorage g = (LevelGraphStorage) initShortcutsGraph(builder.levelGraphCreate());
+        g.flush();
+        // stop the contraction after the checkpoint of the first 5 nodes
+        Weighting failingWeighting = new ShortestWeighting()
+        {
+            @Override
+            public double calcWeight( EdgeIteratorState edge )
+            {
+                if ("5".equals(g.getProperties().get("prepare.checkpoint.test")))
+                    throw new IllegalStateException("stopped");
+
+                return super.calcWeight(edge);
+            }
+        };
+        try
+        {
+            new PrepareContractionHierarchies(carEncoder, failingWeighting).setGraph(g).
+                    setCheckpoints(g, "test", 0).doWork();
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+            assertEquals("stopped", ex.getMessage());
+        }
+        g.close();
+
+        LevelGraphStorage loaded = (LevelGraphStorage) builder.levelGraphBuild();
+        assertTrue(loaded.loadExisting());
+        assertFalse(new File(location, GHUtility.CHECKPOINT_PREVIOUS).exists());
+        int contracted = 0;
+        for (int node = 0; node < loaded.getNodes(); node++)
+        {
+            if (loaded.getLevel(node) > 0)
+                contracted++;
+        }
+        assertEquals(5, contracted);
+
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(carEncoder, weighting).
+                setGraph(loaded).setCheckpoints(loaded, "test", 0);
+        prepare.doWork();
+        assertEquals("done", loaded.getProperties().get("prepare.checkpoint.test"));
+        for (int node = 0; node < loaded.getNodes(); node++)
+        {
+            assertTrue(loaded.getLevel(node) > 0);
+        }
+
+        LevelGraph expected = initShortcutsGraph(createGraph());
+        for (int from = 0; from < expected.getNodes(); from++)
+        {
+            for (int to = 0; to < expected.getNodes(); to++)
+            {
+                Path p = new Dijkstra(expected, carEncoder, weighting).calcPath(from, to);
+                Path chPath = prepare.createAlgo().calcPath(from, to);
+                assertEquals(from + "->" + to, p.getDistance(), chPath.getDistance(), 1e-6);
+            }
+        }
+        loaded.close();
+        Helper.removeDir(new File(location));
+    }
+
     @Test
     public void testBits()
     {
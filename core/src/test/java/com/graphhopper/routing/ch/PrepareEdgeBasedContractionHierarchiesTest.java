@@ -0,0 +1,208 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.DijkstraEdgeBased;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.ShortestWeighting;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.TurnCostStorage;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class PrepareEdgeBasedContractionHierarchiesTest
+{
+    private EncodingManager encodingManager;
+    private CarFlagEncoder carEncoder;
+    private TurnCostStorage turnCostStorage;
+    private GraphStorage graph;
+
+    @Before
+    public void setUp()
+    {
+        encodingManager = new EncodingManager("CAR");
+        carEncoder = (CarFlagEncoder) encodingManager.getEncoder("CAR");
+        turnCostStorage = new TurnCostStorage();
+        graph = new GraphHopperStorage(new RAMDirectory(), encodingManager, turnCostStorage).create(100);
+    }
+
+    PrepareEdgeBasedContractionHierarchies prepare( Weighting weighting )
+    {
+        return new PrepareEdgeBasedContractionHierarchies(carEncoder, weighting).setGraph(graph).doWork();
+    }
+
+    void restrict( int node, EdgeIteratorState from, EdgeIteratorState to )
+    {
+        turnCostStorage.setTurnCosts(node, from.getEdge(), to.getEdge(), (int) carEncoder.getTurnFlags(true, 0));
+    }
+
+    @Test
+    public void testRestriction()
+    {
+        // 0-1-2
+        //   | |
+        //   3-4
+        EdgeIteratorState edge01 = graph.edge(0, 1, 100, true);
+        EdgeIteratorState edge12 = graph.edge(1, 2, 100, true);
+        EdgeIteratorState edge13 = graph.edge(1, 3, 100, true);
+        graph.edge(3, 4, 100, true);
+        graph.edge(4, 2, 100, true);
+
+        restrict(1, edge01, edge12);
+        PrepareEdgeBasedContractionHierarchies prepare = prepare(new ShortestWeighting());
+        Path p = prepare.createAlgo().calcPath(0, 2);
+        assertEquals(Helper.createTList(0, 1, 3, 4, 2), p.calcNodes());
+        assertEquals(400, p.getDistance(), 1e-6);
+        assertEquals(400, p.getWeight(), 1e-3);
+
+        // opposite direction is not restricted
+        p = prepare.createAlgo().calcPath(2, 0);
+        assertEquals(Helper.createTList(2, 1, 0), p.calcNodes());
+
+        // no u-turn at 1 to avoid the restriction
+        restrict(1, edge01, edge13);
+        assertFalse(prepare(new ShortestWeighting()).createAlgo().calcPath(0, 2).isFound());
+    }
+
+    @Test
+    public void testRestrictionWithQueryGraph()
+    {
+        // 0-1-2
+        //   | |
+        //   3-4
+        EdgeIteratorState edge01 = graph.edge(0, 1, 100, true);
+        EdgeIteratorState edge12 = graph.edge(1, 2, 100, true);
+        graph.edge(1, 3, 100, true);
+        graph.edge(3, 4, 100, true);
+        graph.edge(4, 2, 100, true);
+        graph.setNode(0, 0, 0);
+        graph.setNode(1, 0, 0.001);
+        graph.setNode(2, 0, 0.002);
+        graph.setNode(3, -0.001, 0.001);
+        graph.setNode(4, -0.001, 0.002);
+
+        restrict(1, edge01, edge12);
+        PrepareEdgeBasedContractionHierarchies prepare = prepare(new ShortestWeighting());
+
+        // query point in the middle of edge 0-1 splits the restricted edge
+        QueryResult from = createQueryResult(0.0001, 0.0005, edge01, 1);
+        QueryResult to = new QueryResult(0, 0.002);
+        to.setClosestNode(2);
+        RoutingAlgorithm algo = prepare.createAlgo();
+        QueryGraph queryGraph = algo.createQueryGraph();
+        queryGraph.lookup(Arrays.asList(from));
+        Path p = algo.calcPath(queryGraph, from.getClosestNode(), 2);
+        assertEquals(Helper.createTList(5, 1, 3, 4, 2), p.calcNodes());
+
+        // the target on edge 1-2 is reached from 2 as the turn at 1 is restricted
+        to = createQueryResult(0.0001, 0.0015, edge12, 2);
+        from = new QueryResult(0, 0);
+        from.setClosestNode(0);
+        algo = prepare.createAlgo();
+        queryGraph = algo.createQueryGraph();
+        queryGraph.lookup(Arrays.asList(to));
+        p = algo.calcPath(queryGraph, 0, to.getClosestNode());
+        assertEquals(Helper.createTList(0, 1, 3, 4, 2, 5), p.calcNodes());
+
+        // start and end on the same edge
+        from = createQueryResult(0.0001, 0.0002, edge01, 1);
+        to = createQueryResult(0.0001, 0.0008, edge01, 1);
+        algo = prepare.createAlgo();
+        queryGraph = algo.createQueryGraph();
+        queryGraph.lookup(Arrays.asList(from, to));
+        p = algo.calcPath(queryGraph, from.getClosestNode(), to.getClosestNode());
+        assertEquals(Helper.createTList(from.getClosestNode(), to.getClosestNode()), p.calcNodes());
+    }
+
+    QueryResult createQueryResult( double lat, double lon, EdgeIteratorState edge, int adjNode )
+    {
+        QueryResult res = new QueryResult(lat, lon);
+        res.setClosestEdge(graph.getEdgeProps(edge.getEdge(), adjNode));
+        res.setWayIndex(0);
+        res.setSnappedPosition(QueryResult.Position.EDGE);
+        res.calcSnappedPoint(new DistanceCalcEarth());
+        return res;
+    }
+
+    @Test
+    public void testCompareWithDijkstraEdgeBased()
+    {
+        Random rand = new Random(1);
+        int size = 10;
+        for (int i = 0; i < size; i++)
+        {
+            for (int j = 0; j < size; j++)
+            {
+                int node = i * size + j;
+                if (j + 1 < size)
+                    graph.edge(node, node + 1, 10 + rand.nextInt(90), rand.nextInt(5) > 0);
+                if (i + 1 < size)
+                    graph.edge(node, node + size, 10 + rand.nextInt(90), rand.nextInt(5) > 0);
+            }
+        }
+
+        // restrict every fifth turn
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int node = 0; node < graph.getNodes(); node++)
+        {
+            EdgeIterator fromIter = explorer.setBaseNode(node);
+            while (fromIter.next())
+            {
+                EdgeIterator toIter = graph.createEdgeExplorer().setBaseNode(node);
+                while (toIter.next())
+                {
+                    if (fromIter.getEdge() != toIter.getEdge() && rand.nextInt(5) == 0)
+                        restrict(node, fromIter, toIter);
+                }
+            }
+        }
+
+        Weighting weighting = new ShortestWeighting();
+        PrepareEdgeBasedContractionHierarchies prepare = prepare(weighting);
+        assertTrue(prepare.getShortcuts() > 0);
+        for (int i = 0; i < 200; i++)
+        {
+            int from = rand.nextInt(graph.getNodes());
+            int to = rand.nextInt(graph.getNodes());
+            Path expected = new DijkstraEdgeBased(graph, carEncoder, weighting).calcPath(from, to);
+            Path p = prepare.createAlgo().calcPath(from, to);
+            String msg = from + "->" + to;
+            assertEquals(msg, expected.isFound(), p.isFound());
+            assertEquals(msg, expected.getDistance(), p.getDistance(), 1e-6);
+        }
+    }
+}
@@ -346,4 +346,70 @@ public abstract class DataAccessTest
         assertEquals(256, bufferIndex);
         assertEquals(11111, index);
     }
+
+    @Test
+    public void testSet_GetShortAndLong()
+    {
+        DataAccess da = createDataAccess(name);
+        da.create(300);
+        assertEquals(128, da.getSegmentSize());
+        da.setShort(10, (short) -12345);
+        da.setShort(12, (short) 30000);
+        assertEquals(-12345, da.getShort(10));
+        assertEquals(30000, da.getShort(12));
+        // two shorts share the bytes of one integer
+        da.setShort(12, (short) 1);
+        assertEquals(-12345, da.getShort(10));
+        assertEquals(1, da.getShort(12));
+
+        // the same byte layout as integers
+        da.setShort(40, (short) -12345);
+        da.setShort(42, (short) 1);
+        byte[] bytes = new byte[4];
+        BitUtil bitUtil = BitUtil.get(defaultOrder);
+        bitUtil.fromShort(bytes, (short) -12345, 0);
+        bitUtil.fromShort(bytes, (short) 1, 2);
+        assertEquals(bitUtil.toInt(bytes), da.getInt(40));
+
+        long val = 123123123123L * 123L;
+        da.setLong(16, val);
+        assertEquals(val, da.getLong(16));
+        da.setLong(24, -val);
+        assertEquals(-val, da.getLong(24));
+        assertEquals(val, da.getLong(16));
+
+        // distributed over two segments
+        da.setLong(124, val);
+        assertEquals(val, da.getLong(124));
+        da.close();
+    }
+
+    @Test
+    public void testSet_GetInts()
+    {
+        DataAccess da = createDataAccess(name);
+        da.create(300);
+        assertEquals(128, da.getSegmentSize());
+        int[] values = new int[50];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = i * 1000 - 12345;
+        }
+        // from the first into the second segment
+        da.setInts(8, values, 5, 40);
+        for (int i = 0; i < 40; i++)
+        {
+            assertEquals(values[i + 5], da.getInt(8 + i * 4));
+        }
+
+        int[] res = new int[42];
+        da.getInts(8, res, 1, 40);
+        assertEquals(0, res[0]);
+        for (int i = 0; i < 40; i++)
+        {
+            assertEquals(values[i + 5], res[i + 1]);
+        }
+        assertEquals(0, res[41]);
+        da.close();
+    }
 }
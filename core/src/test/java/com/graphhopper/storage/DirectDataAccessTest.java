@@ -0,0 +1,73 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class DirectDataAccessTest extends DataAccessTest
+{
+    @Override
+    public DataAccess createDataAccess( String name )
+    {
+        return new DirectDataAccess(name, directory, true, defaultOrder).setSegmentSize(128);
+    }
+
+    @Test
+    public void testReusedSegmentsAreEmpty()
+    {
+        DataAccess da = createDataAccess(name);
+        da.create(128 * 3);
+        da.setInt(128 * 2 + 8, 123);
+        da.trimTo(128 * 2);
+        da.incCapacity(128 * 3);
+        assertEquals(0, da.getInt(128 * 2 + 8));
+        da.close();
+    }
+
+    @Test
+    public void testFileFormatCompatibleToRAM()
+    {
+        DataAccess da = new RAMDataAccess(name, directory, true, defaultOrder).setSegmentSize(128);
+        da.create(300);
+        da.setHeader(4, 17);
+        da.setInt(4, 10);
+        da.setInt(260, 301);
+        da.flush();
+        da.close();
+
+        da = createDataAccess(name);
+        assertTrue(da.loadExisting());
+        assertEquals(17, da.getHeader(4));
+        assertEquals(10, da.getInt(4));
+        assertEquals(301, da.getInt(260));
+        da.setInt(8, 20);
+        da.flush();
+        da.close();
+
+        da = new RAMDataAccess(name, directory, true, defaultOrder);
+        assertTrue(da.loadExisting());
+        assertEquals(20, da.getInt(8));
+        assertEquals(301, da.getInt(260));
+        da.close();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Runs all tests of GraphHopperStorage with the compact edge layout.
+ * <p/>
+ * @author Peter Karich
+ */
+public class GraphHopperStorageCompactTest extends GraphHopperStorageTest
+{
+    @Override
+    protected GraphStorage newGraph( Directory dir )
+    {
+        return new GraphHopperStorage(dir, encodingManager, new ExtendedStorage.NoExtendedStorage(), true);
+    }
+
+    @Test
+    public void testNameAndGeometryOrder()
+    {
+        GraphHopperStorage g = (GraphHopperStorage) createGraph();
+        g.setNode(0, 10, 10);
+        g.setNode(1, 11, 20);
+        EdgeIteratorState edge1 = g.edge(0, 1, 100, true);
+        EdgeIteratorState edge2 = g.edge(0, 1, 100, true);
+        EdgeIteratorState edge3 = g.edge(0, 1, 100, true);
+        assertEquals("", edge1.getName());
+        assertEquals(0, edge1.fetchWayGeometry(0).getSize());
+
+        edge1.setName("named street1");
+        edge1.setWayGeometry(Helper.createPointList(1.5, 1, 2, 3));
+        edge2.setWayGeometry(Helper.createPointList(3.5, 4.5));
+        edge2.setName("named street2");
+        edge3.setName("named street3");
+
+        edge1 = g.getEdgeProps(edge1.getEdge(), 1);
+        assertEquals("named street1", edge1.getName());
+        assertEquals(Helper.createPointList(1.5, 1, 2, 3), edge1.fetchWayGeometry(0));
+        edge2 = g.getEdgeProps(edge2.getEdge(), 1);
+        assertEquals("named street2", edge2.getName());
+        assertEquals(Helper.createPointList(3.5, 4.5), edge2.fetchWayGeometry(0));
+        edge3 = g.getEdgeProps(edge3.getEdge(), 1);
+        assertEquals("named street3", edge3.getName());
+        assertEquals(0, edge3.fetchWayGeometry(0).getSize());
+
+        // removing the geometry keeps the name
+        edge1.setWayGeometry(Helper.createPointList());
+        assertEquals("named street1", edge1.getName());
+        assertEquals(0, edge1.fetchWayGeometry(0).getSize());
+        edge1.setName("");
+        assertEquals("", edge1.getName());
+        g.close();
+    }
+
+    @Test
+    public void testEdgeEntryBytes()
+    {
+        GraphHopperStorage compact = (GraphHopperStorage) createGraph();
+        GraphHopperStorage normal = (GraphHopperStorage) new GraphHopperStorage(new RAMDirectory(), encodingManager).create(defaultSize);
+        assertTrue(compact.isCompactEdges());
+        assertFalse(normal.isCompactEdges());
+        assertEquals(normal.edgeEntryBytes - 4, compact.edgeEntryBytes);
+        compact.close();
+        normal.close();
+    }
+
+    @Test
+    public void testLoadDifferentLayout()
+    {
+        GraphStorage graph = createGraphStorage(new RAMDirectory(defaultGraph, true));
+        graph.edge(0, 1, 100, true).setName("named street1");
+        graph.flush();
+        graph.close();
+
+        graph = new GraphHopperStorage(new RAMDirectory(defaultGraph, true), encodingManager);
+        try
+        {
+            graph.loadExisting();
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Edge layout does not match"));
+        }
+    }
+}
@@ -219,4 +219,57 @@ public class GraphHopperStorageTest extends AbstractGraphStorageTester
         assertEquals(1, iter.getAdjNode());
         assertEquals(2, iter2.getAdjNode());
     }
+
+    @Test
+    public void testWayGeometryDeltas()
+    {
+        graph = createGraph();
+        graph.setNode(0, 10, -179.9);
+        graph.setNode(1, -10, 179.9);
+        graph.setNode(2, 0, 0);
+        // large jumps and sign changes in both directions
+        PointList pillars = Helper.createPointList(-89.999999, -179.999999, 89.999999, 179.999999,
+                0.000001, -0.000001, 0.000001, -0.000001, 45.123456, 7.654321);
+        EdgeIteratorState edge = graph.edge(0, 1, 100, true).setWayGeometry(pillars);
+        assertEquals(Helper.createPointList(-89.999999, -179.999999, 89.999999, 179.999999,
+                0.000001, -0.000001, 0.000001, -0.000001, 45.123456, 7.654321), pillars);
+        assertEquals(pillars, edge.fetchWayGeometry(0));
+
+        // stored from the higher node
+        PointList reverseList = Helper.createPointList(1, 2, 1.000001, 2.000001, 3, 4);
+        graph.edge(2, 0, 10, true).setWayGeometry(reverseList);
+        EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(0);
+        assertTrue(iter.next());
+        assertEquals(2, iter.getAdjNode());
+        assertEquals(Helper.createPointList(10, -179.9, 3, 4, 1.000001, 2.000001, 1, 2, 0, 0), iter.fetchWayGeometry(3));
+
+        PointList longList = new PointList(1000);
+        for (int i = 0; i < 1000; i++)
+        {
+            longList.add(i * 0.01, -i * 0.013);
+        }
+        graph.edge(1, 2, 10, true).setWayGeometry(longList);
+        iter = graph.createEdgeExplorer().setBaseNode(1);
+        assertTrue(iter.next());
+        assertEquals(longList, iter.fetchWayGeometry(0));
+    }
+
+    @Test
+    public void testFetchWayGeometryReusesList()
+    {
+        graph = createGraph();
+        graph.setNode(0, 1, 1);
+        graph.setNode(1, 2, 2);
+        graph.setNode(2, 3, 3);
+        EdgeIteratorState edge1 = graph.edge(0, 1, 10, true).setWayGeometry(Helper.createPointList(1.5, 1.5));
+        EdgeIteratorState edge2 = graph.edge(1, 2, 10, true);
+
+        PointList list = new PointList(5);
+        assertSame(list, edge1.fetchWayGeometry(3, list));
+        assertEquals(Helper.createPointList(1, 1, 1.5, 1.5, 2, 2), list);
+        assertSame(list, edge2.fetchWayGeometry(0, list));
+        assertTrue(list.isEmpty());
+        assertSame(list, edge2.fetchWayGeometry(2, list));
+        assertEquals(Helper.createPointList(3, 3), list);
+    }
 }
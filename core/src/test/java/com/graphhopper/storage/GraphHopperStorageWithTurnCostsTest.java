@@ -18,6 +18,7 @@
 package com.graphhopper.storage;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -26,6 +27,7 @@ import org.junit.Test;
 
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.TurnCostIterator;
 
 /**
  *
@@ -92,4 +94,57 @@ public class GraphHopperStorageWithTurnCostsTest extends GraphHopperStorageTest
         graph.edge(3, 4, 123, true).setWayGeometry(Helper.createPointList(4.4, 5.5, 6.6, 7.7));
         checkGraph(graph);
     }
+
+    @Test
+    public void testCompact()
+    {
+        graph = createGraphStorage(new RAMDirectory());
+        for (int i = 0; i < 5; i++)
+        {
+            graph.edge(i, i + 1, 100, true);
+        }
+
+        turnCostStorage.setTurnCosts(2, 3, 1, 10);
+        turnCostStorage.setTurnCosts(1, 1, 0, 20);
+        turnCostStorage.setTurnCosts(2, 1, 3, 30);
+        turnCostStorage.setTurnCosts(2, 1, 2, 40);
+        // the first entry wins
+        turnCostStorage.setTurnCosts(2, 3, 1, 50);
+        assertEquals(5, turnCostStorage.entries());
+        assertFalse(turnCostStorage.isCompacted());
+
+        turnCostStorage.compact();
+        assertTrue(turnCostStorage.isCompacted());
+        assertEquals(4, turnCostStorage.entries());
+        assertEquals(10, turnCostStorage.getTurnCosts(2, 3, 1));
+        assertEquals(20, turnCostStorage.getTurnCosts(1, 1, 0));
+        assertEquals(30, turnCostStorage.getTurnCosts(2, 1, 3));
+        assertEquals(40, turnCostStorage.getTurnCosts(2, 1, 2));
+        assertEquals(0, turnCostStorage.getTurnCosts(2, 2, 1));
+        assertEquals(0, turnCostStorage.getTurnCosts(0, 1, 2));
+        assertFalse(turnCostStorage.hasTurnCosts(0));
+
+        // entries of a node are sorted by from and to edge
+        TurnCostIterator iter = turnCostStorage.createTurnCostIterable(2, TurnCostIterator.ANY_EDGE,
+                TurnCostIterator.ANY_EDGE);
+        assertTrue(iter.next());
+        assertEquals(2, iter.edgeTo());
+        assertTrue(iter.next());
+        assertEquals(3, iter.edgeTo());
+        assertTrue(iter.next());
+        assertEquals(3, iter.edgeFrom());
+        assertFalse(iter.next());
+
+        // appending is still possible
+        turnCostStorage.setTurnCosts(2, 0, 4, 60);
+        assertFalse(turnCostStorage.isCompacted());
+        assertEquals(60, turnCostStorage.getTurnCosts(2, 0, 4));
+        assertEquals(10, turnCostStorage.getTurnCosts(2, 3, 1));
+
+        graph.flush();
+        assertTrue(turnCostStorage.isCompacted());
+        assertEquals(60, turnCostStorage.getTurnCosts(2, 0, 4));
+        assertEquals(40, turnCostStorage.getTurnCosts(2, 1, 2));
+        assertEquals(10, turnCostStorage.getTurnCosts(2, 3, 1));
+    }
 }
@@ -17,11 +17,18 @@
  */
 package com.graphhopper.storage;
 
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.util.LevelEdgeFilter;
+import com.graphhopper.routing.util.ShortestWeighting;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeSkipExplorer;
 import com.graphhopper.util.EdgeSkipIterState;
+import com.graphhopper.util.EdgeSkipIterator;
 import com.graphhopper.util.GHUtility;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Random;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -119,6 +126,138 @@ public class LevelGraphStorageTest extends GraphHopperStorageTest
         assertEquals(2, GHUtility.count(iter));
     }
 
+    @Test
+    public void testHierarchies()
+    {
+        LevelGraphStorage g = new LevelGraphStorage(new RAMDirectory(defaultGraph, true), encodingManager, 2).create(defaultSize);
+        assertEquals(2, g.getHierarchies());
+        LevelGraph first = g.getHierarchy(0);
+        LevelGraph second = g.getHierarchy(1);
+        g.edge(0, 1, 10, true);
+        g.edge(1, 2, 20, true);
+        first.shortcut(0, 2).setDistance(30).setFlags(carEncoder.setAccess(0, true, true));
+        EdgeSkipIterState sc = second.shortcut(0, 2);
+        sc.setDistance(25).setFlags(carEncoder.setAccess(0, true, true));
+        sc.setSkippedEdges(0, 1);
+        second.shortcut(1, 3).setDistance(5).setFlags(carEncoder.setAccess(0, true, true));
+        first.setLevel(0, 3);
+        second.setLevel(0, 7);
+
+        assertEquals(3, first.getLevel(0));
+        assertEquals(7, second.getLevel(0));
+        // the storage itself refers to the first hierarchy
+        assertEquals(3, g.getLevel(0));
+
+        assertEquals(GHUtility.asSet(1, 2), GHUtility.getNeighbors(first.createEdgeExplorer().setBaseNode(0)));
+        assertEquals(GHUtility.asSet(0, 2), GHUtility.getNeighbors(first.createEdgeExplorer().setBaseNode(1)));
+        assertEquals(GHUtility.asSet(0, 2, 3), GHUtility.getNeighbors(second.createEdgeExplorer().setBaseNode(1)));
+        EdgeSkipIterator iter = second.createEdgeExplorer(carOutFilter).setBaseNode(2);
+        int shortcuts = 0;
+        while (iter.next())
+        {
+            if (iter.isShortcut())
+            {
+                assertEquals(25, iter.getDistance(), 1e-5);
+                shortcuts++;
+            }
+        }
+        assertEquals(1, shortcuts);
+        // all edges are visible in the storage
+        assertEquals(3, GHUtility.count(g.createEdgeExplorer().setBaseNode(2)));
+
+        g.flush();
+        g.close();
+
+        g = new LevelGraphStorage(new RAMDirectory(defaultGraph, true), encodingManager, 2);
+        assertTrue(g.loadExisting());
+        assertEquals(7, g.getHierarchy(1).getLevel(0));
+        assertEquals(GHUtility.asSet(0, 2, 3), GHUtility.getNeighbors(g.getHierarchy(1).createEdgeExplorer().setBaseNode(1)));
+        g.close();
+
+        try
+        {
+            new LevelGraphStorage(new RAMDirectory(defaultGraph, true), encodingManager, 3).loadExisting();
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testCopyHierarchy()
+    {
+        LevelGraphStorage g = new LevelGraphStorage(new RAMDirectory(), encodingManager, 2).create(defaultSize);
+        g.edge(0, 1, 10, true);
+        g.edge(1, 2, 20, true);
+        g.getHierarchy(1).shortcut(0, 2).setDistance(30).setFlags(carEncoder.setAccess(0, true, true));
+        g.getHierarchy(1).setLevel(0, 7);
+
+        LevelGraphStorage copy = (LevelGraphStorage) g.getHierarchy(1).copyTo(
+                new LevelGraphStorage(new RAMDirectory(), encodingManager, 2).create(defaultSize));
+        assertEquals(2, copy.getHierarchies());
+        assertEquals(7, copy.getHierarchy(1).getLevel(0));
+        assertEquals(GHUtility.asSet(1, 2), GHUtility.getNeighbors(copy.getHierarchy(1).createEdgeExplorer().setBaseNode(0)));
+        assertEquals(GHUtility.asSet(1), GHUtility.getNeighbors(copy.getHierarchy(0).createEdgeExplorer().setBaseNode(0)));
+    }
+
+    @Test
+    public void testCopySortedTo()
+    {
+        LevelGraphStorage g = createGraph();
+        Random rand = new Random(1);
+        int size = 8;
+        for (int i = 0; i < size; i++)
+        {
+            for (int j = 0; j < size; j++)
+            {
+                int node = i * size + j;
+                g.setNode(node, i * 0.01, j * 0.01);
+                if (j > 0)
+                    g.edge(node - 1, node, 1 + rand.nextDouble() * 10, true);
+                if (i > 0)
+                    g.edge(node - size, node, 1 + rand.nextDouble() * 10, rand.nextInt(5) > 0);
+            }
+        }
+        new PrepareContractionHierarchies(carEncoder, new ShortestWeighting()).setGraph(g).doWork();
+
+        int nodes = g.getNodes();
+        TIntList oldToNew = new TIntArrayList(nodes);
+        for (int node = 0; node < nodes; node++)
+        {
+            oldToNew.add(nodes - 1 - node);
+        }
+        LevelGraphStorage sorted = g.copySortedTo(new LevelGraphStorage(new RAMDirectory(), encodingManager).create(nodes), oldToNew);
+        assertEquals(nodes, sorted.getNodes());
+        assertEquals(g.getAllEdges().getMaxId(), sorted.getAllEdges().getMaxId());
+        for (int node = 0; node < nodes; node++)
+        {
+            assertEquals(g.getLevel(node), sorted.getLevel(nodes - 1 - node));
+            assertEquals(g.getLatitude(node), sorted.getLatitude(nodes - 1 - node), 1e-6);
+            // disconnected edges stay disconnected
+            assertEquals(GHUtility.count(g.createEdgeExplorer().setBaseNode(node)),
+                    GHUtility.count(sorted.createEdgeExplorer().setBaseNode(nodes - 1 - node)));
+        }
+
+        for (int i = 0; i < 50; i++)
+        {
+            int from = rand.nextInt(nodes);
+            int to = rand.nextInt(nodes);
+            Path expected = new PrepareContractionHierarchies(carEncoder, new ShortestWeighting()).
+                    setGraph(g).createAlgo().calcPath(from, to);
+            Path path = new PrepareContractionHierarchies(carEncoder, new ShortestWeighting()).
+                    setGraph(sorted).createAlgo().calcPath(nodes - 1 - from, nodes - 1 - to);
+            assertEquals(expected.isFound(), path.isFound());
+            assertEquals(expected.getDistance(), path.getDistance(), 1e-5);
+            TIntList expectedNodes = expected.calcNodes();
+            TIntList pathNodes = path.calcNodes();
+            assertEquals(expectedNodes.size(), pathNodes.size());
+            for (int n = 0; n < expectedNodes.size(); n++)
+            {
+                assertEquals(nodes - 1 - expectedNodes.get(n), pathNodes.get(n));
+            }
+        }
+    }
+
     @Test
     public void testDisconnectEdge()
     {
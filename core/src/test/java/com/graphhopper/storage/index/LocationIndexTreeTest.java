@@ -26,7 +26,9 @@ import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.GHPoint;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.hash.TIntHashSet;
+import java.util.List;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -98,6 +100,94 @@ public class LocationIndexTreeTest extends AbstractLocationIndexTester
         assertEquals(new GHPoint(-0.441624, 0.317259), res.getSnappedPoint());
     }
 
+    @Test
+    public void testSortUnique()
+    {
+        TIntArrayList list = new TIntArrayList(new int[]
+        {
+            5, 3, 5, 1, 3, 3
+        });
+        LocationIndexTree.sortUnique(list);
+        assertEquals(new TIntArrayList(new int[]
+        {
+            1, 3, 5
+        }), list);
+
+        list.clear();
+        LocationIndexTree.sortUnique(list);
+        assertTrue(list.isEmpty());
+    }
+
+    @Test
+    public void testReusedLookupContext()
+    {
+        Graph graph = createTestGraph();
+        LocationIndex index = createIndex(graph, 1000);
+        // the result of a previous lookup must not leak into the next one
+        QueryResult edgeRes = index.findClosest(-0.2, 0.3, EdgeFilter.ALL_EDGES);
+        QueryResult towerRes = index.findClosest(-0.4, 0.9, EdgeFilter.ALL_EDGES);
+        assertEquals(new GHPoint(-0.4, 0.9), towerRes.getSnappedPoint());
+        QueryResult res = index.findClosest(-0.2, 0.3, EdgeFilter.ALL_EDGES);
+        assertEquals(edgeRes.getSnappedPoint(), res.getSnappedPoint());
+        assertEquals(edgeRes.getClosestNode(), res.getClosestNode());
+        assertEquals(edgeRes.getClosestEdge().getEdge(), res.getClosestEdge().getEdge());
+        assertEquals(edgeRes.getQueryDistance(), res.getQueryDistance(), 1e-6);
+        assertEquals(QueryResult.Position.EDGE, res.getSnappedPosition());
+    }
+
+    @Test
+    public void testFindClosestBulk()
+    {
+        Graph graph = createTestGraph();
+        LocationIndexTree index = createIndex(graph, 1000);
+        double[] lats = new double[]
+        {
+            -0.2, -0.6, 0.5, -0.4
+        };
+        double[] lons = new double[]
+        {
+            0.3, 1.6, -0.5, 0.9
+        };
+        List<QueryResult> list = index.findClosest(lats, lons, EdgeFilter.ALL_EDGES);
+        assertEquals(4, list.size());
+        for (int i = 0; i < lats.length; i++)
+        {
+            QueryResult res = index.findClosest(lats[i], lons[i], EdgeFilter.ALL_EDGES);
+            assertEquals(res.getQueryPoint(), list.get(i).getQueryPoint());
+            assertEquals(res.getSnappedPoint(), list.get(i).getSnappedPoint());
+            assertEquals(res.getClosestEdge().getEdge(), list.get(i).getClosestEdge().getEdge());
+        }
+    }
+
+    @Test
+    public void testFindKClosest()
+    {
+        Graph graph = createTestGraph();
+        LocationIndexTree index = createIndex(graph, 1000);
+        QueryResult closest = index.findClosest(-0.2, 0.3, EdgeFilter.ALL_EDGES);
+        List<QueryResult> list = index.findKClosest(-0.2, 0.3, 3, 500000, EdgeFilter.ALL_EDGES);
+        assertEquals(3, list.size());
+        assertEquals(closest.getClosestEdge().getEdge(), list.get(0).getClosestEdge().getEdge());
+        assertEquals(closest.getSnappedPoint(), list.get(0).getSnappedPoint());
+        assertEquals(closest.getQueryDistance(), list.get(0).getQueryDistance(), 1e-6);
+        TIntHashSet edges = new TIntHashSet();
+        for (int i = 0; i < list.size(); i++)
+        {
+            assertTrue(edges.add(list.get(i).getClosestEdge().getEdge()));
+            if (i > 0)
+                assertTrue(list.get(i - 1).getQueryDistance() <= list.get(i).getQueryDistance());
+        }
+
+        // every edge only once
+        list = index.findKClosest(-0.2, 0.3, 100, 500000, EdgeFilter.ALL_EDGES);
+        assertEquals(graph.getAllEdges().getMaxId(), list.size());
+
+        // the radius limits the candidates
+        double radius = list.get(1).getQueryDistance() + 1;
+        assertEquals(2, index.findKClosest(-0.2, 0.3, 100, radius, EdgeFilter.ALL_EDGES).size());
+        assertTrue(index.findKClosest(-0.2, 0.3, 100, 1, EdgeFilter.ALL_EDGES).isEmpty());
+    }
+
     @Test
     public void testInMemIndex()
     {
@@ -59,6 +59,17 @@ public abstract class AbstractBitUtilTester
         assertEquals(Integer.MAX_VALUE / 3, bitUtil.toInt(bytes));
     }
 
+    @Test
+    public void testToShort()
+    {
+        byte[] bytes = new byte[4];
+        bitUtil.fromShort(bytes, Short.MAX_VALUE, 1);
+        assertEquals(Short.MAX_VALUE, bitUtil.toShort(bytes, 1));
+
+        bitUtil.fromShort(bytes, (short) -12345, 2);
+        assertEquals(-12345, bitUtil.toShort(bytes, 2));
+    }
+
     @Test
     public void testToLong()
     {
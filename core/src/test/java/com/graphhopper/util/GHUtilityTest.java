@@ -20,7 +20,10 @@ package com.graphhopper.util;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.GraphBuilder;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.Storable;
+import java.io.File;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -133,4 +136,99 @@ public class GHUtilityTest
         assertEquals("01", BitUtil.BIG.toLastBitString(iter.getFlags(), 2));
         assertFalse(iter.next());
     }
+
+    @Test
+    public void testRestoreCheckpoint()
+    {
+        String location = "./target/tmp/checkpoint";
+        Helper.removeDir(new File(location));
+        GraphBuilder builder = new GraphBuilder(encodingManager).setLocation(location).setStore(true);
+        GraphStorage g = builder.create();
+        initUnsorted(g);
+        GHUtility.flushCheckpoint(g, "phase", "first");
+        File previous = new File(location, GHUtility.CHECKPOINT_PREVIOUS);
+        assertFalse(previous.exists());
+
+        g.edge(0, 8, 10, true);
+        try
+        {
+            GHUtility.flushCheckpoint(g, "phase", "second", new FailingStorable());
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+            assertEquals("stopped", ex.getMessage());
+        }
+        g.close();
+        assertTrue(previous.exists());
+
+        assertTrue(GHUtility.restoreCheckpoint(location));
+        assertFalse(previous.exists());
+        g = builder.load();
+        assertEquals("first", g.getProperties().get("phase"));
+        assertEquals(6, g.getAllEdges().getMaxId());
+        g.close();
+        assertFalse(GHUtility.restoreCheckpoint(location));
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testInterruptedFirstCheckpoint()
+    {
+        String location = "./target/tmp/checkpoint";
+        Helper.removeDir(new File(location));
+        GraphStorage g = new GraphBuilder(encodingManager).setLocation(location).setStore(true).create();
+        initUnsorted(g);
+        try
+        {
+            GHUtility.flushCheckpoint(g, "phase", "first", new FailingStorable());
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+        g.close();
+
+        // without a previous checkpoint the folder is not touched
+        try
+        {
+            GHUtility.restoreCheckpoint(location);
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("no previous checkpoint"));
+        }
+        assertTrue(new File(location, GHUtility.CHECKPOINT_PREVIOUS).exists());
+        Helper.removeDir(new File(location));
+    }
+
+    static class FailingStorable implements Storable<FailingStorable>
+    {
+        @Override
+        public boolean loadExisting()
+        {
+            return false;
+        }
+
+        @Override
+        public FailingStorable create( long byteCount )
+        {
+            return this;
+        }
+
+        @Override
+        public void flush()
+        {
+            throw new IllegalStateException("stopped");
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public long getCapacity()
+        {
+            return 0;
+        }
+    }
 }
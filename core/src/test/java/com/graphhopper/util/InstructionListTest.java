@@ -274,6 +274,12 @@ public class InstructionListTest
         assertEquals(15602, result.get(2).getMillis());
         assertEquals(25449, result.get(3).getMillis());
         assertEquals(30559, result.get(4).getMillis());
+
+        // streamed per instruction with the same times
+        String gpxStr = instructions.createGPX("a <track>", 0, "GMT");
+        assertTrue(gpxStr, gpxStr.contains("<name>a &lt;track&gt;</name>"));
+        assertTrue(gpxStr, gpxStr.contains("<trkpt lat=\"49.941389\" lon=\"11.584311\"><time>1970-01-01T00:00:25+00:00</time></trkpt>"));
+        assertEquals(5, gpxStr.split("<trkpt ").length - 1);
     }
 
     private long flagsForSpeed( EncodingManager encodingManager, int speedKmPerHour )
@@ -58,6 +58,10 @@ public class DefaultModule extends AbstractModule
                     setBounds(hopper.getGraph().getBounds()));
             bind(GHThreadPool.class).toInstance(new GHThreadPool(1000, 50).startService());
 
+            int cacheEntries = args.getInt("web.routeCache.maxEntries", 0);
+            long cacheTTL = args.getLong("web.routeCache.ttl", 10 * 60 * 1000);
+            bind(RouteCache.class).toInstance(new RouteCache(cacheEntries, cacheTTL));
+
             bind(TranslationMap.class).toInstance(new TranslationMap().doImport());
         } catch (Exception ex)
         {
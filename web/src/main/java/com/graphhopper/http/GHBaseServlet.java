@@ -18,6 +18,7 @@
 package com.graphhopper.http;
 
 import java.io.IOException;
+import java.io.Writer;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -63,6 +64,39 @@ public class GHBaseServlet extends HttpServlet
         }
     }
 
+    /**
+     * Prepares the response for JSON or JSONP which is then written directly to the response.
+     * Finish it via endJson.
+     */
+    protected JSONStreamWriter startJson( HttpServletRequest req, HttpServletResponse res ) throws IOException
+    {
+        res.setCharacterEncoding("UTF-8");
+        res.setStatus(SC_OK);
+        boolean debug = getBooleanParam(req, "debug", false) || getBooleanParam(req, "pretty", false);
+        if (isJsonp(req))
+        {
+            res.setContentType("application/javascript");
+            Writer writer = res.getWriter();
+            writer.write(getParam(req, "callback", null) + "(");
+            return new JSONStreamWriter(writer, debug);
+        }
+
+        res.setContentType("application/json");
+        return new JSONStreamWriter(res.getWriter(), debug);
+    }
+
+    protected void endJson( HttpServletRequest req, HttpServletResponse res, JSONStreamWriter json ) throws IOException
+    {
+        json.flush();
+        if (isJsonp(req))
+            res.getWriter().write(")");
+    }
+
+    private boolean isJsonp( HttpServletRequest req )
+    {
+        return "jsonp".equals(getParam(req, "type", "json"));
+    }
+
     void returnError( HttpServletResponse res, String errorMessage ) throws IOException
     {
         res.sendError(SC_BAD_REQUEST, errorMessage);
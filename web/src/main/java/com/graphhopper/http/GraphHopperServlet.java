@@ -18,15 +18,21 @@
 package com.graphhopper.http;
 
 import com.graphhopper.search.Geocoding;
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GHResponse;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.RoutingContextPool;
 import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.*;
 import com.graphhopper.util.TranslationMap.Translation;
 import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPlace;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.*;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -59,6 +65,8 @@ public class GraphHopperServlet extends GHBaseServlet {
     private GHThreadPool threadPool;
     @Inject
     private TranslationMap trMap;
+    @Inject
+    private RouteCache routeCache;
 
     @Override
     public void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
@@ -67,6 +75,8 @@ public class GraphHopperServlet extends GHBaseServlet {
                 writeInfos(req, res);
             } else if ("/route".equals(req.getPathInfo())) {
                 writePath(req, res);
+            } else if ("/matrix".equals(req.getPathInfo())) {
+                writeMatrix(req, res);
             }
         } catch (Exception ex) {
             logger.error("Error while executing request: " + req.getQueryString(), ex);
@@ -86,15 +96,37 @@ public class GraphHopperServlet extends GHBaseServlet {
                 object("supportedVehicles", hopper.getEncodingManager()).
                 object("version", Constants.VERSION).
                 object("buildDate", Constants.BUILD_DATE);
+        RoutingContextPool pool = hopper.getRoutingContextPool();
+        json = json.startObject("routingContexts").
+                object("maxIdle", pool.getMaxIdle()).
+                object("idle", pool.getIdle()).
+                object("inUse", pool.getInUse()).
+                object("maxInUse", pool.getMaxInUse()).
+                object("acquired", pool.getAcquired()).
+                object("created", pool.getCreated()).
+                object("discarded", pool.getDiscarded()).
+                object("idleMemory", pool.getIdleMemoryUsage()).
+                endObject();
+        if (routeCache.isEnabled()) {
+            json = json.startObject("routeCache").
+                    object("maxEntries", routeCache.getMaxEntries()).
+                    object("size", routeCache.getSize()).
+                    object("hits", routeCache.getHits()).
+                    object("misses", routeCache.getMisses()).
+                    object("evictions", routeCache.getEvictions()).
+                    object("expirations", routeCache.getExpirations()).
+                    object("invalidations", routeCache.getInvalidations()).
+                    endObject();
+        }
         writeJson(req, res, json.build());
     }
 
     void writePath(HttpServletRequest req, HttpServletResponse res) throws Exception {
         StopWatch sw = new StopWatch().start();
-        List<GHPlace> infoPoints = getPoints(req);
+        List<GHPlace> infoPoints = getPoints(req, "point");
         float tookGeocoding = sw.stop().getSeconds();
         GHPlace start = infoPoints.get(0);
-        GHPlace end = infoPoints.get(1);
+        GHPlace end = infoPoints.get(infoPoints.size() - 1);
         try {
             // we can reduce the path length based on the maximum differences to the original coordinates
             double minPathPrecision = getDoubleParam(req, "minPathPrecision", 1d);
@@ -113,7 +145,7 @@ public class GraphHopperServlet extends GHBaseServlet {
             GHResponse rsp;
             if (hopper.getEncodingManager().supports(vehicleStr)) {
                 FlagEncoder algoVehicle = hopper.getEncodingManager().getEncoder(vehicleStr);
-                rsp = hopper.route(new GHRequest(start, end).
+                rsp = route(new GHRequest(infoPoints).
                         setVehicle(algoVehicle.toString()).
                         setWeighting(weighting).
                         setAlgorithm(algoStr).
@@ -141,7 +173,7 @@ public class GraphHopperServlet extends GHBaseServlet {
             if (writeGPX)
                 writeGPX(req, res, rsp);
             else
-                writeJson(req, res, rsp, start, end, tookGeocoding, took);
+                writeJson(req, res, rsp, infoPoints, tookGeocoding, took);
 
         } catch (Exception ex) {
             logger.error("Error while query:" + start + "->" + end, ex);
@@ -149,87 +181,209 @@ public class GraphHopperServlet extends GHBaseServlet {
         }
     }
 
-    private void writeGPX(HttpServletRequest req, HttpServletResponse res, GHResponse rsp) {
+    /**
+     * Returns the cached response if the snapped points and all parameters are identical.
+     */
+    private GHResponse route(GHRequest request) {
+        if (!routeCache.isEnabled())
+            return hopper.route(request);
+
+        GHResponse rsp = new GHResponse();
+        List<QueryResult> qResults = hopper.lookup(request, rsp.getErrors());
+        if (rsp.hasErrors())
+            return rsp;
+
+        RouteCache.Key key = routeCache.createKey(hopper.getGraph(), request, qResults);
+        GHResponse cached = routeCache.get(key);
+        if (cached != null)
+            return cached;
+
+        rsp = hopper.route(request, qResults);
+        routeCache.put(key, rsp);
+        return rsp;
+    }
+
+    private void writeGPX(HttpServletRequest req, HttpServletResponse res, GHResponse rsp) throws IOException {
         res.setCharacterEncoding("UTF-8");
         res.setContentType("application/xml");
         String trackName = getParam(req, "track", "GraphHopper Track");
         res.setHeader( "Content-Disposition", "attachment;filename=" + "GraphHopper.gpx" );
         String timeZone = getParam(req, "timezone", "GMT");
         long time = getLongParam(req, "millis", System.currentTimeMillis());
-        writeResponse(res, rsp.getInstructions().createGPX(trackName, time, timeZone));
+        res.setStatus(SC_OK);
+        Writer writer = res.getWriter();
+        rsp.getInstructions().writeGPX(writer, trackName, time, timeZone);
+        writer.flush();
     }
 
+    /**
+     * Streams the route to the response without creating intermediate JSON objects or boxed
+     * numbers for the points and instructions.
+     */
     private void writeJson(HttpServletRequest req, HttpServletResponse res,
-            GHResponse rsp, GHPlace start, GHPlace end,
-            float tookGeocoding, float took) throws JSONException {
+            GHResponse rsp, List<GHPlace> infoPoints,
+            float tookGeocoding, float took) throws JSONException, IOException {
+        if (rsp.hasErrors()) {
+            writeJson(req, res, createErrors(rsp.getErrors()).build());
+            return;
+        }
+
         boolean enableInstructions = getBooleanParam(req, "instructions", true);
-        boolean useMiles = getBooleanParam(req, "useMiles", false);
         Locale locale = Helper.getLocale(getParam(req, "locale", "en"));
         boolean encodedPolylineParam = getBooleanParam(req, "encodedPolyline", true);
+        GHPlace start = infoPoints.get(0);
+        GHPlace end = infoPoints.get(infoPoints.size() - 1);
+        PointList points = rsp.getPoints();
+        // create everything which can fail before the response is committed
+        List<String> descriptions = null;
+        if (enableInstructions)
+            descriptions = rsp.getInstructions().createDescription(trMap.getWithFallBack(locale));
+
+        BBox bbox = null;
+        if (points.getSize() >= 2)
+            bbox = rsp.calcRouteBBox(hopper.getGraph().getBounds());
+
+        JSONStreamWriter json = startJson(req, res);
+        json.startObject().
+                startObject("info").
+                object("routeFound", rsp.isFound()).
+                object("took", took).
+                object("tookGeocoding", tookGeocoding).
+                endObject();
+        json.startObject("route").
+                startArray("from").value(start.lon).value(start.lat).endArray().
+                startArray("to").value(end.lon).value(end.lat).endArray().
+                object("distance", rsp.getDistance()).
+                object("time", rsp.getMillis());
+
+        if (infoPoints.size() > 2) {
+            json.startObject("legs").startArray("distances");
+            for (double distance : rsp.getLegDistances()) {
+                json.value(distance);
+            }
+            json.endArray().startArray("millis");
+            for (long millis : rsp.getLegMillis()) {
+                json.value(millis);
+            }
+            json.endArray().endObject();
+        }
+
+        if (enableInstructions) {
+            InstructionList instructions = rsp.getInstructions();
+            json.startObject("instructions").startArray("descriptions");
+            for (String description : descriptions) {
+                json.value(description);
+            }
+            json.endArray().startArray("distances");
+            for (Instruction instruction : instructions) {
+                json.value(instruction.getDistance());
+            }
+            json.endArray().startArray("indications");
+            for (Instruction instruction : instructions) {
+                json.value(instruction.getIndication());
+            }
+            json.endArray().startArray("millis");
+            for (Instruction instruction : instructions) {
+                json.value(instruction.getMillis());
+            }
+            json.endArray().startArray("latLngs");
+            for (Instruction instruction : instructions) {
+                json.startArray().value(instruction.getFirstLat()).value(instruction.getFirstLon()).endArray();
+            }
+            json.endArray().endObject();
+        }
+
+        if (bbox != null) {
+            json.startArray("bbox").
+                    value(bbox.minLon).value(bbox.minLat).
+                    value(bbox.maxLon).value(bbox.maxLat).
+                    endArray();
+        }
+
+        if (encodedPolylineParam) {
+            json.object("coordinates", WebHelper.encodePolyline(points));
+        } else {
+            json.startObject("data").
+                    object("type", "LineString").
+                    startArray("coordinates");
+            int size = points.getSize();
+            for (int i = 0; i < size; i++) {
+                json.startArray().value(points.getLongitude(i)).value(points.getLatitude(i)).endArray();
+            }
+            json.endArray().endObject();
+        }
+        // end route
+        json.endObject().endObject();
+        endJson(req, res, json);
+    }
+
+    private JSONBuilder createErrors(List<Throwable> errors) {
+        List<Map<String, String>> list = new ArrayList<Map<String, String>>();
+        for (Throwable t : errors) {
+            Map<String, String> map = new HashMap<String, String>();
+            map.put("message", t.getMessage());
+            map.put("details", t.getClass().getName());
+            list.add(map);
+        }
+        return new JSONBuilder().startObject("info").object("errors", list).endObject();
+    }
+
+    void writeMatrix(HttpServletRequest req, HttpServletResponse res) throws Exception {
+        StopWatch sw = new StopWatch().start();
+        GHMatrixRequest request = new GHMatrixRequest();
+        for (GHPlace place : getPoints(req, "source")) {
+            request.addSource(place);
+        }
+        for (GHPlace place : getPoints(req, "target")) {
+            request.addTarget(place);
+        }
+        float tookGeocoding = sw.stop().getSeconds();
+        String vehicleStr = getParam(req, "vehicle", "CAR").toUpperCase();
+        String weighting = getParam(req, "weighting", "fastest");
+
+        sw = new StopWatch().start();
+        GHMatrixResponse rsp = hopper.calcMatrix(request.setVehicle(vehicleStr).setWeighting(weighting));
+        float took = sw.stop().getSeconds();
+        String logStr = req.getQueryString() + " " + req.getRemoteAddr() + " " + request
+                + ", took:" + took + ", debug - " + rsp.getDebugInfo();
         JSONBuilder builder;
         if (rsp.hasErrors()) {
-            builder = new JSONBuilder().startObject("info");
-            List<Map<String, String>> list = new ArrayList<Map<String, String>>();
-            for (Throwable t : rsp.getErrors()) {
-                Map<String, String> map = new HashMap<String, String>();
-                map.put("message", t.getMessage());
-                map.put("details", t.getClass().getName());
-                list.add(map);
-            }
-            builder = builder.object("errors", list).endObject();
+            logger.error(logStr + ", errors:" + rsp.getErrors());
+            builder = createErrors(rsp.getErrors());
         } else {
+            logger.info(logStr);
+            DistanceMatrix matrix = rsp.getMatrix();
+            List<List<Double>> distances = new ArrayList<List<Double>>(matrix.getSources());
+            List<List<Long>> millis = new ArrayList<List<Long>>(matrix.getSources());
+            for (int s = 0; s < matrix.getSources(); s++) {
+                List<Double> distanceRow = new ArrayList<Double>(matrix.getTargets());
+                List<Long> millisRow = new ArrayList<Long>(matrix.getTargets());
+                for (int t = 0; t < matrix.getTargets(); t++) {
+                    // -1 marks unreachable targets
+                    boolean found = matrix.isFound(s, t);
+                    distanceRow.add(found ? matrix.getDistance(s, t) : -1);
+                    millisRow.add(found ? matrix.getMillis(s, t) : -1);
+                }
+                distances.add(distanceRow);
+                millis.add(millisRow);
+            }
             builder = new JSONBuilder().
                     startObject("info").
-                    object("routeFound", rsp.isFound()).
                     object("took", took).
                     object("tookGeocoding", tookGeocoding).
+                    endObject().
+                    startObject("matrix").
+                    object("distances", distances).
+                    object("millis", millis).
                     endObject();
-            builder = builder.startObject("route").
-                    object("from", new Double[]{
-                        start.lon, start.lat
-                    }).
-                    object("to", new Double[]{
-                        end.lon, end.lat
-                    }).
-                    object("distance", rsp.getDistance()).
-                    object("time", rsp.getMillis());
-
-            if (enableInstructions) {
-                Translation tr = trMap.getWithFallBack(locale);
-                InstructionList instructions = rsp.getInstructions();
-                builder.startObject("instructions").
-                        object("descriptions", instructions.createDescription(tr)).
-                        object("distances", instructions.createDistances()).
-                        object("indications", instructions.createIndications()).
-                        object("millis", instructions.createMillis()).
-                        object("latLngs", instructions.createLatLngs()).
-                        endObject();
-            }
-
-            PointList points = rsp.getPoints();
-            if (points.getSize() >= 2)
-                builder.object("bbox", rsp.calcRouteBBox(hopper.getGraph().getBounds()).toGeoJson());
-
-            if (encodedPolylineParam) {
-                String encodedPolyline = WebHelper.encodePolyline(points);
-                builder.object("coordinates", encodedPolyline);
-            } else {
-                builder.startObject("data").
-                        object("type", "LineString").
-                        object("coordinates", points.toGeoJson()).
-                        endObject();
-            }
-            // end route
-            builder = builder.endObject();
         }
-
         writeJson(req, res, builder.build());
     }
 
-    private List<GHPlace> getPoints(HttpServletRequest req) throws IOException {
-        String[] pointsAsStr = getParams(req, "point");
+    private List<GHPlace> getPoints(HttpServletRequest req, String paramName) throws IOException {
+        String[] pointsAsStr = getParams(req, paramName);
         // allow two formats
-        if (pointsAsStr.length == 0) {
+        if (pointsAsStr.length == 0 && "point".equals(paramName)) {
             String from = getParam(req, "from", "");
             String to = getParam(req, "to", "");
             if (!Helper.isEmpty(from) && !Helper.isEmpty(to)) {
@@ -279,13 +433,12 @@ public class GraphHopperServlet extends GHBaseServlet {
         }
 
         // TODO resolve name in a thread if only lat,lon is given but limit to a certain timeout
-        if (infoPoints == null || infoPoints.size() < 2) {
+        if ("point".equals(paramName) && infoPoints.size() < 2) {
             throw new IllegalArgumentException("Did you specify point=<from>&point=<to> ? Use at least 2 points! " + infoPoints);
         }
 
-        // TODO execute algorithm multiple times!
-        if (infoPoints.size() != 2) {
-            throw new IllegalArgumentException("TODO! At the moment only 2 points can be specified");
+        if (infoPoints.isEmpty()) {
+            throw new IllegalArgumentException("Did you specify " + paramName + "=<lat,lon> ? Use at least 1 point! " + infoPoints);
         }
 
         return infoPoints;
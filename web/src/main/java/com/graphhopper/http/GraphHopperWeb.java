@@ -23,6 +23,7 @@ import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.util.Downloader;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPlace;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -81,10 +82,14 @@ public class GraphHopperWeb implements GraphHopperAPI
         double took = 0;
         try
         {
+            String places = "";
+            for (GHPlace place : request.getPlaces())
+            {
+                places += "point=" + place.lat + "," + place.lon + "&";
+            }
             String url = serviceUrl
-                    + "?from=" + request.getFrom().lat + "," + request.getFrom().lon
-                    + "&to=" + request.getTo().lat + "," + request.getTo().lon
-                    + "&type=json"
+                    + "?" + places
+                    + "type=json"
                     + "&encodedPolyline=" + encodePolyline
                     + "&minPathPrecision=" + request.getHint("douglas.minprecision", 1)
                     + "&algo=" + request.getAlgorithm();
@@ -0,0 +1,302 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes JSON directly to the underlying writer without building an object tree like
+ * JSONBuilder does. Numbers are written without boxing which makes it suitable for large arrays
+ * like the points of a route.
+ * <p/>
+ * @author Peter Karich
+ */
+public class JSONStreamWriter
+{
+    private final Writer writer;
+    private final boolean pretty;
+    // per open object or array: if it is an array and if it already contains an element
+    private boolean[] arrays = new boolean[8];
+    private boolean[] notEmpty = new boolean[8];
+    private int depth;
+    private boolean nameWritten;
+
+    public JSONStreamWriter( Writer writer )
+    {
+        this(writer, false);
+    }
+
+    /**
+     * @param pretty if true the output is indented by 2 spaces per level
+     */
+    public JSONStreamWriter( Writer writer, boolean pretty )
+    {
+        this.writer = writer;
+        this.pretty = pretty;
+    }
+
+    public JSONStreamWriter startObject() throws IOException
+    {
+        return open('{', false);
+    }
+
+    public JSONStreamWriter startObject( String name ) throws IOException
+    {
+        return name(name).startObject();
+    }
+
+    public JSONStreamWriter endObject() throws IOException
+    {
+        return close('}', false);
+    }
+
+    public JSONStreamWriter startArray() throws IOException
+    {
+        return open('[', true);
+    }
+
+    public JSONStreamWriter startArray( String name ) throws IOException
+    {
+        return name(name).startArray();
+    }
+
+    public JSONStreamWriter endArray() throws IOException
+    {
+        return close(']', true);
+    }
+
+    public JSONStreamWriter name( String name ) throws IOException
+    {
+        if (depth == 0 || arrays[depth - 1] || nameWritten)
+            throw new IllegalStateException("name " + name + " is only allowed in an object");
+
+        beforeElement();
+        writeString(name);
+        writer.write(pretty ? ": " : ":");
+        nameWritten = true;
+        return this;
+    }
+
+    public JSONStreamWriter object( String name, String value ) throws IOException
+    {
+        return name(name).value(value);
+    }
+
+    public JSONStreamWriter object( String name, double value ) throws IOException
+    {
+        return name(name).value(value);
+    }
+
+    public JSONStreamWriter object( String name, float value ) throws IOException
+    {
+        return name(name).value(value);
+    }
+
+    public JSONStreamWriter object( String name, long value ) throws IOException
+    {
+        return name(name).value(value);
+    }
+
+    public JSONStreamWriter object( String name, boolean value ) throws IOException
+    {
+        return name(name).value(value);
+    }
+
+    public JSONStreamWriter value( String value ) throws IOException
+    {
+        beforeValue();
+        if (value == null)
+            writer.write("null");
+        else
+            writeString(value);
+        return this;
+    }
+
+    /**
+     * Writes the number like JSONObject does, i.e. without trailing zeros.
+     */
+    public JSONStreamWriter value( double value ) throws IOException
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            throw new IllegalArgumentException("JSON does not allow non-finite numbers " + value);
+
+        beforeValue();
+        writeNumber(Double.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes the shortest representation of the float instead of its double value.
+     */
+    public JSONStreamWriter value( float value ) throws IOException
+    {
+        if (Float.isNaN(value) || Float.isInfinite(value))
+            throw new IllegalArgumentException("JSON does not allow non-finite numbers " + value);
+
+        beforeValue();
+        writeNumber(Float.toString(value));
+        return this;
+    }
+
+    public JSONStreamWriter value( long value ) throws IOException
+    {
+        beforeValue();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    public JSONStreamWriter value( boolean value ) throws IOException
+    {
+        beforeValue();
+        writer.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Checks that all objects and arrays are closed and flushes the underlying writer. The writer
+     * is not closed.
+     */
+    public void flush() throws IOException
+    {
+        if (depth > 0)
+            throw new IllegalStateException((arrays[depth - 1] ? "array" : "object") + " not closed");
+
+        writer.flush();
+    }
+
+    private JSONStreamWriter open( char c, boolean array ) throws IOException
+    {
+        beforeValue();
+        writer.write(c);
+        if (depth == arrays.length)
+        {
+            arrays = Arrays.copyOf(arrays, depth * 2);
+            notEmpty = Arrays.copyOf(notEmpty, depth * 2);
+        }
+        arrays[depth] = array;
+        notEmpty[depth] = false;
+        depth++;
+        return this;
+    }
+
+    private JSONStreamWriter close( char c, boolean array ) throws IOException
+    {
+        if (depth == 0 || arrays[depth - 1] != array || nameWritten)
+            throw new IllegalStateException((array ? "array" : "object") + " not opened?");
+
+        depth--;
+        if (pretty && notEmpty[depth])
+            newLine();
+        writer.write(c);
+        return this;
+    }
+
+    private void beforeValue() throws IOException
+    {
+        if (nameWritten)
+        {
+            nameWritten = false;
+            return;
+        }
+        if (depth > 0 && !arrays[depth - 1])
+            throw new IllegalStateException("value in an object needs a name");
+
+        beforeElement();
+    }
+
+    private void beforeElement() throws IOException
+    {
+        if (depth == 0)
+            return;
+
+        if (notEmpty[depth - 1])
+            writer.write(',');
+        notEmpty[depth - 1] = true;
+        if (pretty)
+            newLine();
+    }
+
+    private void newLine() throws IOException
+    {
+        writer.write('\n');
+        for (int i = 0; i < depth; i++)
+        {
+            writer.write("  ");
+        }
+    }
+
+    private void writeNumber( String str ) throws IOException
+    {
+        if (str.indexOf('E') < 0 && str.endsWith(".0"))
+            writer.write(str, 0, str.length() - 2);
+        else
+            writer.write(str);
+    }
+
+    private void writeString( String str ) throws IOException
+    {
+        writer.write('"');
+        int len = str.length();
+        char prev = 0;
+        for (int i = 0; i < len; i++)
+        {
+            char c = str.charAt(i);
+            switch (c)
+            {
+                case '"':
+                case '\\':
+                    writer.write('\\');
+                    writer.write(c);
+                    break;
+                case '/':
+                    // avoid </script> in JSONP
+                    if (prev == '<')
+                        writer.write('\\');
+                    writer.write(c);
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < ' ' || c == '\u2028' || c == '\u2029')
+                    {
+                        String hex = Integer.toHexString(c);
+                        writer.write("\\u");
+                        for (int j = hex.length(); j < 4; j++)
+                        {
+                            writer.write('0');
+                        }
+                        writer.write(hex);
+                    } else
+                    {
+                        writer.write(c);
+                    }
+            }
+            prev = c;
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of route responses. The key is not the query coordinates but their snapped
+ * positions in the graph, so slightly different requests which lead to the same route share one
+ * entry. The least recently used entry is removed if the cache is full and entries are removed
+ * after their time to live. All entries are dropped if a key for a different graph is used,
+ * e.g. after the graph was reloaded.
+ * <p/>
+ * @author Peter Karich
+ */
+public class RouteCache
+{
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<Key, CacheEntry> map;
+    private Graph graph;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    /**
+     * @param maxEntries the maximum number of cached responses, 0 disables the cache
+     * @param ttlMillis the time until a cached response is calculated again
+     */
+    public RouteCache( int maxEntries, long ttlMillis )
+    {
+        if (maxEntries < 0)
+            throw new IllegalArgumentException("maxEntries cannot be negative " + maxEntries);
+        if (ttlMillis <= 0)
+            throw new IllegalArgumentException("ttl has to be positive " + ttlMillis);
+
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        // access order => the first entry is the least recently used
+        map = new LinkedHashMap<Key, CacheEntry>(Math.min(maxEntries, 1000) * 4 / 3 + 1, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Key, CacheEntry> eldest )
+            {
+                if (size() <= RouteCache.this.maxEntries)
+                    return false;
+
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    public boolean isEnabled()
+    {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Creates the key of the specified request. Call this before routing as routing changes the
+     * query results.
+     */
+    public Key createKey( Graph graph, GHRequest request, List<QueryResult> qResults )
+    {
+        int[] snaps = new int[qResults.size() * 4];
+        for (int i = 0; i < qResults.size(); i++)
+        {
+            QueryResult qr = qResults.get(i);
+            int offset = i * 4;
+            if (qr.getClosestEdge() == null || qr.getSnappedPosition() == QueryResult.Position.TOWER)
+            {
+                // no virtual node is created
+                snaps[offset] = -1;
+                snaps[offset + 1] = qr.getClosestNode();
+                continue;
+            }
+
+            // the way index counts from the base node of the closest edge whose direction depends
+            // on the lookup, so the snapped point is required to identify the virtual node
+            GHPoint point = qr.getSnappedPoint();
+            snaps[offset] = qr.getClosestEdge().getEdge();
+            snaps[offset + 1] = qr.getWayIndex();
+            snaps[offset + 2] = Helper.degreeToInt(point.lat);
+            snaps[offset + 3] = Helper.degreeToInt(point.lon);
+        }
+        return new Key(graph, request.getVehicle(), request.getWeighting(), request.getAlgorithm(),
+                new HashMap<String, Object>(request.getHints()), snaps);
+    }
+
+    /**
+     * @return a copy of the cached response or null if there is none or it is expired
+     */
+    public synchronized GHResponse get( Key key )
+    {
+        checkGraph(key);
+        CacheEntry entry = map.get(key);
+        if (entry == null)
+        {
+            misses++;
+            return null;
+        }
+
+        if (entry.expires < now())
+        {
+            map.remove(key);
+            expirations++;
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.response.copy();
+    }
+
+    /**
+     * Stores a copy of the response of the specified key, so later changes of the specified
+     * response do not change the cached one. Responses with errors are not stored.
+     */
+    public synchronized void put( Key key, GHResponse rsp )
+    {
+        if (!isEnabled() || rsp.hasErrors())
+            return;
+
+        checkGraph(key);
+        map.put(key, new CacheEntry(rsp.copy(), now() + ttlMillis));
+    }
+
+    /**
+     * Removes all entries, e.g. after the graph was changed.
+     */
+    public synchronized void invalidate()
+    {
+        if (!map.isEmpty())
+            invalidations++;
+
+        map.clear();
+    }
+
+    /**
+     * Removes all expired entries which is only necessary to free their memory earlier.
+     */
+    public synchronized void removeExpired()
+    {
+        long time = now();
+        Iterator<CacheEntry> iter = map.values().iterator();
+        while (iter.hasNext())
+        {
+            if (iter.next().expires < time)
+            {
+                iter.remove();
+                expirations++;
+            }
+        }
+    }
+
+    private void checkGraph( Key key )
+    {
+        if (graph != key.graph)
+        {
+            invalidate();
+            graph = key.graph;
+        }
+    }
+
+    long now()
+    {
+        return System.currentTimeMillis();
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public long getTTL()
+    {
+        return ttlMillis;
+    }
+
+    public synchronized int getSize()
+    {
+        return map.size();
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return how often the least recently used entry was removed as the cache was full
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    public synchronized long getExpirations()
+    {
+        return expirations;
+    }
+
+    /**
+     * @return how often all entries were removed
+     */
+    public synchronized long getInvalidations()
+    {
+        return invalidations;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "maxEntries:" + maxEntries + ", size:" + map.size() + ", hits:" + hits + ", misses:" + misses
+                + ", evictions:" + evictions + ", expirations:" + expirations + ", invalidations:" + invalidations;
+    }
+
+    private static class CacheEntry
+    {
+        final GHResponse response;
+        final long expires;
+
+        CacheEntry( GHResponse response, long expires )
+        {
+            this.response = response;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Identifies a route via the snapped positions and all request properties which change the
+     * response.
+     */
+    public static class Key
+    {
+        private final Graph graph;
+        private final String vehicle;
+        private final String weighting;
+        private final String algorithm;
+        private final Map<String, Object> hints;
+        private final int[] snaps;
+        private final int hashCode;
+
+        Key( Graph graph, String vehicle, String weighting, String algorithm, Map<String, Object> hints,
+                int[] snaps )
+        {
+            this.graph = graph;
+            this.vehicle = vehicle;
+            this.weighting = weighting;
+            this.algorithm = algorithm;
+            this.hints = hints;
+            this.snaps = snaps;
+            int hash = Arrays.hashCode(snaps);
+            hash = 31 * hash + vehicle.hashCode();
+            hash = 31 * hash + weighting.hashCode();
+            hash = 31 * hash + algorithm.hashCode();
+            hashCode = 31 * hash + hints.hashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && graph == other.graph && Arrays.equals(snaps, other.snaps)
+                    && vehicle.equals(other.vehicle) && weighting.equals(other.weighting)
+                    && algorithm.equals(other.algorithm) && hints.equals(other.hints);
+        }
+
+        @Override
+        public String toString()
+        {
+            return vehicle + "," + weighting + "," + algorithm + "," + hints + "," + Arrays.toString(snaps);
+        }
+    }
+}
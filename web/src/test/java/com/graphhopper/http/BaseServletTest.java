@@ -68,6 +68,7 @@ public class BaseServletTest
         System.setProperty("graphhopper.config", "../config-example.properties");
         System.setProperty("graphhopper.osmreader.osm", "../core/files/andorra.osm.pbf");
         System.setProperty("graphhopper.graph.location", "./target/andorra-gh/");
+        System.setProperty("graphhopper.web.routeCache.maxEntries", "100");
 
         String webapp = "./target/graphhopper-web-" + Constants.VERSION;
         WebAppContext app = new WebAppContext(webapp, "/");
@@ -135,12 +136,22 @@ public class BaseServletTest
     }
 
     protected String getTestAPIUrl()
+    {
+        return getTestAPIUrl("route");
+    }
+
+    protected String getTestAPIUrl( String service )
     {
         String host = "localhost";
-        return "http://" + host + ":" + port + "/api/route";
+        return "http://" + host + ":" + port + "/api/" + service;
     }
 
     protected JSONObject query( String query ) throws Exception
+    {
+        return query(query, "route");
+    }
+
+    protected JSONObject query( String query, String service ) throws Exception
     {
         String resQuery = "";
         for (String q : query.split("\\&"))
@@ -153,7 +164,7 @@ public class BaseServletTest
 
             resQuery += "&";
         }
-        String url = getTestAPIUrl() + "?" + resQuery;
+        String url = getTestAPIUrl(service) + "?" + resQuery;
         Downloader downloader = new Downloader("web integration tester");
         return new JSONObject(downloader.downloadAsString(url));
     }
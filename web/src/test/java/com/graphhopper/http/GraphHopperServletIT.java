@@ -45,6 +45,44 @@ public class GraphHopperServletIT extends BaseServletTest {
         assertTrue("distance wasn't correct:" + distance, distance < 9500);
     }
 
+    @Test
+    public void testViaPointQuery() throws Exception {
+        JSONObject json = query("point=42.554851,1.536198&point=42.531896,1.553278&point=42.510071,1.548128");
+        JSONObject infoJson = json.getJSONObject("info");
+        assertFalse(infoJson.has("errors"));
+        JSONObject route = json.getJSONObject("route");
+        assertEquals(2, route.getJSONObject("legs").getJSONArray("distances").length());
+        double distance = route.getDouble("distance");
+        assertTrue("distance wasn't correct:" + distance, distance > 9000);
+    }
+
+    @Test
+    public void testCachedQuery() throws Exception {
+        JSONObject json = query("point=42.554851,1.536198&point=42.510071,1.548128&instructions=false");
+        // the repeated request is answered from the cache
+        JSONObject cached = query("point=42.554851,1.536198&point=42.510071,1.548128&instructions=false");
+        assertEquals(json.getJSONObject("route").getDouble("distance"),
+                cached.getJSONObject("route").getDouble("distance"), 1e-3);
+        assertEquals(json.getJSONObject("route").getString("coordinates"),
+                cached.getJSONObject("route").getString("coordinates"));
+
+        JSONObject cache = query("", "info").getJSONObject("routeCache");
+        assertTrue(cache.getLong("hits") > 0);
+        assertTrue(cache.getLong("size") > 0);
+    }
+
+    @Test
+    public void testMatrixQuery() throws Exception {
+        JSONObject json = query("source=42.554851,1.536198&target=42.510071,1.548128&target=42.554851,1.536198", "matrix");
+        assertFalse(json.getJSONObject("info").has("errors"));
+        JSONObject matrix = json.getJSONObject("matrix");
+        assertEquals(1, matrix.getJSONArray("distances").length());
+        double distance = matrix.getJSONArray("distances").getJSONArray(0).getDouble(0);
+        assertTrue("distance wasn't correct:" + distance, distance > 9000);
+        assertTrue("distance wasn't correct:" + distance, distance < 9500);
+        assertEquals(0, matrix.getJSONArray("distances").getJSONArray(0).getDouble(1), 1e-3);
+    }
+
     @Test
     public void testGraphHopperWeb() throws Exception {
         GraphHopperAPI hopper = new GraphHopperWeb();
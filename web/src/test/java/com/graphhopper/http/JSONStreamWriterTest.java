@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.io.StringWriter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class JSONStreamWriterTest
+{
+    @Test
+    public void testNested() throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        JSONStreamWriter json = new JSONStreamWriter(sw);
+        json.startObject().
+                startObject("info").object("found", true).object("took", 0.1f).endObject().
+                startArray("points").
+                startArray().value(10.5).value(-1.25).endArray().
+                startArray().value(11.0).value(2).endArray().
+                endArray().
+                startArray("empty").endArray().
+                object("time", 123456789012L).
+                endObject();
+        json.flush();
+        assertEquals("{\"info\":{\"found\":true,\"took\":0.1},\"points\":[[10.5,-1.25],[11,2]],"
+                + "\"empty\":[],\"time\":123456789012}", sw.toString());
+
+        JSONObject parsed = new JSONObject(sw.toString());
+        JSONArray points = parsed.getJSONArray("points");
+        assertEquals(-1.25, points.getJSONArray(0).getDouble(1), 1e-6);
+    }
+
+    @Test
+    public void testEscaping() throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        String str = "a\"b\\c\n</script>\u0001";
+        new JSONStreamWriter(sw).startObject().object("text", str).endObject().flush();
+        assertEquals("{\"text\":\"a\\\"b\\\\c\\n<\\/script>\\u0001\"}", sw.toString());
+        assertEquals(str, new JSONObject(sw.toString()).getString("text"));
+    }
+
+    @Test
+    public void testPretty() throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        new JSONStreamWriter(sw, true).startObject().
+                startArray("list").value(1).value("x").endArray().
+                startObject("empty").endObject().
+                endObject().flush();
+        assertEquals("{\n  \"list\": [\n    1,\n    \"x\"\n  ],\n  \"empty\": {}\n}", sw.toString());
+    }
+
+    @Test
+    public void testIllegalState() throws Exception
+    {
+        JSONStreamWriter json = new JSONStreamWriter(new StringWriter());
+        json.startObject();
+        try
+        {
+            json.value(1);
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+
+        try
+        {
+            json.endArray();
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+
+        try
+        {
+            json.flush();
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+
+        try
+        {
+            json.object("nan", Double.NaN);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class RouteCacheTest
+{
+    private Graph graph;
+    private EdgeIteratorState edge;
+    private long time;
+
+    @Before
+    public void setUp()
+    {
+        graph = new GraphBuilder(new EncodingManager("CAR")).create();
+        graph.setNode(0, 0, 0);
+        graph.setNode(1, 0, 0.01);
+        graph.setNode(2, 0.01, 0.01);
+        edge = graph.edge(0, 1, 1000, true);
+        graph.edge(1, 2, 1000, true);
+        time = 0;
+    }
+
+    RouteCache createCache( int maxEntries, long ttl )
+    {
+        return new RouteCache(maxEntries, ttl)
+        {
+            @Override
+            long now()
+            {
+                return time;
+            }
+        };
+    }
+
+    QueryResult createTower( double lat, double lon, int node )
+    {
+        QueryResult qr = new QueryResult(lat, lon);
+        qr.setClosestNode(node);
+        qr.setClosestEdge(edge);
+        qr.setSnappedPosition(QueryResult.Position.TOWER);
+        return qr;
+    }
+
+    QueryResult createOnEdge( double lat, double lon )
+    {
+        QueryResult qr = new QueryResult(lat, lon);
+        qr.setClosestNode(0);
+        qr.setClosestEdge(edge);
+        qr.setWayIndex(0);
+        qr.setSnappedPosition(QueryResult.Position.EDGE);
+        qr.calcSnappedPoint(new DistanceCalcEarth());
+        return qr;
+    }
+
+    RouteCache.Key createKey( RouteCache cache, GHRequest req, QueryResult... qResults )
+    {
+        List<QueryResult> list = Arrays.asList(qResults);
+        return cache.createKey(graph, req, list);
+    }
+
+    @Test
+    public void testKey()
+    {
+        RouteCache cache = createCache(10, 1000);
+        GHRequest req = new GHRequest(0, 0, 0.01, 0.01).putHint("instructions", true);
+        // different query points which snap to the same tower nodes have the same key
+        RouteCache.Key key = createKey(cache, req, createTower(0.0001, 0, 0), createTower(0.01, 0.0101, 2));
+        assertEquals(key, createKey(cache, req, createTower(0, 0.0001, 0), createTower(0.01, 0.01, 2)));
+        assertFalse(key.equals(createKey(cache, req, createTower(0, 0, 1), createTower(0.01, 0.01, 2))));
+
+        // hints, vehicle and weighting are part of the key
+        assertFalse(key.equals(createKey(cache, new GHRequest(0, 0, 0.01, 0.01).putHint("instructions", false),
+                createTower(0, 0, 0), createTower(0.01, 0.01, 2))));
+        assertFalse(key.equals(createKey(cache, new GHRequest(0, 0, 0.01, 0.01).putHint("instructions", true).
+                setWeighting("fastest"), createTower(0, 0, 0), createTower(0.01, 0.01, 2))));
+
+        // the snapped point on an edge matters
+        RouteCache.Key edgeKey = createKey(cache, req, createOnEdge(0.001, 0.005), createTower(0.01, 0.01, 2));
+        assertEquals(edgeKey, createKey(cache, req, createOnEdge(0.002, 0.005), createTower(0.01, 0.01, 2)));
+        assertFalse(edgeKey.equals(createKey(cache, req, createOnEdge(0.001, 0.006), createTower(0.01, 0.01, 2))));
+    }
+
+    @Test
+    public void testGetAndPut()
+    {
+        RouteCache cache = createCache(2, 1000);
+        GHRequest req = new GHRequest(0, 0, 0.01, 0.01);
+        RouteCache.Key key1 = createKey(cache, req, createTower(0, 0, 0), createTower(0, 0, 1));
+        RouteCache.Key key2 = createKey(cache, req, createTower(0, 0, 0), createTower(0, 0, 2));
+        RouteCache.Key key3 = createKey(cache, req, createTower(0, 0, 1), createTower(0, 0, 2));
+        assertNull(cache.get(key1));
+        GHResponse rsp1 = new GHResponse().setDistance(1);
+        cache.put(key1, rsp1);
+        assertEquals(1, cache.get(key1).getDistance(), 1e-6);
+
+        cache.put(key2, new GHResponse().setDistance(2));
+        // key1 was used more recently than key2
+        cache.get(key1);
+        cache.put(key3, new GHResponse().setDistance(3));
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(key2));
+        assertEquals(1, cache.get(key1).getDistance(), 1e-6);
+
+        // errors are not cached
+        cache.put(key2, new GHResponse().addError(new IllegalArgumentException()));
+        assertNull(cache.get(key2));
+
+        assertEquals(3, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testPillarKey()
+    {
+        RouteCache cache = createCache(10, 1000);
+        GHRequest req = new GHRequest(0, 0, 0.01, 0.01);
+        EdgeIteratorState pillarEdge = graph.edge(0, 2, 2000, true);
+        pillarEdge.setWayGeometry(Helper.createPointList(0.002, 0.002, 0.008, 0.008));
+        // the same way index counted from both ends of the edge refers to different pillars
+        QueryResult fromBase = createOnPillar(pillarEdge, 0.002, 0.002);
+        QueryResult fromAdj = createOnPillar(graph.getEdgeProps(pillarEdge.getEdge(), 0), 0.008, 0.008);
+        assertEquals(fromBase.getWayIndex(), fromAdj.getWayIndex());
+        assertFalse(createKey(cache, req, fromBase, createTower(0, 0.01, 1)).
+                equals(createKey(cache, req, fromAdj, createTower(0, 0.01, 1))));
+        assertEquals(createKey(cache, req, fromBase, createTower(0, 0.01, 1)),
+                createKey(cache, req, createOnPillar(pillarEdge, 0.0021, 0.002), createTower(0, 0.01, 1)));
+    }
+
+    QueryResult createOnPillar( EdgeIteratorState pillarEdge, double lat, double lon )
+    {
+        QueryResult qr = new QueryResult(lat, lon);
+        qr.setClosestNode(pillarEdge.getBaseNode());
+        qr.setClosestEdge(pillarEdge);
+        qr.setWayIndex(1);
+        qr.setSnappedPosition(QueryResult.Position.PILLAR);
+        qr.calcSnappedPoint(new DistanceCalcEarth());
+        return qr;
+    }
+
+    @Test
+    public void testReturnsCopy()
+    {
+        RouteCache cache = createCache(10, 1000);
+        RouteCache.Key key = createKey(cache, new GHRequest(0, 0, 0.01, 0.01), createTower(0, 0, 0),
+                createTower(0, 0, 1));
+        GHResponse rsp = new GHResponse().setDistance(1).setPoints(Helper.createPointList(0, 0, 0, 0.01));
+        cache.put(key, rsp);
+        rsp.setDistance(2);
+        GHResponse cached = cache.get(key);
+        assertEquals(1, cached.getDistance(), 1e-6);
+
+        // every caller gets its own response
+        cached.getPoints().add(0.01, 0.01);
+        assertNotSame(cached, cache.get(key));
+        assertEquals(2, cache.get(key).getPoints().getSize());
+    }
+
+    @Test
+    public void testExpiration()
+    {
+        RouteCache cache = createCache(10, 1000);
+        GHRequest req = new GHRequest(0, 0, 0.01, 0.01);
+        RouteCache.Key key1 = createKey(cache, req, createTower(0, 0, 0), createTower(0, 0, 1));
+        RouteCache.Key key2 = createKey(cache, req, createTower(0, 0, 0), createTower(0, 0, 2));
+        cache.put(key1, new GHResponse());
+        time = 500;
+        cache.put(key2, new GHResponse());
+        time = 1000;
+        assertNotNull(cache.get(key1));
+        time = 1001;
+        assertNull(cache.get(key1));
+        assertEquals(1, cache.getExpirations());
+
+        time = 2000;
+        cache.removeExpired();
+        assertEquals(0, cache.getSize());
+        assertEquals(2, cache.getExpirations());
+    }
+
+    @Test
+    public void testInvalidateOnDifferentGraph()
+    {
+        RouteCache cache = createCache(10, 1000);
+        GHRequest req = new GHRequest(0, 0, 0.01, 0.01);
+        RouteCache.Key key = createKey(cache, req, createTower(0, 0, 0), createTower(0, 0, 1));
+        cache.put(key, new GHResponse());
+        assertNotNull(cache.get(key));
+
+        // e.g. after a reload
+        graph = new GraphBuilder(new EncodingManager("CAR")).create();
+        RouteCache.Key newKey = createKey(cache, req, createTower(0, 0, 0), createTower(0, 0, 1));
+        assertFalse(key.equals(newKey));
+        assertNull(cache.get(newKey));
+        assertEquals(0, cache.getSize());
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        RouteCache cache = createCache(0, 1000);
+        assertFalse(cache.isEnabled());
+        RouteCache.Key key = createKey(cache, new GHRequest(0, 0, 0.01, 0.01), createTower(0, 0, 0), createTower(0, 0, 1));
+        cache.put(key, new GHResponse());
+        assertNull(cache.get(key));
+    }
+}